@@ -25,10 +25,30 @@ public class ChatController : ControllerBase
     }
 
     [HttpGet]
-    public async Task<IEnumerable<ChatRoomDto>> GetRooms()
+    public async Task<IEnumerable<ChatRoomDto>> GetRooms([FromQuery] int? afterId = null, [FromQuery] int pageSize = 0)
     {
-        var resp = await _grpc.ListChatRoomsAsync(new Empty());
-        return resp.Rooms.Select(MapRoom);
+        var request = new ListChatRoomsRequest { AfterId = afterId ?? 0, PageSize = pageSize };
+
+        // A single page when the caller pages; the cursor of the next page is sent in a header
+        if (afterId.HasValue || pageSize > 0)
+        {
+            var page = await _grpc.ListChatRoomsAsync(request);
+            if (page.HasMore)
+                Response.Headers["X-Next-After-Id"] = page.NextAfterId.ToString();
+            return page.Rooms.Select(MapRoom).ToList();
+        }
+
+        // Otherwise all rooms, following the cursor page by page
+        var rooms = new List<ChatRoomDto>();
+        while (true)
+        {
+            var page = await _grpc.ListChatRoomsAsync(request);
+            rooms.AddRange(page.Rooms.Select(MapRoom));
+            if (!page.HasMore)
+                break;
+            request.AfterId = page.NextAfterId;
+        }
+        return rooms;
     }
 
     [HttpPost]
@@ -52,11 +72,41 @@ public class ChatController : ControllerBase
     }
 
     [HttpGet("{chatRoomId:int}/messages")]
-    public async Task<IEnumerable<MessageDto>> GetMessages(int chatRoomId)
+    public async Task<IEnumerable<MessageDto>> GetMessages(int chatRoomId,
+        [FromQuery] long? beforeMicros = null, [FromQuery] int? beforeId = null,
+        [FromQuery] long? afterMicros = null, [FromQuery] int? afterId = null,
+        [FromQuery] int pageSize = 0)
     {
-        var resp = await _grpc.GetMessagesAsync(new GetMessagesRequest { ChatRoomId = chatRoomId });
+        var request = new GetMessagesRequest { ChatRoomId = chatRoomId, PageSize = pageSize };
+        if (beforeMicros.HasValue && beforeId.HasValue)
+            request.Before = new MessageCursor { CreatedAtMicros = beforeMicros.Value, Id = beforeId.Value };
+        if (afterMicros.HasValue && afterId.HasValue)
+            request.After = new MessageCursor { CreatedAtMicros = afterMicros.Value, Id = afterId.Value };
 
-        return resp.Messages.Select(MapMessage).ToList();
+        // A single page when the caller pages; the cursor of the next page is sent in headers
+        if (request.Before != null || request.After != null || pageSize > 0)
+        {
+            var page = await _grpc.GetMessagesAsync(request);
+            if (page.HasMore)
+            {
+                Response.Headers["X-Next-Cursor-Micros"] = page.NextCursor.CreatedAtMicros.ToString();
+                Response.Headers["X-Next-Cursor-Id"] = page.NextCursor.Id.ToString();
+            }
+            return page.Messages.Select(MapMessage).ToList();
+        }
+
+        // Otherwise the whole history, following the cursors from the newest page backwards
+        var pages = new List<IEnumerable<MessageDto>>();
+        while (true)
+        {
+            var page = await _grpc.GetMessagesAsync(request);
+            pages.Add(page.Messages.Select(MapMessage));
+            if (!page.HasMore)
+                break;
+            request.Before = page.NextCursor;
+        }
+        pages.Reverse();
+        return pages.SelectMany(p => p).ToList();
     }
 
     [HttpPost("{chatRoomId:int}/messages")]
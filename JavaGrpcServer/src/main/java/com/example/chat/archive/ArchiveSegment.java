@@ -0,0 +1,452 @@
+package com.example.chat.archive;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import com.example.chat.domain.Message;
+import com.example.chat.grpc.MessageCursor;
+import com.example.chat.grpc.MessageCursors;
+
+/**
+ * Immutable, memory-mapped file holding a contiguous run of one room's archived messages.
+ * Messages are stored in (created_at, id) order in blocks that are deflate-compressed
+ * independently. A sparse index at the end of the file records the first and last cursor of
+ * every block, so a page read only inflates the blocks that can contain the requested messages.
+ *
+ * <p>Layout: header (magic, format version, room ID, message count, block count), the
+ * compressed blocks, the block index, and a footer holding the index offset and the magic again.
+ */
+final class ArchiveSegment {
+
+    private static final int MAGIC = 0x43534547;
+    private static final short FORMAT_VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 2 + 4 + 4 + 4;
+    private static final int INDEX_ENTRY_BYTES = 8 + 4 + 8 + 4 + 4 + 4 + 4 + 4;
+    private static final int FOOTER_BYTES = 4 + 4;
+
+    private static final int FLAG_EDITED = 1;
+    private static final int FLAG_DELETED = 1 << 1;
+    private static final int FLAG_EDITED_AT = 1 << 2;
+    private static final int FLAG_DELETED_AT = 1 << 3;
+    private static final int FLAG_DELETED_BY = 1 << 4;
+    private static final int FLAG_SEQ = 1 << 5;
+
+    private final Path path;
+    private final int chatRoomId;
+    private final int messageCount;
+    private final MappedByteBuffer data;
+    private final long[] firstMicros;
+    private final int[] firstIds;
+    private final long[] lastMicros;
+    private final int[] lastIds;
+    private final int[] offsets;
+    private final int[] compressedLengths;
+    private final int[] rawLengths;
+    private final int[] counts;
+
+    private ArchiveSegment(Path path, MappedByteBuffer data) throws IOException {
+        this.path = path;
+        this.data = data;
+        int size = data.capacity();
+        if (size < HEADER_BYTES + FOOTER_BYTES || data.getInt(0) != MAGIC || data.getInt(size - 4) != MAGIC) {
+            throw new IOException("Not an archive segment: " + path);
+        }
+        if (data.getShort(4) != FORMAT_VERSION) {
+            throw new IOException("Unsupported archive segment version " + data.getShort(4) + ": " + path);
+        }
+        this.chatRoomId = data.getInt(6);
+        this.messageCount = data.getInt(10);
+        int blockCount = data.getInt(14);
+        int indexOffset = data.getInt(size - FOOTER_BYTES);
+        if (blockCount <= 0 || indexOffset + (long) blockCount * INDEX_ENTRY_BYTES != size - FOOTER_BYTES) {
+            throw new IOException("Corrupt archive segment index: " + path);
+        }
+        this.firstMicros = new long[blockCount];
+        this.firstIds = new int[blockCount];
+        this.lastMicros = new long[blockCount];
+        this.lastIds = new int[blockCount];
+        this.offsets = new int[blockCount];
+        this.compressedLengths = new int[blockCount];
+        this.rawLengths = new int[blockCount];
+        this.counts = new int[blockCount];
+        for (int block = 0, pos = indexOffset; block < blockCount; block++, pos += INDEX_ENTRY_BYTES) {
+            firstMicros[block] = data.getLong(pos);
+            firstIds[block] = data.getInt(pos + 8);
+            lastMicros[block] = data.getLong(pos + 12);
+            lastIds[block] = data.getInt(pos + 20);
+            offsets[block] = data.getInt(pos + 24);
+            compressedLengths[block] = data.getInt(pos + 28);
+            rawLengths[block] = data.getInt(pos + 32);
+            counts[block] = data.getInt(pos + 36);
+        }
+    }
+
+    /**
+     * Writes a new segment file. The file is written under a temporary name, forced to disk
+     * and then atomically renamed, so a segment file is either complete or absent.
+     *
+     * @param target the path of the segment file
+     * @param chatRoomId the ID of the room the messages belong to
+     * @param messages the messages to store, in ascending (created_at, id) order
+     * @param messagesPerBlock the number of messages per compressed block
+     * @throws IOException if the file cannot be written
+     */
+    static void write(Path target, int chatRoomId, List<Message> messages, int messagesPerBlock) throws IOException {
+        if (messages.isEmpty()) {
+            throw new IllegalArgumentException("A segment needs at least one message");
+        }
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        int blockCount = (messages.size() + messagesPerBlock - 1) / messagesPerBlock;
+        ByteArrayOutputStream index = new ByteArrayOutputStream(blockCount * INDEX_ENTRY_BYTES);
+        DataOutputStream indexOut = new DataOutputStream(index);
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            out.writeInt(MAGIC);
+            out.writeShort(FORMAT_VERSION);
+            out.writeInt(chatRoomId);
+            out.writeInt(messages.size());
+            out.writeInt(blockCount);
+
+            ByteArrayOutputStream raw = new ByteArrayOutputStream();
+            DataOutputStream rawOut = new DataOutputStream(raw);
+            for (int start = 0; start < messages.size(); start += messagesPerBlock) {
+                List<Message> block = messages.subList(start, Math.min(start + messagesPerBlock, messages.size()));
+                raw.reset();
+                for (Message message : block) {
+                    writeRecord(rawOut, message);
+                }
+                byte[] compressed = deflate(raw.toByteArray());
+                Message first = block.get(0);
+                Message last = block.get(block.size() - 1);
+                indexOut.writeLong(MessageCursors.toMicros(first.getCreatedAt()));
+                indexOut.writeInt(first.getId());
+                indexOut.writeLong(MessageCursors.toMicros(last.getCreatedAt()));
+                indexOut.writeInt(last.getId());
+                indexOut.writeInt(out.size());
+                indexOut.writeInt(compressed.length);
+                indexOut.writeInt(raw.size());
+                indexOut.writeInt(block.size());
+                out.write(compressed);
+            }
+            int indexOffset = out.size();
+            index.writeTo(out);
+            out.writeInt(indexOffset);
+            out.writeInt(MAGIC);
+            if (out.size() == Integer.MAX_VALUE) {
+                throw new IOException("Archive segment exceeds 2 GB: " + target);
+            }
+            out.flush();
+            channel.force(true);
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Opens and maps an existing segment file.
+     *
+     * @param path the path of the segment file
+     * @return the opened segment
+     * @throws IOException if the file cannot be read or is not a valid segment
+     */
+    static ArchiveSegment open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new ArchiveSegment(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Adds the messages that come strictly before a cursor to a page, newest first.
+     *
+     * @param before the cursor, or null to start at the newest message of the segment
+     * @param limit the maximum size of the page
+     * @param page the page being filled
+     */
+    void collectBefore(MessageCursor before, int limit, List<Message> page) {
+        int block = before == null ? counts.length - 1 : lastBlockStartingBefore(before);
+        for (; block >= 0 && page.size() < limit; block--) {
+            List<Message> rows = readBlock(block);
+            for (int i = rows.size() - 1; i >= 0 && page.size() < limit; i--) {
+                Message row = rows.get(i);
+                if (before == null || compare(row, before) < 0) {
+                    page.add(row);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the messages that come strictly after a cursor to a page, oldest first.
+     *
+     * @param after the cursor
+     * @param limit the maximum size of the page
+     * @param page the page being filled
+     */
+    void collectAfter(MessageCursor after, int limit, List<Message> page) {
+        for (int block = firstBlockEndingAfter(after); block < counts.length && page.size() < limit; block++) {
+            for (Message row : readBlock(block)) {
+                if (page.size() >= limit) {
+                    break;
+                }
+                if (compare(row, after) > 0) {
+                    page.add(row);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the cursor of the newest message in the segment.
+     *
+     * @return the cursor of the last message
+     */
+    MessageCursor lastCursor() {
+        int last = counts.length - 1;
+        return MessageCursor.newBuilder().setCreatedAtMicros(lastMicros[last]).setId(lastIds[last]).build();
+    }
+
+    /**
+     * Returns the ID of the room the segment belongs to.
+     *
+     * @return the chat room ID
+     */
+    int chatRoomId() {
+        return chatRoomId;
+    }
+
+    /**
+     * Returns the number of messages in the segment.
+     *
+     * @return the message count
+     */
+    int messageCount() {
+        return messageCount;
+    }
+
+    /**
+     * Returns the path of the segment file.
+     *
+     * @return the file path
+     */
+    Path path() {
+        return path;
+    }
+
+    /**
+     * Finds the last block whose first message comes before a cursor.
+     *
+     * @param cursor the cursor
+     * @return the block number, or -1 if every block starts at or after the cursor
+     */
+    private int lastBlockStartingBefore(MessageCursor cursor) {
+        int low = 0;
+        int high = counts.length - 1;
+        int found = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (compare(firstMicros[mid], firstIds[mid], cursor) < 0) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Finds the first block whose last message comes after a cursor.
+     *
+     * @param cursor the cursor
+     * @return the block number, or the block count if every block ends at or before the cursor
+     */
+    private int firstBlockEndingAfter(MessageCursor cursor) {
+        int low = 0;
+        int high = counts.length - 1;
+        int found = counts.length;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (compare(lastMicros[mid], lastIds[mid], cursor) > 0) {
+                found = mid;
+                high = mid - 1;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Inflates and decodes one block.
+     *
+     * @param block the block number
+     * @return the messages of the block in ascending order
+     */
+    private List<Message> readBlock(int block) {
+        ByteBuffer compressed = data.slice(offsets[block], compressedLengths[block]);
+        byte[] raw = new byte[rawLengths[block]];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            int length = 0;
+            while (length < raw.length) {
+                int read = inflater.inflate(raw, length, raw.length - length);
+                if (read == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new DataFormatException("Truncated block");
+                }
+                length += read;
+            }
+        } catch (DataFormatException ex) {
+            throw new UncheckedIOException(new IOException("Corrupt block " + block + " in " + path, ex));
+        } finally {
+            inflater.end();
+        }
+
+        List<Message> rows = new ArrayList<>(counts[block]);
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(raw))) {
+            for (int i = 0; i < counts[block]; i++) {
+                rows.add(readRecord(in));
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return rows;
+    }
+
+    /**
+     * Encodes one message.
+     *
+     * @param out the block being written
+     * @param message the message to encode
+     * @throws IOException if writing fails
+     */
+    private static void writeRecord(DataOutputStream out, Message message) throws IOException {
+        int flags = (message.isEdited() ? FLAG_EDITED : 0)
+            | (message.isDeleted() ? FLAG_DELETED : 0)
+            | (message.getEditedAt() != null ? FLAG_EDITED_AT : 0)
+            | (message.getDeletedAt() != null ? FLAG_DELETED_AT : 0)
+            | (message.getDeletedBy() != null ? FLAG_DELETED_BY : 0)
+            | (message.getSeq() > 0 ? FLAG_SEQ : 0);
+        out.writeByte(flags);
+        out.writeInt(message.getId());
+        out.writeInt(message.getSenderId());
+        out.writeLong(MessageCursors.toMicros(message.getCreatedAt()));
+        out.writeLong(message.getChangeVersion());
+        if (message.getEditedAt() != null) {
+            out.writeLong(MessageCursors.toMicros(message.getEditedAt()));
+        }
+        if (message.getDeletedAt() != null) {
+            out.writeLong(MessageCursors.toMicros(message.getDeletedAt()));
+        }
+        if (message.getDeletedBy() != null) {
+            out.writeInt(message.getDeletedBy());
+        }
+        if (message.getSeq() > 0) {
+            out.writeLong(message.getSeq());
+        }
+        byte[] text = message.getText() == null ? new byte[0] : message.getText().getBytes(StandardCharsets.UTF_8);
+        out.writeInt(text.length);
+        out.write(text);
+    }
+
+    /**
+     * Decodes one message.
+     *
+     * @param in the block being read
+     * @return the decoded message
+     * @throws IOException if reading fails
+     */
+    private Message readRecord(DataInputStream in) throws IOException {
+        int flags = in.readByte();
+        Message message = new Message();
+        message.setChatRoomId(chatRoomId);
+        message.setId(in.readInt());
+        message.setSenderId(in.readInt());
+        message.setCreatedAt(MessageCursors.toInstant(in.readLong()));
+        message.setChangeVersion(in.readLong());
+        message.setEdited((flags & FLAG_EDITED) != 0);
+        message.setDeleted((flags & FLAG_DELETED) != 0);
+        if ((flags & FLAG_EDITED_AT) != 0) {
+            message.setEditedAt(MessageCursors.toInstant(in.readLong()));
+        }
+        if ((flags & FLAG_DELETED_AT) != 0) {
+            message.setDeletedAt(MessageCursors.toInstant(in.readLong()));
+        }
+        if ((flags & FLAG_DELETED_BY) != 0) {
+            message.setDeletedBy(in.readInt());
+        }
+        if ((flags & FLAG_SEQ) != 0) {
+            message.setSeq(in.readLong());
+        }
+        byte[] text = new byte[in.readInt()];
+        in.readFully(text);
+        message.setText(new String(text, StandardCharsets.UTF_8));
+        return message;
+    }
+
+    /**
+     * Compresses one block.
+     *
+     * @param raw the encoded messages
+     * @return the compressed block
+     */
+    private static byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 2 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Compares a message's position with a cursor.
+     *
+     * @param message the message
+     * @param cursor the cursor
+     * @return a negative number, zero or a positive number as the message comes before, at or after the cursor
+     */
+    private static int compare(Message message, MessageCursor cursor) {
+        return compare(MessageCursors.toMicros(message.getCreatedAt()), message.getId(), cursor);
+    }
+
+    /**
+     * Compares a (created_at, id) position with a cursor.
+     *
+     * @param micros the creation time in epoch microseconds
+     * @param id the message ID
+     * @param cursor the cursor
+     * @return a negative number, zero or a positive number as the position comes before, at or after the cursor
+     */
+    private static int compare(long micros, int id, MessageCursor cursor) {
+        int byTime = Long.compare(micros, cursor.getCreatedAtMicros());
+        return byTime != 0 ? byTime : Integer.compare(id, cursor.getId());
+    }
+}
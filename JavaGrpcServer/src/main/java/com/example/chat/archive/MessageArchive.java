@@ -0,0 +1,453 @@
+package com.example.chat.archive;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.chat.codec.MessageTextCodec;
+import com.example.chat.domain.Message;
+import com.example.chat.grpc.MessageCursor;
+import com.example.chat.grpc.MessageCursors;
+import com.example.chat.repositories.ChatRoomRepository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Cold-tier archive of old messages in memory-mapped segment files on local disk.
+ * For every room, the archived messages form a prefix of the room's history: a background
+ * job moves the oldest messages past the configured age out of the database into a new
+ * {@link ArchiveSegment}, and deletes them from the database in the same transaction.
+ * Everything up to a room's watermark, the cursor of its newest archived message, is read
+ * from the segments; everything after it from the database.
+ *
+ * <p>Segments are immutable: archived messages can be read and paged, but no longer edited,
+ * deleted or found by search. Existing segments are always served; {@code chat.archive.enabled}
+ * only controls whether new messages are archived.
+ *
+ * <p>Archiving a room holds a PostgreSQL advisory lock on it for the transaction, so instances
+ * sharing the database never archive the same room at once. The segments must nevertheless be
+ * readable by every instance, since the archived rows are gone from the shared database: with
+ * {@code chat.cluster.bus=postgres}, archiving is refused unless {@code chat.archive.shared-directory}
+ * declares the directory to be shared storage. Instances on a shared directory map the segments
+ * written by others every {@code chat.archive.rescan-interval-ms}, and before archiving a room;
+ * until its next rescan, an instance does not page into segments another instance has just written.
+ */
+@Component
+public class MessageArchive {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageArchive.class);
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    /**
+     * First key of the advisory locks held while archiving a room; the room ID is the second.
+     */
+    private static final int ARCHIVE_LOCK_CLASS = 0x41524348;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ChatRoomRepository chatRoomRepository;
+    private final MessageTextCodec textCodec;
+    private final Path directory;
+    private final boolean enabled;
+    private final boolean sharedDirectory;
+    private final Duration minAge;
+    private final int messagesPerSegment;
+    private final int messagesPerBlock;
+    private final long checkIntervalMillis;
+    private final long rescanIntervalMillis;
+    private final Map<Integer, List<ArchiveSegment>> rooms = new ConcurrentHashMap<>();
+    private ScheduledExecutorService executor;
+
+    /**
+     * Constructs a new MessageArchive.
+     *
+     * @param jdbcTemplate the JDBC template used to move messages out of the database
+     * @param transactionManager the transaction manager wrapping each archived segment
+     * @param chatRoomRepository the repository listing the rooms to archive
+     * @param textCodec the codec decompressing stored message texts before they are archived
+     * @param directory the directory holding one subdirectory of segment files per room
+     * @param enabled whether old messages are moved into the archive
+     * @param minAgeDays the age after which messages are archived
+     * @param messagesPerSegment the maximum number of messages per segment file
+     * @param messagesPerBlock the number of messages per compressed block
+     * @param checkIntervalMillis the interval between archiving runs
+     * @param clusterBus the configured cluster event bus, {@code memory} or {@code postgres}
+     * @param sharedDirectory whether the directory is storage shared by all instances
+     * @param rescanIntervalMillis the interval between scans of a shared directory for new segments
+     * @throws IllegalArgumentException if archiving is enabled for several instances on local disk
+     */
+    public MessageArchive(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            ChatRoomRepository chatRoomRepository, MessageTextCodec textCodec,
+            @Value("${chat.archive.directory:archive}") String directory,
+            @Value("${chat.archive.enabled:false}") boolean enabled,
+            @Value("${chat.archive.min-age-days:180}") int minAgeDays,
+            @Value("${chat.archive.messages-per-segment:50000}") int messagesPerSegment,
+            @Value("${chat.archive.messages-per-block:128}") int messagesPerBlock,
+            @Value("${chat.archive.check-interval-ms:86400000}") long checkIntervalMillis,
+            @Value("${chat.cluster.bus:memory}") String clusterBus,
+            @Value("${chat.archive.shared-directory:false}") boolean sharedDirectory,
+            @Value("${chat.archive.rescan-interval-ms:10000}") long rescanIntervalMillis) {
+        if (enabled && "postgres".equals(clusterBus) && !sharedDirectory) {
+            throw new IllegalArgumentException("chat.archive.enabled with chat.cluster.bus=postgres requires "
+                + "chat.archive.directory on storage shared by all instances and chat.archive.shared-directory=true");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chatRoomRepository = chatRoomRepository;
+        this.textCodec = textCodec;
+        this.directory = Paths.get(directory);
+        this.enabled = enabled;
+        this.sharedDirectory = sharedDirectory;
+        this.minAge = Duration.ofDays(Math.max(1, minAgeDays));
+        this.messagesPerSegment = Math.max(1, messagesPerSegment);
+        this.messagesPerBlock = Math.max(1, messagesPerBlock);
+        this.checkIntervalMillis = Math.max(60_000L, checkIntervalMillis);
+        this.rescanIntervalMillis = Math.max(1000L, rescanIntervalMillis);
+    }
+
+    /**
+     * Maps the existing segment files and, if enabled, schedules the archiving runs, and on a
+     * shared directory the scans for segments written by other instances. Both run on one thread.
+     *
+     * @throws IOException if the archive directory cannot be read
+     */
+    @PostConstruct
+    public void start() throws IOException {
+        if (Files.isDirectory(directory)) {
+            loadSegments();
+            raiseSequenceCounters();
+        }
+        if (!enabled && !sharedDirectory) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "message-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (sharedDirectory) {
+            executor.scheduleWithFixedDelay(this::rescan, rescanIntervalMillis, rescanIntervalMillis,
+                TimeUnit.MILLISECONDS);
+        }
+        if (enabled) {
+            executor.scheduleWithFixedDelay(this::archiveAll, checkIntervalMillis, checkIntervalMillis,
+                TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stops the archiving runs.
+     */
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the cursor of the newest archived message of a room.
+     * Every message of the room up to and including this cursor is in the archive.
+     *
+     * @param chatRoomId the ID of the chat room
+     * @return the watermark, or null if nothing of the room has been archived
+     */
+    public MessageCursor watermark(int chatRoomId) {
+        List<ArchiveSegment> segments = rooms.get(chatRoomId);
+        return segments == null ? null : segments.get(segments.size() - 1).lastCursor();
+    }
+
+    /**
+     * Reads archived messages that come strictly before a cursor, newest first.
+     *
+     * @param chatRoomId the ID of the chat room
+     * @param before the cursor, or null to start at the newest archived message
+     * @param limit the maximum number of messages to return
+     * @return up to {@code limit} messages ordered by (created_at, id) descending
+     */
+    public List<Message> pageBefore(int chatRoomId, MessageCursor before, int limit) {
+        List<ArchiveSegment> segments = rooms.get(chatRoomId);
+        if (segments == null || limit <= 0) {
+            return List.of();
+        }
+        List<Message> page = new ArrayList<>(Math.min(limit, 1024));
+        for (int i = segments.size() - 1; i >= 0 && page.size() < limit; i--) {
+            segments.get(i).collectBefore(before, limit, page);
+        }
+        return page;
+    }
+
+    /**
+     * Reads archived messages that come strictly after a cursor, oldest first.
+     *
+     * @param chatRoomId the ID of the chat room
+     * @param after the cursor
+     * @param limit the maximum number of messages to return
+     * @return up to {@code limit} messages ordered by (created_at, id) ascending
+     */
+    public List<Message> pageAfter(int chatRoomId, MessageCursor after, int limit) {
+        List<ArchiveSegment> segments = rooms.get(chatRoomId);
+        if (segments == null || limit <= 0) {
+            return List.of();
+        }
+        List<Message> page = new ArrayList<>(Math.min(limit, 1024));
+        for (int i = 0; i < segments.size() && page.size() < limit; i++) {
+            segments.get(i).collectAfter(after, limit, page);
+        }
+        return page;
+    }
+
+    /**
+     * Archives the old messages of every room.
+     */
+    void archiveAll() {
+        Instant cutoff = Instant.now().minus(minAge);
+        long started = System.nanoTime();
+        int archived = 0;
+        for (Integer chatRoomId : chatRoomRepository.findAllIds()) {
+            try {
+                int written;
+                do {
+                    written = transactionTemplate.execute(status -> archiveSegment(chatRoomId, cutoff));
+                    archived += written;
+                } while (written == messagesPerSegment && !Thread.currentThread().isInterrupted());
+            } catch (RuntimeException ex) {
+                log.warn("Failed to archive messages of chat room {}", chatRoomId, ex);
+            }
+        }
+        if (archived > 0) {
+            log.info("Archived {} messages in {} ms", archived, (System.nanoTime() - started) / 1_000_000);
+        }
+    }
+
+    /**
+     * Maps the segments that other instances added to a shared directory.
+     */
+    void rescan() {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        int added = 0;
+        try (DirectoryStream<Path> roomDirectories = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            for (Path roomDirectory : roomDirectories) {
+                added += refresh(roomDirectory);
+            }
+        } catch (IOException | UncheckedIOException ex) {
+            log.warn("Failed to scan the archive directory for new segments", ex);
+        }
+        if (added > 0) {
+            log.info("Mapped {} new archive segments", added);
+        }
+    }
+
+    /**
+     * Moves the oldest unarchived messages of a room created before a cutoff into a new segment.
+     * Must run in a transaction: the rows stay locked until they have been written to the
+     * segment and deleted, so edits to them cannot slip in between. A room that another
+     * instance is archiving is skipped.
+     *
+     * @param chatRoomId the ID of the chat room
+     * @param cutoff the creation time before which messages are archived
+     * @return the number of archived messages
+     */
+    int archiveSegment(int chatRoomId, Instant cutoff) {
+        Boolean locked = jdbcTemplate.queryForObject("SELECT pg_try_advisory_xact_lock(?, ?)", Boolean.class,
+            ARCHIVE_LOCK_CLASS, chatRoomId);
+        if (!Boolean.TRUE.equals(locked)) {
+            log.debug("Chat room {} is being archived by another instance", chatRoomId);
+            return 0;
+        }
+        Path roomDirectory = directory.resolve(Integer.toString(chatRoomId));
+        if (sharedDirectory && Files.isDirectory(roomDirectory)) {
+            // Segments another instance wrote since the last rescan; the next one is numbered after them
+            try {
+                refresh(roomDirectory);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+        MessageCursor watermark = watermark(chatRoomId);
+        if (watermark != null) {
+            // Rows left behind by a run that wrote its segment but failed to commit the delete
+            deleteUpTo(chatRoomId, watermark);
+        }
+        MessageCursor from = watermark != null ? watermark : MessageCursor.getDefaultInstance();
+        Timestamp fromTime = Timestamp.from(MessageCursors.toInstant(from.getCreatedAtMicros()));
+        List<Message> rows = jdbcTemplate.query(
+            "SELECT id, sender_id, text, text_compressed, created_at, edited_at, deleted_at, deleted_by, is_edited, "
+                + "is_deleted, change_version, seq FROM messages "
+                + "WHERE chat_room_id = ? AND created_at < ? AND created_at >= ? "
+                + "AND (created_at, id) > (?, ?) ORDER BY created_at, id LIMIT ? FOR UPDATE",
+            (rs, rowNum) -> mapRow(chatRoomId, rs),
+            chatRoomId, Timestamp.from(cutoff), fromTime, fromTime, from.getId(), messagesPerSegment);
+        if (rows.isEmpty()) {
+            return 0;
+        }
+
+        List<ArchiveSegment> segments = rooms.getOrDefault(chatRoomId, List.of());
+        try {
+            Files.createDirectories(roomDirectory);
+            Path path = roomDirectory.resolve(String.format("%010d%s", segments.size() + 1, SEGMENT_SUFFIX));
+            ArchiveSegment.write(path, chatRoomId, rows, messagesPerBlock);
+            List<ArchiveSegment> updated = new ArrayList<>(segments);
+            updated.add(ArchiveSegment.open(path));
+            rooms.put(chatRoomId, List.copyOf(updated));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        deleteUpTo(chatRoomId, MessageCursors.of(rows.get(rows.size() - 1)));
+        return rows.size();
+    }
+
+    /**
+     * Deletes the database rows of a room up to and including a cursor.
+     *
+     * @param chatRoomId the ID of the chat room
+     * @param upTo the cursor of the newest row to delete
+     */
+    private void deleteUpTo(int chatRoomId, MessageCursor upTo) {
+        Timestamp upToTime = Timestamp.from(MessageCursors.toInstant(upTo.getCreatedAtMicros()));
+        jdbcTemplate.update("DELETE FROM messages WHERE chat_room_id = ? AND created_at <= ? "
+            + "AND (created_at, id) <= (?, ?)", chatRoomId, upToTime, upToTime, upTo.getId());
+    }
+
+    /**
+     * Maps the segment files of all room subdirectories, in segment order.
+     * Temporary files of interrupted writes are removed, unless the directory is shared and
+     * they may be the segments another instance is writing.
+     *
+     * @throws IOException if the archive directory cannot be read
+     */
+    private void loadSegments() throws IOException {
+        int count = 0;
+        try (DirectoryStream<Path> roomDirectories = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            for (Path roomDirectory : roomDirectories) {
+                if (!sharedDirectory) {
+                    try (DirectoryStream<Path> temps = Files.newDirectoryStream(roomDirectory,
+                            "*" + SEGMENT_SUFFIX + ".tmp")) {
+                        for (Path temp : temps) {
+                            Files.delete(temp);
+                        }
+                    }
+                }
+                count += refresh(roomDirectory);
+            }
+        }
+        log.info("Mapped {} archive segments of {} chat rooms", count, rooms.size());
+    }
+
+    /**
+     * Maps the segment files of a room subdirectory that are not mapped yet. Segments are
+     * only ever added, in the order of their names.
+     *
+     * @param roomDirectory the subdirectory of the room, named after its ID
+     * @return the number of newly mapped segments
+     * @throws IOException if the directory or a segment cannot be read
+     */
+    private int refresh(Path roomDirectory) throws IOException {
+        int chatRoomId;
+        try {
+            chatRoomId = Integer.parseInt(roomDirectory.getFileName().toString());
+        } catch (NumberFormatException ex) {
+            return 0;
+        }
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(roomDirectory, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                paths.add(file);
+            }
+        }
+        List<ArchiveSegment> segments = rooms.getOrDefault(chatRoomId, List.of());
+        if (paths.size() <= segments.size()) {
+            return 0;
+        }
+        paths.sort(null);
+        List<ArchiveSegment> updated = new ArrayList<>(segments);
+        for (Path path : paths.subList(segments.size(), paths.size())) {
+            updated.add(ArchiveSegment.open(path));
+        }
+        rooms.put(chatRoomId, List.copyOf(updated));
+        return paths.size() - segments.size();
+    }
+
+    /**
+     * Moves the message sequence counter of every archived room past its newest archived
+     * message. A room whose messages were all archived before the counters were introduced
+     * (migrations/012) would otherwise number its next message from 1 again.
+     */
+    private void raiseSequenceCounters() {
+        List<Object[]> args = new ArrayList<>();
+        for (Map.Entry<Integer, List<ArchiveSegment>> room : rooms.entrySet()) {
+            List<Message> newest = pageBefore(room.getKey(), null, 1);
+            if (!newest.isEmpty() && newest.get(0).getSeq() > 0) {
+                long seq = newest.get(0).getSeq();
+                args.add(new Object[] {seq, room.getKey(), seq});
+            }
+        }
+        if (args.isEmpty()) {
+            return;
+        }
+        try {
+            jdbcTemplate.batchUpdate("UPDATE chat_rooms SET message_seq = ? WHERE id = ? AND message_seq < ?", args);
+        } catch (DataAccessException ex) {
+            log.warn("Failed to raise the message sequence counters of archived rooms", ex);
+        }
+    }
+
+    /**
+     * Maps a message row read for archiving, decompressing its text.
+     *
+     * @param chatRoomId the ID of the chat room
+     * @param rs the result set positioned at the row
+     * @return the message entity
+     * @throws SQLException if a column cannot be read
+     */
+    private Message mapRow(int chatRoomId, ResultSet rs) throws SQLException {
+        Message message = new Message();
+        message.setId(rs.getInt("id"));
+        message.setChatRoomId(chatRoomId);
+        message.setSenderId(rs.getInt("sender_id"));
+        message.setText(rs.getString("text"));
+        message.setTextCompressed(rs.getBytes("text_compressed"));
+        message.setText(textCodec.text(message));
+        message.setTextCompressed(null);
+        message.setCreatedAt(rs.getTimestamp("created_at").toInstant());
+        Timestamp editedAt = rs.getTimestamp("edited_at");
+        message.setEditedAt(editedAt != null ? editedAt.toInstant() : null);
+        Timestamp deletedAt = rs.getTimestamp("deleted_at");
+        message.setDeletedAt(deletedAt != null ? deletedAt.toInstant() : null);
+        int deletedBy = rs.getInt("deleted_by");
+        message.setDeletedBy(rs.wasNull() ? null : deletedBy);
+        message.setEdited(rs.getBoolean("is_edited"));
+        message.setDeleted(rs.getBoolean("is_deleted"));
+        message.setChangeVersion(rs.getLong("change_version"));
+        message.setSeq(rs.getLong("seq"));
+        return message;
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.chat.cache;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.chat.domain.Message;
+import com.example.chat.events.RoomEventListener;
+import com.example.chat.grpc.RoomEvent;
+
+/**
+ * Cache of mapped protobuf messages keyed by message ID and change version.
+ * Protobuf messages are immutable and memoize their serialized size and the UTF-8 encoding
+ * of their text, so reusing one instance across responses skips both the builder work and
+ * most of the serialization work of messages that are read again and again.
+ *
+ * <p>An entry is only used while its change version matches the row being mapped, so edits
+ * and deletes can never serve stale content; room events additionally replace entries eagerly.
+ * When the cache grows beyond its capacity, arbitrary entries are evicted.
+ */
+@Component
+public class MessageProtoCache implements RoomEventListener {
+
+    private final int maxEntries;
+    private final ConcurrentHashMap<Integer, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Constructs a new MessageProtoCache.
+     *
+     * @param maxEntries the maximum number of cached messages
+     */
+    public MessageProtoCache(@Value("${chat.cache.message-protos.max-entries:100000}") int maxEntries) {
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    /**
+     * Returns the cached protobuf form of a message, mapping and caching it on a miss.
+     *
+     * @param message the message entity
+     * @param mapper the mapping used on a cache miss
+     * @return the protobuf message for the entity's current version
+     */
+    public com.example.chat.grpc.Message get(Message message,
+            Function<Message, com.example.chat.grpc.Message> mapper) {
+        Entry cached = entries.get(message.getId());
+        if (cached != null && cached.version == message.getChangeVersion()) {
+            hits.incrementAndGet();
+            return cached.message;
+        }
+        misses.incrementAndGet();
+        com.example.chat.grpc.Message mapped = mapper.apply(message);
+        put(mapped);
+        return mapped;
+    }
+
+    /**
+     * Stores the message carried by an event, replacing any older version of it.
+     *
+     * @param event the published event
+     */
+    @Override
+    public void onRoomEvent(RoomEvent event) {
+        if (event.hasMessage()) {
+            put(event.getMessage());
+        }
+    }
+
+    /**
+     * Empties the cache, since edits and deletions of cached messages may have been missed.
+     */
+    @Override
+    public void onEventsMissed() {
+        entries.clear();
+    }
+
+    /**
+     * Takes a snapshot of the cache counters.
+     *
+     * @return the current hit, miss and eviction counts together with the size
+     */
+    public Stats stats() {
+        return new Stats(hits.get(), misses.get(), evictions.get(), entries.size(), maxEntries);
+    }
+
+    /**
+     * Stores a message unless a newer version of it is already cached.
+     *
+     * @param message the mapped message
+     */
+    private void put(com.example.chat.grpc.Message message) {
+        Entry entry = new Entry(message.getChangeVersion(), message);
+        entries.merge(message.getId(), entry, (current, candidate) ->
+            candidate.version >= current.version ? candidate : current);
+        if (entries.size() > maxEntries) {
+            evict();
+        }
+    }
+
+    /**
+     * Evicts arbitrary entries until the cache is back to 90 percent of its capacity.
+     */
+    private void evict() {
+        int target = maxEntries - maxEntries / 10;
+        Iterator<Integer> it = entries.keySet().iterator();
+        while (entries.size() > target && it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * A cached message together with the change version it was mapped from.
+     *
+     * @param version the change version of the row
+     * @param message the mapped message
+     */
+    private record Entry(long version, com.example.chat.grpc.Message message) {
+    }
+
+    /**
+     * Snapshot of the cache counters.
+     *
+     * @param hits the number of messages served from the cache
+     * @param misses the number of messages that had to be mapped
+     * @param evictions the number of entries evicted to stay within capacity
+     * @param entries the number of messages currently cached
+     * @param maxEntries the configured capacity
+     */
+    public record Stats(long hits, long misses, long evictions, int entries, int maxEntries) {
+    }
+}
@@ -0,0 +1,313 @@
+package com.example.chat.cache;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.chat.events.RoomEventListener;
+import com.example.chat.grpc.Message;
+import com.example.chat.grpc.MessageCursor;
+import com.example.chat.grpc.RoomEvent;
+
+/**
+ * Bounded cache of the most recent mapped messages of each chat room.
+ * Every cached room holds a ring buffer of its newest messages in (created_at, id) order,
+ * kept current from room events so that the newest page of a room can be served without
+ * querying the database. Whole rooms are evicted in least-recently-used order once the
+ * estimated size of all buffers exceeds the configured memory budget.
+ */
+@Component
+public class RecentMessageCache implements RoomEventListener {
+
+    /**
+     * Estimated per-entry overhead on top of the serialized message size:
+     * the entry object, the protobuf object and the text's backing array header.
+     */
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    private final int messagesPerRoom;
+    private final long maxBytes;
+    private final LinkedHashMap<Integer, RoomBuffer> rooms = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<Integer, Integer> loading = new HashMap<>();
+    private long totalBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Constructs a new RecentMessageCache.
+     *
+     * @param messagesPerRoom the number of newest messages kept per room
+     * @param maxBytes the estimated memory budget shared by all rooms
+     */
+    public RecentMessageCache(@Value("${chat.cache.recent.messages-per-room:200}") int messagesPerRoom,
+            @Value("${chat.cache.recent.max-bytes:67108864}") long maxBytes) {
+        this.messagesPerRoom = Math.max(1, messagesPerRoom);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Gets the number of newest messages kept per room.
+     *
+     * @return the per-room capacity
+     */
+    public int messagesPerRoom() {
+        return messagesPerRoom;
+    }
+
+    /**
+     * Returns the newest page of a room if it can be answered from the cache.
+     *
+     * @param chatRoomId the ID of the chat room
+     * @param pageSize the number of messages requested
+     * @return the page in chronological order, or null on a cache miss
+     */
+    public synchronized RecentPage latest(int chatRoomId, int pageSize) {
+        RoomBuffer buffer = rooms.get(chatRoomId);
+        if (buffer == null || (pageSize > buffer.size && !buffer.holdsAll)) {
+            misses++;
+            return null;
+        }
+        hits++;
+        int count = Math.min(pageSize, buffer.size);
+        List<Message> messages = new ArrayList<>(count);
+        for (int i = buffer.size - count; i < buffer.size; i++) {
+            messages.add(buffer.get(i).message);
+        }
+        MessageCursor nextCursor = null;
+        if (count > 0) {
+            CachedMessage oldest = buffer.get(buffer.size - count);
+            nextCursor = MessageCursor.newBuilder()
+                .setCreatedAtMicros(oldest.createdAtMicros)
+                .setId(oldest.message.getId())
+                .build();
+        }
+        boolean hasMore = buffer.size > count || !buffer.holdsAll;
+        return new RecentPage(messages, nextCursor, hasMore);
+    }
+
+    /**
+     * Marks the start of a database load for a room after a cache miss.
+     * Events arriving for the room between this call and {@link #install} cause the
+     * loaded rows to be discarded, because they may already be stale.
+     *
+     * @param chatRoomId the ID of the chat room being loaded
+     * @return a token to pass to {@link #install}
+     */
+    public synchronized int beginLoad(int chatRoomId) {
+        return loading.merge(chatRoomId, 0, (current, ignored) -> current);
+    }
+
+    /**
+     * Installs the newest messages of a room loaded from the database.
+     *
+     * @param chatRoomId the ID of the chat room
+     * @param token the token returned by {@link #beginLoad}
+     * @param newestFirst up to {@link #messagesPerRoom()} + 1 messages, newest first, with their cursors
+     */
+    public synchronized void install(int chatRoomId, int token, List<CachedMessage> newestFirst) {
+        Integer current = loading.remove(chatRoomId);
+        if (current == null || current != token || rooms.containsKey(chatRoomId)) {
+            return;
+        }
+        RoomBuffer buffer = new RoomBuffer(messagesPerRoom);
+        int count = Math.min(newestFirst.size(), messagesPerRoom);
+        for (int i = count - 1; i >= 0; i--) {
+            buffer.append(newestFirst.get(i));
+        }
+        buffer.holdsAll = newestFirst.size() <= messagesPerRoom;
+        rooms.put(chatRoomId, buffer);
+        totalBytes += buffer.bytes;
+        evictOverBudget();
+    }
+
+    /**
+     * Applies a room event to the room's buffer, if the room is cached.
+     *
+     * @param event the published event
+     */
+    @Override
+    public synchronized void onRoomEvent(RoomEvent event) {
+        int chatRoomId = event.getChatRoomId();
+        loading.computeIfPresent(chatRoomId, (id, count) -> count + 1);
+        RoomBuffer buffer = rooms.get(chatRoomId);
+        if (buffer == null || !event.hasMessage()) {
+            return;
+        }
+        long before = buffer.bytes;
+        CachedMessage entry = new CachedMessage(event.getCursor().getCreatedAtMicros(), event.getMessage());
+        if (event.getType() == RoomEvent.Type.MESSAGE_CREATED) {
+            buffer.insert(entry);
+        } else {
+            buffer.replace(entry);
+        }
+        totalBytes += buffer.bytes - before;
+        evictOverBudget();
+    }
+
+    /**
+     * Empties the cache, since events that would have updated it were missed.
+     * Loads in progress are marked as overtaken so that they do not store their results.
+     */
+    @Override
+    public synchronized void onEventsMissed() {
+        rooms.clear();
+        totalBytes = 0;
+        loading.replaceAll((id, count) -> count + 1);
+    }
+
+    /**
+     * Removes a room from the cache.
+     *
+     * @param chatRoomId the ID of the chat room
+     */
+    public synchronized void invalidate(int chatRoomId) {
+        RoomBuffer buffer = rooms.remove(chatRoomId);
+        if (buffer != null) {
+            totalBytes -= buffer.bytes;
+        }
+    }
+
+    /**
+     * Takes a snapshot of the cache counters.
+     *
+     * @return the current hit, miss and eviction counts together with size information
+     */
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, evictions, rooms.size(), totalBytes, maxBytes);
+    }
+
+    /**
+     * Evicts least recently used rooms until the cache fits its budget again.
+     * The most recently used room is always kept.
+     */
+    private void evictOverBudget() {
+        Iterator<Map.Entry<Integer, RoomBuffer>> it = rooms.entrySet().iterator();
+        while (totalBytes > maxBytes && rooms.size() > 1 && it.hasNext()) {
+            RoomBuffer victim = it.next().getValue();
+            it.remove();
+            totalBytes -= victim.bytes;
+            evictions++;
+        }
+    }
+
+    /**
+     * Estimates the heap footprint of a cached message.
+     *
+     * @param message the mapped message
+     * @return the estimated size in bytes
+     */
+    private static long estimateBytes(Message message) {
+        return ENTRY_OVERHEAD_BYTES + message.getSerializedSize() + 2L * message.getText().length();
+    }
+
+    /**
+     * A cached message together with its creation time in epoch microseconds.
+     *
+     * @param createdAtMicros the creation time used for ordering and cursors
+     * @param message the mapped message
+     */
+    public record CachedMessage(long createdAtMicros, Message message) {
+    }
+
+    /**
+     * The newest page of a room served from the cache.
+     *
+     * @param messages the messages in chronological order
+     * @param nextCursor the cursor of the oldest message in the page, or null if the page is empty
+     * @param hasMore whether older messages exist
+     */
+    public record RecentPage(List<Message> messages, MessageCursor nextCursor, boolean hasMore) {
+    }
+
+    /**
+     * Snapshot of the cache counters.
+     *
+     * @param hits the number of pages served from the cache
+     * @param misses the number of page requests that had to go to the database
+     * @param evictions the number of rooms evicted to stay within budget
+     * @param rooms the number of rooms currently cached
+     * @param bytes the estimated size of all cached rooms
+     * @param maxBytes the configured memory budget
+     */
+    public record Stats(long hits, long misses, long evictions, int rooms, long bytes, long maxBytes) {
+    }
+
+    /**
+     * Fixed-capacity ring of a room's newest messages, oldest at {@code head}.
+     */
+    private static final class RoomBuffer {
+        private final CachedMessage[] ring;
+        private int head;
+        private int size;
+        private long bytes;
+        private boolean holdsAll;
+
+        RoomBuffer(int capacity) {
+            this.ring = new CachedMessage[capacity];
+        }
+
+        CachedMessage get(int index) {
+            return ring[(head + index) % ring.length];
+        }
+
+        void set(int index, CachedMessage entry) {
+            ring[(head + index) % ring.length] = entry;
+        }
+
+        void append(CachedMessage entry) {
+            if (size == ring.length) {
+                bytes -= estimateBytes(ring[head].message);
+                ring[head] = null;
+                head = (head + 1) % ring.length;
+                size--;
+                holdsAll = false;
+            }
+            set(size, entry);
+            size++;
+            bytes += estimateBytes(entry.message);
+        }
+
+        void insert(CachedMessage entry) {
+            if (indexOf(entry.message.getId()) >= 0) {
+                replace(entry);
+                return;
+            }
+            append(entry);
+            for (int i = size - 1; i > 0 && isAfter(get(i - 1), get(i)); i--) {
+                CachedMessage previous = get(i - 1);
+                set(i - 1, get(i));
+                set(i, previous);
+            }
+        }
+
+        void replace(CachedMessage entry) {
+            int index = indexOf(entry.message.getId());
+            if (index < 0) {
+                return;
+            }
+            bytes += estimateBytes(entry.message) - estimateBytes(get(index).message);
+            set(index, new CachedMessage(get(index).createdAtMicros, entry.message));
+        }
+
+        int indexOf(int messageId) {
+            for (int i = size - 1; i >= 0; i--) {
+                if (get(i).message.getId() == messageId) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private static boolean isAfter(CachedMessage a, CachedMessage b) {
+            return a.createdAtMicros > b.createdAtMicros
+                || (a.createdAtMicros == b.createdAtMicros && a.message.getId() > b.message.getId());
+        }
+    }
+}
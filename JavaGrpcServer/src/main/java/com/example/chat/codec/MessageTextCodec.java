@@ -0,0 +1,287 @@
+package com.example.chat.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.example.chat.domain.Message;
+
+/**
+ * Optional compressed storage format for message text.
+ * Texts of at least the configured size are stored in the {@code text_compressed} column as
+ * raw deflate data behind a codec marker, with {@code text} left NULL; shorter texts, and texts
+ * that do not shrink, stay in {@code text}. PostgreSQL only compresses values once a row
+ * exceeds about 2 kB, so texts of a few hundred bytes up to the 2000 character limit are
+ * otherwise stored uncompressed.
+ *
+ * <p>Compression can use a shared preset dictionary of words frequent in existing messages,
+ * which makes short texts compress far better than on their own. Dictionaries are stored in
+ * {@code message_text_dictionaries} and never change once written, since compressed texts
+ * refer to them by ID.
+ *
+ * <p>Decoding is always available, so rows written while compression was enabled stay
+ * readable after it has been disabled. Compression is refused while the postgres search
+ * backend is configured, because its full-text and trigram indexes only see {@code text}.
+ */
+@Component
+public class MessageTextCodec {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageTextCodec.class);
+
+    /** Marker of raw deflate data without a dictionary. */
+    static final byte DEFLATE = 1;
+
+    /** Marker of raw deflate data compressed with a preset dictionary. */
+    static final byte DEFLATE_DICTIONARY = 2;
+
+    /** Deflate only uses the last 32 kB of a preset dictionary. */
+    private static final int MAX_DICTIONARY_BYTES = 32 * 1024;
+
+    private static final int TRAINING_SAMPLE_SIZE = 2000;
+
+    private static final int MIN_WORD_LENGTH = 3;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final int minBytes;
+    private final boolean trainDictionary;
+    private final Map<Integer, byte[]> dictionaries = new ConcurrentHashMap<>();
+    private volatile int currentDictionaryId;
+
+    /**
+     * Constructs a new MessageTextCodec.
+     *
+     * @param jdbcTemplate the JDBC template used to load and store dictionaries
+     * @param enabled whether new texts are compressed
+     * @param minBytes the UTF-8 size from which texts are compressed
+     * @param trainDictionary whether a dictionary is trained from existing messages when none exists
+     * @param searchBackend the configured search backend
+     */
+    public MessageTextCodec(JdbcTemplate jdbcTemplate,
+            @Value("${chat.text-compression.enabled:false}") boolean enabled,
+            @Value("${chat.text-compression.min-bytes:256}") int minBytes,
+            @Value("${chat.text-compression.train-dictionary:true}") boolean trainDictionary,
+            @Value("${chat.search.backend:memory}") String searchBackend) {
+        this.jdbcTemplate = jdbcTemplate;
+        if (enabled && "postgres".equals(searchBackend)) {
+            log.warn("Text compression is disabled because chat.search.backend=postgres indexes the text column");
+            enabled = false;
+        }
+        this.enabled = enabled;
+        this.minBytes = Math.max(16, minBytes);
+        this.trainDictionary = trainDictionary;
+    }
+
+    /**
+     * Loads the newest dictionary, training one from existing messages if there is none yet.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadDictionary() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            List<Map<String, Object>> newest = jdbcTemplate.queryForList(
+                "SELECT id, data FROM message_text_dictionaries ORDER BY id DESC LIMIT 1");
+            if (!newest.isEmpty()) {
+                useDictionary(((Number) newest.get(0).get("id")).intValue(), (byte[]) newest.get(0).get("data"));
+                return;
+            }
+            if (!trainDictionary) {
+                return;
+            }
+            List<String> samples = jdbcTemplate.queryForList(
+                "SELECT text FROM messages WHERE text IS NOT NULL AND octet_length(text) >= ? "
+                    + "ORDER BY id DESC LIMIT ?", String.class, minBytes, TRAINING_SAMPLE_SIZE);
+            byte[] dictionary = buildDictionary(samples);
+            if (dictionary.length == 0) {
+                return;
+            }
+            Integer id = jdbcTemplate.queryForObject(
+                "INSERT INTO message_text_dictionaries (data) VALUES (?) RETURNING id", Integer.class, dictionary);
+            useDictionary(id, dictionary);
+            log.info("Trained a {} byte text dictionary from {} messages", dictionary.length, samples.size());
+        } catch (RuntimeException ex) {
+            log.warn("Failed to load the text dictionary; compressing without one", ex);
+        }
+    }
+
+    /**
+     * Compresses a text for storage.
+     *
+     * @param text the message text
+     * @return the compressed form, or null if the text is to be stored as is
+     */
+    public byte[] encode(String text) {
+        if (!enabled || text == null) {
+            return null;
+        }
+        byte[] raw = text.getBytes(StandardCharsets.UTF_8);
+        if (raw.length < minBytes) {
+            return null;
+        }
+        int dictionaryId = currentDictionaryId;
+        byte[] dictionary = dictionaryId != 0 ? dictionaries.get(dictionaryId) : null;
+
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        try {
+            if (dictionary != null) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteBuffer out = ByteBuffer.allocate(raw.length);
+            out.put(dictionary != null ? DEFLATE_DICTIONARY : DEFLATE);
+            if (dictionary != null) {
+                out.putInt(dictionaryId);
+            }
+            out.putInt(raw.length);
+            while (!deflater.finished()) {
+                if (!out.hasRemaining()) {
+                    return null;
+                }
+                int written = deflater.deflate(out.array(), out.position(), out.remaining());
+                out.position(out.position() + written);
+            }
+            byte[] encoded = new byte[out.position()];
+            System.arraycopy(out.array(), 0, encoded, 0, encoded.length);
+            return encoded;
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Decompresses a text stored by {@link #encode(String)}.
+     *
+     * @param encoded the stored bytes
+     * @return the original text
+     */
+    public String decode(byte[] encoded) {
+        ByteBuffer in = ByteBuffer.wrap(encoded);
+        byte marker = in.get();
+        byte[] dictionary = null;
+        if (marker == DEFLATE_DICTIONARY) {
+            dictionary = dictionary(in.getInt());
+        } else if (marker != DEFLATE) {
+            throw new IllegalStateException("Unknown text codec " + marker);
+        }
+        byte[] raw = new byte[in.getInt()];
+
+        Inflater inflater = new Inflater(true);
+        try {
+            if (dictionary != null) {
+                inflater.setDictionary(dictionary);
+            }
+            inflater.setInput(encoded, in.position(), in.remaining());
+            int length = 0;
+            while (length < raw.length) {
+                int read = inflater.inflate(raw, length, raw.length - length);
+                if (read == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IllegalStateException("Truncated compressed text");
+                }
+                length += read;
+            }
+        } catch (DataFormatException ex) {
+            throw new IllegalStateException("Corrupt compressed text", ex);
+        } finally {
+            inflater.end();
+        }
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the text of a message, decompressing it if it is stored compressed.
+     *
+     * @param message the message entity
+     * @return the message text
+     */
+    public String text(Message message) {
+        if (message.getText() != null || message.getTextCompressed() == null) {
+            return message.getText();
+        }
+        return decode(message.getTextCompressed());
+    }
+
+    /**
+     * Makes a dictionary the one used for compressing new texts.
+     *
+     * @param id the dictionary ID
+     * @param dictionary the dictionary bytes
+     */
+    void useDictionary(int id, byte[] dictionary) {
+        dictionaries.put(id, dictionary);
+        currentDictionaryId = id;
+    }
+
+    /**
+     * Returns a dictionary by ID, loading it on first use.
+     *
+     * @param id the dictionary ID
+     * @return the dictionary bytes
+     */
+    private byte[] dictionary(int id) {
+        return dictionaries.computeIfAbsent(id, key -> jdbcTemplate.queryForObject(
+            "SELECT data FROM message_text_dictionaries WHERE id = ?", byte[].class, key));
+    }
+
+    /**
+     * Builds a preset dictionary from sample texts.
+     * Words that occur in several samples are weighted by how much input they would cover, and
+     * the most valuable ones are placed at the end, where deflate reaches them with the shortest
+     * distances.
+     *
+     * @param samples the sample texts
+     * @return the dictionary, empty if the samples share no words
+     */
+    static byte[] buildDictionary(List<String> samples) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (String sample : samples) {
+            for (String word : sample.split("\\s+")) {
+                if (word.length() >= MIN_WORD_LENGTH) {
+                    counts.merge(word, 1, Integer::sum);
+                }
+            }
+        }
+        List<Map.Entry<String, Integer>> ranked = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            if (entry.getValue() > 1) {
+                ranked.add(entry);
+            }
+        }
+        ranked.sort(Comparator.comparingLong((Map.Entry<String, Integer> e) ->
+            (long) e.getValue() * e.getKey().length()).reversed().thenComparing(Map.Entry::getKey));
+
+        List<byte[]> chosen = new ArrayList<>();
+        int size = 0;
+        for (Map.Entry<String, Integer> entry : ranked) {
+            byte[] word = (entry.getKey() + ' ').getBytes(StandardCharsets.UTF_8);
+            if (size + word.length > MAX_DICTIONARY_BYTES) {
+                continue;
+            }
+            chosen.add(word);
+            size += word.length;
+        }
+        ByteBuffer dictionary = ByteBuffer.allocate(size);
+        for (int i = chosen.size() - 1; i >= 0; i--) {
+            dictionary.put(chosen.get(i));
+        }
+        return dictionary.array();
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.chat.controller;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import com.example.chat.cache.MessageProtoCache;
+import com.example.chat.cache.RecentMessageCache;
+
+/**
+ * REST controller exposing the counters of the in-memory caches.
+ * The endpoints live under the public health path so they can be scraped
+ * while sizing the caches.
+ */
+@RestController
+@RequestMapping("/api/health")
+public class CacheStatsController {
+
+    private final RecentMessageCache recentMessageCache;
+    private final MessageProtoCache messageProtoCache;
+
+    /**
+     * Constructs a new CacheStatsController.
+     *
+     * @param recentMessageCache the cache of the newest messages per room
+     * @param messageProtoCache the cache of mapped protobuf messages
+     */
+    public CacheStatsController(RecentMessageCache recentMessageCache, MessageProtoCache messageProtoCache) {
+        this.recentMessageCache = recentMessageCache;
+        this.messageProtoCache = messageProtoCache;
+    }
+
+    /**
+     * Returns the current counters of all caches.
+     *
+     * @return the cache statistics keyed by cache name
+     */
+    @GetMapping("/caches")
+    public Map<String, Object> caches() {
+        Map<String, Object> caches = new LinkedHashMap<>();
+        caches.put("recentMessages", recentMessageCache.stats());
+        caches.put("messageProtos", messageProtoCache.stats());
+        return caches;
+    }
+}
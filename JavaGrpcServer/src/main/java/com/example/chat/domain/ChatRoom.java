@@ -12,6 +12,7 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 
 /**
@@ -25,9 +26,11 @@ public class ChatRoom {
 
     /**
      * Unique identifier for the chat room.
+     * Allocated by Hibernate in pooled blocks of 50 from chat_rooms_id_seq, so inserts can be batched.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "chat_rooms_id_seq")
+    @SequenceGenerator(name = "chat_rooms_id_seq", sequenceName = "chat_rooms_id_seq", allocationSize = 50)
     private Integer id;
 
     /**
@@ -12,6 +12,7 @@ import jakarta.persistence.Id;
 import jakarta.persistence.JoinColumn;
 import jakarta.persistence.ManyToOne;
 import jakarta.persistence.PrePersist;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 
 /**
@@ -25,9 +26,11 @@ public class ChatRoomMembership {
 
     /**
      * Unique identifier for the chat room membership.
+     * Allocated by Hibernate in pooled blocks of 50 from chat_room_memberships_id_seq, so inserts can be batched.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "chat_room_memberships_id_seq")
+    @SequenceGenerator(name = "chat_room_memberships_id_seq", sequenceName = "chat_room_memberships_id_seq", allocationSize = 50)
     private Integer id;
 
     /**
@@ -58,6 +61,14 @@ public class ChatRoomMembership {
     @Column(nullable = false)
     private Instant joinedAt;
 
+    /**
+     * ID of the last message the user has read in the chat room, or 0 if none.
+     * Written only by {@link com.example.chat.unread.UnreadCounters}, which batches marker
+     * updates, so saving the entity never overwrites a newer marker.
+     */
+    @Column(name = "last_read_message_id", nullable = false, updatable = false)
+    private int lastReadMessageId;
+
     /**
      * Pre-persist lifecycle callback that sets the joinedAt timestamp
      * to the current time if it hasn't been set yet.
@@ -158,5 +169,22 @@ public class ChatRoomMembership {
     public void setJoinedAt(Instant joinedAt) {
         this.joinedAt = joinedAt;
     }
-}
 
+    /**
+     * Gets the ID of the last message the user has read in the chat room.
+     *
+     * @return the last read message ID, or 0 if none
+     */
+    public int getLastReadMessageId() {
+        return lastReadMessageId;
+    }
+
+    /**
+     * Sets the ID of the last message the user has read in the chat room.
+     *
+     * @param lastReadMessageId the last read message ID to set
+     */
+    public void setLastReadMessageId(int lastReadMessageId) {
+        this.lastReadMessageId = lastReadMessageId;
+    }
+}
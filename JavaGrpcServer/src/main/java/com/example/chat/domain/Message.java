@@ -1,6 +1,10 @@
 package com.example.chat.domain;
 
 import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+
+import org.hibernate.annotations.Generated;
+import org.hibernate.generator.EventType;
 
 import jakarta.persistence.Column;
 import jakarta.persistence.Entity;
@@ -8,6 +12,7 @@ import jakarta.persistence.GeneratedValue;
 import jakarta.persistence.GenerationType;
 import jakarta.persistence.Id;
 import jakarta.persistence.PrePersist;
+import jakarta.persistence.SequenceGenerator;
 import jakarta.persistence.Table;
 
 /**
@@ -20,9 +25,11 @@ public class Message {
 
     /**
      * Unique identifier for the message.
+     * Allocated by Hibernate in pooled blocks of 50 from messages_id_seq, so inserts can be batched.
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "messages_id_seq")
+    @SequenceGenerator(name = "messages_id_seq", sequenceName = "messages_id_seq", allocationSize = 50)
     private Integer id;
 
     /**
@@ -39,10 +46,17 @@ public class Message {
 
     /**
      * The text content of the message. Maximum length is 2000 characters.
+     * Null when the text is stored compressed in {@link #textCompressed}.
      */
-    @Column(length = 2000, nullable = false)
+    @Column(length = 2000)
     private String text;
 
+    /**
+     * The compressed text content of the message, or null when it is stored in {@link #text}.
+     */
+    @Column(name = "text_compressed")
+    private byte[] textCompressed;
+
     /**
      * Timestamp when the message was created.
      */
@@ -79,14 +93,39 @@ public class Message {
     @Column(name = "is_deleted", nullable = false)
     private boolean deleted = false;
 
+    /**
+     * Per-room version of the latest change to this message.
+     * Assigned by a database trigger on every insert and update and read back after each write.
+     */
+    @Generated(event = {EventType.INSERT, EventType.UPDATE})
+    @Column(name = "change_version", insertable = false, updatable = false)
+    private long changeVersion;
+
+    /**
+     * Dense per-room sequence number of the message, starting at 1.
+     * Assigned by a database trigger on insert and read back; 0 for messages archived before
+     * sequences existed.
+     */
+    @Generated(event = EventType.INSERT)
+    @Column(name = "seq", insertable = false, updatable = false)
+    private long seq;
+
+    /**
+     * Idempotency key chosen by the sending client, unique per sender, or null if none was given.
+     */
+    @Column(name = "client_message_id", length = 64, updatable = false)
+    private String clientMessageId;
+
     /**
      * Pre-persist lifecycle callback that sets the createdAt timestamp
-     * to the current time if it hasn't been set yet.
+     * to the current time if it hasn't been set yet. The timestamp is truncated
+     * to the microsecond precision of the database column so that paging cursors
+     * taken from a freshly saved message match the stored row exactly.
      */
     @PrePersist
     public void prePersist() {
         if (createdAt == null) {
-            createdAt = Instant.now();
+            createdAt = Instant.now().truncatedTo(ChronoUnit.MICROS);
         }
     }
 
@@ -147,7 +186,7 @@ public class Message {
     /**
      * Gets the text content of the message.
      *
-     * @return the message text
+     * @return the message text, or null if the text is stored compressed
      */
     public String getText() {
         return text;
@@ -162,6 +201,24 @@ public class Message {
         this.text = text;
     }
 
+    /**
+     * Gets the compressed text content of the message.
+     *
+     * @return the compressed text, or null if the text is stored uncompressed
+     */
+    public byte[] getTextCompressed() {
+        return textCompressed;
+    }
+
+    /**
+     * Sets the compressed text content of the message.
+     *
+     * @param textCompressed the compressed text to set
+     */
+    public void setTextCompressed(byte[] textCompressed) {
+        this.textCompressed = textCompressed;
+    }
+
     /**
      * Gets the timestamp when the message was created.
      *
@@ -269,4 +326,58 @@ public class Message {
     public void setDeleted(boolean deleted) {
         this.deleted = deleted;
     }
+
+    /**
+     * Gets the per-room version of the latest change to this message.
+     *
+     * @return the change version
+     */
+    public long getChangeVersion() {
+        return changeVersion;
+    }
+
+    /**
+     * Sets the per-room version of the latest change to this message.
+     *
+     * @param changeVersion the change version to set
+     */
+    public void setChangeVersion(long changeVersion) {
+        this.changeVersion = changeVersion;
+    }
+
+    /**
+     * Gets the per-room sequence number of the message.
+     *
+     * @return the sequence number
+     */
+    public long getSeq() {
+        return seq;
+    }
+
+    /**
+     * Sets the per-room sequence number of the message.
+     *
+     * @param seq the sequence number to set
+     */
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
+
+    /**
+     * Gets the idempotency key chosen by the sending client.
+     *
+     * @return the client message ID, or null if none was given
+     */
+    public String getClientMessageId() {
+        return clientMessageId;
+    }
+
+    /**
+     * Sets the idempotency key chosen by the sending client.
+     *
+     * @param clientMessageId the client message ID to set
+     */
+    public void setClientMessageId(String clientMessageId) {
+        this.clientMessageId = clientMessageId;
+    }
 }
@@ -0,0 +1,48 @@
+package com.example.chat.events;
+
+import com.example.chat.grpc.RoomEvent;
+
+/**
+ * Relays room events between the server instances of a cluster.
+ * Each instance publishes the events it produces, and receives the events published by
+ * every other instance, so that subscribers and derived state stay current no matter which
+ * instance wrote a change. The implementation is chosen with the {@code chat.cluster.bus}
+ * property: {@code memory} for {@link InMemoryClusterEventBus}, which connects instances
+ * within one process, or {@code postgres} for {@link PostgresClusterEventBus}.
+ */
+public interface ClusterEventBus {
+
+    /**
+     * Sends an event to the other instances. Must not block.
+     *
+     * @param event the event published on this instance
+     */
+    void publish(RoomEvent event);
+
+    /**
+     * Registers the receiver of the events published by other instances.
+     *
+     * @param receiver the receiver, replacing any earlier one
+     */
+    void register(Receiver receiver);
+
+    /**
+     * Receiver of the events relayed from other instances.
+     */
+    interface Receiver {
+
+        /**
+         * Handles an event published by another instance.
+         *
+         * @param event the event
+         * @param messageOmitted whether the event's message was too large to relay and carries
+         *                       only its ID, chat room ID and change version
+         */
+        void onRemoteEvent(RoomEvent event, boolean messageOmitted);
+
+        /**
+         * Handles the loss of one or more events, after a dropped connection or a full queue.
+         */
+        void onEventsMissed();
+    }
+}
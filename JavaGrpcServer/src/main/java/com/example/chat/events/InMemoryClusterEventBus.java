@@ -0,0 +1,48 @@
+package com.example.chat.events;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.example.chat.grpc.RoomEvent;
+
+/**
+ * Cluster event bus connecting instances within one process.
+ * A single instance has no peers, so publishing does nothing; tests connect several
+ * instances with {@link #connect} to exercise cross-instance fan-out. Events are delivered
+ * synchronously on the publishing thread and never omit their message.
+ */
+@Component
+@ConditionalOnProperty(name = "chat.cluster.bus", havingValue = "memory", matchIfMissing = true)
+public class InMemoryClusterEventBus implements ClusterEventBus {
+
+    private final List<InMemoryClusterEventBus> peers = new CopyOnWriteArrayList<>();
+    private volatile Receiver receiver;
+
+    /**
+     * Connects two instances in both directions.
+     *
+     * @param other the bus of the other instance
+     */
+    public void connect(InMemoryClusterEventBus other) {
+        peers.add(other);
+        other.peers.add(this);
+    }
+
+    @Override
+    public void publish(RoomEvent event) {
+        for (InMemoryClusterEventBus peer : peers) {
+            Receiver peerReceiver = peer.receiver;
+            if (peerReceiver != null) {
+                peerReceiver.onRemoteEvent(event, false);
+            }
+        }
+    }
+
+    @Override
+    public void register(Receiver receiver) {
+        this.receiver = receiver;
+    }
+}
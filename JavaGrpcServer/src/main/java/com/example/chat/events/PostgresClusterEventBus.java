@@ -0,0 +1,406 @@
+package com.example.chat.events;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.example.chat.grpc.Message;
+import com.example.chat.grpc.RoomEvent;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Cluster event bus on PostgreSQL {@code LISTEN}/{@code NOTIFY}, needing no infrastructure
+ * besides the database. Events are queued and sent by a publisher thread in batches, with
+ * one {@code pg_notify} statement per batch on a dedicated connection; a listener thread
+ * receives them on a second dedicated connection. Neither connection is taken from the pool.
+ *
+ * <p>Each notification carries the sending instance, a per-instance sequence number and the
+ * serialized event. Events too large for a notification carry only the ID of their message,
+ * which the receiver reloads. Receivers detect lost notifications from gaps in the sequence
+ * numbers, or from a dropped listening connection, and report them as missed events.
+ * Notifications resent after a failed batch repeat sequence numbers already seen and are dropped.
+ * Instances pick a new ID on every start, so the sequence numbers of an instance that has sent
+ * nothing for the configured peer timeout are forgotten.
+ */
+@Component
+@ConditionalOnProperty(name = "chat.cluster.bus", havingValue = "postgres")
+public class PostgresClusterEventBus implements ClusterEventBus {
+
+    private static final Logger log = LoggerFactory.getLogger(PostgresClusterEventBus.class);
+
+    /**
+     * PostgreSQL rejects notification payloads of 8000 bytes or more.
+     */
+    static final int MAX_PAYLOAD_LENGTH = 7999;
+
+    private static final int MAX_NOTIFICATIONS_PER_STATEMENT = 256;
+    private static final long RECONNECT_DELAY_MILLIS = 1000;
+    private static final Pattern CHANNEL_NAME = Pattern.compile("[a-z_][a-z0-9_]{0,62}");
+
+    private final String url;
+    private final String username;
+    private final String password;
+    private final String channel;
+    private final int pollIntervalMillis;
+    private final long peerTimeoutNanos;
+    private final String nodeId = Long.toHexString(ThreadLocalRandom.current().nextLong());
+    private long sequence;
+    private final BlockingQueue<String> outgoing;
+    private final Map<String, Peer> peers = new HashMap<>();
+    private volatile Receiver receiver;
+    private volatile boolean running;
+    private Thread publisher;
+    private Thread listener;
+
+    /**
+     * Constructs a new PostgresClusterEventBus.
+     *
+     * @param url the JDBC URL of the database
+     * @param username the database user
+     * @param password the database password
+     * @param channel the notification channel shared by all instances
+     * @param queueCapacity the maximum number of events waiting to be sent
+     * @param pollIntervalMillis how long the threads wait for work before checking for shutdown
+     * @param peerTimeoutMillis how long the last sequence number of a silent instance is kept
+     */
+    public PostgresClusterEventBus(@Value("${spring.datasource.url}") String url,
+            @Value("${spring.datasource.username:}") String username,
+            @Value("${spring.datasource.password:}") String password,
+            @Value("${chat.cluster.channel:chat_room_events}") String channel,
+            @Value("${chat.cluster.queue-capacity:10000}") int queueCapacity,
+            @Value("${chat.cluster.poll-interval-ms:500}") int pollIntervalMillis,
+            @Value("${chat.cluster.peer-timeout-ms:3600000}") long peerTimeoutMillis) {
+        if (!CHANNEL_NAME.matcher(channel).matches()) {
+            throw new IllegalArgumentException("Invalid chat.cluster.channel: " + channel);
+        }
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.channel = channel;
+        this.pollIntervalMillis = Math.max(10, pollIntervalMillis);
+        this.peerTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1000L, peerTimeoutMillis));
+        this.outgoing = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+    }
+
+    /**
+     * Starts the publisher and listener threads.
+     */
+    @PostConstruct
+    public void start() {
+        running = true;
+        publisher = new Thread(this::runPublisher, "cluster-bus-publisher");
+        publisher.setDaemon(true);
+        publisher.start();
+        listener = new Thread(this::runListener, "cluster-bus-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    /**
+     * Stops listening and waits for the queued events to be sent.
+     *
+     * @throws InterruptedException if interrupted while waiting for the threads
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (publisher != null) {
+            publisher.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        if (listener != null) {
+            listener.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    @Override
+    public void publish(RoomEvent event) {
+        boolean queued;
+        // Numbers are queued in order, and taken even for dropped events so receivers notice the gap
+        synchronized (outgoing) {
+            queued = outgoing.offer(encode(nodeId, ++sequence, event));
+        }
+        if (!queued) {
+            log.warn("Cluster event queue is full, dropping event for room {}", event.getChatRoomId());
+        }
+    }
+
+    @Override
+    public void register(Receiver receiver) {
+        this.receiver = receiver;
+    }
+
+    /**
+     * Publisher loop sending the queued events in batches until stopped and the queue is empty.
+     * A batch that fails is sent again on a new connection; receivers drop the notifications
+     * that had already gone out.
+     */
+    private void runPublisher() {
+        List<String> batch = new ArrayList<>(MAX_NOTIFICATIONS_PER_STATEMENT);
+        Connection connection = null;
+        while (running || !outgoing.isEmpty() || !batch.isEmpty()) {
+            try {
+                if (batch.isEmpty()) {
+                    String first = outgoing.poll(pollIntervalMillis, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    outgoing.drainTo(batch, MAX_NOTIFICATIONS_PER_STATEMENT - 1);
+                }
+                if (connection == null) {
+                    connection = connect();
+                }
+                send(connection, batch);
+                batch.clear();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (SQLException ex) {
+                log.warn("Failed to send {} cluster events", batch.size(), ex);
+                close(connection);
+                connection = null;
+                if (!running || !pause()) {
+                    break;
+                }
+            }
+        }
+        close(connection);
+    }
+
+    /**
+     * Sends a batch of notifications with one statement.
+     *
+     * @param connection the publishing connection
+     * @param payloads the notification payloads, in publishing order
+     * @throws SQLException if the statement fails
+     */
+    private void send(Connection connection, List<String> payloads) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT pg_notify(?, payload) FROM unnest(?) AS payload")) {
+            statement.setString(1, channel);
+            statement.setArray(2, connection.createArrayOf("text", payloads.toArray()));
+            statement.executeQuery().close();
+        }
+    }
+
+    /**
+     * Listener loop receiving notifications until stopped, reconnecting after failures.
+     * Every reconnect reports missed events, since notifications sent meanwhile are lost.
+     */
+    private void runListener() {
+        boolean connectedBefore = false;
+        while (running) {
+            try (Connection connection = connect()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                if (connectedBefore) {
+                    missed();
+                }
+                connectedBefore = true;
+                PGConnection notifications = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] received = notifications.getNotifications(pollIntervalMillis);
+                    long now = System.nanoTime();
+                    if (received != null) {
+                        for (PGNotification notification : received) {
+                            receive(notification.getParameter(), now);
+                        }
+                    }
+                    forgetIdlePeers(now);
+                }
+            } catch (SQLException ex) {
+                if (running) {
+                    log.warn("Cluster event listener lost its connection, reconnecting", ex);
+                    if (!pause()) {
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Decodes a notification and hands it to the receiver, unless it was sent by this instance
+     * or was already received, which happens when the publisher resends a batch whose statement
+     * failed after the notifications went out.
+     *
+     * @param payload the notification payload
+     * @param now the current {@link System#nanoTime()}
+     */
+    void receive(String payload, long now) {
+        Notification notification;
+        try {
+            notification = decode(payload);
+        } catch (IllegalArgumentException | InvalidProtocolBufferException ex) {
+            log.warn("Ignoring malformed cluster event", ex);
+            return;
+        }
+        if (notification.nodeId().equals(nodeId)) {
+            return;
+        }
+        Peer peer = peers.get(notification.nodeId());
+        if (peer != null && notification.sequence() <= peer.sequence) {
+            // Resent by the publisher after a failure it could not tell apart from a lost batch
+            return;
+        }
+        if (peer == null) {
+            peer = new Peer();
+            peers.put(notification.nodeId(), peer);
+        } else if (notification.sequence() != peer.sequence + 1) {
+            missed();
+        }
+        peer.sequence = notification.sequence();
+        peer.lastSeen = now;
+        Receiver current = receiver;
+        if (current != null) {
+            current.onRemoteEvent(notification.event(), notification.messageOmitted());
+        }
+    }
+
+    /**
+     * Forgets the instances that have sent nothing for the peer timeout, typically because
+     * they were stopped or restarted under a new ID.
+     *
+     * @param now the current {@link System#nanoTime()}
+     */
+    void forgetIdlePeers(long now) {
+        peers.values().removeIf(peer -> now - peer.lastSeen >= peerTimeoutNanos);
+    }
+
+    /**
+     * Reports missed events to the receiver.
+     */
+    private void missed() {
+        Receiver current = receiver;
+        if (current != null) {
+            current.onEventsMissed();
+        }
+    }
+
+    /**
+     * Opens a dedicated connection outside the pool.
+     *
+     * @return the connection, in auto-commit mode
+     * @throws SQLException if the connection cannot be opened
+     */
+    private Connection connect() throws SQLException {
+        return DriverManager.getConnection(url, username, password);
+    }
+
+    /**
+     * Closes a connection, ignoring failures.
+     *
+     * @param connection the connection, or null
+     */
+    private static void close(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException ex) {
+            log.debug("Failed to close cluster bus connection", ex);
+        }
+    }
+
+    /**
+     * Waits before reconnecting.
+     *
+     * @return false if interrupted
+     */
+    private static boolean pause() {
+        try {
+            Thread.sleep(RECONNECT_DELAY_MILLIS);
+            return true;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Encodes an event as a notification payload of the form {@code node:sequence:kind:event},
+     * where kind is {@code F} for a full event and {@code R} for one whose message was reduced
+     * to a reference because the payload would otherwise be too large.
+     *
+     * @param nodeId the ID of the sending instance
+     * @param sequence the per-instance sequence number
+     * @param event the event
+     * @return the payload, at most {@link #MAX_PAYLOAD_LENGTH} characters of ASCII
+     */
+    static String encode(String nodeId, long sequence, RoomEvent event) {
+        String header = nodeId + ":" + sequence + ":";
+        String full = Base64.getEncoder().encodeToString(event.toByteArray());
+        if (header.length() + 2 + full.length() <= MAX_PAYLOAD_LENGTH || !event.hasMessage()) {
+            return header + "F:" + full;
+        }
+        Message message = event.getMessage();
+        RoomEvent reference = event.toBuilder()
+            .setMessage(Message.newBuilder()
+                .setId(message.getId())
+                .setChatRoomId(message.getChatRoomId())
+                .setChangeVersion(message.getChangeVersion()))
+            .build();
+        return header + "R:" + Base64.getEncoder().encodeToString(reference.toByteArray());
+    }
+
+    /**
+     * Decodes a notification payload written by {@link #encode}.
+     *
+     * @param payload the payload
+     * @return the decoded notification
+     * @throws InvalidProtocolBufferException if the event cannot be parsed
+     */
+    static Notification decode(String payload) throws InvalidProtocolBufferException {
+        String[] parts = payload.split(":", 4);
+        if (parts.length != 4 || !(parts[2].equals("F") || parts[2].equals("R"))) {
+            throw new IllegalArgumentException("Unexpected cluster event payload");
+        }
+        RoomEvent event = RoomEvent.parseFrom(Base64.getDecoder().decode(parts[3]));
+        return new Notification(parts[0], Long.parseLong(parts[1]), parts[2].equals("R"), event);
+    }
+
+    /**
+     * The last notification received from another instance. Only used by the listener thread.
+     */
+    private static final class Peer {
+
+        private long sequence;
+        private long lastSeen;
+    }
+
+    /**
+     * A decoded notification.
+     *
+     * @param nodeId the ID of the sending instance
+     * @param sequence the per-instance sequence number
+     * @param messageOmitted whether the event's message is only a reference
+     * @param event the event
+     */
+    record Notification(String nodeId, long sequence, boolean messageOmitted, RoomEvent event) {
+    }
+}
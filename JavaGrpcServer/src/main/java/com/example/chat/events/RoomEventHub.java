@@ -0,0 +1,232 @@
+package com.example.chat.events;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.chat.grpc.RoomEvent;
+
+/**
+ * In-process fan-out hub for chat room events.
+ * Subscribers register per chat room and receive every event published for that room.
+ * Publishing never touches the database; it first updates the registered
+ * {@link RoomEventListener}s and then hands the already mapped event to the
+ * subscribers that are currently open. Ephemeral events, which describe no stored
+ * state, skip the listeners.
+ *
+ * <p>Every published event is also relayed to the other server instances through the
+ * {@link ClusterEventBus}, and events relayed from them are applied here the same way,
+ * so subscribers and derived state are current whichever instance made a change.
+ * Ephemeral events stay on their instance unless {@code chat.cluster.relay-ephemeral} is set,
+ * since the bus may cost a database round-trip per event: subscribers on other instances
+ * then see no typing indicators.
+ */
+@Component
+public class RoomEventHub {
+
+    private static final Logger log = LoggerFactory.getLogger(RoomEventHub.class);
+
+    private final List<RoomEventListener> listeners;
+    private final ClusterEventBus clusterEventBus;
+    private final ConcurrentHashMap<Integer, Set<Consumer<RoomEvent>>> subscribers = new ConcurrentHashMap<>();
+    private volatile Function<Integer, Optional<com.example.chat.grpc.Message>> messageLoader = id -> Optional.empty();
+
+    @Value("${chat.cluster.relay-ephemeral:false}")
+    private boolean relayEphemeral = false;
+
+    /**
+     * Constructs a new RoomEventHub and registers it as the receiver of the cluster's events.
+     *
+     * @param listeners the listeners maintaining derived state from room events
+     * @param clusterEventBus the bus relaying events between server instances
+     */
+    public RoomEventHub(List<RoomEventListener> listeners, ClusterEventBus clusterEventBus) {
+        this.listeners = List.copyOf(listeners);
+        this.clusterEventBus = clusterEventBus;
+        clusterEventBus.register(new ClusterEventBus.Receiver() {
+            @Override
+            public void onRemoteEvent(RoomEvent event, boolean messageOmitted) {
+                receiveRemote(event, messageOmitted);
+            }
+
+            @Override
+            public void onEventsMissed() {
+                resetListeners();
+            }
+        });
+    }
+
+    /**
+     * Sets the loader completing relayed events whose message was too large to relay.
+     *
+     * @param messageLoader loads the current state of a message by ID
+     */
+    public void setMessageLoader(Function<Integer, Optional<com.example.chat.grpc.Message>> messageLoader) {
+        this.messageLoader = messageLoader;
+    }
+
+    /**
+     * Registers a subscriber for a chat room.
+     * The subscriber must not block, since it is invoked on the publishing thread.
+     *
+     * @param chatRoomId the ID of the chat room to subscribe to
+     * @param subscriber the callback receiving the room's events
+     * @return a handle that removes the subscription when run
+     */
+    public Runnable subscribe(int chatRoomId, Consumer<RoomEvent> subscriber) {
+        subscribers.compute(chatRoomId, (id, set) -> {
+            Set<Consumer<RoomEvent>> target = set != null ? set : ConcurrentHashMap.newKeySet();
+            target.add(subscriber);
+            return target;
+        });
+        return () -> unsubscribe(chatRoomId, subscriber);
+    }
+
+    /**
+     * Publishes an event to all current subscribers of its chat room.
+     *
+     * @param event the event to publish
+     */
+    public void publish(RoomEvent event) {
+        notifyListeners(event);
+        dispatch(event);
+        clusterEventBus.publish(event);
+    }
+
+    /**
+     * Publishes an event that carries no stored state, such as a typing indicator,
+     * to the current subscribers of its chat room only. It is relayed to the other
+     * instances only if enabled.
+     *
+     * @param event the event to publish
+     */
+    public void publishEphemeral(RoomEvent event) {
+        dispatch(event);
+        if (relayEphemeral) {
+            clusterEventBus.publish(event);
+        }
+    }
+
+    /**
+     * Applies an event relayed from another server instance, without relaying it further.
+     * An event whose message was omitted is completed from the database first; if that fails,
+     * the listeners are reset and subscribers receive the event without its message.
+     *
+     * @param event the relayed event
+     * @param messageOmitted whether the event's message carries only its ID
+     */
+    void receiveRemote(RoomEvent event, boolean messageOmitted) {
+        if (isEphemeral(event)) {
+            dispatch(event);
+            return;
+        }
+        RoomEvent complete = event;
+        if (messageOmitted) {
+            Optional<com.example.chat.grpc.Message> loaded = Optional.empty();
+            try {
+                loaded = messageLoader.apply(event.getMessage().getId());
+            } catch (RuntimeException ex) {
+                log.warn("Failed to load message {} of a relayed event", event.getMessage().getId(), ex);
+            }
+            if (loaded.isEmpty()) {
+                resetListeners();
+                dispatch(event.toBuilder().clearMessage().build());
+                return;
+            }
+            complete = event.toBuilder().setMessage(loaded.get()).build();
+        }
+        notifyListeners(complete);
+        dispatch(complete);
+    }
+
+    /**
+     * Tells the listeners that events were lost, so that they drop state that may be stale.
+     */
+    void resetListeners() {
+        log.warn("Room events from other instances were missed, resetting derived state");
+        for (RoomEventListener listener : listeners) {
+            try {
+                listener.onEventsMissed();
+            } catch (RuntimeException ex) {
+                log.warn("Room event listener {} failed to reset", listener.getClass().getSimpleName(), ex);
+            }
+        }
+    }
+
+    /**
+     * Hands an event to the listeners maintaining derived state.
+     *
+     * @param event the event
+     */
+    private void notifyListeners(RoomEvent event) {
+        for (RoomEventListener listener : listeners) {
+            try {
+                listener.onRoomEvent(event);
+            } catch (RuntimeException ex) {
+                log.warn("Room event listener {} failed for room {}", listener.getClass().getSimpleName(),
+                    event.getChatRoomId(), ex);
+            }
+        }
+    }
+
+    /**
+     * Checks whether an event describes no stored state.
+     *
+     * @param event the event
+     * @return true for typing indicators
+     */
+    private static boolean isEphemeral(RoomEvent event) {
+        return event.getType() == RoomEvent.Type.TYPING_STARTED || event.getType() == RoomEvent.Type.TYPING_STOPPED;
+    }
+
+    /**
+     * Hands an event to the current subscribers of its chat room.
+     *
+     * @param event the event to deliver
+     */
+    private void dispatch(RoomEvent event) {
+        Set<Consumer<RoomEvent>> roomSubscribers = subscribers.get(event.getChatRoomId());
+        if (roomSubscribers == null) {
+            return;
+        }
+        for (Consumer<RoomEvent> subscriber : roomSubscribers) {
+            try {
+                subscriber.accept(event);
+            } catch (RuntimeException ex) {
+                log.warn("Room event subscriber for room {} failed", event.getChatRoomId(), ex);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of open subscriptions for a chat room.
+     *
+     * @param chatRoomId the ID of the chat room
+     * @return the number of subscribers
+     */
+    public int subscriberCount(int chatRoomId) {
+        Set<Consumer<RoomEvent>> roomSubscribers = subscribers.get(chatRoomId);
+        return roomSubscribers == null ? 0 : roomSubscribers.size();
+    }
+
+    /**
+     * Removes a subscriber and drops the room entry once it has no subscribers left.
+     *
+     * @param chatRoomId the ID of the chat room
+     * @param subscriber the subscriber to remove
+     */
+    private void unsubscribe(int chatRoomId, Consumer<RoomEvent> subscriber) {
+        subscribers.computeIfPresent(chatRoomId, (id, set) -> {
+            set.remove(subscriber);
+            return set.isEmpty() ? null : set;
+        });
+    }
+}
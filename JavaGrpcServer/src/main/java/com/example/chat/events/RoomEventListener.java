@@ -0,0 +1,26 @@
+package com.example.chat.events;
+
+import com.example.chat.grpc.RoomEvent;
+
+/**
+ * Listener for chat room events that maintains derived in-memory state.
+ * All listener beans are invoked synchronously by the {@link RoomEventHub} before
+ * the event is handed to stream subscribers, so implementations must be fast and
+ * must not block.
+ */
+public interface RoomEventListener {
+
+    /**
+     * Handles an event published for a chat room.
+     *
+     * @param event the published event
+     */
+    void onRoomEvent(RoomEvent event);
+
+    /**
+     * Handles the loss of events relayed from other server instances. Implementations drop
+     * the state that those events would have updated, so that it is reloaded on next use.
+     */
+    default void onEventsMissed() {
+    }
+}
@@ -1,18 +1,45 @@
 package com.example.chat.grpc;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
 
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.example.chat.archive.MessageArchive;
+import com.example.chat.cache.MessageProtoCache;
+import com.example.chat.cache.RecentMessageCache;
+import com.example.chat.codec.MessageTextCodec;
 import com.example.chat.domain.ChatRoom;
+import com.example.chat.domain.ChatRoomType;
+import com.example.chat.events.RoomEventHub;
 import com.example.chat.grpc.ChatServiceGrpc.ChatServiceImplBase;
+import com.example.chat.ingest.MessageIngestionPipeline;
+import com.example.chat.ingest.SendDeduplicator;
+import com.example.chat.outbox.Outbox;
+import com.example.chat.ratelimit.RateLimiter;
+import com.example.chat.repositories.ChatRoomMembershipRepository;
 import com.example.chat.repositories.ChatRoomRepository;
 import com.example.chat.repositories.MessageRepository;
+import com.example.chat.search.MessageSearchBackend;
+import com.example.chat.summary.RoomSummaries;
+import com.example.chat.typing.TypingIndicators;
 import com.google.protobuf.Empty;
 
 import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 
 /**
@@ -22,22 +49,119 @@ import io.grpc.stub.StreamObserver;
 @Service
 public class ChatServiceImpl extends ChatServiceImplBase {
 
+    /**
+     * Maximum length of a client message ID; must match messages.client_message_id.
+     */
+    private static final int MAX_CLIENT_MESSAGE_ID_LENGTH = 64;
+
+    /**
+     * Orders inbox rooms by their newest message, newest first, with empty rooms last.
+     */
+    private static final Comparator<InboxRoom> NEWEST_ROOM_FIRST = Comparator
+        .comparing((InboxRoom room) -> room.getMessagesCount() == 0)
+        .thenComparing(room -> newestOf(room).getSentAtUnix(), Comparator.reverseOrder())
+        .thenComparing(room -> newestOf(room).getId(), Comparator.reverseOrder());
+
     private final MessageRepository messageRepository;
     private final ChatRoomRepository chatRoomRepository;
+    private final RoomEventHub roomEventHub;
+    private final MessageIngestionPipeline ingestionPipeline;
+    private final RecentMessageCache recentMessageCache;
+    private final MessageSearchBackend searchBackend;
+    private final MessageProtoCache messageProtoCache;
+    private final MessageArchive messageArchive;
+    private final MessageTextCodec textCodec;
+    private final TypingIndicators typingIndicators;
+    private final RateLimiter rateLimiter;
+    private final SendDeduplicator sendDeduplicator;
+    private final ChatRoomMembershipRepository membershipRepository;
+    private final RoomSummaries roomSummaries;
+    private final Outbox outbox;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${chat.subscriptions.max-pending-events:256}")
+    private int maxPendingEvents = 256;
+
+    @Value("${chat.messages.default-page-size:50}")
+    private int defaultPageSize = 50;
+
+    @Value("${chat.messages.max-page-size:500}")
+    private int maxPageSize = 500;
+
+    @Value("${chat.messages.stream-chunk-size:200}")
+    private int streamChunkSize = 200;
+
+    @Value("${chat.sessions.max-pending-frames:1024}")
+    private int maxPendingSessionFrames = 1024;
+
+    @Value("${chat.rooms.default-page-size:100}")
+    private int defaultRoomPageSize = 100;
+
+    @Value("${chat.rooms.max-page-size:1000}")
+    private int maxRoomPageSize = 1000;
+
+    @Value("${chat.inbox.default-per-room:20}")
+    private int defaultInboxPerRoom = 20;
+
+    @Value("${chat.inbox.max-per-room:100}")
+    private int maxInboxPerRoom = 100;
 
     /**
      * Constructs a new ChatServiceImpl with the specified repositories.
      *
      * @param messageRepository the repository for message data access
      * @param chatRoomRepository the repository for chat room data access
+     * @param roomEventHub the hub fanning out message changes to room subscribers
+     * @param ingestionPipeline the batching pipeline persisting new messages
+     * @param recentMessageCache the cache serving the newest page of each room
+     * @param searchBackend the configured backend answering message searches
+     * @param messageProtoCache the cache of mapped messages reused across responses
+     * @param messageArchive the cold-tier archive holding the oldest messages of each room
+     * @param textCodec the codec storing long message texts compressed
+     * @param typingIndicators the in-memory typing state of room members
+     * @param rateLimiter the limiter rejecting senders and rooms that write too fast
+     * @param sendDeduplicator the cache answering retried sends with the original message
+     * @param membershipRepository the repository for chat room membership data access
+     * @param roomSummaries the read model of each room's latest activity
+     * @param outbox the transactional outbox recording edits, deletions and new rooms
+     * @param transactionManager the transaction manager wrapping each change with its outbox event
      */
-    public ChatServiceImpl(MessageRepository messageRepository, ChatRoomRepository chatRoomRepository) {
+    public ChatServiceImpl(MessageRepository messageRepository, ChatRoomRepository chatRoomRepository,
+        RoomEventHub roomEventHub, MessageIngestionPipeline ingestionPipeline,
+        RecentMessageCache recentMessageCache, MessageSearchBackend searchBackend,
+        MessageProtoCache messageProtoCache, MessageArchive messageArchive, MessageTextCodec textCodec,
+        TypingIndicators typingIndicators, RateLimiter rateLimiter, SendDeduplicator sendDeduplicator,
+        ChatRoomMembershipRepository membershipRepository, RoomSummaries roomSummaries, Outbox outbox,
+        PlatformTransactionManager transactionManager) {
         this.messageRepository = messageRepository;
         this.chatRoomRepository = chatRoomRepository;
+        this.roomEventHub = roomEventHub;
+        this.ingestionPipeline = ingestionPipeline;
+        this.recentMessageCache = recentMessageCache;
+        this.searchBackend = searchBackend;
+        this.messageProtoCache = messageProtoCache;
+        this.messageArchive = messageArchive;
+        this.textCodec = textCodec;
+        this.typingIndicators = typingIndicators;
+        this.rateLimiter = rateLimiter;
+        this.sendDeduplicator = sendDeduplicator;
+        this.membershipRepository = membershipRepository;
+        this.roomSummaries = roomSummaries;
+        this.outbox = outbox;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        roomEventHub.setMessageLoader(id -> messageRepository.findById(id).map(this::mapMessage));
     }
 
     /**
      * Sends a new message to a chat room.
+     * The message is handed to the ingestion pipeline, which persists it as part of a
+     * micro-batch; the response is sent once the batch has been committed and the message
+     * published to the room, so a read of the room right after the reply includes it. Both run on
+     * the pipeline's completion threads, never on its writer. Senders and rooms
+     * writing faster than their rate limit are rejected with RESOURCE_EXHAUSTED.
+     * A send repeating the client message ID of an earlier send of the same sender returns the
+     * original message instead of storing a duplicate, and publishes no event; a retry answered
+     * from the deduplication cache is not charged to the rate limit.
      *
      * @param request the request containing chat room ID, sender ID, and message text
      * @param responseObserver the observer to receive the response or error
@@ -46,14 +170,48 @@ public class ChatServiceImpl extends ChatServiceImplBase {
     public void sendMessage(SendMessageRequest request,
         StreamObserver<SendMessageResponse> responseObserver) {
         try {
+            String clientMessageId = request.getClientMessageId();
+            if (clientMessageId.length() > MAX_CLIENT_MESSAGE_ID_LENGTH) {
+                responseObserver.onError(Status.INVALID_ARGUMENT
+                    .withDescription("clientMessageId must not exceed " + MAX_CLIENT_MESSAGE_ID_LENGTH + " characters")
+                    .asRuntimeException());
+                return;
+            }
             com.example.chat.domain.Message m = new com.example.chat.domain.Message();
             m.setChatRoomId(request.getChatRoomId());
             m.setSenderId(request.getSenderId());
             m.setText(request.getText());
-            m = messageRepository.save(m);
+            m.setClientMessageId(clientMessageId.isEmpty() ? null : clientMessageId);
 
-            responseObserver.onNext(SendMessageResponse.newBuilder().setMessage(mapMessage(m)).build());
-            responseObserver.onCompleted();
+            // Only new sends are charged to the rate limit; a retry remembered by the deduplicator is not
+            Supplier<CompletableFuture<com.example.chat.domain.Message>> send = () -> {
+                StatusRuntimeException limited = rateLimiter.check(RateLimiter.Route.SEND_MESSAGE,
+                    request.getSenderId(), request.getChatRoomId());
+                return limited != null ? CompletableFuture.failedFuture(limited) : ingestionPipeline.submit(m);
+            };
+            CompletableFuture<com.example.chat.domain.Message> submitted = clientMessageId.isEmpty()
+                ? send.get()
+                : sendDeduplicator.submit(request.getSenderId(), clientMessageId, send);
+            submitted.whenComplete((saved, error) -> {
+                if (error != null) {
+                    responseObserver.onError(toStatusException(error));
+                    return;
+                }
+                try {
+                    com.example.chat.grpc.Message mapped = mapMessage(saved);
+                    // Published before replying, so the sender's next read of the room includes the message.
+                    // A retried send is answered with the original message, which was already published
+                    if (saved == m) {
+                        publish(RoomEvent.Type.MESSAGE_CREATED, saved, mapped);
+                        typingIndicators.clear(saved.getChatRoomId(), saved.getSenderId());
+                    }
+                    responseObserver.onNext(SendMessageResponse.newBuilder().setMessage(mapped).build());
+                    responseObserver.onCompleted();
+                } catch (RuntimeException ex) {
+                    responseObserver.onError(Status.INTERNAL.withDescription(ex.getMessage())
+                        .withCause(ex).asRuntimeException());
+                }
+            });
         } catch (Exception ex) {
             responseObserver.onError(Status.INTERNAL.withDescription(ex.getMessage())
                 .withCause(ex).asRuntimeException());
@@ -61,22 +219,69 @@ public class ChatServiceImpl extends ChatServiceImplBase {
     }
 
     /**
-     * Retrieves all messages from a chat room in chronological order.
+     * Retrieves one page of messages from a chat room in chronological order.
+     * Paging is keyset-based on (created_at, id): without a cursor the newest page is
+     * returned, {@code before} pages towards older messages and {@code after} towards newer ones.
+     * Pages continue into the message archive once they pass the oldest message in the database.
      *
-     * @param request the request containing the chat room ID
+     * @param request the request containing the chat room ID, optional cursor and page size
      * @param responseObserver the observer to receive the response or error
      */
     @Override
     public void getMessages(GetMessagesRequest request,
         StreamObserver<GetMessagesResponse> responseObserver) {
         try {
-            List<com.example.chat.domain.Message> messages =
-                messageRepository.findByChatRoomIdOrderByCreatedAtAsc(request.getChatRoomId());
+            if (request.hasBefore() && request.hasAfter()) {
+                responseObserver.onError(Status.INVALID_ARGUMENT
+                    .withDescription("Only one of before and after may be set")
+                    .asRuntimeException());
+                return;
+            }
 
-            GetMessagesResponse.Builder resp = GetMessagesResponse.newBuilder();
+            int pageSize = resolvePageSize(request.getPageSize());
+            boolean forward = request.hasAfter();
+            List<com.example.chat.domain.Message> messages;
+            if (forward) {
+                messages = readPageAfter(request.getChatRoomId(), request.getAfter(), pageSize + 1);
+            } else if (request.hasBefore()) {
+                MessageCursor before = request.getBefore();
+                messages = withArchivedBefore(request.getChatRoomId(), before,
+                    messageRepository.findPageBefore(request.getChatRoomId(),
+                        MessageCursors.toInstant(before.getCreatedAtMicros()), before.getId(), pageSize + 1),
+                    pageSize + 1);
+            } else {
+                RecentMessageCache.RecentPage cached = recentMessageCache.latest(request.getChatRoomId(), pageSize);
+                if (cached != null) {
+                    GetMessagesResponse.Builder resp = GetMessagesResponse.newBuilder()
+                        .addAllMessages(cached.messages())
+                        .setHasMore(cached.hasMore());
+                    if (cached.nextCursor() != null) {
+                        resp.setNextCursor(cached.nextCursor());
+                    }
+                    responseObserver.onNext(resp.build());
+                    responseObserver.onCompleted();
+                    return;
+                }
+                messages = loadLatestPage(request.getChatRoomId(), pageSize);
+            }
 
-            for (com.example.chat.domain.Message m : messages) {
-                resp.addMessages(mapMessage(m));
+            boolean hasMore = messages.size() > pageSize;
+            if (hasMore) {
+                messages = messages.subList(0, pageSize);
+            }
+
+            GetMessagesResponse.Builder resp = GetMessagesResponse.newBuilder().setHasMore(hasMore);
+            if (forward) {
+                for (com.example.chat.domain.Message m : messages) {
+                    resp.addMessages(mapMessage(m));
+                }
+            } else {
+                for (int i = messages.size() - 1; i >= 0; i--) {
+                    resp.addMessages(mapMessage(messages.get(i)));
+                }
+            }
+            if (!messages.isEmpty()) {
+                resp.setNextCursor(MessageCursors.of(messages.get(messages.size() - 1)));
             }
 
             responseObserver.onNext(resp.build());
@@ -88,20 +293,63 @@ public class ChatServiceImpl extends ChatServiceImplBase {
     }
 
     /**
-     * Lists all chat rooms in the system.
+     * Retrieves the newest messages of every chat room a user belongs to.
+     * Rooms whose newest page is cached are served from memory; all other rooms are read with
+     * one set-based query, so the number of statements does not grow with the number of rooms.
      *
-     * @param request empty request
+     * @param request the request containing the user ID and the number of messages per room
      * @param responseObserver the observer to receive the response or error
      */
     @Override
-    public void listChatRooms(Empty request, StreamObserver<ListChatRoomsResponse> responseObserver) {
+    public void getInbox(GetInboxRequest request, StreamObserver<GetInboxResponse> responseObserver) {
         try {
-            List<ChatRoom> rooms = chatRoomRepository.findAll();
-            ListChatRoomsResponse.Builder builder = ListChatRoomsResponse.newBuilder();
-            for (ChatRoom room : rooms) {
-                builder.addRooms(mapRoom(room));
+            int perRoom = request.getPerRoomLimit() <= 0
+                ? defaultInboxPerRoom : Math.min(request.getPerRoomLimit(), maxInboxPerRoom);
+            List<Integer> chatRoomIds = membershipRepository.findChatRoomIdsByUserId(request.getUserId());
+
+            List<InboxRoom> rooms = new ArrayList<>(chatRoomIds.size());
+            List<Integer> uncached = new ArrayList<>();
+            for (Integer chatRoomId : chatRoomIds) {
+                RecentMessageCache.RecentPage cached = recentMessageCache.latest(chatRoomId, perRoom);
+                if (cached == null) {
+                    uncached.add(chatRoomId);
+                    continue;
+                }
+                InboxRoom.Builder room = InboxRoom.newBuilder()
+                    .setChatRoomId(chatRoomId)
+                    .addAllMessages(cached.messages())
+                    .setHasMore(cached.hasMore());
+                if (cached.nextCursor() != null) {
+                    room.setNextCursor(cached.nextCursor());
+                }
+                rooms.add(room.build());
             }
-            responseObserver.onNext(builder.build());
+
+            if (!uncached.isEmpty()) {
+                Map<Integer, List<com.example.chat.domain.Message>> latest = new HashMap<>();
+                for (com.example.chat.domain.Message m : messageRepository.findLatestPerRoom(uncached, perRoom + 1)) {
+                    latest.computeIfAbsent(m.getChatRoomId(), id -> new ArrayList<>()).add(m);
+                }
+                for (Integer chatRoomId : uncached) {
+                    List<com.example.chat.domain.Message> messages = withArchivedBefore(chatRoomId, null,
+                        latest.getOrDefault(chatRoomId, List.of()), perRoom + 1);
+                    boolean hasMore = messages.size() > perRoom;
+                    if (hasMore) {
+                        messages = messages.subList(0, perRoom);
+                    }
+                    InboxRoom.Builder room = InboxRoom.newBuilder().setChatRoomId(chatRoomId).setHasMore(hasMore);
+                    for (int i = messages.size() - 1; i >= 0; i--) {
+                        room.addMessages(mapMessage(messages.get(i)));
+                    }
+                    if (!messages.isEmpty()) {
+                        room.setNextCursor(MessageCursors.of(messages.get(messages.size() - 1)));
+                    }
+                    rooms.add(room.build());
+                }
+            }
+
+            rooms.sort(NEWEST_ROOM_FIRST);
+            responseObserver.onNext(GetInboxResponse.newBuilder().addAllRooms(rooms).build());
             responseObserver.onCompleted();
         } catch (Exception ex) {
             responseObserver.onError(Status.INTERNAL.withDescription(ex.getMessage())
@@ -110,45 +358,109 @@ public class ChatServiceImpl extends ChatServiceImplBase {
     }
 
     /**
-     * Edits an existing message.
-     * Only the message sender can edit their message, and deleted messages cannot be edited.
+     * Lists one page of chat rooms, optionally of one type.
+     * Paging is keyset-based on the room ID, so each page is a short primary key range scan
+     * however many rooms exist.
      *
-     * @param request the request containing message ID, sender ID, and new text
+     * @param request the request containing the ID to continue after, the page size and the room type
      * @param responseObserver the observer to receive the response or error
      */
     @Override
-    public void editMessage(EditMessageRequest request, StreamObserver<Message> responseObserver) {
+    public void listChatRooms(ListChatRoomsRequest request, StreamObserver<ListChatRoomsResponse> responseObserver) {
         try {
-            Optional<com.example.chat.domain.Message> messageOpt = messageRepository.findById(request.getMessageId());
-            if (!messageOpt.isPresent()) {
-                responseObserver.onError(Status.NOT_FOUND.withDescription("Message not found").asRuntimeException());
-                return;
-            }
-
-            com.example.chat.domain.Message message = messageOpt.get();
-            if (!message.getSenderId().equals(request.getSenderId())) {
-                responseObserver.onError(Status.PERMISSION_DENIED.withDescription("Cannot edit another user's message")
+            if (request.getAfterId() < 0) {
+                responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("afterId must not be negative")
                     .asRuntimeException());
                 return;
             }
-            if (message.isDeleted()) {
-                responseObserver.onError(Status.FAILED_PRECONDITION.withDescription("Cannot edit deleted message")
+
+            responseObserver.onNext(readRoomPage(request.getKind(), request.getAfterId(),
+                resolveRoomPageSize(request.getPageSize())));
+            responseObserver.onCompleted();
+        } catch (Exception ex) {
+            responseObserver.onError(Status.INTERNAL.withDescription(ex.getMessage())
+                .withCause(ex).asRuntimeException());
+        }
+    }
+
+    /**
+     * Streams all chat rooms, optionally of one type, in pages of the requested size.
+     * A page is only read when the client is ready to receive it, so admin tools can walk
+     * every room without the server holding more than one page.
+     *
+     * @param request the request containing the ID to start after, the chunk size and the room type
+     * @param responseObserver the server call observer receiving the pages
+     */
+    @Override
+    public void streamChatRooms(ListChatRoomsRequest request, StreamObserver<ListChatRoomsResponse> responseObserver) {
+        try {
+            if (request.getAfterId() < 0) {
+                responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("afterId must not be negative")
                     .asRuntimeException());
                 return;
             }
+
+            int chunkSize = resolveRoomPageSize(request.getPageSize());
+            PullStream<Integer, ListChatRoomsResponse> stream = new PullStream<>(
+                (ServerCallStreamObserver<ListChatRoomsResponse>) responseObserver,
+                afterId -> {
+                    ListChatRoomsResponse page = readRoomPage(request.getKind(), afterId, chunkSize);
+                    return page.getRoomsCount() > 0 ? page : null;
+                },
+                page -> page.getHasMore() ? page.getNextAfterId() : null, request.getAfterId());
+            stream.pump();
+        } catch (Exception ex) {
+            responseObserver.onError(Status.INTERNAL.withDescription(ex.getMessage())
+                .withCause(ex).asRuntimeException());
+        }
+    }
+
+    /**
+     * Edits an existing message.
+     * Only the message sender can edit their message, and deleted messages cannot be edited.
+     * The checks and the write happen in one conditional UPDATE, committed together with the
+     * room summary and its outbox event; the message is only looked up separately to explain a
+     * rejected edit.
+     *
+     * @param request the request containing message ID, sender ID, and new text
+     * @param responseObserver the observer to receive the response or error
+     */
+    @Override
+    public void editMessage(EditMessageRequest request, StreamObserver<Message> responseObserver) {
+        try {
             String newText = request.getText().trim();
             if (newText.isEmpty()) {
                 responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("Message text is required")
                     .asRuntimeException());
                 return;
             }
+            StatusRuntimeException limited =
+                rateLimiter.check(RateLimiter.Route.EDIT_MESSAGE, request.getSenderId(), 0);
+            if (limited != null) {
+                responseObserver.onError(limited);
+                return;
+            }
 
-            message.setText(newText);
-            message.setEdited(true);
-            message.setEditedAt(Instant.now());
-            message = messageRepository.save(message);
+            byte[] compressed = textCodec.encode(newText);
+            Optional<com.example.chat.domain.Message> updated = transactionTemplate.execute(status -> {
+                Optional<com.example.chat.domain.Message> row = messageRepository.editIfAllowed(
+                    request.getMessageId(), request.getSenderId(), compressed == null ? newText : null, compressed);
+                row.ifPresent(m -> {
+                    roomSummaries.recordEdited(m, newText);
+                    outbox.append(DomainEvent.newBuilder().setMessageEdited(mapMessage(m)).build());
+                });
+                return row;
+            });
+            if (!updated.isPresent()) {
+                responseObserver.onError(explainRejectedUpdate(request.getMessageId(), request.getSenderId(),
+                    "Cannot edit another user's message", "Cannot edit deleted message").asRuntimeException());
+                return;
+            }
 
-            responseObserver.onNext(mapMessage(message));
+            com.example.chat.domain.Message message = updated.get();
+            com.example.chat.grpc.Message mapped = mapMessage(message);
+            publish(RoomEvent.Type.MESSAGE_EDITED, message, mapped);
+            responseObserver.onNext(mapped);
             responseObserver.onCompleted();
         } catch (Exception ex) {
             responseObserver.onError(Status.INTERNAL.withDescription(ex.getMessage())
@@ -160,6 +472,8 @@ public class ChatServiceImpl extends ChatServiceImplBase {
      * Deletes a message.
      * Only the message sender can delete their message. The message text is cleared
      * and marked as deleted.
+     * The checks and the write happen in one conditional UPDATE, committed together with the
+     * room summary and its outbox event. Deleting an already deleted message returns it unchanged.
      *
      * @param request the request containing message ID and requester ID
      * @param responseObserver the observer to receive the response or error
@@ -167,31 +481,39 @@ public class ChatServiceImpl extends ChatServiceImplBase {
     @Override
     public void deleteMessage(DeleteMessageRequest request, StreamObserver<Message> responseObserver) {
         try {
-            Optional<com.example.chat.domain.Message> messageOpt = messageRepository.findById(request.getMessageId());
-            if (!messageOpt.isPresent()) {
-                responseObserver.onError(Status.NOT_FOUND.withDescription("Message not found").asRuntimeException());
+            StatusRuntimeException limited =
+                rateLimiter.check(RateLimiter.Route.DELETE_MESSAGE, request.getRequesterId(), 0);
+            if (limited != null) {
+                responseObserver.onError(limited);
                 return;
             }
 
-            com.example.chat.domain.Message message = messageOpt.get();
-            if (!message.getSenderId().equals(request.getRequesterId())) {
-                responseObserver.onError(Status.PERMISSION_DENIED.withDescription("Cannot delete another user's message")
-                    .asRuntimeException());
-                return;
-            }
-            if (message.isDeleted()) {
-                responseObserver.onNext(mapMessage(message));
-                responseObserver.onCompleted();
+            Optional<com.example.chat.domain.Message> deleted = transactionTemplate.execute(status -> {
+                Optional<com.example.chat.domain.Message> row =
+                    messageRepository.softDeleteIfAllowed(request.getMessageId(), request.getRequesterId());
+                row.ifPresent(m -> {
+                    roomSummaries.recordDeleted(m);
+                    outbox.append(DomainEvent.newBuilder().setMessageDeleted(mapMessage(m)).build());
+                });
+                return row;
+            });
+            if (!deleted.isPresent()) {
+                Optional<com.example.chat.domain.Message> existing = messageRepository.findById(request.getMessageId());
+                if (existing.isPresent() && existing.get().isDeleted()
+                    && existing.get().getSenderId().equals(request.getRequesterId())) {
+                    responseObserver.onNext(mapMessage(existing.get()));
+                    responseObserver.onCompleted();
+                    return;
+                }
+                responseObserver.onError(explainRejectedUpdate(existing, request.getRequesterId(),
+                    "Cannot delete another user's message", "Message is already deleted").asRuntimeException());
                 return;
             }
 
-            message.setDeleted(true);
-            message.setDeletedAt(Instant.now());
-            message.setDeletedBy(request.getRequesterId());
-            message.setText("");
-            message = messageRepository.save(message);
-
-            responseObserver.onNext(mapMessage(message));
+            com.example.chat.domain.Message message = deleted.get();
+            com.example.chat.grpc.Message mapped = mapMessage(message);
+            publish(RoomEvent.Type.MESSAGE_DELETED, message, mapped);
+            responseObserver.onNext(mapped);
             responseObserver.onCompleted();
         } catch (Exception ex) {
             responseObserver.onError(Status.INTERNAL.withDescription(ex.getMessage())
@@ -201,7 +523,8 @@ public class ChatServiceImpl extends ChatServiceImplBase {
 
     /**
      * Searches for messages containing specific text in a chat room.
-     * The search is case-insensitive.
+     * The search is case-insensitive and answered by the configured search backend;
+     * only the rows of the requested page are loaded by ID afterwards.
      *
      * @param request the request containing chat room ID and search query
      * @param responseObserver the observer to receive the response or error
@@ -216,12 +539,21 @@ public class ChatServiceImpl extends ChatServiceImplBase {
                 return;
             }
 
-            List<com.example.chat.domain.Message> messages = messageRepository
-                .findByChatRoomIdAndTextContainingIgnoreCaseOrderByCreatedAtAsc(request.getChatRoomId(), query);
+            int pageSize = resolvePageSize(request.getPageSize());
+            MessageSearchBackend.SearchResult result = searchBackend.search(request.getChatRoomId(), query,
+                request.getMode(), Math.max(0, request.getOffset()), pageSize);
+
+            Map<Integer, com.example.chat.domain.Message> rows = new HashMap<>();
+            for (com.example.chat.domain.Message message : messageRepository.findAllById(result.messageIds())) {
+                rows.put(message.getId(), message);
+            }
 
-            GetMessagesResponse.Builder resp = GetMessagesResponse.newBuilder();
-            for (com.example.chat.domain.Message message : messages) {
-                resp.addMessages(mapMessage(message));
+            GetMessagesResponse.Builder resp = GetMessagesResponse.newBuilder().setHasMore(result.hasMore());
+            for (Integer messageId : result.messageIds()) {
+                com.example.chat.domain.Message message = rows.get(messageId);
+                if (message != null && !message.isDeleted()) {
+                    resp.addMessages(mapMessage(message));
+                }
             }
 
             responseObserver.onNext(resp.build());
@@ -232,6 +564,147 @@ public class ChatServiceImpl extends ChatServiceImplBase {
         }
     }
 
+    /**
+     * Subscribes to the live events of a chat room.
+     * Every message sent, edited or deleted in the room after the subscription is opened
+     * is streamed to the caller until the call is cancelled. A subscriber that cannot keep
+     * up is closed with RESOURCE_EXHAUSTED and should resubscribe and reload.
+     *
+     * @param request the request containing the chat room ID
+     * @param responseObserver the observer to receive the room events or error
+     */
+    @Override
+    public void subscribeRoom(SubscribeRoomRequest request, StreamObserver<RoomEvent> responseObserver) {
+        try {
+            if (!chatRoomRepository.existsById(request.getChatRoomId())) {
+                responseObserver.onError(Status.NOT_FOUND.withDescription("Chat room not found").asRuntimeException());
+                return;
+            }
+
+            OutboundStream<RoomEvent> stream = new OutboundStream<>(
+                (ServerCallStreamObserver<RoomEvent>) responseObserver, maxPendingEvents);
+            stream.onClose(roomEventHub.subscribe(request.getChatRoomId(), stream::send));
+        } catch (Exception ex) {
+            responseObserver.onError(Status.INTERNAL.withDescription(ex.getMessage())
+                .withCause(ex).asRuntimeException());
+        }
+    }
+
+    /**
+     * Sets whether a user is typing in a chat room.
+     * The state lives only in memory and is announced to the room's subscribers as
+     * TYPING_STARTED and TYPING_STOPPED events; nothing is read from or written to the database.
+     *
+     * @param request the request containing the chat room ID, user ID and typing flag
+     * @param responseObserver the observer to receive the response or error
+     */
+    @Override
+    public void setTyping(SetTypingRequest request, StreamObserver<Empty> responseObserver) {
+        try {
+            if (request.getChatRoomId() <= 0 || request.getUserId() <= 0) {
+                responseObserver.onError(Status.INVALID_ARGUMENT
+                    .withDescription("Chat room ID and user ID are required").asRuntimeException());
+                return;
+            }
+            if (!typingIndicators.setTyping(request.getChatRoomId(), request.getUserId(), request.getTyping())) {
+                responseObserver.onError(Status.RESOURCE_EXHAUSTED
+                    .withDescription("Too many users are typing").asRuntimeException());
+                return;
+            }
+
+            responseObserver.onNext(Empty.getDefaultInstance());
+            responseObserver.onCompleted();
+        } catch (Exception ex) {
+            responseObserver.onError(Status.INTERNAL.withDescription(ex.getMessage())
+                .withCause(ex).asRuntimeException());
+        }
+    }
+
+    /**
+     * Streams the full history of a chat room, oldest first, in fixed-size chunks.
+     * Chunks are read from the database only as fast as the client consumes them,
+     * so server memory stays bounded by one chunk per call.
+     *
+     * @param request the request containing the chat room ID, an optional start cursor and chunk size
+     * @param responseObserver the observer receiving the chunks
+     */
+    @Override
+    public void streamMessages(StreamMessagesRequest request, StreamObserver<MessageChunk> responseObserver) {
+        try {
+            if (!chatRoomRepository.existsById(request.getChatRoomId())) {
+                responseObserver.onError(Status.NOT_FOUND.withDescription("Chat room not found").asRuntimeException());
+                return;
+            }
+
+            int chunkSize = request.getChunkSize() > 0
+                ? Math.min(request.getChunkSize(), maxPageSize)
+                : streamChunkSize;
+            PullStream<MessageCursor, MessageChunk> stream = new PullStream<>(
+                (ServerCallStreamObserver<MessageChunk>) responseObserver,
+                after -> readChunk(request.getChatRoomId(), after, chunkSize),
+                chunk -> chunk.getMessagesCount() < chunkSize ? null : chunk.getCursor(),
+                request.hasAfter() ? request.getAfter() : MessageCursor.getDefaultInstance());
+            stream.pump();
+        } catch (Exception ex) {
+            responseObserver.onError(Status.INTERNAL.withDescription(ex.getMessage())
+                .withCause(ex).asRuntimeException());
+        }
+    }
+
+    /**
+     * Returns the messages of a chat room that were created, edited or deleted after a
+     * change version, so that reconnecting clients only fetch what changed while they were away.
+     *
+     * @param request the request containing the chat room ID, the client's watermark and a limit
+     * @param responseObserver the observer receiving the changed messages and the new watermark
+     */
+    @Override
+    public void syncRoom(SyncRoomRequest request, StreamObserver<SyncRoomResponse> responseObserver) {
+        try {
+            if (request.getSinceVersion() < 0) {
+                responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("sinceVersion must not be negative")
+                    .asRuntimeException());
+                return;
+            }
+
+            int limit = resolvePageSize(request.getLimit());
+            List<com.example.chat.domain.Message> changed = messageRepository.findChangedSince(
+                request.getChatRoomId(), request.getSinceVersion(), limit + 1);
+            boolean hasMore = changed.size() > limit;
+            if (hasMore) {
+                changed = changed.subList(0, limit);
+            }
+
+            SyncRoomResponse.Builder resp = SyncRoomResponse.newBuilder()
+                .setWatermark(request.getSinceVersion())
+                .setHasMore(hasMore);
+            for (com.example.chat.domain.Message m : changed) {
+                resp.addMessages(mapMessage(m));
+                resp.setWatermark(m.getChangeVersion());
+            }
+
+            responseObserver.onNext(resp.build());
+            responseObserver.onCompleted();
+        } catch (Exception ex) {
+            responseObserver.onError(Status.INTERNAL.withDescription(ex.getMessage())
+                .withCause(ex).asRuntimeException());
+        }
+    }
+
+    /**
+     * Opens a long-lived bidirectional session on which the client multiplexes send, edit,
+     * delete, join-room and leave-room commands. Acknowledgements and the events of joined
+     * rooms are pushed back on the same stream through a bounded outbound queue.
+     *
+     * @param responseObserver the observer receiving acknowledgements and room events
+     * @return the observer receiving the client's commands
+     */
+    @Override
+    public StreamObserver<ChatCommand> chatSession(StreamObserver<ChatFrame> responseObserver) {
+        return new ChatSessionStream(this, chatRoomRepository, roomEventHub,
+            (ServerCallStreamObserver<ChatFrame>) responseObserver, maxPendingSessionFrames);
+    }
+
     /**
      * Creates a new chat room.
      *
@@ -250,9 +723,13 @@ public class ChatServiceImpl extends ChatServiceImplBase {
                 return;
             }
 
-            ChatRoom room = new ChatRoom();
-            room.setRoomType(com.example.chat.domain.ChatRoomType.GROUP);
-            room = chatRoomRepository.save(room);
+            ChatRoom room = transactionTemplate.execute(status -> {
+                ChatRoom created = new ChatRoom();
+                created.setRoomType(com.example.chat.domain.ChatRoomType.GROUP);
+                created = chatRoomRepository.save(created);
+                outbox.append(DomainEvent.newBuilder().setRoomCreated(mapRoom(created)).build());
+                return created;
+            });
 
             responseObserver.onNext(CreateChatRoomResponse.newBuilder()
                 .setRoom(mapRoom(room))
@@ -264,6 +741,231 @@ public class ChatServiceImpl extends ChatServiceImplBase {
         }
     }
 
+    /**
+     * Loads the newest messages of a room from the database and warms the recent-message
+     * cache with them, so that following newest-page reads are served from memory.
+     *
+     * @param chatRoomId the ID of the chat room
+     * @param pageSize the requested page size
+     * @return at least {@code pageSize + 1} messages if available, newest first
+     */
+    private List<com.example.chat.domain.Message> loadLatestPage(int chatRoomId, int pageSize) {
+        int token = recentMessageCache.beginLoad(chatRoomId);
+        int limit = Math.max(pageSize, recentMessageCache.messagesPerRoom()) + 1;
+        List<com.example.chat.domain.Message> messages = withArchivedBefore(chatRoomId, null,
+            messageRepository.findLatestPage(chatRoomId, limit), limit);
+
+        List<RecentMessageCache.CachedMessage> entries = new ArrayList<>(messages.size());
+        for (com.example.chat.domain.Message m : messages) {
+            entries.add(new RecentMessageCache.CachedMessage(MessageCursors.toMicros(m.getCreatedAt()), mapMessage(m)));
+        }
+        recentMessageCache.install(chatRoomId, token, entries);
+        return messages.size() > pageSize + 1 ? messages.subList(0, pageSize + 1) : messages;
+    }
+
+    /**
+     * Reads the chunk of a room's history that comes strictly after a cursor.
+     *
+     * @param chatRoomId the ID of the chat room
+     * @param after the cursor to continue after
+     * @param chunkSize the maximum number of messages in the chunk
+     * @return the chunk, carrying the cursor of its last message, or null if no message follows
+     */
+    private MessageChunk readChunk(int chatRoomId, MessageCursor after, int chunkSize) {
+        List<com.example.chat.domain.Message> rows = readPageAfter(chatRoomId, after, chunkSize);
+        if (rows.isEmpty()) {
+            return null;
+        }
+        MessageChunk.Builder chunk = MessageChunk.newBuilder();
+        for (com.example.chat.domain.Message row : rows) {
+            chunk.addMessages(mapMessage(row));
+        }
+        return chunk.setCursor(MessageCursors.of(rows.get(rows.size() - 1))).build();
+    }
+
+    /**
+     * Reads the messages of a room that come strictly after a cursor, oldest first.
+     * The archive is read first, since it holds the oldest messages, and the database
+     * continues the page after the last archived message.
+     *
+     * @param chatRoomId the ID of the chat room
+     * @param after the cursor to continue after
+     * @param limit the maximum number of messages to return
+     * @return up to {@code limit} messages ordered by (created_at, id) ascending
+     */
+    private List<com.example.chat.domain.Message> readPageAfter(int chatRoomId, MessageCursor after, int limit) {
+        List<com.example.chat.domain.Message> archived = messageArchive.pageAfter(chatRoomId, after, limit);
+        if (archived.size() >= limit) {
+            return archived;
+        }
+        MessageCursor from = archived.isEmpty() ? after : MessageCursors.of(archived.get(archived.size() - 1));
+        List<com.example.chat.domain.Message> rows = messageRepository.findPageAfter(chatRoomId,
+            MessageCursors.toInstant(from.getCreatedAtMicros()), from.getId(), limit - archived.size());
+        if (archived.isEmpty()) {
+            return rows;
+        }
+        List<com.example.chat.domain.Message> page = new ArrayList<>(archived);
+        page.addAll(rows);
+        return page;
+    }
+
+    /**
+     * Completes a newest-first page read from the database with archived messages once the
+     * database has no older rows left. The archive is read strictly before the oldest row
+     * returned, so a row being archived concurrently is never returned twice.
+     *
+     * @param chatRoomId the ID of the chat room
+     * @param before the cursor of the page, or null for the newest page
+     * @param rows the rows read from the database, newest first
+     * @param limit the maximum size of the page
+     * @return up to {@code limit} messages ordered by (created_at, id) descending
+     */
+    private List<com.example.chat.domain.Message> withArchivedBefore(int chatRoomId, MessageCursor before,
+            List<com.example.chat.domain.Message> rows, int limit) {
+        if (rows.size() >= limit || messageArchive.watermark(chatRoomId) == null) {
+            return rows;
+        }
+        MessageCursor from = rows.isEmpty() ? before : MessageCursors.of(rows.get(rows.size() - 1));
+        List<com.example.chat.domain.Message> page = new ArrayList<>(rows);
+        page.addAll(messageArchive.pageBefore(chatRoomId, from, limit - rows.size()));
+        return page;
+    }
+
+    /**
+     * Returns the newest message of an inbox room.
+     *
+     * @param room the inbox room
+     * @return the newest message, or the default instance if the room has none
+     */
+    private static Message newestOf(InboxRoom room) {
+        return room.getMessagesCount() == 0
+            ? Message.getDefaultInstance() : room.getMessages(room.getMessagesCount() - 1);
+    }
+
+    /**
+     * Converts an asynchronous failure into the gRPC error reported to the caller.
+     *
+     * @param error the failure, possibly wrapped in a CompletionException
+     * @return the status exception to send
+     */
+    private StatusRuntimeException toStatusException(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof StatusRuntimeException statusException) {
+            return statusException;
+        }
+        return Status.INTERNAL.withDescription(cause.getMessage()).withCause(cause).asRuntimeException();
+    }
+
+    /**
+     * Determines why a conditional UPDATE of a message matched no row.
+     * Only runs on the failure path, so successful edits and deletes need a single statement.
+     *
+     * @param messageId the ID of the message
+     * @param userId the ID of the user attempting the change
+     * @param notOwnerDescription the description used when the user did not send the message
+     * @param deletedDescription the description used when the message is deleted
+     * @return the status to report to the caller
+     */
+    private Status explainRejectedUpdate(int messageId, int userId, String notOwnerDescription,
+        String deletedDescription) {
+        return explainRejectedUpdate(messageRepository.findById(messageId), userId, notOwnerDescription,
+            deletedDescription);
+    }
+
+    /**
+     * Determines why a conditional UPDATE of an already loaded message matched no row.
+     *
+     * @param existing the current state of the message, if it exists
+     * @param userId the ID of the user attempting the change
+     * @param notOwnerDescription the description used when the user did not send the message
+     * @param deletedDescription the description used when the message is deleted
+     * @return the status to report to the caller
+     */
+    private Status explainRejectedUpdate(Optional<com.example.chat.domain.Message> existing, int userId,
+        String notOwnerDescription, String deletedDescription) {
+        if (!existing.isPresent()) {
+            return Status.NOT_FOUND.withDescription("Message not found");
+        }
+        if (!existing.get().getSenderId().equals(userId)) {
+            return Status.PERMISSION_DENIED.withDescription(notOwnerDescription);
+        }
+        if (existing.get().isDeleted()) {
+            return Status.FAILED_PRECONDITION.withDescription(deletedDescription);
+        }
+        return Status.ABORTED.withDescription("Message changed concurrently, retry");
+    }
+
+    /**
+     * Resolves the requested page size, applying the configured default and upper bound.
+     *
+     * @param requested the page size from the request, or 0 for the default
+     * @return the page size to use
+     */
+    private int resolvePageSize(int requested) {
+        if (requested <= 0) {
+            return defaultPageSize;
+        }
+        return Math.min(requested, maxPageSize);
+    }
+
+    /**
+     * Resolves the requested number of rooms per page, applying the default and the upper limit.
+     *
+     * @param requested the page size requested by the client, or 0 for the default
+     * @return the page size to use
+     */
+    private int resolveRoomPageSize(int requested) {
+        if (requested <= 0) {
+            return defaultRoomPageSize;
+        }
+        return Math.min(requested, maxRoomPageSize);
+    }
+
+    /**
+     * Reads one page of chat rooms following an ID. Only the IDs are read, one row more than
+     * the page size to tell whether another page follows.
+     *
+     * @param kind the type of rooms to list
+     * @param afterId the ID to continue after
+     * @param pageSize the maximum number of rooms on the page
+     * @return the page of rooms
+     */
+    private ListChatRoomsResponse readRoomPage(ChatRoomKind kind, int afterId, int pageSize) {
+        PageRequest page = PageRequest.ofSize(pageSize + 1);
+        List<Integer> ids = switch (kind) {
+            case GROUP_ROOM -> chatRoomRepository.findIdsAfterByRoomType(ChatRoomType.GROUP, afterId, page);
+            case PRIVATE_ROOM -> chatRoomRepository.findIdsAfterByRoomType(ChatRoomType.PRIVATE, afterId, page);
+            default -> chatRoomRepository.findIdsAfter(afterId, page);
+        };
+        boolean hasMore = ids.size() > pageSize;
+        if (hasMore) {
+            ids = ids.subList(0, pageSize);
+        }
+
+        ListChatRoomsResponse.Builder builder = ListChatRoomsResponse.newBuilder().setHasMore(hasMore);
+        for (Integer id : ids) {
+            builder.addRooms(mapRoom(id));
+        }
+        return builder.setNextAfterId(ids.isEmpty() ? afterId : ids.get(ids.size() - 1)).build();
+    }
+
+    /**
+     * Publishes a message change to the subscribers of the message's chat room.
+     *
+     * @param type the type of change
+     * @param entity the domain message after the change
+     * @param message the mapped message after the change
+     */
+    private void publish(RoomEvent.Type type, com.example.chat.domain.Message entity,
+        com.example.chat.grpc.Message message) {
+        roomEventHub.publish(RoomEvent.newBuilder()
+            .setType(type)
+            .setChatRoomId(message.getChatRoomId())
+            .setMessage(message)
+            .setCursor(MessageCursors.of(entity))
+            .build());
+    }
+
     /**
      * Maps a domain ChatRoom entity to a protobuf ChatRoom message.
      *
@@ -271,28 +973,54 @@ public class ChatServiceImpl extends ChatServiceImplBase {
      * @return the protobuf chat room message
      */
     private com.example.chat.grpc.ChatRoom mapRoom(ChatRoom room) {
-        String name = "Room " + room.getId();
+        return mapRoom(room.getId());
+    }
+
+    /**
+     * Maps a chat room ID to a protobuf ChatRoom message.
+     *
+     * @param id the ID of the chat room
+     * @return the protobuf chat room message
+     */
+    private com.example.chat.grpc.ChatRoom mapRoom(int id) {
+        String name = "Room " + id;
         return com.example.chat.grpc.ChatRoom.newBuilder()
-            .setId(room.getId())
+            .setId(id)
             .setName(name)
             .build();
     }
 
     /**
-     * Maps a domain Message entity to a protobuf Message message.
+     * Maps a domain Message entity to a protobuf Message message, reusing the cached
+     * protobuf message when the entity's change version has been mapped before.
      *
      * @param message the domain message entity
      * @return the protobuf message
      */
     private com.example.chat.grpc.Message mapMessage(com.example.chat.domain.Message message) {
+        return messageProtoCache.get(message, this::buildMessage);
+    }
+
+    /**
+     * Builds a new protobuf Message message from a domain Message entity.
+     * Compressed texts are only decompressed here, so messages served from the
+     * protobuf cache are never decompressed again.
+     *
+     * @param message the domain message entity
+     * @return the protobuf message
+     */
+    private com.example.chat.grpc.Message buildMessage(com.example.chat.domain.Message message) {
+        String text = textCodec.text(message);
         com.example.chat.grpc.Message.Builder builder = com.example.chat.grpc.Message.newBuilder()
             .setId(message.getId())
             .setChatRoomId(message.getChatRoomId())
             .setSenderId(message.getSenderId())
-            .setText(message.getText() == null ? "" : message.getText())
+            .setText(text == null ? "" : text)
             .setSentAtUnix(message.getCreatedAt() != null ? message.getCreatedAt().getEpochSecond() : Instant.now().getEpochSecond())
             .setIsEdited(message.isEdited())
-            .setIsDeleted(message.isDeleted());
+            .setIsDeleted(message.isDeleted())
+            .setChangeVersion(message.getChangeVersion())
+            .setSeq(message.getSeq());
         return builder.build();
     }
 }
\ No newline at end of file
@@ -0,0 +1,189 @@
+package com.example.chat.grpc;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+import com.example.chat.events.RoomEventHub;
+import com.example.chat.repositories.ChatRoomRepository;
+
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+/**
+ * Server side of a long-lived bidirectional ChatSession stream.
+ * Commands received from the client are dispatched to the same handlers as the unary RPCs
+ * of {@link ChatServiceImpl}, and their outcomes are sent back as {@link CommandAck} frames.
+ * Events of the rooms the session has joined are pushed on the same stream. All outbound
+ * frames go through one bounded {@link OutboundStream}, so a session that stops reading is
+ * closed instead of buffering without limit.
+ */
+public class ChatSessionStream implements StreamObserver<ChatCommand> {
+
+    private final ChatServiceImpl service;
+    private final ChatRoomRepository chatRoomRepository;
+    private final RoomEventHub roomEventHub;
+    private final OutboundStream<ChatFrame> outbound;
+    private final Map<Integer, Runnable> joinedRooms = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new ChatSessionStream.
+     * Must be created while the gRPC handler method is still running.
+     *
+     * @param service the service whose handlers execute the commands
+     * @param chatRoomRepository the repository used to check rooms before joining them
+     * @param roomEventHub the hub delivering the events of joined rooms
+     * @param observer the server call observer the frames are written to
+     * @param maxPendingFrames the maximum number of frames queued while the client is not reading
+     */
+    public ChatSessionStream(ChatServiceImpl service, ChatRoomRepository chatRoomRepository, RoomEventHub roomEventHub,
+            ServerCallStreamObserver<ChatFrame> observer, int maxPendingFrames) {
+        this.service = service;
+        this.chatRoomRepository = chatRoomRepository;
+        this.roomEventHub = roomEventHub;
+        this.outbound = new OutboundStream<>(observer, maxPendingFrames);
+        this.outbound.onClose(this::leaveAll);
+    }
+
+    /**
+     * Dispatches a command received from the client.
+     *
+     * @param command the command to execute
+     */
+    @Override
+    public void onNext(ChatCommand command) {
+        long commandId = command.getCommandId();
+        try {
+            switch (command.getCommandCase()) {
+                case SEND -> service.sendMessage(command.getSend(),
+                    new AckObserver<>(commandId, SendMessageResponse::getMessage));
+                case EDIT -> service.editMessage(command.getEdit(), new AckObserver<>(commandId, m -> m));
+                case DELETE -> service.deleteMessage(command.getDelete(), new AckObserver<>(commandId, m -> m));
+                case JOIN -> join(commandId, command.getJoin().getChatRoomId());
+                case LEAVE -> leave(commandId, command.getLeave().getChatRoomId());
+                case TYPING -> service.setTyping(command.getTyping(), new AckObserver<>(commandId, empty -> null));
+                default -> ack(commandId, Status.INVALID_ARGUMENT.withDescription("Unknown command"), null);
+            }
+        } catch (Exception ex) {
+            ack(commandId, Status.INTERNAL.withDescription(ex.getMessage()), null);
+        }
+    }
+
+    /**
+     * Closes the session after the client has failed or cancelled its side of the stream.
+     *
+     * @param t the error reported by the client side
+     */
+    @Override
+    public void onError(Throwable t) {
+        leaveAll();
+    }
+
+    /**
+     * Completes the session once the client has finished sending commands.
+     * Frames already queued are still delivered.
+     */
+    @Override
+    public void onCompleted() {
+        leaveAll();
+        outbound.complete();
+    }
+
+    /**
+     * Subscribes the session to a room's events.
+     *
+     * @param commandId the ID of the join command
+     * @param chatRoomId the ID of the room to join
+     */
+    private void join(long commandId, int chatRoomId) {
+        if (!chatRoomRepository.existsById(chatRoomId)) {
+            ack(commandId, Status.NOT_FOUND.withDescription("Chat room not found"), null);
+            return;
+        }
+        joinedRooms.computeIfAbsent(chatRoomId, id -> roomEventHub.subscribe(id,
+            event -> outbound.send(ChatFrame.newBuilder().setEvent(event).build())));
+        if (outbound.isClosed()) {
+            leaveAll();
+            return;
+        }
+        ack(commandId, Status.OK, null);
+    }
+
+    /**
+     * Unsubscribes the session from a room's events.
+     *
+     * @param commandId the ID of the leave command
+     * @param chatRoomId the ID of the room to leave
+     */
+    private void leave(long commandId, int chatRoomId) {
+        Runnable unsubscribe = joinedRooms.remove(chatRoomId);
+        if (unsubscribe != null) {
+            unsubscribe.run();
+        }
+        ack(commandId, Status.OK, null);
+    }
+
+    /**
+     * Removes all room subscriptions of the session.
+     */
+    private void leaveAll() {
+        for (Integer chatRoomId : joinedRooms.keySet()) {
+            Runnable unsubscribe = joinedRooms.remove(chatRoomId);
+            if (unsubscribe != null) {
+                unsubscribe.run();
+            }
+        }
+    }
+
+    /**
+     * Sends the acknowledgement of a command.
+     *
+     * @param commandId the ID of the acknowledged command
+     * @param status the outcome of the command
+     * @param message the affected message, or null
+     */
+    private void ack(long commandId, Status status, Message message) {
+        CommandAck.Builder ack = CommandAck.newBuilder()
+            .setCommandId(commandId)
+            .setCode(status.getCode().value());
+        if (status.getDescription() != null) {
+            ack.setDescription(status.getDescription());
+        }
+        if (message != null) {
+            ack.setMessage(message);
+        }
+        outbound.send(ChatFrame.newBuilder().setAck(ack).build());
+    }
+
+    /**
+     * Adapts the response observer of a unary handler into an acknowledgement of a session command.
+     *
+     * @param <T> the response type of the unary handler
+     */
+    private final class AckObserver<T> implements StreamObserver<T> {
+
+        private final long commandId;
+        private final Function<T, Message> messageOf;
+
+        AckObserver(long commandId, Function<T, Message> messageOf) {
+            this.commandId = commandId;
+            this.messageOf = messageOf;
+        }
+
+        @Override
+        public void onNext(T value) {
+            ack(commandId, Status.OK, messageOf.apply(value));
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            ack(commandId, Status.fromThrowable(t), null);
+        }
+
+        @Override
+        public void onCompleted() {
+            // The acknowledgement was already sent with the response.
+        }
+    }
+}
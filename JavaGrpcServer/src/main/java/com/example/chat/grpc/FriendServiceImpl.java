@@ -1,10 +1,13 @@
 package com.example.chat.grpc;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.example.chat.domain.ChatRoom;
 import com.example.chat.domain.ChatRoomMembership;
@@ -17,6 +20,7 @@ import com.example.chat.domain.MembershipRole;
 import com.example.chat.domain.PrivateChatRoom;
 import com.example.chat.domain.User;
 import com.example.chat.grpc.FriendServiceGrpc.FriendServiceImplBase;
+import com.example.chat.outbox.Outbox;
 import com.example.chat.repositories.ChatRoomMembershipRepository;
 import com.example.chat.repositories.ChatRoomRepository;
 import com.example.chat.repositories.FriendRequestRepository;
@@ -44,6 +48,8 @@ public class FriendServiceImpl extends FriendServiceImplBase {
     private final PrivateChatRoomRepository privateChatRoomRepository;
     private final ChatRoomMembershipRepository membershipRepository;
     private final UserRepository userRepository;
+    private final Outbox outbox;
+    private final TransactionTemplate transactionTemplate;
 
     @PersistenceContext
     private EntityManager entityManager;
@@ -57,6 +63,8 @@ public class FriendServiceImpl extends FriendServiceImplBase {
      * @param privateChatRoomRepository the repository for private chat room data access
      * @param membershipRepository the repository for chat room membership data access
      * @param userRepository the repository for user data access
+     * @param outbox the transactional outbox recording friend requests, friendships and new private chats
+     * @param transactionManager the transaction manager the writes are committed with before replying
      */
     public FriendServiceImpl(
         FriendRequestRepository friendRequestRepository,
@@ -64,19 +72,25 @@ public class FriendServiceImpl extends FriendServiceImplBase {
         ChatRoomRepository chatRoomRepository,
         PrivateChatRoomRepository privateChatRoomRepository,
         ChatRoomMembershipRepository membershipRepository,
-        UserRepository userRepository) {
+        UserRepository userRepository,
+        Outbox outbox,
+        PlatformTransactionManager transactionManager) {
         this.friendRequestRepository = friendRequestRepository;
         this.friendshipRepository = friendshipRepository;
         this.chatRoomRepository = chatRoomRepository;
         this.privateChatRoomRepository = privateChatRoomRepository;
         this.membershipRepository = membershipRepository;
         this.userRepository = userRepository;
+        this.outbox = outbox;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     /**
      * Sends a friend request from one user to another.
      * Validates that users exist, are not the same person, are not already friends,
      * and don't have a pending request.
+     * The request is written in one transaction with its outbox event, and the reply is sent
+     * only after it has committed.
      *
      * @param request the request containing requester ID and target username
      * @param responseObserver the observer to receive the response or error
@@ -91,44 +105,47 @@ public class FriendServiceImpl extends FriendServiceImplBase {
                 return;
             }
 
-            Optional<User> sender = userRepository.findById(request.getRequesterId());
-            Optional<User> receiver = userRepository.findByUsername(request.getTargetUsername().trim().toLowerCase());
-
-            if (sender.isEmpty() || receiver.isEmpty()) {
-                responseObserver.onError(Status.NOT_FOUND
-                    .withDescription("User not found")
-                    .asRuntimeException());
-                return;
-            }
-
-            if (sender.get().getId().equals(receiver.get().getId())) {
-                responseObserver.onError(Status.INVALID_ARGUMENT
-                    .withDescription("Cannot add yourself")
-                    .asRuntimeException());
-                return;
-            }
-
-            if (friendshipRepository.existsByIdUserIdAndIdFriendId(sender.get().getId(), receiver.get().getId())) {
-                responseObserver.onError(Status.ALREADY_EXISTS
-                    .withDescription("Already friends")
-                    .asRuntimeException());
-                return;
-            }
-
-            if (friendRequestRepository.findBySenderIdAndReceiverId(sender.get().getId(), receiver.get().getId()).isPresent()) {
-                responseObserver.onError(Status.ALREADY_EXISTS
-                    .withDescription("Request already sent")
-                    .asRuntimeException());
-                return;
-            }
-
-            FriendRequest entity = new FriendRequest();
-            entity.setSender(sender.get());
-            entity.setReceiver(receiver.get());
-            entity = friendRequestRepository.save(entity);
-
-            responseObserver.onNext(toDto(entity));
+            FriendRequestDto sent = transactionTemplate.execute(status -> {
+                Optional<User> sender = userRepository.findById(request.getRequesterId());
+                Optional<User> receiver = userRepository.findByUsername(request.getTargetUsername().trim().toLowerCase());
+
+                if (sender.isEmpty() || receiver.isEmpty()) {
+                    throw Status.NOT_FOUND
+                        .withDescription("User not found")
+                        .asRuntimeException();
+                }
+
+                if (sender.get().getId().equals(receiver.get().getId())) {
+                    throw Status.INVALID_ARGUMENT
+                        .withDescription("Cannot add yourself")
+                        .asRuntimeException();
+                }
+
+                if (friendshipRepository.existsByIdUserIdAndIdFriendId(sender.get().getId(), receiver.get().getId())) {
+                    throw Status.ALREADY_EXISTS
+                        .withDescription("Already friends")
+                        .asRuntimeException();
+                }
+
+                if (friendRequestRepository.findBySenderIdAndReceiverId(sender.get().getId(), receiver.get().getId()).isPresent()) {
+                    throw Status.ALREADY_EXISTS
+                        .withDescription("Request already sent")
+                        .asRuntimeException();
+                }
+
+                FriendRequest entity = new FriendRequest();
+                entity.setSender(sender.get());
+                entity.setReceiver(receiver.get());
+                entity = friendRequestRepository.save(entity);
+                FriendRequestDto dto = toDto(entity);
+                outbox.append(DomainEvent.newBuilder().setFriendRequestSent(dto).build());
+                return dto;
+            });
+
+            responseObserver.onNext(sent);
             responseObserver.onCompleted();
+        } catch (StatusRuntimeException ex) {
+            responseObserver.onError(ex);
         } catch (Exception ex) {
             responseObserver.onError(Status.INTERNAL.withDescription(ex.getMessage())
                 .withCause(ex).asRuntimeException());
@@ -138,6 +155,8 @@ public class FriendServiceImpl extends FriendServiceImplBase {
     /**
      * Responds to a friend request by accepting or declining it.
      * If accepted, creates bidirectional friendship records and a private chat room.
+     * All rows are written in one transaction together with the outbox event, so their
+     * inserts are sent as JDBC batches. The reply is sent only after the transaction has committed.
      *
      * @param request the request containing request ID and accept/decline decision
      * @param responseObserver the observer to receive the response or error
@@ -146,29 +165,34 @@ public class FriendServiceImpl extends FriendServiceImplBase {
     public void respondFriendRequest(RespondFriendRequestRequest request,
         StreamObserver<FriendRequestDto> responseObserver) {
         try {
-            FriendRequest fr = friendRequestRepository.findById(request.getRequestId())
-                .orElseThrow(() -> Status.NOT_FOUND
-                    .withDescription("Request not found")
-                    .asRuntimeException());
-
-            if (fr.getStatus() != FriendRequestStatus.PENDING) {
-                responseObserver.onError(Status.FAILED_PRECONDITION
-                    .withDescription("Request already handled")
-                    .asRuntimeException());
-                return;
-            }
-
-            fr.setStatus(request.getAccept() ? FriendRequestStatus.ACCEPTED : FriendRequestStatus.DECLINED);
-            fr.setRespondedAt(Instant.now());
-            friendRequestRepository.save(fr);
-
-            if (fr.getStatus() == FriendRequestStatus.ACCEPTED) {
-                createFriendship(fr.getSender(), fr.getReceiver());
-                createFriendship(fr.getReceiver(), fr.getSender());
-                ensurePrivateChat(fr.getSender(), fr.getReceiver());
-            }
-
-            responseObserver.onNext(toDto(fr));
+            FriendRequestDto answered = transactionTemplate.execute(status -> {
+                FriendRequest fr = friendRequestRepository.findById(request.getRequestId())
+                    .orElseThrow(() -> Status.NOT_FOUND
+                        .withDescription("Request not found")
+                        .asRuntimeException());
+
+                if (fr.getStatus() != FriendRequestStatus.PENDING) {
+                    throw Status.FAILED_PRECONDITION
+                        .withDescription("Request already handled")
+                        .asRuntimeException();
+                }
+
+                fr.setStatus(request.getAccept() ? FriendRequestStatus.ACCEPTED : FriendRequestStatus.DECLINED);
+                fr.setRespondedAt(Instant.now());
+                friendRequestRepository.save(fr);
+
+                if (fr.getStatus() == FriendRequestStatus.ACCEPTED) {
+                    createFriendship(fr.getSender(), fr.getReceiver());
+                    createFriendship(fr.getReceiver(), fr.getSender());
+                    ensurePrivateChat(fr.getSender(), fr.getReceiver());
+                }
+                friendRequestRepository.flush();
+                FriendRequestDto dto = toDto(fr);
+                outbox.append(DomainEvent.newBuilder().setFriendRequestAnswered(dto).build());
+                return dto;
+            });
+
+            responseObserver.onNext(answered);
             responseObserver.onCompleted();
         } catch (StatusRuntimeException ex) {
             responseObserver.onError(ex);
@@ -231,7 +255,8 @@ public class FriendServiceImpl extends FriendServiceImplBase {
 
     /**
      * Removes a friendship between two users.
-     * Deletes both friendship records (bidirectional).
+     * Deletes both friendship records (bidirectional) in one transaction with the outbox event,
+     * and replies only after it has committed.
      *
      * @param request the request containing user ID and friend ID
      * @param responseObserver the observer to receive the response or error
@@ -240,8 +265,11 @@ public class FriendServiceImpl extends FriendServiceImplBase {
     public void removeFriend(RemoveFriendRequest request,
         StreamObserver<com.google.protobuf.Empty> responseObserver) {
         try {
-            friendshipRepository.deleteById(new FriendshipId(request.getUserId(), request.getFriendId()));
-            friendshipRepository.deleteById(new FriendshipId(request.getFriendId(), request.getUserId()));
+            transactionTemplate.executeWithoutResult(status -> {
+                friendshipRepository.deleteById(new FriendshipId(request.getUserId(), request.getFriendId()));
+                friendshipRepository.deleteById(new FriendshipId(request.getFriendId(), request.getUserId()));
+                outbox.append(DomainEvent.newBuilder().setFriendRemoved(request).build());
+            });
             responseObserver.onNext(com.google.protobuf.Empty.newBuilder().build());
             responseObserver.onCompleted();
         } catch (Exception ex) {
@@ -266,6 +294,7 @@ public class FriendServiceImpl extends FriendServiceImplBase {
      * Ensures a private chat room exists between two users.
      * Creates the chat room and memberships if they don't exist.
      * Users are ordered by ID to ensure consistency.
+     * A new room and its memberships are recorded in the outbox, as requested by {@code userA}.
      *
      * @param userA the first user
      * @param userB the second user
@@ -304,8 +333,23 @@ public class FriendServiceImpl extends FriendServiceImplBase {
         privateRoom = entityManager.merge(privateRoom);
         entityManager.flush();
 
-        addMembership(managedRoom, userA, MembershipRole.MEMBER);
-        addMembership(managedRoom, userB, MembershipRole.MEMBER);
+        List<DomainEvent> events = new ArrayList<>(3);
+        events.add(DomainEvent.newBuilder()
+            .setRoomCreated(com.example.chat.grpc.ChatRoom.newBuilder()
+                .setId(roomId)
+                .setName(firstUser.getUsername() + " & " + secondUser.getUsername()))
+            .build());
+        for (User user : List.of(userA, userB)) {
+            if (addMembership(managedRoom, user, MembershipRole.MEMBER)) {
+                events.add(DomainEvent.newBuilder()
+                    .setMemberAdded(AddMemberRequest.newBuilder()
+                        .setChatRoomId(roomId)
+                        .setRequesterId(userA.getId())
+                        .setUserId(user.getId()))
+                    .build());
+            }
+        }
+        outbox.appendAll(events);
     }
 
     /**
@@ -315,10 +359,11 @@ public class FriendServiceImpl extends FriendServiceImplBase {
      * @param room the chat room
      * @param user the user to add
      * @param role the role to assign to the user
+     * @return true if the membership was created
      */
-    private void addMembership(ChatRoom room, User user, MembershipRole role) {
+    private boolean addMembership(ChatRoom room, User user, MembershipRole role) {
         if (membershipRepository.existsByChatRoomAndUser(room, user)) {
-            return;
+            return false;
         }
 
         ChatRoomMembership membership = new ChatRoomMembership();
@@ -326,6 +371,7 @@ public class FriendServiceImpl extends FriendServiceImplBase {
         membership.setUser(user);
         membership.setRole(role);
         membershipRepository.save(membership);
+        return true;
     }
 
     /**
@@ -1,11 +1,15 @@
 package com.example.chat.grpc;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.example.chat.domain.ChatRoom;
 import com.example.chat.domain.ChatRoomMembership;
@@ -14,19 +18,23 @@ import com.example.chat.domain.GroupChatRoom;
 import com.example.chat.domain.MembershipRole;
 import com.example.chat.domain.PrivateChatRoom;
 import com.example.chat.domain.User;
+import com.example.chat.events.RoomEventHub;
+import com.example.chat.outbox.Outbox;
 import com.example.chat.grpc.GroupChatServiceGrpc.GroupChatServiceImplBase;
 import com.example.chat.repositories.ChatRoomMembershipRepository;
 import com.example.chat.repositories.ChatRoomRepository;
 import com.example.chat.repositories.GroupChatRoomRepository;
 import com.example.chat.repositories.PrivateChatRoomRepository;
 import com.example.chat.repositories.UserRepository;
+import com.example.chat.summary.RoomSummaries;
+import com.example.chat.unread.UnreadCounters;
 import com.google.protobuf.Empty;
 
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
-import org.springframework.transaction.annotation.Transactional;
 
 import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
 import io.grpc.stub.StreamObserver;
 
 /**
@@ -42,6 +50,11 @@ public class GroupChatServiceImpl extends GroupChatServiceImplBase {
     private final PrivateChatRoomRepository privateChatRoomRepository;
     private final ChatRoomMembershipRepository membershipRepository;
     private final UserRepository userRepository;
+    private final UnreadCounters unreadCounters;
+    private final RoomSummaries roomSummaries;
+    private final RoomEventHub roomEventHub;
+    private final Outbox outbox;
+    private final TransactionTemplate transactionTemplate;
 
     @PersistenceContext
     private EntityManager entityManager;
@@ -54,22 +67,39 @@ public class GroupChatServiceImpl extends GroupChatServiceImplBase {
      * @param privateChatRoomRepository the repository for private chat room data access
      * @param membershipRepository the repository for chat room membership data access
      * @param userRepository the repository for user data access
+     * @param unreadCounters the in-memory unread counters and read markers
+     * @param roomSummaries the read model of each room's latest activity
+     * @param roomEventHub the hub membership changes are published to
+     * @param outbox the transactional outbox recording new rooms and membership changes
+     * @param transactionManager the transaction manager the writes are committed with before replying
      */
     public GroupChatServiceImpl(
             ChatRoomRepository chatRoomRepository,
             GroupChatRoomRepository groupChatRoomRepository,
             PrivateChatRoomRepository privateChatRoomRepository,
             ChatRoomMembershipRepository membershipRepository,
-            UserRepository userRepository) {
+            UserRepository userRepository,
+            UnreadCounters unreadCounters,
+            RoomSummaries roomSummaries,
+            RoomEventHub roomEventHub,
+            Outbox outbox,
+            PlatformTransactionManager transactionManager) {
         this.chatRoomRepository = chatRoomRepository;
         this.groupChatRoomRepository = groupChatRoomRepository;
         this.privateChatRoomRepository = privateChatRoomRepository;
         this.membershipRepository = membershipRepository;
         this.userRepository = userRepository;
+        this.unreadCounters = unreadCounters;
+        this.roomSummaries = roomSummaries;
+        this.roomEventHub = roomEventHub;
+        this.outbox = outbox;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     /**
      * Creates a new group chat with the specified owner and members.
+     * All rows are written in one transaction, so the membership inserts are sent as a JDBC batch.
+     * The reply is sent only after the transaction has committed.
      *
      * @param request the request containing owner ID, group name, description, and member IDs
      * @param responseObserver the observer to receive the response or error
@@ -77,54 +107,58 @@ public class GroupChatServiceImpl extends GroupChatServiceImplBase {
     @Override
     public void createGroupChat(CreateGroupChatRequest request, StreamObserver<CreateGroupChatResponse> responseObserver) {
         try {
-            Optional<User> ownerOpt = userRepository.findById(request.getOwnerId());
-            if (!ownerOpt.isPresent()) {
-                responseObserver.onError(Status.NOT_FOUND.withDescription("Owner not found").asRuntimeException());
-                return;
-            }
-
-            User owner = ownerOpt.get();
-
-            // Create ChatRoom
-            ChatRoom chatRoom = new ChatRoom();
-            chatRoom.setRoomType(ChatRoomType.GROUP);
-            chatRoom.setOwner(owner);
-            chatRoom = chatRoomRepository.save(chatRoom);
-
-            // Create GroupChatRoom
-            GroupChatRoom groupChatRoom = new GroupChatRoom();
-            groupChatRoom.setChatRoomId(chatRoom.getId());
-            groupChatRoom.setName(request.getName());
-            groupChatRoom.setDescription(request.getDescription());
-            groupChatRoom = groupChatRoomRepository.save(groupChatRoom);
-
-            // Add owner as OWNER
-            ChatRoomMembership ownerMembership = new ChatRoomMembership();
-            ownerMembership.setChatRoom(chatRoom);
-            ownerMembership.setUser(owner);
-            ownerMembership.setRole(MembershipRole.OWNER);
-            membershipRepository.save(ownerMembership);
-
-            // Add other members
-            for (int userId : request.getMemberIdsList()) {
-                if (userId == owner.getId()) {
-                    continue; // Skip owner, already added
-                }
-                Optional<User> memberOpt = userRepository.findById(userId);
-                if (memberOpt.isPresent()) {
-                    ChatRoomMembership membership = new ChatRoomMembership();
-                    membership.setChatRoom(chatRoom);
-                    membership.setUser(memberOpt.get());
-                    membership.setRole(MembershipRole.MEMBER);
-                    membershipRepository.save(membership);
+            com.example.chat.grpc.ChatRoom created = transactionTemplate.execute(status -> {
+                User owner = userRepository.findById(request.getOwnerId())
+                        .orElseThrow(() -> Status.NOT_FOUND.withDescription("Owner not found").asRuntimeException());
+
+                // Create ChatRoom
+                ChatRoom chatRoom = new ChatRoom();
+                chatRoom.setRoomType(ChatRoomType.GROUP);
+                chatRoom.setOwner(owner);
+                chatRoom = chatRoomRepository.save(chatRoom);
+
+                // Create GroupChatRoom
+                GroupChatRoom groupChatRoom = new GroupChatRoom();
+                groupChatRoom.setChatRoomId(chatRoom.getId());
+                groupChatRoom.setName(request.getName());
+                groupChatRoom.setDescription(request.getDescription());
+                groupChatRoom = groupChatRoomRepository.save(groupChatRoom);
+
+                // Add owner as OWNER
+                ChatRoomMembership ownerMembership = new ChatRoomMembership();
+                ownerMembership.setChatRoom(chatRoom);
+                ownerMembership.setUser(owner);
+                ownerMembership.setRole(MembershipRole.OWNER);
+                membershipRepository.save(ownerMembership);
+
+                // Add other members
+                for (int userId : request.getMemberIdsList()) {
+                    if (userId == owner.getId()) {
+                        continue; // Skip owner, already added
+                    }
+                    Optional<User> memberOpt = userRepository.findById(userId);
+                    if (memberOpt.isPresent()) {
+                        ChatRoomMembership membership = new ChatRoomMembership();
+                        membership.setChatRoom(chatRoom);
+                        membership.setUser(memberOpt.get());
+                        membership.setRole(MembershipRole.MEMBER);
+                        membershipRepository.save(membership);
+                    }
                 }
-            }
+                membershipRepository.flush();
+
+                com.example.chat.grpc.ChatRoom room = mapChatRoom(chatRoom, groupChatRoom.getName());
+                outbox.append(DomainEvent.newBuilder().setRoomCreated(room).build());
+                return room;
+            });
 
             responseObserver.onNext(CreateGroupChatResponse.newBuilder()
-                    .setRoom(mapChatRoom(chatRoom, groupChatRoom.getName()))
+                    .setRoom(created)
                     .build());
             responseObserver.onCompleted();
 
+        } catch (StatusRuntimeException ex) {
+            responseObserver.onError(ex);
         } catch (Exception ex) {
             responseObserver.onError(Status.INTERNAL.withDescription(ex.getMessage()).withCause(ex).asRuntimeException());
         }
@@ -133,6 +167,8 @@ public class GroupChatServiceImpl extends GroupChatServiceImplBase {
     /**
      * Adds a member to a group chat.
      * Requires the requester to be an OWNER or ADMIN of the group.
+     * The membership is written in one transaction with its outbox event; once it has
+     * committed, the room event is published and then the reply sent.
      *
      * @param request the request containing chat room ID, requester ID, and user ID to add
      * @param responseObserver the observer to receive the response or error
@@ -140,53 +176,42 @@ public class GroupChatServiceImpl extends GroupChatServiceImplBase {
     @Override
     public void addMember(AddMemberRequest request, StreamObserver<Empty> responseObserver) {
         try {
-            Optional<ChatRoom> roomOpt = chatRoomRepository.findById(request.getChatRoomId());
-            if (!roomOpt.isPresent()) {
-                responseObserver.onError(Status.NOT_FOUND.withDescription("Chat room not found").asRuntimeException());
-                return;
-            }
-
-            ChatRoom room = roomOpt.get();
-            if (room.getRoomType() != ChatRoomType.GROUP) {
-                responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("Not a group chat").asRuntimeException());
-                return;
-            }
-
-            // Check requester has permission (OWNER or ADMIN)
-            Optional<User> requesterOpt = userRepository.findById(request.getRequesterId());
-            if (!requesterOpt.isPresent()) {
-                responseObserver.onError(Status.NOT_FOUND.withDescription("Requester not found").asRuntimeException());
-                return;
-            }
-
-            Optional<ChatRoomMembership> requesterMembership = membershipRepository.findByChatRoomAndUser(room, requesterOpt.get());
-            if (!requesterMembership.isPresent() ||
-                    (requesterMembership.get().getRole() != MembershipRole.OWNER &&
-                     requesterMembership.get().getRole() != MembershipRole.ADMIN)) {
-                responseObserver.onError(Status.PERMISSION_DENIED.withDescription("Insufficient permissions").asRuntimeException());
-                return;
-            }
+            transactionTemplate.executeWithoutResult(status -> {
+                ChatRoom room = findGroupRoom(request.getChatRoomId());
+
+                // Check requester has permission (OWNER or ADMIN)
+                User requester = userRepository.findById(request.getRequesterId())
+                        .orElseThrow(() -> Status.NOT_FOUND.withDescription("Requester not found").asRuntimeException());
+
+                Optional<ChatRoomMembership> requesterMembership = membershipRepository.findByChatRoomAndUser(room, requester);
+                if (!requesterMembership.isPresent() ||
+                        (requesterMembership.get().getRole() != MembershipRole.OWNER &&
+                         requesterMembership.get().getRole() != MembershipRole.ADMIN)) {
+                    throw Status.PERMISSION_DENIED.withDescription("Insufficient permissions").asRuntimeException();
+                }
 
-            Optional<User> userOpt = userRepository.findById(request.getUserId());
-            if (!userOpt.isPresent()) {
-                responseObserver.onError(Status.NOT_FOUND.withDescription("User not found").asRuntimeException());
-                return;
-            }
+                User user = userRepository.findById(request.getUserId())
+                        .orElseThrow(() -> Status.NOT_FOUND.withDescription("User not found").asRuntimeException());
 
-            if (membershipRepository.existsByChatRoomAndUser(room, userOpt.get())) {
-                responseObserver.onError(Status.ALREADY_EXISTS.withDescription("User already a member").asRuntimeException());
-                return;
-            }
+                if (membershipRepository.existsByChatRoomAndUser(room, user)) {
+                    throw Status.ALREADY_EXISTS.withDescription("User already a member").asRuntimeException();
+                }
 
-            ChatRoomMembership membership = new ChatRoomMembership();
-            membership.setChatRoom(room);
-            membership.setUser(userOpt.get());
-            membership.setRole(MembershipRole.MEMBER);
-            membershipRepository.save(membership);
+                ChatRoomMembership membership = new ChatRoomMembership();
+                membership.setChatRoom(room);
+                membership.setUser(user);
+                membership.setRole(MembershipRole.MEMBER);
+                membershipRepository.save(membership);
+                outbox.append(DomainEvent.newBuilder().setMemberAdded(request).build());
+            });
 
+            // Published before replying, so derived state such as unread counters is current for the caller
+            publishMembership(RoomEvent.Type.MEMBER_ADDED, request.getChatRoomId(), request.getUserId());
             responseObserver.onNext(Empty.getDefaultInstance());
             responseObserver.onCompleted();
 
+        } catch (StatusRuntimeException ex) {
+            responseObserver.onError(ex);
         } catch (Exception ex) {
             responseObserver.onError(Status.INTERNAL.withDescription(ex.getMessage()).withCause(ex).asRuntimeException());
         }
@@ -195,6 +220,8 @@ public class GroupChatServiceImpl extends GroupChatServiceImplBase {
     /**
      * Removes a member from a group chat.
      * Requires the requester to be an OWNER or ADMIN. Cannot remove the owner.
+     * The membership is deleted in one transaction with its outbox event; once it has
+     * committed, the room event is published and then the reply sent.
      *
      * @param request the request containing chat room ID, requester ID, and user ID to remove
      * @param responseObserver the observer to receive the response or error
@@ -202,63 +229,83 @@ public class GroupChatServiceImpl extends GroupChatServiceImplBase {
     @Override
     public void removeMember(RemoveMemberRequest request, StreamObserver<Empty> responseObserver) {
         try {
-            Optional<ChatRoom> roomOpt = chatRoomRepository.findById(request.getChatRoomId());
-            if (!roomOpt.isPresent()) {
-                responseObserver.onError(Status.NOT_FOUND.withDescription("Chat room not found").asRuntimeException());
-                return;
-            }
+            transactionTemplate.executeWithoutResult(status -> {
+                ChatRoom room = findGroupRoom(request.getChatRoomId());
 
-            ChatRoom room = roomOpt.get();
-            if (room.getRoomType() != ChatRoomType.GROUP) {
-                responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("Not a group chat").asRuntimeException());
-                return;
-            }
+                User requester = userRepository.findById(request.getRequesterId())
+                        .orElseThrow(() -> Status.NOT_FOUND.withDescription("Requester not found").asRuntimeException());
 
-            Optional<User> requesterOpt = userRepository.findById(request.getRequesterId());
-            if (!requesterOpt.isPresent()) {
-                responseObserver.onError(Status.NOT_FOUND.withDescription("Requester not found").asRuntimeException());
-                return;
-            }
+                Optional<ChatRoomMembership> requesterMembership = membershipRepository.findByChatRoomAndUser(room, requester);
+                if (!requesterMembership.isPresent() ||
+                        (requesterMembership.get().getRole() != MembershipRole.OWNER &&
+                         requesterMembership.get().getRole() != MembershipRole.ADMIN)) {
+                    throw Status.PERMISSION_DENIED.withDescription("Insufficient permissions").asRuntimeException();
+                }
 
-            Optional<ChatRoomMembership> requesterMembership = membershipRepository.findByChatRoomAndUser(room, requesterOpt.get());
-            if (!requesterMembership.isPresent() ||
-                    (requesterMembership.get().getRole() != MembershipRole.OWNER &&
-                     requesterMembership.get().getRole() != MembershipRole.ADMIN)) {
-                responseObserver.onError(Status.PERMISSION_DENIED.withDescription("Insufficient permissions").asRuntimeException());
-                return;
-            }
+                User user = userRepository.findById(request.getUserId())
+                        .orElseThrow(() -> Status.NOT_FOUND.withDescription("User not found").asRuntimeException());
 
-            Optional<User> userOpt = userRepository.findById(request.getUserId());
-            if (!userOpt.isPresent()) {
-                responseObserver.onError(Status.NOT_FOUND.withDescription("User not found").asRuntimeException());
-                return;
-            }
+                ChatRoomMembership membership = membershipRepository.findByChatRoomAndUser(room, user)
+                        .orElseThrow(() -> Status.NOT_FOUND.withDescription("User not a member").asRuntimeException());
 
-            Optional<ChatRoomMembership> membership = membershipRepository.findByChatRoomAndUser(room, userOpt.get());
-            if (!membership.isPresent()) {
-                responseObserver.onError(Status.NOT_FOUND.withDescription("User not a member").asRuntimeException());
-                return;
-            }
-
-            // Prevent removing owner
-            if (membership.get().getRole() == MembershipRole.OWNER) {
-                responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("Cannot remove owner").asRuntimeException());
-                return;
-            }
+                // Prevent removing owner
+                if (membership.getRole() == MembershipRole.OWNER) {
+                    throw Status.INVALID_ARGUMENT.withDescription("Cannot remove owner").asRuntimeException();
+                }
 
-            membershipRepository.delete(membership.get());
+                membershipRepository.delete(membership);
+                outbox.append(DomainEvent.newBuilder().setMemberRemoved(request).build());
+            });
 
+            // Published before replying, so derived state such as unread counters is current for the caller
+            publishMembership(RoomEvent.Type.MEMBER_REMOVED, request.getChatRoomId(), request.getUserId());
             responseObserver.onNext(Empty.getDefaultInstance());
             responseObserver.onCompleted();
 
+        } catch (StatusRuntimeException ex) {
+            responseObserver.onError(ex);
         } catch (Exception ex) {
             responseObserver.onError(Status.INTERNAL.withDescription(ex.getMessage()).withCause(ex).asRuntimeException());
         }
     }
 
+    /**
+     * Loads a group chat room inside the current transaction.
+     *
+     * @param chatRoomId the ID of the chat room
+     * @return the chat room
+     * @throws StatusRuntimeException NOT_FOUND if the room does not exist, INVALID_ARGUMENT if it is not a group
+     */
+    private ChatRoom findGroupRoom(int chatRoomId) {
+        ChatRoom room = chatRoomRepository.findById(chatRoomId)
+                .orElseThrow(() -> Status.NOT_FOUND.withDescription("Chat room not found").asRuntimeException());
+        if (room.getRoomType() != ChatRoomType.GROUP) {
+            throw Status.INVALID_ARGUMENT.withDescription("Not a group chat").asRuntimeException();
+        }
+        return room;
+    }
+
+    /**
+     * Publishes a membership change of a room, so that every server instance drops state
+     * kept for a member who left.
+     *
+     * @param type MEMBER_ADDED or MEMBER_REMOVED
+     * @param chatRoomId the ID of the chat room
+     * @param userId the ID of the user who joined or left
+     */
+    private void publishMembership(RoomEvent.Type type, int chatRoomId, int userId) {
+        roomEventHub.publish(RoomEvent.newBuilder()
+            .setType(type)
+            .setChatRoomId(chatRoomId)
+            .setUserId(userId)
+            .build());
+    }
+
     /**
      * Promotes a member to ADMIN role.
      * Only the OWNER can promote members. Members are promoted from MEMBER to ADMIN.
+     * The role change is written in one transaction with its outbox event, and the reply is
+     * sent only after it has committed.
      *
      * @param request the request containing chat room ID, requester ID, and user ID to promote
      * @param responseObserver the observer to receive the response or error
@@ -266,50 +313,35 @@ public class GroupChatServiceImpl extends GroupChatServiceImplBase {
     @Override
     public void promoteMember(PromoteMemberRequest request, StreamObserver<Empty> responseObserver) {
         try {
-            Optional<ChatRoom> roomOpt = chatRoomRepository.findById(request.getChatRoomId());
-            if (!roomOpt.isPresent()) {
-                responseObserver.onError(Status.NOT_FOUND.withDescription("Chat room not found").asRuntimeException());
-                return;
-            }
+            transactionTemplate.executeWithoutResult(status -> {
+                ChatRoom room = findGroupRoom(request.getChatRoomId());
 
-            ChatRoom room = roomOpt.get();
-            if (room.getRoomType() != ChatRoomType.GROUP) {
-                responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("Not a group chat").asRuntimeException());
-                return;
-            }
+                User requester = userRepository.findById(request.getRequesterId())
+                        .orElseThrow(() -> Status.NOT_FOUND.withDescription("Requester not found").asRuntimeException());
 
-            Optional<User> requesterOpt = userRepository.findById(request.getRequesterId());
-            if (!requesterOpt.isPresent()) {
-                responseObserver.onError(Status.NOT_FOUND.withDescription("Requester not found").asRuntimeException());
-                return;
-            }
-
-            Optional<ChatRoomMembership> requesterMembership = membershipRepository.findByChatRoomAndUser(room, requesterOpt.get());
-            if (!requesterMembership.isPresent() || requesterMembership.get().getRole() != MembershipRole.OWNER) {
-                responseObserver.onError(Status.PERMISSION_DENIED.withDescription("Only owner can promote members").asRuntimeException());
-                return;
-            }
+                Optional<ChatRoomMembership> requesterMembership = membershipRepository.findByChatRoomAndUser(room, requester);
+                if (!requesterMembership.isPresent() || requesterMembership.get().getRole() != MembershipRole.OWNER) {
+                    throw Status.PERMISSION_DENIED.withDescription("Only owner can promote members").asRuntimeException();
+                }
 
-            Optional<User> userOpt = userRepository.findById(request.getUserId());
-            if (!userOpt.isPresent()) {
-                responseObserver.onError(Status.NOT_FOUND.withDescription("User not found").asRuntimeException());
-                return;
-            }
+                User user = userRepository.findById(request.getUserId())
+                        .orElseThrow(() -> Status.NOT_FOUND.withDescription("User not found").asRuntimeException());
 
-            Optional<ChatRoomMembership> membership = membershipRepository.findByChatRoomAndUser(room, userOpt.get());
-            if (!membership.isPresent()) {
-                responseObserver.onError(Status.NOT_FOUND.withDescription("User not a member").asRuntimeException());
-                return;
-            }
+                ChatRoomMembership membership = membershipRepository.findByChatRoomAndUser(room, user)
+                        .orElseThrow(() -> Status.NOT_FOUND.withDescription("User not a member").asRuntimeException());
 
-            if (membership.get().getRole() == MembershipRole.MEMBER) {
-                membership.get().setRole(MembershipRole.ADMIN);
-                membershipRepository.save(membership.get());
-            }
+                if (membership.getRole() == MembershipRole.MEMBER) {
+                    membership.setRole(MembershipRole.ADMIN);
+                    membershipRepository.save(membership);
+                    outbox.append(DomainEvent.newBuilder().setMemberPromoted(request).build());
+                }
+            });
 
             responseObserver.onNext(Empty.getDefaultInstance());
             responseObserver.onCompleted();
 
+        } catch (StatusRuntimeException ex) {
+            responseObserver.onError(ex);
         } catch (Exception ex) {
             responseObserver.onError(Status.INTERNAL.withDescription(ex.getMessage()).withCause(ex).asRuntimeException());
         }
@@ -350,7 +382,9 @@ public class GroupChatServiceImpl extends GroupChatServiceImplBase {
     }
 
     /**
-     * Lists all chat rooms (group chats only) that a user is a member of.
+     * Lists all chat rooms (group chats only) that a user is a member of, most recently
+     * active first, with a preview of each room's last message and the number of messages
+     * the user has not read. Rooms, names and summaries are read with a single query.
      *
      * @param request the request containing the user ID
      * @param responseObserver the observer to receive the response or error
@@ -364,19 +398,24 @@ public class GroupChatServiceImpl extends GroupChatServiceImplBase {
                 return;
             }
 
-            List<ChatRoomMembership> memberships = membershipRepository.findByUser(userOpt.get());
+            List<RoomSummaries.RoomSummary> groupRooms = roomSummaries.groupRoomsOf(request.getUserId());
+            Map<Integer, Integer> unread = unreadCounters.unreadCounts(request.getUserId(),
+                    groupRooms.stream().map(RoomSummaries.RoomSummary::chatRoomId).collect(Collectors.toList()));
             ListUserChatRoomsResponse.Builder builder = ListUserChatRoomsResponse.newBuilder();
 
-            for (ChatRoomMembership m : memberships) {
-                ChatRoom room = m.getChatRoom();
-                // Only include group chats, not private chats
-                if (room.getRoomType() == ChatRoomType.GROUP) {
-                    String name = getChatRoomName(room);
-                    builder.addRooms(com.example.chat.grpc.ChatRoom.newBuilder()
-                            .setId(room.getId())
-                            .setName(name)
-                            .build());
+            for (RoomSummaries.RoomSummary room : groupRooms) {
+                com.example.chat.grpc.ChatRoom.Builder mapped = com.example.chat.grpc.ChatRoom.newBuilder()
+                        .setId(room.chatRoomId())
+                        .setName(room.name())
+                        .setUnreadCount(unread.getOrDefault(room.chatRoomId(), 0))
+                        .setMessageCount(room.messageCount());
+                if (room.lastMessageAt() != null) {
+                    mapped.setLastMessageId(room.lastMessageId())
+                            .setLastSenderId(room.lastSenderId())
+                            .setLastMessagePreview(room.lastPreview())
+                            .setLastMessageAtUnix(room.lastMessageAt().getEpochSecond());
                 }
+                builder.addRooms(mapped.build());
             }
 
             responseObserver.onNext(builder.build());
@@ -387,37 +426,68 @@ public class GroupChatServiceImpl extends GroupChatServiceImplBase {
         }
     }
 
+    /**
+     * Marks a chat room as read by a user up to a message.
+     * The marker is kept in memory and persisted with the next batch of read markers without a
+     * query of its own; a marker older than the user's current one, or naming a message of
+     * another room, is ignored.
+     *
+     * @param request the request containing the chat room ID, user ID and last read message ID
+     * @param responseObserver the observer to receive the response or error
+     */
+    @Override
+    public void markRead(MarkReadRequest request, StreamObserver<Empty> responseObserver) {
+        try {
+            if (request.getMessageId() <= 0) {
+                responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("Message ID is required").asRuntimeException());
+                return;
+            }
+            if (!unreadCounters.isTracked(request.getUserId(), request.getChatRoomId())
+                    && !membershipRepository.existsByChatRoomIdAndUserId(request.getChatRoomId(), request.getUserId())) {
+                responseObserver.onError(Status.PERMISSION_DENIED.withDescription("User is not a member of this chat room").asRuntimeException());
+                return;
+            }
+
+            unreadCounters.markRead(request.getUserId(), request.getChatRoomId(), request.getMessageId());
+            responseObserver.onNext(Empty.getDefaultInstance());
+            responseObserver.onCompleted();
+
+        } catch (Exception ex) {
+            responseObserver.onError(Status.INTERNAL.withDescription(ex.getMessage()).withCause(ex).asRuntimeException());
+        }
+    }
+
     /**
      * Gets or creates a private chat room between two users.
-     * Creates the chat room and memberships if they don't already exist.
+     * Creates the chat room and memberships if they don't already exist, in one transaction
+     * with their outbox events; the reply is sent only after it has committed.
      *
      * @param request the request containing the two user IDs
      * @param responseObserver the observer to receive the response or error
      */
     @Override
-    @Transactional
     public void getPrivateChatRoom(GetPrivateChatRoomRequest request, StreamObserver<GetPrivateChatRoomResponse> responseObserver) {
         try {
-            Optional<User> user1Opt = userRepository.findById(request.getUserId1());
-            Optional<User> user2Opt = userRepository.findById(request.getUserId2());
+            com.example.chat.grpc.ChatRoom found = transactionTemplate.execute(status -> {
+                Optional<User> user1Opt = userRepository.findById(request.getUserId1());
+                Optional<User> user2Opt = userRepository.findById(request.getUserId2());
 
-            if (!user1Opt.isPresent() || !user2Opt.isPresent()) {
-                responseObserver.onError(Status.NOT_FOUND.withDescription("User not found").asRuntimeException());
-                return;
-            }
+                if (!user1Opt.isPresent() || !user2Opt.isPresent()) {
+                    throw Status.NOT_FOUND.withDescription("User not found").asRuntimeException();
+                }
 
-            PrivateChatRoom privateRoom = findOrCreatePrivateChat(user1Opt.get(), user2Opt.get());
-            ChatRoom room = privateRoom.getChatRoom();
-            String name = getChatRoomName(room);
+                PrivateChatRoom privateRoom = findOrCreatePrivateChat(user1Opt.get(), user2Opt.get());
+                ChatRoom room = privateRoom.getChatRoom();
+                return mapChatRoom(room, getChatRoomName(room));
+            });
 
             responseObserver.onNext(GetPrivateChatRoomResponse.newBuilder()
-                    .setRoom(com.example.chat.grpc.ChatRoom.newBuilder()
-                            .setId(room.getId())
-                            .setName(name)
-                            .build())
+                    .setRoom(found)
                     .build());
             responseObserver.onCompleted();
 
+        } catch (StatusRuntimeException ex) {
+            responseObserver.onError(ex);
         } catch (Exception ex) {
             String errorMsg = "Error getting private chat room: " + ex.getMessage();
             if (ex.getCause() != null) {
@@ -435,12 +505,13 @@ public class GroupChatServiceImpl extends GroupChatServiceImplBase {
     /**
      * Finds an existing private chat room or creates a new one between two users.
      * Users are ordered by ID to ensure consistency with database constraints.
+     * A new room and its memberships are recorded in the outbox, as requested by {@code userA}.
+     * Must be called inside a transaction.
      *
      * @param userA the first user
      * @param userB the second user
      * @return the private chat room
      */
-    @Transactional
     private PrivateChatRoom findOrCreatePrivateChat(User userA, User userB) {
         // Check both orders for existing room
         Optional<PrivateChatRoom> privateRoom = privateChatRoomRepository.findByUserAIdAndUserBId(
@@ -478,9 +549,23 @@ public class GroupChatServiceImpl extends GroupChatServiceImplBase {
         // Use repository save which handles transactions properly
         newRoom = privateChatRoomRepository.save(newRoom);
 
+        List<DomainEvent> events = new ArrayList<>(3);
+        events.add(DomainEvent.newBuilder()
+                .setRoomCreated(mapChatRoom(managedRoom, firstUser.getUsername() + " & " + secondUser.getUsername()))
+                .build());
+
         // Ensure both users are members (use managedRoom for consistency)
-        ensureMembership(managedRoom, userA);
-        ensureMembership(managedRoom, userB);
+        for (User user : List.of(userA, userB)) {
+            if (ensureMembership(managedRoom, user)) {
+                events.add(DomainEvent.newBuilder()
+                        .setMemberAdded(AddMemberRequest.newBuilder()
+                                .setChatRoomId(roomId)
+                                .setRequesterId(userA.getId())
+                                .setUserId(user.getId()))
+                        .build());
+            }
+        }
+        outbox.appendAll(events);
 
         return newRoom;
     }
@@ -491,10 +576,11 @@ public class GroupChatServiceImpl extends GroupChatServiceImplBase {
      *
      * @param room the chat room
      * @param user the user
+     * @return true if the membership was created
      */
-    private void ensureMembership(ChatRoom room, User user) {
+    private boolean ensureMembership(ChatRoom room, User user) {
         if (membershipRepository.existsByChatRoomAndUser(room, user)) {
-            return;
+            return false;
         }
 
         ChatRoomMembership membership = new ChatRoomMembership();
@@ -502,6 +588,7 @@ public class GroupChatServiceImpl extends GroupChatServiceImplBase {
         membership.setUser(user);
         membership.setRole(MembershipRole.MEMBER);
         membershipRepository.save(membership);
+        return true;
     }
 
     /**
@@ -0,0 +1,50 @@
+package com.example.chat.grpc;
+
+import java.time.Instant;
+
+/**
+ * Helpers for converting between message timestamps and keyset paging cursors.
+ * Cursors carry the creation time in epoch microseconds, which is the precision
+ * of the {@code created_at} column, plus the message ID as a tie-breaker.
+ */
+public final class MessageCursors {
+
+    private static final long MICROS_PER_SECOND = 1_000_000L;
+
+    private MessageCursors() {
+    }
+
+    /**
+     * Converts an instant to epoch microseconds.
+     *
+     * @param instant the instant to convert
+     * @return the number of microseconds since the epoch
+     */
+    public static long toMicros(Instant instant) {
+        return instant.getEpochSecond() * MICROS_PER_SECOND + instant.getNano() / 1_000;
+    }
+
+    /**
+     * Converts epoch microseconds to an instant.
+     *
+     * @param micros the number of microseconds since the epoch
+     * @return the corresponding instant
+     */
+    public static Instant toInstant(long micros) {
+        return Instant.ofEpochSecond(Math.floorDiv(micros, MICROS_PER_SECOND),
+            Math.floorMod(micros, MICROS_PER_SECOND) * 1_000L);
+    }
+
+    /**
+     * Builds the cursor pointing at a message.
+     *
+     * @param message the domain message entity
+     * @return the cursor for the message's position in its room
+     */
+    public static MessageCursor of(com.example.chat.domain.Message message) {
+        return MessageCursor.newBuilder()
+            .setCreatedAtMicros(toMicros(message.getCreatedAt()))
+            .setId(message.getId())
+            .build();
+    }
+}
@@ -0,0 +1,203 @@
+package com.example.chat.grpc;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+
+/**
+ * Thread-safe, bounded outbound side of a server-streaming or bidirectional gRPC call.
+ * Items are written directly while the transport is ready and queued otherwise.
+ * A receiver that falls more than {@code maxPending} items behind is closed with
+ * RESOURCE_EXHAUSTED instead of growing the queue without limit.
+ *
+ * @param <T> the type of the streamed messages
+ */
+public class OutboundStream<T> {
+
+    private final ServerCallStreamObserver<T> observer;
+    private final int maxPending;
+    private final ArrayDeque<T> pending = new ArrayDeque<>();
+    private final List<Runnable> closeHandlers = new CopyOnWriteArrayList<>();
+    private boolean completing;
+    private boolean closed;
+
+    /**
+     * Constructs a new OutboundStream around the given call observer.
+     * Must be created while the gRPC handler method is still running, because it
+     * installs the call's ready and cancel handlers.
+     *
+     * @param observer the server call observer to write to
+     * @param maxPending the maximum number of items queued while the receiver is not ready
+     */
+    public OutboundStream(ServerCallStreamObserver<T> observer, int maxPending) {
+        this.observer = observer;
+        this.maxPending = maxPending;
+        observer.setOnReadyHandler(this::drain);
+        observer.setOnCancelHandler(this::cancelled);
+    }
+
+    /**
+     * Registers a handler that runs once when the stream is closed for any reason.
+     *
+     * @param handler the handler to run on close
+     */
+    public void onClose(Runnable handler) {
+        boolean runNow;
+        synchronized (this) {
+            runNow = closed;
+            if (!runNow) {
+                closeHandlers.add(handler);
+            }
+        }
+        if (runNow) {
+            handler.run();
+        }
+    }
+
+    /**
+     * Sends an item, queueing it if the transport is not ready.
+     *
+     * @param item the item to send
+     * @return true if the item was written or queued, false if the stream is closed or overflowed
+     */
+    public boolean send(T item) {
+        boolean written;
+        synchronized (this) {
+            if (closed || completing) {
+                return false;
+            }
+            if (!pending.isEmpty() || !observer.isReady()) {
+                if (pending.size() < maxPending) {
+                    pending.addLast(item);
+                    return true;
+                }
+                written = false;
+            } else {
+                written = write(item);
+                if (!written) {
+                    closed = true;
+                }
+            }
+        }
+        if (written) {
+            return true;
+        }
+        if (isClosed()) {
+            runCloseHandlers();
+            return false;
+        }
+        fail(Status.RESOURCE_EXHAUSTED.withDescription("Receiver is not keeping up with the stream"));
+        return false;
+    }
+
+    /**
+     * Completes the stream once all queued items have been written.
+     */
+    public void complete() {
+        synchronized (this) {
+            if (closed || completing) {
+                return;
+            }
+            completing = true;
+        }
+        drain();
+    }
+
+    /**
+     * Fails the stream with the given status, discarding any queued items.
+     *
+     * @param status the status to close the call with
+     */
+    public void fail(Status status) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            pending.clear();
+            try {
+                observer.onError(status.asRuntimeException());
+            } catch (RuntimeException ignored) {
+                // The call is already gone; nothing left to report to.
+            }
+        }
+        runCloseHandlers();
+    }
+
+    /**
+     * Checks whether the stream has been closed.
+     *
+     * @return true if no further items will be sent
+     */
+    public synchronized boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * Writes queued items while the transport is ready and finishes a pending completion.
+     */
+    private void drain() {
+        boolean finished = false;
+        synchronized (this) {
+            while (!closed && !pending.isEmpty() && observer.isReady()) {
+                if (!write(pending.pollFirst())) {
+                    closed = true;
+                    pending.clear();
+                    finished = true;
+                }
+            }
+            if (!closed && completing && pending.isEmpty()) {
+                closed = true;
+                finished = true;
+                observer.onCompleted();
+            }
+        }
+        if (finished) {
+            runCloseHandlers();
+        }
+    }
+
+    /**
+     * Writes a single item to the call. Must be called while holding the monitor;
+     * the caller is responsible for closing the stream when the write fails.
+     *
+     * @param item the item to write
+     * @return true if the write succeeded
+     */
+    private boolean write(T item) {
+        try {
+            observer.onNext(item);
+            return true;
+        } catch (RuntimeException ex) {
+            return false;
+        }
+    }
+
+    /**
+     * Handles client cancellation by discarding queued items and closing the stream.
+     */
+    private void cancelled() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            pending.clear();
+        }
+        runCloseHandlers();
+    }
+
+    /**
+     * Runs and clears the registered close handlers.
+     */
+    private void runCloseHandlers() {
+        for (Runnable handler : closeHandlers) {
+            if (closeHandlers.remove(handler)) {
+                handler.run();
+            }
+        }
+    }
+}
@@ -0,0 +1,172 @@
+package com.example.chat.grpc;
+
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+
+/**
+ * Pull-based sender of a server stream in pages.
+ * A page is only read when the transport is ready to accept it, so at most one page is held
+ * in memory regardless of the size of the stream. Each page is read with a keyset query
+ * continuing after the cursor of the previous page.
+ *
+ * @param <C> the type of the cursor the pages are read after
+ * @param <T> the type of the pages sent to the client
+ */
+public class PullStream<C, T> {
+
+    private final ServerCallStreamObserver<T> observer;
+    private final PageReader<C, T> pageReader;
+    private final CursorExtractor<C, T> cursorExtractor;
+    private C position;
+    private boolean pumping;
+    private boolean repump;
+    private boolean finished;
+
+    /**
+     * Constructs a new PullStream and installs the call's ready and cancel handlers.
+     * Must be created while the gRPC handler method is still running.
+     *
+     * @param observer the server call observer to write to
+     * @param pageReader the source the pages are read from
+     * @param cursorExtractor the cursor to continue after each sent page
+     * @param start the cursor to start after
+     */
+    public PullStream(ServerCallStreamObserver<T> observer, PageReader<C, T> pageReader,
+            CursorExtractor<C, T> cursorExtractor, C start) {
+        this.observer = observer;
+        this.pageReader = pageReader;
+        this.cursorExtractor = cursorExtractor;
+        this.position = start;
+        observer.setOnReadyHandler(this::pump);
+        observer.setOnCancelHandler(this::cancelled);
+    }
+
+    /**
+     * Sends pages while the transport is ready, and completes the call after the last one.
+     * Safe to call from any thread; a call arriving while another thread is sending makes
+     * that thread check readiness again before it stops.
+     */
+    public void pump() {
+        synchronized (this) {
+            if (finished) {
+                return;
+            }
+            if (pumping) {
+                repump = true;
+                return;
+            }
+            pumping = true;
+        }
+        try {
+            do {
+                sendWhileReady();
+            } while (continuePumping());
+        } catch (Exception ex) {
+            if (finish()) {
+                observer.onError(Status.INTERNAL.withDescription(ex.getMessage())
+                    .withCause(ex).asRuntimeException());
+            }
+        }
+    }
+
+    /**
+     * Reads and sends pages until the transport stops being ready or the last page has been sent.
+     */
+    private void sendWhileReady() {
+        while (observer.isReady() && !isFinished()) {
+            T page = pageReader.pageAfter(position);
+            C next = null;
+            if (page != null) {
+                observer.onNext(page);
+                next = cursorExtractor.nextCursor(page);
+            }
+            if (next == null) {
+                if (finish()) {
+                    observer.onCompleted();
+                }
+            } else {
+                position = next;
+            }
+        }
+    }
+
+    /**
+     * Decides whether the sending thread must check readiness again because another
+     * pump request arrived meanwhile, and releases the pump otherwise.
+     *
+     * @return true if the thread should keep sending
+     */
+    private synchronized boolean continuePumping() {
+        if (repump && !finished) {
+            repump = false;
+            return true;
+        }
+        pumping = false;
+        return false;
+    }
+
+    /**
+     * Stops reading further pages once the client has cancelled the call.
+     */
+    private void cancelled() {
+        finish();
+    }
+
+    /**
+     * Marks the stream as finished.
+     *
+     * @return true if this call finished the stream, false if it was already finished
+     */
+    private synchronized boolean finish() {
+        if (finished) {
+            return false;
+        }
+        finished = true;
+        return true;
+    }
+
+    /**
+     * Checks whether the stream has finished.
+     *
+     * @return true once the stream has been completed, failed or cancelled
+     */
+    private synchronized boolean isFinished() {
+        return finished;
+    }
+
+    /**
+     * Source of the pages of a stream.
+     *
+     * @param <C> the type of the cursor
+     * @param <T> the type of the pages
+     */
+    @FunctionalInterface
+    public interface PageReader<C, T> {
+
+        /**
+         * Reads the page that comes strictly after a cursor.
+         *
+         * @param after the cursor to continue after
+         * @return the page, or null if nothing follows the cursor
+         */
+        T pageAfter(C after);
+    }
+
+    /**
+     * Extracts the position to continue after from a sent page.
+     *
+     * @param <C> the type of the cursor
+     * @param <T> the type of the pages
+     */
+    @FunctionalInterface
+    public interface CursorExtractor<C, T> {
+
+        /**
+         * Returns the cursor of the last item of a page.
+         *
+         * @param page the page just sent
+         * @return the cursor to read the next page after, or null if the page was the last one
+         */
+        C nextCursor(T page);
+    }
+}
@@ -0,0 +1,478 @@
+package com.example.chat.ingest;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.chat.codec.MessageTextCodec;
+import com.example.chat.domain.Message;
+import com.example.chat.grpc.DomainEvent;
+import com.example.chat.outbox.Outbox;
+import com.example.chat.summary.RoomSummaries;
+
+import io.grpc.Status;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Write-behind ingestion pipeline for new chat messages.
+ * Messages submitted by all callers are collected into micro-batches, bounded by a maximum
+ * batch size and a maximum delay, and each batch is persisted with a single multi-row INSERT
+ * in a single transaction. Callers receive a future that completes with the persisted message
+ * once its batch has been committed; a batch that violates a constraint is retried in halves,
+ * so only the callers of invalid messages see the failure. The database numbers each message with the next
+ * sequence number of its room, so messages of a room are totally ordered by {@code seq}. The
+ * room summaries of a batch are updated, and its MESSAGE_CREATED events written to the outbox,
+ * in its transaction.
+ *
+ * <p>The futures are completed on a small pool of completion threads rather than on the worker,
+ * so the callers' callbacks, which publish the messages to subscribers, run while the next batch
+ * is already being written. Messages of a room are always completed by the same thread, in the
+ * order they were persisted.
+ */
+@Component
+public class MessageIngestionPipeline {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageIngestionPipeline.class);
+
+    /**
+     * Upper bound on rows per INSERT, keeping the statement below the
+     * PostgreSQL limit of 65535 bind parameters.
+     */
+    private static final int MAX_ROWS_PER_STATEMENT = 4000;
+
+    /**
+     * Block size of messages_id_seq; must match the allocationSize declared on {@link Message}.
+     */
+    private static final int MESSAGE_ID_BLOCK_SIZE = 50;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final PooledSequence messageIds;
+    private final MessageTextCodec textCodec;
+    private final RoomSummaries roomSummaries;
+    private final Outbox outbox;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final int completionThreads;
+    private final BlockingQueue<PendingMessage> queue;
+    private ExecutorService[] completers;
+    private volatile boolean running;
+    private Thread worker;
+
+    /**
+     * Constructs a new MessageIngestionPipeline.
+     *
+     * @param jdbcTemplate the JDBC template used for batched inserts
+     * @param transactionManager the transaction manager wrapping each batch
+     * @param textCodec the codec compressing long message texts
+     * @param roomSummaries the read model of each room's latest activity
+     * @param outbox the transactional outbox recording the created messages
+     * @param maxBatchSize the maximum number of messages persisted per batch
+     * @param maxDelayMillis the maximum time the first message of a batch waits for more messages
+     * @param queueCapacity the maximum number of messages waiting to be persisted
+     * @param completionThreads the number of threads completing the callers' futures
+     */
+    public MessageIngestionPipeline(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            MessageTextCodec textCodec, RoomSummaries roomSummaries, Outbox outbox,
+            @Value("${chat.ingest.max-batch-size:256}") int maxBatchSize,
+            @Value("${chat.ingest.max-delay-ms:2}") long maxDelayMillis,
+            @Value("${chat.ingest.queue-capacity:10000}") int queueCapacity,
+            @Value("${chat.ingest.completion-threads:4}") int completionThreads) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.textCodec = textCodec;
+        this.roomSummaries = roomSummaries;
+        this.outbox = outbox;
+        this.messageIds = new PooledSequence(jdbcTemplate, "messages_id_seq", MESSAGE_ID_BLOCK_SIZE);
+        this.maxBatchSize = Math.max(1, Math.min(maxBatchSize, MAX_ROWS_PER_STATEMENT));
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxDelayMillis));
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.completionThreads = Math.max(1, completionThreads);
+    }
+
+    /**
+     * Starts the completion threads and the background worker that drains the queue.
+     */
+    @PostConstruct
+    public void start() {
+        completers = new ExecutorService[completionThreads];
+        for (int i = 0; i < completionThreads; i++) {
+            String name = "message-completion-" + i;
+            completers[i] = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, name);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        running = true;
+        worker = new Thread(this::run, "message-ingestion");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Stops accepting messages and waits for already queued messages to be persisted
+     * and their callers to be completed.
+     *
+     * @throws InterruptedException if interrupted while waiting for the worker
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (worker != null) {
+            worker.join(TimeUnit.SECONDS.toMillis(10));
+        }
+        if (completers != null) {
+            for (ExecutorService completer : completers) {
+                completer.shutdown();
+            }
+            for (ExecutorService completer : completers) {
+                completer.awaitTermination(10, TimeUnit.SECONDS);
+            }
+        }
+    }
+
+    /**
+     * Submits a new message for persistence.
+     * The message must have its chat room ID, sender ID and text set.
+     *
+     * @param message the message to persist
+     * @return a future completing with the persisted message, including its assigned ID,
+     *         or failing with UNAVAILABLE when the pipeline is saturated or stopped
+     */
+    public CompletableFuture<Message> submit(Message message) {
+        CompletableFuture<Message> future = new CompletableFuture<>();
+        if (!running || !queue.offer(new PendingMessage(message, future))) {
+            future.completeExceptionally(Status.UNAVAILABLE
+                .withDescription("Message ingestion is saturated, retry later")
+                .asRuntimeException());
+        }
+        return future;
+    }
+
+    /**
+     * Gets the number of messages waiting to be persisted.
+     *
+     * @return the current queue depth
+     */
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Worker loop collecting micro-batches until stopped and the queue is empty.
+     */
+    private void run() {
+        List<PendingMessage> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingMessage first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= maxBatchSize || remaining <= 0) {
+                        break;
+                    }
+                    PendingMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException ex) {
+                log.error("Message ingestion worker failed", ex);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Persists a batch in one transaction and completes the callers' futures.
+     * If the transaction violates a constraint, the batch is split in halves which are persisted
+     * separately, so a single invalid message, such as one referencing a missing room, only fails
+     * its own caller. Any other failure, such as a lost connection, fails the whole batch at once
+     * rather than holding up the queue with retries that would fail the same way.
+     *
+     * @param batch the messages to persist
+     */
+    void flush(List<PendingMessage> batch) {
+        List<Message> results;
+        try {
+            results = transactionTemplate.execute(status -> insertBatch(batch));
+        } catch (DataIntegrityViolationException ex) {
+            if (batch.size() > 1) {
+                log.debug("Failed to persist batch of {} messages, retrying its halves", batch.size(), ex);
+                int half = batch.size() / 2;
+                flush(batch.subList(0, half));
+                flush(batch.subList(half, batch.size()));
+                return;
+            }
+            log.warn("Failed to persist message for chat room {}", batch.get(0).message().getChatRoomId(), ex);
+            complete(batch, null, ex);
+            return;
+        } catch (RuntimeException ex) {
+            log.error("Failed to persist batch of {} messages", batch.size(), ex);
+            complete(batch, null, ex);
+            return;
+        }
+        complete(batch, results, null);
+    }
+
+    /**
+     * Hands the completion of the callers' futures to the completion threads, one task per thread
+     * and batch. Messages are assigned to threads by chat room, so the messages of a room are
+     * completed, and published by their callers, in the order they were persisted.
+     *
+     * @param batch the persisted or failed messages
+     * @param results the message to hand to each caller, in batch order, or null if the batch failed
+     * @param error the failure of the batch, or null if it was persisted
+     */
+    private void complete(List<PendingMessage> batch, List<Message> results, RuntimeException error) {
+        Map<Integer, List<Runnable>> tasks = new HashMap<>();
+        for (int i = 0; i < batch.size(); i++) {
+            PendingMessage pending = batch.get(i);
+            Message result = results != null ? results.get(i) : null;
+            int completer = Math.floorMod(pending.message().getChatRoomId(), completers.length);
+            tasks.computeIfAbsent(completer, k -> new ArrayList<>()).add(error != null
+                ? () -> pending.future().completeExceptionally(error)
+                : () -> pending.future().complete(result));
+        }
+        tasks.forEach((completer, completions) -> completers[completer].execute(() -> {
+            for (Runnable completion : completions) {
+                completion.run();
+            }
+        }));
+    }
+
+    /**
+     * Inserts the messages of the batch with one multi-row INSERT.
+     * IDs come from the pooled message sequence shared with Hibernate; the sequence numbers and
+     * change versions assigned by the database are read back.
+     * Long texts are stored compressed, while the messages handed back to callers keep their
+     * plain text.
+     *
+     * <p>A message whose client message ID its sender has already used is not inserted; its
+     * caller receives the stored message instead.
+     *
+     * @param batch the messages to insert
+     * @return the message to hand to each caller, in batch order
+     */
+    private List<Message> insertBatch(List<PendingMessage> batch) {
+        Map<ClientKey, Message> stored = findByClientMessageIds(batch);
+        List<Message> results = new ArrayList<>(batch.size());
+        List<Message> inserts = new ArrayList<>(batch.size());
+        for (PendingMessage pending : batch) {
+            Message message = pending.message();
+            ClientKey key = ClientKey.of(message);
+            Message original = key != null ? stored.putIfAbsent(key, message) : null;
+            if (original == null) {
+                inserts.add(message);
+            }
+            results.add(original != null ? original : message);
+        }
+        if (!inserts.isEmpty()) {
+            insertRows(inserts);
+            roomSummaries.recordInserted(inserts);
+            List<DomainEvent> created = new ArrayList<>(inserts.size());
+            for (Message message : inserts) {
+                created.add(DomainEvent.newBuilder().setMessageCreated(toProto(message)).build());
+            }
+            outbox.appendAll(created);
+        }
+        return results;
+    }
+
+    /**
+     * Inserts new messages with one multi-row INSERT.
+     * Rows are inserted ordered by chat room, so the change version trigger locks the rows of
+     * {@code chat_rooms} in the same order in every transaction and concurrent batches of
+     * several instances cannot deadlock. The trigger also hands out the room's next sequence
+     * number under that lock. The assigned sequence numbers and change versions are matched by
+     * message ID, as PostgreSQL does not guarantee the order of the returned rows.
+     *
+     * @param inserts the messages to insert
+     */
+    private void insertRows(List<Message> inserts) {
+        List<Message> messages = new ArrayList<>(inserts);
+        messages.sort(Comparator.comparingInt(Message::getChatRoomId));
+        StringBuilder sql = new StringBuilder(
+            "INSERT INTO messages (id, chat_room_id, sender_id, text, text_compressed, created_at, "
+                + "client_message_id, is_edited, is_deleted) VALUES ");
+        Object[] args = new Object[messages.size() * 7];
+        Instant now = Instant.now().truncatedTo(ChronoUnit.MICROS);
+        for (int i = 0; i < messages.size(); i++) {
+            Message message = messages.get(i);
+            if (message.getCreatedAt() == null) {
+                message.setCreatedAt(now);
+            }
+            if (message.getId() == null) {
+                message.setId(messageIds.next());
+            }
+            byte[] compressed = textCodec.encode(message.getText());
+            sql.append(i == 0 ? "(?, ?, ?, ?, ?, ?, ?, false, false)" : ", (?, ?, ?, ?, ?, ?, ?, false, false)");
+            args[i * 7] = message.getId();
+            args[i * 7 + 1] = message.getChatRoomId();
+            args[i * 7 + 2] = message.getSenderId();
+            args[i * 7 + 3] = new SqlParameterValue(Types.VARCHAR, compressed == null ? message.getText() : null);
+            args[i * 7 + 4] = new SqlParameterValue(Types.BINARY, compressed);
+            args[i * 7 + 5] = Timestamp.from(message.getCreatedAt());
+            args[i * 7 + 6] = new SqlParameterValue(Types.VARCHAR, message.getClientMessageId());
+        }
+        sql.append(" RETURNING id, seq, change_version");
+
+        Map<Integer, Assigned> assigned = new HashMap<>();
+        jdbcTemplate.query(sql.toString(),
+            rs -> {
+                assigned.put(rs.getInt("id"), new Assigned(rs.getLong("seq"), rs.getLong("change_version")));
+            },
+            args);
+        for (Message message : messages) {
+            Assigned values = assigned.get(message.getId());
+            if (values == null) {
+                throw new IllegalStateException("Inserted message " + message.getId() + " was not returned");
+            }
+            message.setSeq(values.seq());
+            message.setChangeVersion(values.changeVersion());
+        }
+    }
+
+    /**
+     * Looks up the stored messages whose client message IDs are reused by messages of the batch.
+     * Duplicates are never inserted, so they use up no sequence number.
+     *
+     * @param batch the messages about to be inserted
+     * @return the stored messages keyed by sender and client message ID
+     */
+    private Map<ClientKey, Message> findByClientMessageIds(List<PendingMessage> batch) {
+        StringBuilder sql = new StringBuilder();
+        List<Object> args = new ArrayList<>();
+        for (PendingMessage pending : batch) {
+            ClientKey key = ClientKey.of(pending.message());
+            if (key != null) {
+                sql.append(args.isEmpty() ? "(?, ?)" : ", (?, ?)");
+                args.add(key.senderId());
+                args.add(key.clientMessageId());
+            }
+        }
+        Map<ClientKey, Message> stored = new HashMap<>();
+        if (args.isEmpty()) {
+            return stored;
+        }
+        jdbcTemplate.query(
+            "SELECT id, chat_room_id, sender_id, text, text_compressed, created_at, edited_at, deleted_at, deleted_by, "
+                + "is_edited, is_deleted, change_version, seq, client_message_id FROM messages "
+                + "WHERE (sender_id, client_message_id) IN (" + sql + ")",
+            rs -> {
+                Message message = new Message();
+                message.setId(rs.getInt("id"));
+                message.setChatRoomId(rs.getInt("chat_room_id"));
+                message.setSenderId(rs.getInt("sender_id"));
+                message.setText(rs.getString("text"));
+                message.setTextCompressed(rs.getBytes("text_compressed"));
+                message.setCreatedAt(rs.getTimestamp("created_at").toInstant());
+                Timestamp editedAt = rs.getTimestamp("edited_at");
+                message.setEditedAt(editedAt != null ? editedAt.toInstant() : null);
+                Timestamp deletedAt = rs.getTimestamp("deleted_at");
+                message.setDeletedAt(deletedAt != null ? deletedAt.toInstant() : null);
+                int deletedBy = rs.getInt("deleted_by");
+                message.setDeletedBy(rs.wasNull() ? null : deletedBy);
+                message.setEdited(rs.getBoolean("is_edited"));
+                message.setDeleted(rs.getBoolean("is_deleted"));
+                message.setChangeVersion(rs.getLong("change_version"));
+                message.setSeq(rs.getLong("seq"));
+                message.setClientMessageId(rs.getString("client_message_id"));
+                stored.put(ClientKey.of(message), message);
+            },
+            args.toArray());
+        return stored;
+    }
+
+    /**
+     * Maps an inserted message to its protobuf form for the outbox.
+     *
+     * @param message the inserted message, with its plain text
+     * @return the protobuf message
+     */
+    private static com.example.chat.grpc.Message toProto(Message message) {
+        return com.example.chat.grpc.Message.newBuilder()
+            .setId(message.getId())
+            .setChatRoomId(message.getChatRoomId())
+            .setSenderId(message.getSenderId())
+            .setText(message.getText() == null ? "" : message.getText())
+            .setSentAtUnix(message.getCreatedAt().getEpochSecond())
+            .setChangeVersion(message.getChangeVersion())
+            .setSeq(message.getSeq())
+            .build();
+    }
+
+    /**
+     * A message waiting in the queue together with the future of its caller.
+     *
+     * @param message the message to persist
+     * @param future the future completed once the message is persisted
+     */
+    record PendingMessage(Message message, CompletableFuture<Message> future) {
+    }
+
+    /**
+     * The values the database assigned to an inserted message.
+     *
+     * @param seq the sequence number of the message in its room
+     * @param changeVersion the change version of the message
+     */
+    private record Assigned(long seq, long changeVersion) {
+    }
+
+    /**
+     * Identifies a message by its sender and client message ID.
+     *
+     * @param senderId the ID of the sender
+     * @param clientMessageId the idempotency key chosen by the client
+     */
+    private record ClientKey(int senderId, String clientMessageId) {
+
+        /**
+         * Returns the key of a message.
+         *
+         * @param message the message
+         * @return the key, or null if the message has no client message ID
+         */
+        static ClientKey of(Message message) {
+            return message.getClientMessageId() != null
+                ? new ClientKey(message.getSenderId(), message.getClientMessageId()) : null;
+        }
+    }
+}
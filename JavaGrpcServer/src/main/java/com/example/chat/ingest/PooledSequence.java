@@ -0,0 +1,49 @@
+package com.example.chat.ingest;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Hands out IDs from a database sequence in pooled blocks, following the convention of
+ * Hibernate's pooled optimizer: every {@code nextval} returning {@code v} reserves the IDs
+ * {@code (v - blockSize, v]}. Writers that bypass Hibernate use this to share a sequence with
+ * an entity without ever handing out the same ID. The block size must equal both the
+ * sequence's INCREMENT BY and the entity's {@code allocationSize}.
+ */
+public class PooledSequence {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String nextvalSql;
+    private final int blockSize;
+    private long next = 1;
+    private long last;
+
+    /**
+     * Constructs a new PooledSequence.
+     *
+     * @param jdbcTemplate the JDBC template used to advance the sequence
+     * @param sequenceName the name of the database sequence
+     * @param blockSize the number of IDs reserved per sequence call
+     */
+    public PooledSequence(JdbcTemplate jdbcTemplate, String sequenceName, int blockSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.nextvalSql = "SELECT nextval('" + sequenceName + "')";
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Returns the next ID, reserving a new block from the database when the current one is used up.
+     *
+     * @return a unique ID
+     */
+    public synchronized int next() {
+        if (next > last) {
+            Long value = jdbcTemplate.queryForObject(nextvalSql, Long.class);
+            if (value == null) {
+                throw new IllegalStateException("Sequence returned no value: " + nextvalSql);
+            }
+            last = value;
+            next = Math.max(1, value - blockSize + 1);
+        }
+        return Math.toIntExact(next++);
+    }
+}
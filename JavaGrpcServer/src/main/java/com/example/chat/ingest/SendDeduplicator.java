@@ -0,0 +1,178 @@
+package com.example.chat.ingest;
+
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.chat.domain.Message;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Time-bounded cache of recent sends keyed by sender and client message ID.
+ * A retried send finds the future of the original one, whether it is still waiting in the
+ * ingestion pipeline or already committed, and is answered from it without another INSERT.
+ * Failed sends are forgotten at once so they can be retried.
+ *
+ * <p>Entries expire after the configured time and the cache holds at most the configured
+ * number of entries; sends that miss the cache are still deduplicated by the pipeline, which
+ * looks the client message ID up in the database before inserting.
+ */
+@Component
+public class SendDeduplicator {
+
+    private static final Logger log = LoggerFactory.getLogger(SendDeduplicator.class);
+
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final ConcurrentHashMap<Key, Entry> entries = new ConcurrentHashMap<>();
+    private ScheduledExecutorService executor;
+
+    /**
+     * Constructs a new SendDeduplicator.
+     *
+     * @param ttlMillis how long a send is remembered
+     * @param maxEntries the maximum number of remembered sends
+     */
+    public SendDeduplicator(@Value("${chat.dedup.ttl-ms:600000}") long ttlMillis,
+            @Value("${chat.dedup.max-entries:200000}") int maxEntries) {
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1L, ttlMillis));
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    /**
+     * Starts the periodic removal of expired entries.
+     */
+    @PostConstruct
+    public void start() {
+        long intervalNanos = Math.max(TimeUnit.SECONDS.toNanos(1), ttlNanos / 10);
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "send-dedup-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                sweep(System.nanoTime());
+            } catch (RuntimeException ex) {
+                log.warn("Failed to sweep the send deduplication cache", ex);
+            }
+        }, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stops the periodic removal of expired entries.
+     */
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns the outcome of an earlier send with the same client message ID, or starts the send.
+     *
+     * @param senderId the ID of the sender
+     * @param clientMessageId the idempotency key chosen by the client
+     * @param send starts the send when none is remembered
+     * @return the future of the original send
+     */
+    public CompletableFuture<Message> submit(int senderId, String clientMessageId,
+            Supplier<CompletableFuture<Message>> send) {
+        return submit(senderId, clientMessageId, send, System.nanoTime());
+    }
+
+    /**
+     * Gets the number of remembered sends.
+     *
+     * @return the number of entries
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the outcome of an earlier send with the same client message ID, or starts the send.
+     *
+     * @param senderId the ID of the sender
+     * @param clientMessageId the idempotency key chosen by the client
+     * @param send starts the send when none is remembered
+     * @param now the current {@link System#nanoTime()}
+     * @return the future of the original send
+     */
+    CompletableFuture<Message> submit(int senderId, String clientMessageId,
+            Supplier<CompletableFuture<Message>> send, long now) {
+        Key key = new Key(senderId, clientMessageId);
+        Entry current = entries.get(key);
+        if (current != null && now - current.expiresAt() < 0) {
+            return current.future();
+        }
+        if (current == null && entries.size() >= maxEntries) {
+            return send.get();
+        }
+        CompletableFuture<Message> started = new CompletableFuture<>();
+        Entry created = new Entry(started, now + ttlNanos);
+        Entry winner = entries.compute(key, (k, existing) ->
+            existing != null && now - existing.expiresAt() < 0 ? existing : created);
+        if (winner != created) {
+            return winner.future();
+        }
+        try {
+            send.get().whenComplete((message, error) -> {
+                if (error != null) {
+                    entries.remove(key, created);
+                    started.completeExceptionally(error);
+                } else {
+                    started.complete(message);
+                }
+            });
+        } catch (RuntimeException ex) {
+            entries.remove(key, created);
+            started.completeExceptionally(ex);
+        }
+        return started;
+    }
+
+    /**
+     * Removes the expired entries.
+     *
+     * @param now the current {@link System#nanoTime()}
+     */
+    void sweep(long now) {
+        Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().expiresAt() >= 0) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Identifies a send by its sender and client message ID.
+     *
+     * @param senderId the ID of the sender
+     * @param clientMessageId the idempotency key chosen by the client
+     */
+    private record Key(int senderId, String clientMessageId) {
+    }
+
+    /**
+     * A remembered send.
+     *
+     * @param future the outcome of the send
+     * @param expiresAt the {@link System#nanoTime()} after which the send is forgotten
+     */
+    private record Entry(CompletableFuture<Message> future, long expiresAt) {
+    }
+}
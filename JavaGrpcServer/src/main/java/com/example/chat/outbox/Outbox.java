@@ -0,0 +1,118 @@
+package com.example.chat.outbox;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import com.example.chat.grpc.DomainEvent;
+
+/**
+ * Writer of the transactional outbox. Domain changes are recorded in {@code outbox_events}
+ * in the transaction that makes them, so an event exists exactly when its change was
+ * committed; the {@link OutboxRelay} hands committed events to the {@link OutboxConsumer}s.
+ *
+ * <p>Appending outside a transaction fails, and a failed append marks the surrounding
+ * transaction rollback-only, so a change cannot commit without its event even when the
+ * caller catches the exception.
+ */
+@Component
+public class Outbox {
+
+    /**
+     * Upper bound on rows per INSERT, keeping the statement below the
+     * PostgreSQL limit of 65535 bind parameters.
+     */
+    private static final int MAX_ROWS_PER_STATEMENT = 4000;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Constructs a new Outbox.
+     *
+     * @param jdbcTemplate the JDBC template used to insert events
+     */
+    public Outbox(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Records a domain change. Must be called in the transaction making the change.
+     *
+     * @param event the change, without ID or time
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void append(DomainEvent event) {
+        appendAll(List.of(event));
+    }
+
+    /**
+     * Records domain changes with one INSERT per up to 4000 events.
+     * Must be called in the transaction making the changes.
+     *
+     * @param events the changes in the order they were made, without ID or time
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void appendAll(List<DomainEvent> events) {
+        for (int from = 0; from < events.size(); from += MAX_ROWS_PER_STATEMENT) {
+            insert(events.subList(from, Math.min(events.size(), from + MAX_ROWS_PER_STATEMENT)));
+        }
+    }
+
+    /**
+     * Inserts events with one multi-row INSERT.
+     *
+     * @param events the events to insert
+     */
+    private void insert(List<DomainEvent> events) {
+        StringBuilder sql = new StringBuilder("INSERT INTO outbox_events (event_type, payload) VALUES ");
+        Object[] args = new Object[events.size() * 2];
+        for (int i = 0; i < events.size(); i++) {
+            DomainEvent event = events.get(i);
+            sql.append(i == 0 ? "(?, ?)" : ", (?, ?)");
+            args[i * 2] = eventType(event.getChangeCase());
+            args[i * 2 + 1] = event.toByteArray();
+        }
+        jdbcTemplate.update(sql.toString(), args);
+    }
+
+    /**
+     * Gets the {@code event_type} stored for a kind of change. The names are part of the
+     * table's contract and stay fixed when fields of {@link DomainEvent} are renamed, so
+     * consumers and SQL readers filtering on {@code event_type} must use this mapping.
+     *
+     * @param change the kind of change
+     * @return the stored type, such as {@code MESSAGE_CREATED}
+     * @throws IllegalArgumentException if no change is set
+     */
+    public static String eventType(DomainEvent.ChangeCase change) {
+        return switch (change) {
+            case MESSAGECREATED -> "MESSAGE_CREATED";
+            case MESSAGEEDITED -> "MESSAGE_EDITED";
+            case MESSAGEDELETED -> "MESSAGE_DELETED";
+            case ROOMCREATED -> "ROOM_CREATED";
+            case MEMBERADDED -> "MEMBER_ADDED";
+            case MEMBERREMOVED -> "MEMBER_REMOVED";
+            case MEMBERPROMOTED -> "MEMBER_PROMOTED";
+            case FRIENDREQUESTSENT -> "FRIEND_REQUEST_SENT";
+            case FRIENDREQUESTANSWERED -> "FRIEND_REQUEST_ANSWERED";
+            case FRIENDREMOVED -> "FRIEND_REMOVED";
+            case CHANGE_NOT_SET -> throw new IllegalArgumentException("Outbox event without a change");
+        };
+    }
+
+    /**
+     * Completes an event read back from the outbox with its ID and time.
+     *
+     * @param id the ID of the outbox row
+     * @param createdAt the time the row was written
+     * @param payload the stored event
+     * @return the event to hand to consumers
+     */
+    static DomainEvent stored(long id, Instant createdAt, DomainEvent payload) {
+        return payload.toBuilder().setId(id).setOccurredAtUnix(createdAt.getEpochSecond()).build();
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.chat.outbox;
+
+import java.util.List;
+
+import com.example.chat.grpc.DomainEvent;
+
+/**
+ * In-process consumer of the transactional outbox. Every Spring bean implementing this
+ * interface is fed by the {@link OutboxRelay} from its own position, which is stored under
+ * {@link #name()} in {@code outbox_consumer_offsets}; a new consumer starts at the oldest
+ * event still kept.
+ *
+ * <p>Events arrive ordered by the ID of the transaction that wrote them, which follows the order
+ * the transactions started rather than the order they committed, and within a transaction in
+ * the order they were written. They arrive at least once: if
+ * {@link #accept(List)} throws, or the server stops before the position is stored, the
+ * batch is delivered again. Consumers must therefore tolerate seeing an event twice.
+ */
+public interface OutboxConsumer {
+
+    /**
+     * Gets the name under which the consumer's position is stored.
+     * Renaming a consumer makes it start over.
+     *
+     * @return a stable name of at most 100 characters
+     */
+    String name();
+
+    /**
+     * Handles a batch of events. Runs in the transaction that stores the consumer's
+     * new position, on the relay thread.
+     *
+     * @param events the events in (transaction ID, event ID) order, each with its ID and time set
+     */
+    void accept(List<DomainEvent> events);
+}
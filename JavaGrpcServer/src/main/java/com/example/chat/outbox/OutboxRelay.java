@@ -0,0 +1,286 @@
+package com.example.chat.outbox;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.chat.grpc.DomainEvent;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Relay feeding the events of the transactional outbox to the {@link OutboxConsumer}s.
+ * A background thread moves each consumer forward in batches: one transaction claims the
+ * consumer's row in {@code outbox_consumer_offsets} with {@code FOR UPDATE SKIP LOCKED},
+ * reads the next events after its position, hands them to the consumer and stores the new
+ * position. With several server instances, each consumer is advanced by whichever instance
+ * claims it first, and the others move on to their remaining consumers instead of waiting.
+ *
+ * <p>Events are read in {@code (xid, id)} order and only from transactions older than every
+ * transaction still running, so a transaction that commits late can never end up behind a
+ * position already stored. A long-running transaction therefore delays delivery until it ends.
+ * Events that every consumer has handled are deleted once older than the retention period.
+ */
+@Component
+public class OutboxRelay {
+
+    private static final Logger log = LoggerFactory.getLogger(OutboxRelay.class);
+
+    private static final long PRUNE_INTERVAL_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final int MAX_ROWS_PER_PRUNE = 10000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final List<ConsumerState> consumers = new ArrayList<>();
+    private final int batchSize;
+    private final long pollIntervalMillis;
+    private final long retryDelayNanos;
+    private final long retentionSeconds;
+    private volatile boolean running;
+    private Thread worker;
+
+    /**
+     * Constructs a new OutboxRelay.
+     *
+     * @param jdbcTemplate the JDBC template used to read events and store positions
+     * @param transactionManager the transaction manager wrapping each batch
+     * @param consumers the consumers to feed
+     * @param batchSize the maximum number of events handed to a consumer at once
+     * @param pollIntervalMillis how long the relay waits when no consumer has new events
+     * @param retryDelayMillis how long a consumer whose batch failed is skipped
+     * @param retentionHours how long handled events are kept
+     */
+    public OutboxRelay(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+            List<OutboxConsumer> consumers,
+            @Value("${chat.outbox.batch-size:500}") int batchSize,
+            @Value("${chat.outbox.poll-interval-ms:200}") long pollIntervalMillis,
+            @Value("${chat.outbox.retry-delay-ms:5000}") long retryDelayMillis,
+            @Value("${chat.outbox.retention-hours:24}") long retentionHours) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        for (OutboxConsumer consumer : consumers) {
+            this.consumers.add(new ConsumerState(consumer));
+        }
+        this.batchSize = Math.max(1, batchSize);
+        this.pollIntervalMillis = Math.max(1, pollIntervalMillis);
+        this.retryDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, retryDelayMillis));
+        this.retentionSeconds = TimeUnit.HOURS.toSeconds(Math.max(0, retentionHours));
+    }
+
+    /**
+     * Starts the background relay thread.
+     */
+    @PostConstruct
+    public void start() {
+        running = true;
+        worker = new Thread(this::run, "outbox-relay");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Stops the relay after its current batch.
+     *
+     * @throws InterruptedException if interrupted while waiting for the relay thread
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (worker != null) {
+            worker.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    /**
+     * Relay loop: advances every consumer by one batch per round, waiting only when no
+     * consumer had a full batch, and prunes handled events once a minute.
+     */
+    private void run() {
+        long nextPrune = System.nanoTime();
+        while (running) {
+            boolean busy = advanceAll(System.nanoTime());
+            if (System.nanoTime() - nextPrune >= 0) {
+                nextPrune = System.nanoTime() + PRUNE_INTERVAL_NANOS;
+                try {
+                    prune();
+                } catch (RuntimeException ex) {
+                    log.warn("Failed to prune the outbox", ex);
+                }
+            }
+            if (!busy) {
+                try {
+                    Thread.sleep(pollIntervalMillis);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Hands the next batch to every consumer that is not waiting to retry a failed batch.
+     *
+     * @param now the current {@link System#nanoTime()}
+     * @return true if a batch was full, so more events may be waiting
+     */
+    boolean advanceAll(long now) {
+        boolean busy = false;
+        for (ConsumerState state : consumers) {
+            busy |= advance(state, now);
+        }
+        return busy;
+    }
+
+    /**
+     * Hands the next batch to a consumer unless it is waiting to retry a failed batch.
+     *
+     * @param state the consumer and its retry time
+     * @param now the current {@link System#nanoTime()}
+     * @return true if the batch was full, so more events may be waiting
+     */
+    private boolean advance(ConsumerState state, long now) {
+        if (state.failed && now - state.retryAt < 0) {
+            return false;
+        }
+        try {
+            if (!state.registered) {
+                jdbcTemplate.update("INSERT INTO outbox_consumer_offsets (consumer) VALUES (?) ON CONFLICT DO NOTHING",
+                    state.consumer.name());
+                state.registered = true;
+            }
+            Integer delivered = transactionTemplate.execute(status -> deliverBatch(state.consumer));
+            state.failed = false;
+            return delivered != null && delivered == batchSize;
+        } catch (RuntimeException ex) {
+            log.warn("Outbox consumer {} failed, retrying its batch later", state.consumer.name(), ex);
+            state.failed = true;
+            state.retryAt = now + retryDelayNanos;
+            return false;
+        }
+    }
+
+    /**
+     * Claims a consumer's position, hands it the events after it and stores the new position.
+     * Must run in a transaction, which holds the claim until it ends.
+     *
+     * @param consumer the consumer
+     * @return the number of events handed over, 0 if there were none or another instance
+     *     holds the claim
+     */
+    private int deliverBatch(OutboxConsumer consumer) {
+        List<Position> claimed = jdbcTemplate.query(
+            "SELECT last_xid::text AS last_xid, last_event_id FROM outbox_consumer_offsets "
+                + "WHERE consumer = ? FOR UPDATE SKIP LOCKED",
+            (rs, rowNum) -> new Position(rs.getString("last_xid"), rs.getLong("last_event_id")),
+            consumer.name());
+        if (claimed.isEmpty()) {
+            return 0;
+        }
+        Position position = claimed.get(0);
+        List<Row> rows = jdbcTemplate.query(
+            "SELECT id, xid::text AS xid, payload, created_at FROM outbox_events "
+                + "WHERE (xid, id) > (CAST(? AS xid8), ?) "
+                + "AND xid < pg_snapshot_xmin(pg_current_snapshot()) "
+                + "ORDER BY xid, id LIMIT ?",
+            (rs, rowNum) -> new Row(rs.getString("xid"), rs.getLong("id"),
+                parse(rs.getLong("id"), rs.getTimestamp("created_at").toInstant(), rs.getBytes("payload"))),
+            position.xid(), position.eventId(), batchSize);
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        List<DomainEvent> events = new ArrayList<>(rows.size());
+        for (Row row : rows) {
+            events.add(row.event());
+        }
+        consumer.accept(events);
+        Row last = rows.get(rows.size() - 1);
+        jdbcTemplate.update("UPDATE outbox_consumer_offsets SET last_xid = CAST(? AS xid8), last_event_id = ?, "
+            + "updated_at = now() WHERE consumer = ?", last.xid(), last.id(), consumer.name());
+        return rows.size();
+    }
+
+    /**
+     * Deletes events past the retention period that every configured consumer has handled.
+     * Positions of consumers that are no longer configured do not hold events back.
+     */
+    void prune() {
+        String[] names = consumers.stream().map(state -> state.consumer.name()).toArray(String[]::new);
+        int deleted = jdbcTemplate.update("DELETE FROM outbox_events WHERE id IN ("
+            + "SELECT e.id FROM outbox_events e "
+            + "WHERE e.created_at < now() - make_interval(secs => ?) "
+            + "AND NOT EXISTS (SELECT 1 FROM outbox_consumer_offsets o "
+            + "WHERE o.consumer = ANY (?) AND (e.xid, e.id) > (o.last_xid, o.last_event_id)) "
+            + "LIMIT ?)", retentionSeconds, names, MAX_ROWS_PER_PRUNE);
+        if (deleted > 0) {
+            log.debug("Pruned {} outbox events", deleted);
+        }
+    }
+
+    /**
+     * Parses a stored event and completes it with its ID and time.
+     *
+     * @param id the ID of the outbox row
+     * @param createdAt the time the row was written
+     * @param payload the serialized event
+     * @return the event
+     */
+    private static DomainEvent parse(long id, Instant createdAt, byte[] payload) {
+        try {
+            return Outbox.stored(id, createdAt, DomainEvent.parseFrom(payload));
+        } catch (InvalidProtocolBufferException ex) {
+            throw new IllegalStateException("Malformed outbox event " + id, ex);
+        }
+    }
+
+    /**
+     * A consumer together with whether its position row exists and when a failed batch
+     * may be retried.
+     */
+    private static final class ConsumerState {
+
+        private final OutboxConsumer consumer;
+        private boolean registered;
+        private boolean failed;
+        private long retryAt;
+
+        /**
+         * Constructs a new ConsumerState.
+         *
+         * @param consumer the consumer
+         */
+        ConsumerState(OutboxConsumer consumer) {
+            this.consumer = consumer;
+        }
+    }
+
+    /**
+     * The stored position of a consumer.
+     *
+     * @param xid the transaction ID of the last handled event, as text
+     * @param eventId the ID of the last handled event
+     */
+    private record Position(String xid, long eventId) {
+    }
+
+    /**
+     * An event read from the outbox together with its position.
+     *
+     * @param xid the transaction ID that wrote the event, as text
+     * @param id the ID of the outbox row
+     * @param event the event
+     */
+    private record Row(String xid, long id, DomainEvent event) {
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.chat.partition;
+
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Maintains the monthly partitions of the messages table created by
+ * {@code migrations/005_partition_messages_by_month.sql}.
+ * On startup and then periodically, it creates the partitions of the current month and the
+ * configured number of months ahead, so inserts never hit a missing range, and it detaches
+ * and drops the partitions whose whole range is older than the retention period.
+ * Dropping a partition removes a month of messages without the table bloat and vacuum
+ * work of a bulk DELETE.
+ *
+ * <p>Disabled by default; it also does nothing while the messages table is not partitioned.
+ * Partitions are named {@code messages_yYYYYmMM} and bounded by UTC month starts.
+ */
+@Component
+public class MessagePartitionMaintainer {
+
+    private static final Logger log = LoggerFactory.getLogger(MessagePartitionMaintainer.class);
+
+    private static final Pattern PARTITION_NAME = Pattern.compile("messages_y(\\d{4})m(\\d{2})");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final long checkIntervalMillis;
+    private ScheduledExecutorService executor;
+
+    /**
+     * Constructs a new MessagePartitionMaintainer.
+     *
+     * @param jdbcTemplate the JDBC template used for the partition DDL
+     * @param enabled whether partitions are maintained at all
+     * @param monthsAhead the number of months after the current one that always have a partition
+     * @param retentionMonths the number of months messages are kept, or 0 to keep them forever
+     * @param checkIntervalMillis the interval between maintenance runs
+     */
+    public MessagePartitionMaintainer(JdbcTemplate jdbcTemplate,
+            @Value("${chat.partitions.enabled:false}") boolean enabled,
+            @Value("${chat.partitions.months-ahead:3}") int monthsAhead,
+            @Value("${chat.partitions.retention-months:0}") int retentionMonths,
+            @Value("${chat.partitions.check-interval-ms:3600000}") long checkIntervalMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.monthsAhead = Math.max(1, monthsAhead);
+        this.retentionMonths = Math.max(0, retentionMonths);
+        this.checkIntervalMillis = Math.max(60_000L, checkIntervalMillis);
+    }
+
+    /**
+     * Schedules the maintenance runs, the first one immediately.
+     */
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "message-partition-maintainer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                maintain(YearMonth.now(ZoneOffset.UTC));
+            } catch (RuntimeException ex) {
+                log.warn("Message partition maintenance failed", ex);
+            }
+        }, 0, checkIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the maintenance runs.
+     */
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Creates the upcoming partitions and removes the expired ones.
+     *
+     * @param current the current month in UTC
+     */
+    void maintain(YearMonth current) {
+        if (!isPartitioned()) {
+            log.warn("Table messages is not partitioned; run migrations/005_partition_messages_by_month.sql "
+                + "or disable chat.partitions.enabled");
+            return;
+        }
+        for (int i = 0; i <= monthsAhead; i++) {
+            createPartition(current.plusMonths(i));
+        }
+        if (retentionMonths > 0) {
+            dropExpiredPartitions(current.minusMonths(retentionMonths));
+        }
+    }
+
+    /**
+     * Checks whether the messages table is a partitioned table.
+     *
+     * @return true if messages is partitioned
+     */
+    private boolean isPartitioned() {
+        List<String> kinds = jdbcTemplate.queryForList(
+            "SELECT relkind::text FROM pg_class WHERE oid = to_regclass('messages')", String.class);
+        return kinds.size() == 1 && "p".equals(kinds.get(0));
+    }
+
+    /**
+     * Creates the partition of a month unless it already exists.
+     *
+     * @param month the month the partition covers
+     */
+    private void createPartition(YearMonth month) {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partitionName(month)
+            + " PARTITION OF messages FOR VALUES FROM ('" + lowerBound(month) + "') TO ('"
+            + lowerBound(month.plusMonths(1)) + "')");
+    }
+
+    /**
+     * Detaches and drops every partition of a month before the given one.
+     * Partitions are detached concurrently, so inserts and reads of the other partitions are not
+     * blocked; a detach interrupted by a previous run is finalized first.
+     *
+     * @param oldestKept the oldest month whose partition is kept
+     */
+    private void dropExpiredPartitions(YearMonth oldestKept) {
+        List<Partition> partitions = jdbcTemplate.query(
+            "SELECT c.relname, i.inhdetachpending FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid "
+                + "WHERE i.inhparent = to_regclass('messages')",
+            (rs, rowNum) -> new Partition(rs.getString(1), rs.getBoolean(2)));
+        for (Partition partition : partitions) {
+            YearMonth month = monthOf(partition.name());
+            if (month == null || !month.isBefore(oldestKept)) {
+                continue;
+            }
+            jdbcTemplate.execute("ALTER TABLE messages DETACH PARTITION " + partition.name()
+                + (partition.detachPending() ? " FINALIZE" : " CONCURRENTLY"));
+            jdbcTemplate.execute("DROP TABLE " + partition.name());
+            log.info("Dropped expired message partition {}", partition.name());
+        }
+    }
+
+    /**
+     * Returns the name of the partition covering a month.
+     *
+     * @param month the month
+     * @return the partition name
+     */
+    static String partitionName(YearMonth month) {
+        return String.format("messages_y%04dm%02d", month.getYear(), month.getMonthValue());
+    }
+
+    /**
+     * Parses the month covered by a partition from its name.
+     *
+     * @param partitionName the partition name
+     * @return the month, or null if the name does not follow the partition naming scheme
+     */
+    static YearMonth monthOf(String partitionName) {
+        Matcher matcher = PARTITION_NAME.matcher(partitionName);
+        if (!matcher.matches()) {
+            return null;
+        }
+        int monthValue = Integer.parseInt(matcher.group(2));
+        if (monthValue < 1 || monthValue > 12) {
+            return null;
+        }
+        return YearMonth.of(Integer.parseInt(matcher.group(1)), monthValue);
+    }
+
+    /**
+     * Returns the inclusive lower bound of a month's partition as a timestamptz literal.
+     *
+     * @param month the month
+     * @return the start of the month in UTC
+     */
+    static String lowerBound(YearMonth month) {
+        return String.format("%04d-%02d-01 00:00:00+00", month.getYear(), month.getMonthValue());
+    }
+
+    /**
+     * A partition of the messages table.
+     *
+     * @param name the partition table name
+     * @param detachPending whether a concurrent detach of the partition was interrupted
+     */
+    private record Partition(String name, boolean detachPending) {
+    }
+}
@@ -0,0 +1,177 @@
+package com.example.chat.ratelimit;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+
+/**
+ * Rate limiter for the write RPCs, with one token bucket per sender and one per chat room.
+ * Each {@link Route} has its own rates and burst sizes, configured as
+ * {@code chat.rate-limit.<route>.sender.per-second}, {@code ...sender.burst},
+ * {@code ...room.per-second} and {@code ...room.burst}; a rate of 0 disables that bucket.
+ *
+ * <p>Admitting a request costs a few array reads and CAS operations and allocates nothing.
+ * Rejections carry the time until the next token in the {@code grpc-retry-pushback-ms}
+ * trailer, which gRPC clients with a retry policy honour, and in the status description.
+ */
+@Component
+public class RateLimiter {
+
+    /**
+     * Trailer telling the client how long to wait before retrying, in milliseconds.
+     */
+    public static final Metadata.Key<String> RETRY_PUSHBACK_MS =
+        Metadata.Key.of("grpc-retry-pushback-ms", Metadata.ASCII_STRING_MARSHALLER);
+
+    /**
+     * The rate-limited RPCs together with their default limits.
+     */
+    public enum Route {
+        SEND_MESSAGE("send-message", 5, 20, 100, 200),
+        // Edits and deletes only name a message, so their room is not known without a lookup
+        EDIT_MESSAGE("edit-message", 2, 10, 0, 0),
+        DELETE_MESSAGE("delete-message", 2, 10, 0, 0);
+
+        private final String key;
+        private final double senderPerSecond;
+        private final int senderBurst;
+        private final double roomPerSecond;
+        private final int roomBurst;
+
+        Route(String key, double senderPerSecond, int senderBurst, double roomPerSecond, int roomBurst) {
+            this.key = key;
+            this.senderPerSecond = senderPerSecond;
+            this.senderBurst = senderBurst;
+            this.roomPerSecond = roomPerSecond;
+            this.roomBurst = roomBurst;
+        }
+    }
+
+    private final boolean enabled;
+    private final long origin = System.nanoTime();
+    private final Map<Route, Limits> limits = new EnumMap<>(Route.class);
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder overflows = new LongAdder();
+
+    /**
+     * Constructs a new RateLimiter.
+     *
+     * @param environment the environment holding the per-route limits
+     * @param enabled whether requests are limited at all
+     * @param slots the number of tracked senders or rooms per route
+     */
+    public RateLimiter(Environment environment,
+            @Value("${chat.rate-limit.enabled:true}") boolean enabled,
+            @Value("${chat.rate-limit.slots:65536}") int slots) {
+        this.enabled = enabled;
+        for (Route route : Route.values()) {
+            String prefix = "chat.rate-limit." + route.key;
+            limits.put(route, new Limits(
+                buckets(environment, prefix + ".sender", route.senderPerSecond, route.senderBurst, slots),
+                buckets(environment, prefix + ".room", route.roomPerSecond, route.roomBurst, slots)));
+        }
+    }
+
+    /**
+     * Charges a request to the buckets of its sender and its room.
+     *
+     * @param route the RPC being called
+     * @param senderId the ID of the user making the request
+     * @param chatRoomId the ID of the affected chat room, or 0 if not known
+     * @return null if the request is admitted, otherwise the RESOURCE_EXHAUSTED error to return
+     */
+    public StatusRuntimeException check(Route route, int senderId, int chatRoomId) {
+        if (!enabled) {
+            return null;
+        }
+        Limits routeLimits = limits.get(route);
+        long now = System.nanoTime() - origin;
+        long wait = acquire(routeLimits.sender(), senderId, now);
+        if (wait == 0 && chatRoomId > 0) {
+            wait = acquire(routeLimits.room(), chatRoomId, now);
+        }
+        if (wait == 0) {
+            return null;
+        }
+        rejected.increment();
+        long waitMillis = Math.max(1L, TimeUnit.NANOSECONDS.toMillis(wait));
+        Metadata trailers = new Metadata();
+        trailers.put(RETRY_PUSHBACK_MS, Long.toString(waitMillis));
+        return Status.RESOURCE_EXHAUSTED
+            .withDescription("Rate limit exceeded, retry in " + waitMillis + " ms")
+            .asRuntimeException(trailers);
+    }
+
+    /**
+     * Takes a snapshot of the limiter counters.
+     *
+     * @return the number of rejected requests and of requests admitted without a free bucket
+     */
+    public Stats stats() {
+        return new Stats(rejected.sum(), overflows.sum());
+    }
+
+    /**
+     * Takes a token from a bucket.
+     *
+     * @param buckets the bucket table, or null if the bucket is disabled
+     * @param key the sender or room ID
+     * @param now the time since the limiter was created, in nanoseconds
+     * @return 0 if admitted, otherwise the nanoseconds to wait
+     */
+    private long acquire(TokenBuckets buckets, int key, long now) {
+        if (buckets == null) {
+            return 0;
+        }
+        long wait = buckets.acquire(key, now);
+        if (wait < 0) {
+            overflows.increment();
+            return 0;
+        }
+        return wait;
+    }
+
+    /**
+     * Creates the bucket table of one route and key kind from its configuration.
+     *
+     * @param environment the environment holding the limits
+     * @param prefix the property prefix of the bucket
+     * @param defaultPerSecond the rate used when none is configured
+     * @param defaultBurst the burst size used when none is configured
+     * @param slots the number of tracked keys
+     * @return the bucket table, or null if the configured rate is 0
+     */
+    private static TokenBuckets buckets(Environment environment, String prefix, double defaultPerSecond,
+            int defaultBurst, int slots) {
+        double perSecond = environment.getProperty(prefix + ".per-second", Double.class, defaultPerSecond);
+        int burst = environment.getProperty(prefix + ".burst", Integer.class, defaultBurst);
+        return perSecond > 0 ? new TokenBuckets(perSecond, burst, slots) : null;
+    }
+
+    /**
+     * The sender and room buckets of one route.
+     *
+     * @param sender the buckets per sender, or null if unlimited
+     * @param room the buckets per room, or null if unlimited
+     */
+    private record Limits(TokenBuckets sender, TokenBuckets room) {
+    }
+
+    /**
+     * Snapshot of the limiter counters.
+     *
+     * @param rejected the number of requests rejected
+     * @param overflows the number of requests admitted because no bucket could be assigned
+     */
+    public record Stats(long rejected, long overflows) {
+    }
+}
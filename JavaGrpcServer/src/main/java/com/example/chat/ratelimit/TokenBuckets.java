@@ -0,0 +1,112 @@
+package com.example.chat.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size, lock-free table of token buckets keyed by int IDs.
+ * Each bucket is a single long holding its theoretical arrival time (the generic cell rate
+ * algorithm): the bucket is full whenever that time is not in the future, and taking a token
+ * advances it by one emission interval. A request is admitted with one CAS and no allocation.
+ *
+ * <p>Keys live in an open-addressed table probed over a few neighbouring slots. A slot whose
+ * bucket has refilled completely is indistinguishable from an absent one, so idle keys are
+ * evicted simply by letting another key take over their slot. When every probed slot is held by
+ * an active key, the request is admitted without a bucket and counted as an overflow.
+ */
+final class TokenBuckets {
+
+    private static final int PROBES = 8;
+
+    private final long intervalNanos;
+    private final long toleranceNanos;
+    private final int mask;
+    // Slot i holds its key plus one (0 = never used) at 2i and its theoretical arrival time at 2i + 1
+    private final AtomicLongArray slots;
+
+    /**
+     * Constructs a new TokenBuckets table.
+     *
+     * @param perSecond the tokens earned per second by each bucket
+     * @param burst the capacity of each bucket
+     * @param capacity the number of slots, rounded up to a power of two
+     */
+    TokenBuckets(double perSecond, int burst, int capacity) {
+        this.intervalNanos = Math.max(1L, (long) (1_000_000_000L / perSecond));
+        this.toleranceNanos = intervalNanos * (Math.max(1, burst) - 1);
+        int size = Integer.highestOneBit(Math.max(PROBES, Math.min(capacity, 1 << 24)) - 1) << 1;
+        this.mask = size - 1;
+        this.slots = new AtomicLongArray(size * 2);
+    }
+
+    /**
+     * Takes a token from the bucket of a key.
+     *
+     * @param key the key whose bucket is charged
+     * @param now the current time in nanoseconds, never negative
+     * @return 0 if a token was taken, otherwise the nanoseconds until the next token is available,
+     *         or -1 if the key could not be given a bucket
+     */
+    long acquire(int key, long now) {
+        int slot = slotOf(key, now);
+        if (slot < 0) {
+            return -1;
+        }
+        int at = 2 * slot + 1;
+        while (true) {
+            long arrival = slots.get(at);
+            long start = Math.max(arrival, now);
+            long wait = start - now - toleranceNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (slots.compareAndSet(at, arrival, start + intervalNanos)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Finds the slot of a key, taking over an unused or idle slot if the key has none.
+     *
+     * @param key the key
+     * @param now the current time in nanoseconds
+     * @return the slot index, or -1 if all probed slots belong to active keys
+     */
+    private int slotOf(int key, long now) {
+        long tagged = (key & 0xFFFFFFFFL) + 1;
+        int home = hash(key) & mask;
+        while (true) {
+            int free = -1;
+            long freeTag = 0;
+            for (int i = 0; i < PROBES; i++) {
+                int slot = (home + i) & mask;
+                long current = slots.get(2 * slot);
+                if (current == tagged) {
+                    return slot;
+                }
+                if (free < 0 && (current == 0 || slots.get(2 * slot + 1) <= now)) {
+                    free = slot;
+                    freeTag = current;
+                }
+            }
+            if (free < 0) {
+                return -1;
+            }
+            // The bucket of an idle slot is full, so the new key starts with a full bucket as well
+            if (slots.compareAndSet(2 * free, freeTag, tagged)) {
+                return free;
+            }
+        }
+    }
+
+    /**
+     * Spreads the bits of a key so that consecutive IDs do not share probe sequences.
+     *
+     * @param key the key
+     * @return the mixed hash
+     */
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
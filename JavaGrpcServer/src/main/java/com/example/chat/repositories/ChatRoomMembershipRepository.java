@@ -4,6 +4,8 @@ import java.util.List;
 import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.example.chat.domain.ChatRoom;
 import com.example.chat.domain.ChatRoomMembership;
@@ -23,6 +25,15 @@ public interface ChatRoomMembershipRepository extends JpaRepository<ChatRoomMemb
      */
     boolean existsByChatRoomAndUser(ChatRoom chatRoom, User user);
 
+    /**
+     * Checks if a membership exists for a user in a chat room, without loading either entity.
+     *
+     * @param chatRoomId the ID of the chat room
+     * @param userId the ID of the user
+     * @return true if the membership exists, false otherwise
+     */
+    boolean existsByChatRoomIdAndUserId(Integer chatRoomId, Integer userId);
+
     /**
      * Finds the membership record for a user in a chat room.
      *
@@ -47,5 +58,14 @@ public interface ChatRoomMembershipRepository extends JpaRepository<ChatRoomMemb
      * @return a list of all memberships the user belongs to
      */
     List<ChatRoomMembership> findByUser(User user);
+
+    /**
+     * Finds the IDs of all chat rooms a user belongs to, without loading the memberships.
+     *
+     * @param userId the ID of the user
+     * @return the IDs of the user's chat rooms
+     */
+    @Query("SELECT m.chatRoom.id FROM ChatRoomMembership m WHERE m.user.id = :userId")
+    List<Integer> findChatRoomIdsByUserId(@Param("userId") Integer userId);
 }
 
@@ -1,10 +1,15 @@
 package com.example.chat.repositories;
 
+import java.util.List;
 import java.util.Optional;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import com.example.chat.domain.ChatRoom;
+import com.example.chat.domain.ChatRoomType;
 
 /**
  * Repository interface for managing ChatRoom entities.
@@ -19,5 +24,34 @@ public interface ChatRoomRepository extends JpaRepository<ChatRoom, Integer> {
      * @return an Optional containing the chat room if found, empty otherwise
      */
     Optional<ChatRoom> findByOwnerIdAndRoomType(Integer ownerId, com.example.chat.domain.ChatRoomType roomType);
-}
 
+    /**
+     * Finds the IDs of all chat rooms without loading the rooms themselves.
+     *
+     * @return the IDs of all chat rooms in ascending order
+     */
+    @Query("SELECT r.id FROM ChatRoom r ORDER BY r.id")
+    List<Integer> findAllIds();
+
+    /**
+     * Finds one page of chat room IDs following an ID, walking the primary key.
+     *
+     * @param afterId the ID to continue after, 0 to start at the first room
+     * @param page the page limiting the number of IDs returned
+     * @return the IDs in ascending order
+     */
+    @Query("SELECT r.id FROM ChatRoom r WHERE r.id > :afterId ORDER BY r.id")
+    List<Integer> findIdsAfter(@Param("afterId") Integer afterId, Pageable page);
+
+    /**
+     * Finds one page of the IDs of chat rooms of a type following an ID.
+     *
+     * @param roomType the type of the chat rooms
+     * @param afterId the ID to continue after, 0 to start at the first room
+     * @param page the page limiting the number of IDs returned
+     * @return the IDs in ascending order
+     */
+    @Query("SELECT r.id FROM ChatRoom r WHERE r.roomType = :roomType AND r.id > :afterId ORDER BY r.id")
+    List<Integer> findIdsAfterByRoomType(@Param("roomType") ChatRoomType roomType, @Param("afterId") Integer afterId,
+        Pageable page);
+}
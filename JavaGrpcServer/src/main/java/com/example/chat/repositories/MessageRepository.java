@@ -1,8 +1,14 @@
 package com.example.chat.repositories;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.example.chat.domain.Message;
 
@@ -19,6 +25,117 @@ public interface MessageRepository extends JpaRepository<Message, Integer> {
      */
     List<Message> findByChatRoomIdOrderByCreatedAtAsc(Integer chatRoomId);
 
+    /**
+     * Finds the newest messages in a chat room, newest first.
+     * Served by the (chat_room_id, created_at, id) index without any OFFSET.
+     *
+     * @param chatRoomId the ID of the chat room
+     * @param limit the maximum number of messages to return
+     * @return up to {@code limit} messages ordered by (created_at, id) descending
+     */
+    @Query(value = "SELECT * FROM messages WHERE chat_room_id = :chatRoomId "
+        + "ORDER BY created_at DESC, id DESC LIMIT :limit", nativeQuery = true)
+    List<Message> findLatestPage(@Param("chatRoomId") Integer chatRoomId, @Param("limit") int limit);
+
+    /**
+     * Finds the newest messages of several chat rooms with one statement.
+     * The lateral subquery reads each room's newest rows from the (chat_room_id, created_at, id)
+     * index, so the cost grows with the number of rooms times the limit, not with room history.
+     *
+     * @param chatRoomIds the IDs of the chat rooms
+     * @param limit the maximum number of messages to return per room
+     * @return up to {@code limit} messages per room, grouped by room and ordered by (created_at, id) descending
+     */
+    @Query(value = "SELECT m.* FROM chat_rooms r CROSS JOIN LATERAL ("
+        + "SELECT * FROM messages WHERE chat_room_id = r.id ORDER BY created_at DESC, id DESC LIMIT :limit) m "
+        + "WHERE r.id IN (:chatRoomIds) "
+        + "ORDER BY m.chat_room_id, m.created_at DESC, m.id DESC", nativeQuery = true)
+    List<Message> findLatestPerRoom(@Param("chatRoomIds") Collection<Integer> chatRoomIds, @Param("limit") int limit);
+
+    /**
+     * Finds the messages in a chat room that come strictly before a cursor, newest first.
+     * The plain bound on created_at lets a month-partitioned table skip partitions newer
+     * than the cursor; the row comparison alone is not used for partition pruning.
+     *
+     * @param chatRoomId the ID of the chat room
+     * @param createdAt the creation time of the cursor message
+     * @param id the ID of the cursor message
+     * @param limit the maximum number of messages to return
+     * @return up to {@code limit} messages ordered by (created_at, id) descending
+     */
+    @Query(value = "SELECT * FROM messages WHERE chat_room_id = :chatRoomId "
+        + "AND created_at <= :createdAt AND (created_at, id) < (:createdAt, :id) "
+        + "ORDER BY created_at DESC, id DESC LIMIT :limit", nativeQuery = true)
+    List<Message> findPageBefore(@Param("chatRoomId") Integer chatRoomId, @Param("createdAt") Instant createdAt,
+        @Param("id") Integer id, @Param("limit") int limit);
+
+    /**
+     * Finds the messages in a chat room that come strictly after a cursor, oldest first.
+     * The plain bound on created_at lets a month-partitioned table skip partitions older
+     * than the cursor.
+     *
+     * @param chatRoomId the ID of the chat room
+     * @param createdAt the creation time of the cursor message
+     * @param id the ID of the cursor message
+     * @param limit the maximum number of messages to return
+     * @return up to {@code limit} messages ordered by (created_at, id) ascending
+     */
+    @Query(value = "SELECT * FROM messages WHERE chat_room_id = :chatRoomId "
+        + "AND created_at >= :createdAt AND (created_at, id) > (:createdAt, :id) "
+        + "ORDER BY created_at ASC, id ASC LIMIT :limit", nativeQuery = true)
+    List<Message> findPageAfter(@Param("chatRoomId") Integer chatRoomId, @Param("createdAt") Instant createdAt,
+        @Param("id") Integer id, @Param("limit") int limit);
+
+    /**
+     * Finds the messages in a chat room whose latest change is newer than a version.
+     *
+     * @param chatRoomId the ID of the chat room
+     * @param sinceVersion the change version the caller has already seen
+     * @param limit the maximum number of messages to return
+     * @return up to {@code limit} messages ordered by change version ascending
+     */
+    @Query(value = "SELECT * FROM messages WHERE chat_room_id = :chatRoomId "
+        + "AND change_version > :sinceVersion "
+        + "ORDER BY change_version ASC LIMIT :limit", nativeQuery = true)
+    List<Message> findChangedSince(@Param("chatRoomId") Integer chatRoomId, @Param("sinceVersion") long sinceVersion,
+        @Param("limit") int limit);
+
+    /**
+     * Replaces the text of a message in a single statement, provided the message was sent
+     * by the given user and is not deleted. Concurrent edits are serialized by the row lock
+     * of the UPDATE, so no edit can be lost between a read and a write.
+     * Exactly one of {@code text} and {@code textCompressed} is set; the casts keep the
+     * statement valid when the other one is bound as an untyped NULL.
+     *
+     * @param id the ID of the message
+     * @param senderId the ID of the user editing the message
+     * @param text the new text, or null if it is stored compressed
+     * @param textCompressed the new compressed text, or null if it is stored uncompressed
+     * @return the updated message, or empty if no row matched all conditions
+     */
+    @Transactional
+    @Query(value = "UPDATE messages SET text = CAST(:text AS text), text_compressed = CAST(:textCompressed AS bytea), "
+        + "is_edited = true, edited_at = now() "
+        + "WHERE id = :id AND sender_id = :senderId AND is_deleted = false "
+        + "RETURNING *", nativeQuery = true)
+    Optional<Message> editIfAllowed(@Param("id") Integer id, @Param("senderId") Integer senderId,
+        @Param("text") String text, @Param("textCompressed") byte[] textCompressed);
+
+    /**
+     * Soft-deletes a message in a single statement, provided the message was sent by the
+     * given user and is not deleted yet. Both text columns are cleared to the empty plain text,
+     * keeping exactly one of them set as {@code messages_text_present} requires.
+     *
+     * @param id the ID of the message
+     * @param requesterId the ID of the user deleting the message
+     * @return the deleted message, or empty if no row matched all conditions
+     */
+    @Transactional
+    @Query(value = "UPDATE messages SET is_deleted = true, deleted_at = now(), deleted_by = :requesterId, "
+        + "text = '', text_compressed = NULL WHERE id = :id AND sender_id = :requesterId AND is_deleted = false "
+        + "RETURNING *", nativeQuery = true)
+    Optional<Message> softDeleteIfAllowed(@Param("id") Integer id, @Param("requesterId") Integer requesterId);
+
     /**
      * Finds messages in a chat room containing the specified text (case-insensitive).
      *
@@ -27,4 +144,41 @@ public interface MessageRepository extends JpaRepository<Message, Integer> {
      * @return a list of matching messages ordered by creation time (ascending)
      */
     List<Message> findByChatRoomIdAndTextContainingIgnoreCaseOrderByCreatedAtAsc(Integer chatRoomId, String text);
+
+    /**
+     * Finds the IDs of messages in a chat room matching a full-text query,
+     * using the GIN index on the generated {@code text_search} column.
+     *
+     * @param chatRoomId the ID of the chat room
+     * @param tsQuery the query in {@code to_tsquery} syntax, using the 'simple' configuration
+     * @param limit the maximum number of IDs to return
+     * @param offset the number of ranked results to skip
+     * @return the IDs of matching, non-deleted messages ordered by rank, then newest first
+     */
+    @Query(value = "SELECT m.id FROM messages m "
+        + "WHERE m.chat_room_id = :chatRoomId AND m.is_deleted = false "
+        + "AND m.text_search @@ to_tsquery('simple', :tsQuery) "
+        + "ORDER BY ts_rank(m.text_search, to_tsquery('simple', :tsQuery)) DESC, m.created_at DESC, m.id DESC "
+        + "LIMIT :limit OFFSET :offset", nativeQuery = true)
+    List<Integer> searchFullText(@Param("chatRoomId") Integer chatRoomId, @Param("tsQuery") String tsQuery,
+        @Param("limit") int limit, @Param("offset") int offset);
+
+    /**
+     * Finds the IDs of messages in a chat room containing a substring or similar words,
+     * using the pg_trgm GIN index on {@code text}.
+     *
+     * @param chatRoomId the ID of the chat room
+     * @param query the words to compare against the message text
+     * @param pattern an ILIKE pattern matching the substring
+     * @param limit the maximum number of IDs to return
+     * @param offset the number of ranked results to skip
+     * @return the IDs of matching, non-deleted messages ordered by word similarity, then newest first
+     */
+    @Query(value = "SELECT m.id FROM messages m "
+        + "WHERE m.chat_room_id = :chatRoomId AND m.is_deleted = false "
+        + "AND (m.text ILIKE :pattern OR :query <% m.text) "
+        + "ORDER BY word_similarity(:query, m.text) DESC, m.created_at DESC, m.id DESC "
+        + "LIMIT :limit OFFSET :offset", nativeQuery = true)
+    List<Integer> searchSimilar(@Param("chatRoomId") Integer chatRoomId, @Param("query") String query,
+        @Param("pattern") String pattern, @Param("limit") int limit, @Param("offset") int offset);
 }
@@ -0,0 +1,42 @@
+package com.example.chat.search;
+
+import java.util.List;
+
+import com.example.chat.grpc.SearchMessagesRequest;
+
+/**
+ * Strategy answering message searches within a chat room.
+ * The implementation is chosen with the {@code chat.search.backend} property:
+ * {@code memory} for the in-process {@link MessageSearchIndex}, or {@code postgres}
+ * for {@link PostgresMessageSearch}, which keeps the index in the database.
+ */
+public interface MessageSearchBackend {
+
+    /**
+     * Searches a room for messages matching a query.
+     *
+     * @param chatRoomId the ID of the chat room
+     * @param query the free-text query
+     * @param mode how query words are matched
+     * @param offset the number of ranked results to skip
+     * @param limit the maximum number of results to return
+     * @return the IDs of the matching messages in ranked order
+     */
+    SearchResult search(int chatRoomId, String query, SearchMessagesRequest.Mode mode, int offset, int limit);
+
+    /**
+     * The result of a search.
+     *
+     * @param messageIds the IDs of the messages on the requested page, in ranked order
+     * @param totalMatches the total number of matching messages, or a lower bound of it
+     *                     when the backend does not count all matches
+     * @param hasMore whether more results exist after this page
+     */
+    record SearchResult(List<Integer> messageIds, int totalMatches, boolean hasMore) {
+
+        /**
+         * A result without any matches.
+         */
+        public static final SearchResult EMPTY = new SearchResult(List.of(), 0, false);
+    }
+}
@@ -0,0 +1,577 @@
+package com.example.chat.search;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import com.example.chat.codec.MessageTextCodec;
+import com.example.chat.events.RoomEventListener;
+import com.example.chat.grpc.RoomEvent;
+import com.example.chat.grpc.SearchMessagesRequest;
+import com.example.chat.repositories.ChatRoomRepository;
+import com.example.chat.repositories.MessageRepository;
+
+/**
+ * In-process inverted index over message text, partitioned by chat room.
+ * Each room keeps a sorted term dictionary mapping lowercased tokens to sorted postings
+ * lists of message IDs. The index is built from {@link MessageRepository} on first use
+ * of a room (or for all rooms at startup) and kept current incrementally from room events.
+ *
+ * <p>By default all query tokens must match whole words, except the last one, which also
+ * matches as a prefix so that search-as-you-type works. Results are ranked with messages
+ * matching every token as a whole word first and newest messages first within each group.
+ */
+@Component
+@ConditionalOnProperty(name = "chat.search.backend", havingValue = "memory", matchIfMissing = true)
+public class MessageSearchIndex implements MessageSearchBackend, RoomEventListener {
+
+    private static final Logger log = LoggerFactory.getLogger(MessageSearchIndex.class);
+
+    private static final int MAX_TOKEN_LENGTH = 64;
+
+    /**
+     * Upper bound on the number of dictionary terms a token is expanded to,
+     * which bounds the cost of one- and two-letter prefixes in large rooms.
+     */
+    private static final int MAX_TERM_EXPANSIONS = 256;
+
+    /**
+     * Tokens shorter than this are never matched fuzzily, since almost every
+     * short word is within one edit of them.
+     */
+    private static final int MIN_FUZZY_LENGTH = 4;
+
+    /**
+     * Upper bound on the number of dictionary terms compared with a token in fuzzy mode,
+     * which bounds how long a query holds the read lock of a room with a large vocabulary.
+     */
+    private static final int MAX_FUZZY_TERMS_EXAMINED = 4096;
+
+    private static final int[] NO_IDS = new int[0];
+
+    private static final int BUILD_PAGE_SIZE = 1000;
+
+    private final MessageRepository messageRepository;
+    private final ChatRoomRepository chatRoomRepository;
+    private final MessageTextCodec textCodec;
+    private final boolean rebuildOnStartup;
+    private final ConcurrentHashMap<Integer, RoomIndex> rooms = new ConcurrentHashMap<>();
+
+    /**
+     * Constructs a new MessageSearchIndex.
+     *
+     * @param messageRepository the repository the index is built from
+     * @param chatRoomRepository the repository used to enumerate rooms at startup
+     * @param textCodec the codec decompressing stored message texts
+     * @param rebuildOnStartup whether all rooms are indexed in the background at startup
+     */
+    public MessageSearchIndex(MessageRepository messageRepository, ChatRoomRepository chatRoomRepository,
+            MessageTextCodec textCodec,
+            @Value("${chat.search.index.rebuild-on-startup:true}") boolean rebuildOnStartup) {
+        this.messageRepository = messageRepository;
+        this.chatRoomRepository = chatRoomRepository;
+        this.textCodec = textCodec;
+        this.rebuildOnStartup = rebuildOnStartup;
+    }
+
+    /**
+     * Indexes all rooms in a background thread once the application has started.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildAllOnStartup() {
+        if (!rebuildOnStartup) {
+            return;
+        }
+        Thread thread = new Thread(() -> {
+            long started = System.nanoTime();
+            List<Integer> roomIds = chatRoomRepository.findAllIds();
+            for (Integer roomId : roomIds) {
+                try {
+                    ensureBuilt(roomId);
+                } catch (RuntimeException ex) {
+                    log.warn("Failed to index chat room {}", roomId, ex);
+                }
+            }
+            log.info("Indexed {} chat rooms in {} ms", roomIds.size(), (System.nanoTime() - started) / 1_000_000);
+        }, "message-index-rebuild");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public SearchResult search(int chatRoomId, String query, SearchMessagesRequest.Mode mode, int offset, int limit) {
+        List<String> ordered = tokenize(query);
+        List<String> tokens = new ArrayList<>(new LinkedHashSet<>(ordered));
+        if (tokens.isEmpty()) {
+            return SearchResult.EMPTY;
+        }
+
+        RoomIndex index = ensureBuilt(chatRoomId);
+        int[] exactHits = null;
+        int[] candidates = null;
+        index.lock.readLock().lock();
+        try {
+            for (int i = 0; i < tokens.size(); i++) {
+                String token = tokens.get(i);
+                boolean last = i == tokens.size() - 1;
+                Postings exact = index.terms.get(token);
+                int[] exactIds = exact == null ? NO_IDS : exact.toArray();
+                int[] matchIds = switch (mode) {
+                    case PHRASE -> exactIds;
+                    case PREFIX -> expand(index.terms, token, true, false);
+                    case FUZZY -> expand(index.terms, token, last, true);
+                    default -> last ? expand(index.terms, token, true, false) : exactIds;
+                };
+                candidates = candidates == null ? matchIds : intersect(candidates, matchIds);
+                exactHits = exactHits == null ? exactIds : intersect(exactHits, exactIds);
+                if (candidates.length == 0) {
+                    return SearchResult.EMPTY;
+                }
+            }
+            if (mode == SearchMessagesRequest.Mode.PHRASE && ordered.size() > 1) {
+                candidates = filterPhrase(index, candidates, ordered);
+                exactHits = candidates;
+            }
+        } finally {
+            index.lock.readLock().unlock();
+        }
+
+        List<Integer> page = new ArrayList<>(Math.min(limit, candidates.length));
+        int skip = offset;
+        for (int i = exactHits.length - 1; i >= 0 && page.size() < limit; i--) {
+            if (skip > 0) {
+                skip--;
+            } else {
+                page.add(exactHits[i]);
+            }
+        }
+        for (int i = candidates.length - 1; i >= 0 && page.size() < limit; i--) {
+            if (Arrays.binarySearch(exactHits, candidates[i]) >= 0) {
+                continue;
+            }
+            if (skip > 0) {
+                skip--;
+            } else {
+                page.add(candidates[i]);
+            }
+        }
+        boolean hasMore = (long) offset + page.size() < candidates.length;
+        return new SearchResult(page, candidates.length, hasMore);
+    }
+
+    /**
+     * Applies a room event to the room's index, if the room is indexed.
+     * Events arriving while the room is being built are replayed once the build completes.
+     *
+     * @param event the published event
+     */
+    @Override
+    public void onRoomEvent(RoomEvent event) {
+        RoomIndex index = rooms.get(event.getChatRoomId());
+        if (index == null || !event.hasMessage()) {
+            return;
+        }
+        index.lock.writeLock().lock();
+        try {
+            if (!index.ready) {
+                index.pending.add(event);
+                return;
+            }
+            apply(index, event);
+        } finally {
+            index.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drops all room indexes, since events that would have updated them were missed.
+     */
+    @Override
+    public void onEventsMissed() {
+        rooms.clear();
+    }
+
+    /**
+     * Drops the index of a room so that it is rebuilt from the database on next use.
+     *
+     * @param chatRoomId the ID of the chat room
+     */
+    public void invalidate(int chatRoomId) {
+        rooms.remove(chatRoomId);
+    }
+
+    /**
+     * Splits text into lowercased letter-or-digit tokens.
+     *
+     * @param text the text to tokenize
+     * @return the tokens in order of appearance, including duplicates
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                String token = text.substring(start, Math.min(i, start + MAX_TOKEN_LENGTH)).toLowerCase();
+                tokens.add(token);
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Returns the index of a room, building it from the database if necessary.
+     *
+     * @param chatRoomId the ID of the chat room
+     * @return the ready index
+     */
+    private RoomIndex ensureBuilt(int chatRoomId) {
+        RoomIndex index = rooms.computeIfAbsent(chatRoomId, id -> new RoomIndex());
+        if (index.ready) {
+            return index;
+        }
+        synchronized (index) {
+            if (index.ready) {
+                return index;
+            }
+            Instant createdAt = Instant.EPOCH;
+            int lastId = 0;
+            while (true) {
+                List<com.example.chat.domain.Message> page =
+                    messageRepository.findPageAfter(chatRoomId, createdAt, lastId, BUILD_PAGE_SIZE);
+                index.lock.writeLock().lock();
+                try {
+                    for (com.example.chat.domain.Message m : page) {
+                        if (!m.isDeleted()) {
+                            addDocument(index, m.getId(), textCodec.text(m));
+                        }
+                    }
+                } finally {
+                    index.lock.writeLock().unlock();
+                }
+                if (page.size() < BUILD_PAGE_SIZE) {
+                    break;
+                }
+                com.example.chat.domain.Message last = page.get(page.size() - 1);
+                createdAt = last.getCreatedAt();
+                lastId = last.getId();
+            }
+            index.lock.writeLock().lock();
+            try {
+                for (RoomEvent pending : index.pending) {
+                    apply(index, pending);
+                }
+                index.pending.clear();
+                index.ready = true;
+            } finally {
+                index.lock.writeLock().unlock();
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Applies a single event to a room index. Must be called with the write lock held.
+     *
+     * @param index the room index
+     * @param event the event to apply
+     */
+    private static void apply(RoomIndex index, RoomEvent event) {
+        int messageId = event.getMessage().getId();
+        removeDocument(index, messageId);
+        if (event.getType() != RoomEvent.Type.MESSAGE_DELETED && !event.getMessage().getIsDeleted()) {
+            addDocument(index, messageId, event.getMessage().getText());
+        }
+    }
+
+    /**
+     * Adds a message to a room index, replacing any previous version of it.
+     *
+     * @param index the room index
+     * @param messageId the ID of the message
+     * @param text the message text
+     */
+    private static void addDocument(RoomIndex index, int messageId, String text) {
+        removeDocument(index, messageId);
+        List<String> tokens = tokenize(text);
+        if (tokens.isEmpty()) {
+            return;
+        }
+        String[] stored = new String[tokens.size()];
+        int i = 0;
+        for (String token : tokens) {
+            Map.Entry<String, Postings> entry = index.terms.ceilingEntry(token);
+            Postings postings;
+            if (entry != null && entry.getKey().equals(token)) {
+                stored[i++] = entry.getKey();
+                postings = entry.getValue();
+            } else {
+                stored[i++] = token;
+                postings = new Postings();
+                index.terms.put(token, postings);
+            }
+            postings.add(messageId);
+        }
+        index.docs.put(messageId, stored);
+    }
+
+    /**
+     * Removes a message from a room index.
+     *
+     * @param index the room index
+     * @param messageId the ID of the message
+     */
+    private static void removeDocument(RoomIndex index, int messageId) {
+        String[] tokens = index.docs.remove(messageId);
+        if (tokens == null) {
+            return;
+        }
+        for (String token : tokens) {
+            Postings postings = index.terms.get(token);
+            if (postings != null && postings.remove(messageId) && postings.size == 0) {
+                index.terms.remove(token);
+            }
+        }
+    }
+
+    /**
+     * Unions the postings of a token and of the dictionary terms it expands to.
+     * Fuzzy matching only examines the terms sharing the token's first letter, those sharing its
+     * first two letters first, up to {@link #MAX_FUZZY_TERMS_EXAMINED} of them; a term missing the
+     * token's first letter is looked up directly, while other typos in the first letter are not found.
+     *
+     * @param terms the room's term dictionary
+     * @param token the query token
+     * @param prefix whether terms starting with the token match
+     * @param fuzzy whether terms within one edit of the token match
+     * @return the sorted, de-duplicated message IDs
+     */
+    private static int[] expand(TreeMap<String, Postings> terms, String token, boolean prefix, boolean fuzzy) {
+        Postings exact = terms.get(token);
+        int[] result = exact == null ? NO_IDS : exact.toArray();
+        int expanded = 0;
+        if (prefix) {
+            NavigableMap<String, Postings> matches = terms.subMap(token, false, token + Character.MAX_VALUE, false);
+            for (Postings postings : matches.values()) {
+                if (expanded++ >= MAX_TERM_EXPANSIONS) {
+                    break;
+                }
+                result = union(result, postings.toArray());
+            }
+        }
+        if (fuzzy && token.length() >= MIN_FUZZY_LENGTH) {
+            Postings dropped = terms.get(token.substring(1));
+            if (dropped != null) {
+                expanded++;
+                result = union(result, dropped.toArray());
+            }
+            String first = token.substring(0, 1);
+            String firstTwo = token.substring(0, 2);
+            List<NavigableMap<String, Postings>> buckets = new ArrayList<>(3);
+            buckets.add(terms.subMap(firstTwo, true, firstTwo + Character.MAX_VALUE, false));
+            buckets.add(terms.subMap(first, true, firstTwo, false));
+            if (token.charAt(1) != Character.MAX_VALUE) {
+                buckets.add(terms.subMap(firstTwo + Character.MAX_VALUE, false, first + Character.MAX_VALUE, false));
+            }
+            int examined = 0;
+            scan:
+            for (NavigableMap<String, Postings> bucket : buckets) {
+                for (Map.Entry<String, Postings> entry : bucket.entrySet()) {
+                    if (expanded >= MAX_TERM_EXPANSIONS || examined++ >= MAX_FUZZY_TERMS_EXAMINED) {
+                        break scan;
+                    }
+                    if (!entry.getKey().equals(token) && withinOneEdit(token, entry.getKey())) {
+                        expanded++;
+                        result = union(result, entry.getValue().toArray());
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Keeps only the candidates whose text contains the query tokens adjacent and in order.
+     * Must be called with the read lock held.
+     *
+     * @param index the room index
+     * @param candidates the messages containing every query token
+     * @param phrase the query tokens in order
+     * @return the sorted IDs of the messages containing the phrase
+     */
+    private static int[] filterPhrase(RoomIndex index, int[] candidates, List<String> phrase) {
+        int[] out = new int[candidates.length];
+        int n = 0;
+        for (int id : candidates) {
+            String[] doc = index.docs.get(id);
+            if (doc != null && containsPhrase(doc, phrase)) {
+                out[n++] = id;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Checks whether a token sequence contains a phrase.
+     *
+     * @param doc the tokens of a message in order
+     * @param phrase the query tokens in order
+     * @return true if the phrase occurs contiguously in the message
+     */
+    static boolean containsPhrase(String[] doc, List<String> phrase) {
+        outer:
+        for (int start = 0; start + phrase.size() <= doc.length; start++) {
+            for (int j = 0; j < phrase.size(); j++) {
+                if (!doc[start + j].equals(phrase.get(j))) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Checks whether two words differ by at most one insertion, deletion or substitution.
+     *
+     * @param a the first word
+     * @param b the second word
+     * @return true if the edit distance is at most one
+     */
+    static boolean withinOneEdit(String a, String b) {
+        if (Math.abs(a.length() - b.length()) > 1) {
+            return false;
+        }
+        String shorter = a.length() <= b.length() ? a : b;
+        String longer = a.length() <= b.length() ? b : a;
+        int i = 0;
+        while (i < shorter.length() && shorter.charAt(i) == longer.charAt(i)) {
+            i++;
+        }
+        if (shorter.length() == longer.length()) {
+            return shorter.regionMatches(i + 1, longer, i + 1, shorter.length() - i - 1);
+        }
+        return shorter.regionMatches(i, longer, i + 1, shorter.length() - i);
+    }
+
+    /**
+     * Intersects two sorted ID arrays.
+     *
+     * @param a the first sorted array
+     * @param b the second sorted array
+     * @return the sorted intersection
+     */
+    static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /**
+     * Unions two sorted ID arrays.
+     *
+     * @param a the first sorted array
+     * @param b the second sorted array
+     * @return the sorted, de-duplicated union
+     */
+    static int[] union(int[] a, int[] b) {
+        int[] out = new int[a.length + b.length];
+        int i = 0;
+        int j = 0;
+        int n = 0;
+        while (i < a.length || j < b.length) {
+            if (j >= b.length || (i < a.length && a[i] < b[j])) {
+                out[n++] = a[i++];
+            } else if (i >= a.length || b[j] < a[i]) {
+                out[n++] = b[j++];
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /**
+     * The index of a single chat room.
+     */
+    private static final class RoomIndex {
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final TreeMap<String, Postings> terms = new TreeMap<>();
+        private final HashMap<Integer, String[]> docs = new HashMap<>();
+        private final List<RoomEvent> pending = new ArrayList<>();
+        private volatile boolean ready;
+    }
+
+    /**
+     * Sorted, growable list of message IDs containing a term.
+     */
+    private static final class Postings {
+        private int[] ids = new int[2];
+        private int size;
+
+        void add(int id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos >= 0) {
+                return;
+            }
+            pos = -pos - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, pos, ids, pos + 1, size - pos);
+            ids[pos] = id;
+            size++;
+        }
+
+        boolean remove(int id) {
+            int pos = Arrays.binarySearch(ids, 0, size, id);
+            if (pos < 0) {
+                return false;
+            }
+            System.arraycopy(ids, pos + 1, ids, pos, size - pos - 1);
+            size--;
+            return true;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(ids, size);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.chat.search;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import com.example.chat.grpc.SearchMessagesRequest;
+import com.example.chat.repositories.MessageRepository;
+
+/**
+ * Search backend that keeps the index in PostgreSQL instead of the heap.
+ * Word queries run against the GIN-indexed {@code text_search} tsvector column;
+ * fuzzy queries use the pg_trgm index on {@code text} for substring and similarity matching.
+ */
+@Component
+@ConditionalOnProperty(name = "chat.search.backend", havingValue = "postgres")
+public class PostgresMessageSearch implements MessageSearchBackend {
+
+    private final MessageRepository messageRepository;
+
+    /**
+     * Constructs a new PostgresMessageSearch.
+     *
+     * @param messageRepository the repository running the search queries
+     */
+    public PostgresMessageSearch(MessageRepository messageRepository) {
+        this.messageRepository = messageRepository;
+    }
+
+    @Override
+    public SearchResult search(int chatRoomId, String query, SearchMessagesRequest.Mode mode, int offset, int limit) {
+        List<String> tokens = MessageSearchIndex.tokenize(query);
+        if (tokens.isEmpty()) {
+            return SearchResult.EMPTY;
+        }
+
+        List<Integer> ids;
+        if (mode == SearchMessagesRequest.Mode.FUZZY) {
+            String pattern = "%" + escapeLike(query.trim()) + "%";
+            ids = messageRepository.searchSimilar(chatRoomId, String.join(" ", tokens), pattern, limit + 1, offset);
+        } else {
+            ids = messageRepository.searchFullText(chatRoomId, toTsQuery(tokens, mode), limit + 1, offset);
+        }
+
+        boolean hasMore = ids.size() > limit;
+        List<Integer> page = new ArrayList<>(hasMore ? ids.subList(0, limit) : ids);
+        return new SearchResult(page, offset + ids.size(), hasMore);
+    }
+
+    /**
+     * Builds a {@code to_tsquery} expression from query tokens.
+     * Tokens consist of letters and digits only, so they never contain tsquery operators.
+     *
+     * @param tokens the query tokens in order of appearance
+     * @param mode how the tokens are matched
+     * @return the tsquery expression
+     */
+    static String toTsQuery(List<String> tokens, SearchMessagesRequest.Mode mode) {
+        if (mode == SearchMessagesRequest.Mode.PHRASE) {
+            return String.join(" <-> ", tokens);
+        }
+        List<String> distinct = new ArrayList<>(new LinkedHashSet<>(tokens));
+        StringBuilder tsQuery = new StringBuilder();
+        for (int i = 0; i < distinct.size(); i++) {
+            boolean prefix = mode == SearchMessagesRequest.Mode.PREFIX || i == distinct.size() - 1;
+            tsQuery.append(i == 0 ? "" : " & ").append(distinct.get(i)).append(prefix ? ":*" : "");
+        }
+        return tsQuery.toString();
+    }
+
+    /**
+     * Escapes the LIKE wildcards in user input.
+     *
+     * @param text the raw text
+     * @return the text with backslash, percent and underscore escaped
+     */
+    static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
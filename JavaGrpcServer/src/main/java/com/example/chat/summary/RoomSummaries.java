@@ -0,0 +1,181 @@
+package com.example.chat.summary;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.example.chat.domain.Message;
+
+/**
+ * Read model holding the latest activity of every chat room in {@code room_summaries}:
+ * the last message with its sender, time and a short preview, and the number of messages
+ * that are not deleted. The model is updated incrementally, so listing a user's rooms
+ * sorted by recent activity is one indexed read instead of a history query per room.
+ *
+ * <p>New messages are recorded by the ingestion pipeline in the transaction of their batch,
+ * with one upsert per batch; a batch only replaces the last message of a room with a newer one.
+ * Edits and deletes are recorded in the transaction of their conditional UPDATE, so the summary
+ * changes exactly when the message does.
+ */
+@Component
+public class RoomSummaries {
+
+    /**
+     * Condition of the upsert under which the inserted message replaces the stored last message.
+     * Messages are ordered by (created_at, id) like the history, so a batch committed late, or by
+     * another instance, cannot replace a newer preview with an older one.
+     */
+    private static final String NEWER = "(EXCLUDED.last_message_at, EXCLUDED.last_message_id) "
+        + ">= (room_summaries.last_message_at, room_summaries.last_message_id)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int previewLength;
+
+    /**
+     * Constructs a new RoomSummaries.
+     *
+     * @param jdbcTemplate the JDBC template used to read and write summaries
+     * @param previewLength the maximum number of characters of a message kept as preview
+     */
+    public RoomSummaries(JdbcTemplate jdbcTemplate,
+            @Value("${chat.room-summaries.preview-length:100}") int previewLength) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.previewLength = Math.max(1, previewLength);
+    }
+
+    /**
+     * Records newly inserted messages, with one upsert for all rooms of the batch.
+     * Must be called in the transaction inserting the messages.
+     *
+     * @param messages the inserted messages in insertion order
+     */
+    public void recordInserted(List<Message> messages) {
+        Map<Integer, Message> last = new LinkedHashMap<>();
+        Map<Integer, Integer> counts = new LinkedHashMap<>();
+        for (Message message : messages) {
+            last.put(message.getChatRoomId(), message);
+            counts.merge(message.getChatRoomId(), 1, Integer::sum);
+        }
+        StringBuilder sql = new StringBuilder("INSERT INTO room_summaries (chat_room_id, last_message_id, "
+            + "last_sender_id, last_preview, last_message_at, message_count) VALUES ");
+        Object[] args = new Object[last.size() * 6];
+        int i = 0;
+        for (Message message : last.values()) {
+            sql.append(i == 0 ? "(?, ?, ?, ?, ?, ?)" : ", (?, ?, ?, ?, ?, ?)");
+            args[i * 6] = message.getChatRoomId();
+            args[i * 6 + 1] = message.getId();
+            args[i * 6 + 2] = message.getSenderId();
+            args[i * 6 + 3] = preview(message.getText());
+            args[i * 6 + 4] = Timestamp.from(message.getCreatedAt());
+            args[i * 6 + 5] = counts.get(message.getChatRoomId());
+            i++;
+        }
+        sql.append(" ON CONFLICT (chat_room_id) DO UPDATE SET "
+            + "last_message_id = CASE WHEN " + NEWER + " THEN EXCLUDED.last_message_id "
+            + "ELSE room_summaries.last_message_id END, "
+            + "last_sender_id = CASE WHEN " + NEWER + " THEN EXCLUDED.last_sender_id "
+            + "ELSE room_summaries.last_sender_id END, "
+            + "last_preview = CASE WHEN " + NEWER + " THEN EXCLUDED.last_preview "
+            + "ELSE room_summaries.last_preview END, "
+            + "last_message_at = CASE WHEN " + NEWER + " THEN EXCLUDED.last_message_at "
+            + "ELSE room_summaries.last_message_at END, "
+            + "message_count = room_summaries.message_count + EXCLUDED.message_count");
+        jdbcTemplate.update(sql.toString(), args);
+    }
+
+    /**
+     * Updates the preview of a room if the edited message is its last message.
+     * Must be called in the transaction editing the message.
+     *
+     * @param message the edited message
+     * @param text the new plain text of the message
+     */
+    public void recordEdited(Message message, String text) {
+        jdbcTemplate.update("UPDATE room_summaries SET last_preview = ? "
+            + "WHERE chat_room_id = ? AND last_message_id = ?",
+            preview(text), message.getChatRoomId(), message.getId());
+    }
+
+    /**
+     * Removes a deleted message from the count of its room, and from its preview if it is
+     * the room's last message. Must be called in the transaction deleting the message.
+     *
+     * @param message the deleted message
+     */
+    public void recordDeleted(Message message) {
+        jdbcTemplate.update("UPDATE room_summaries SET message_count = greatest(message_count - 1, 0), "
+            + "last_preview = CASE WHEN last_message_id = ? THEN '' ELSE last_preview END "
+            + "WHERE chat_room_id = ?",
+            message.getId(), message.getChatRoomId());
+    }
+
+    /**
+     * Lists the group chat rooms of a user, most recently active first.
+     * Rooms without messages come last, newest room first.
+     *
+     * @param userId the ID of the user
+     * @return the rooms with their names and summaries
+     */
+    public List<RoomSummary> groupRoomsOf(int userId) {
+        return jdbcTemplate.query(
+            "SELECT mem.chat_room_id, g.name, s.last_message_id, s.last_sender_id, s.last_preview, "
+                + "s.last_message_at, s.message_count "
+                + "FROM chat_room_memberships mem "
+                + "JOIN chat_rooms r ON r.id = mem.chat_room_id AND r.room_type = 'GROUP' "
+                + "LEFT JOIN group_chat_rooms g ON g.chat_room_id = mem.chat_room_id "
+                + "LEFT JOIN room_summaries s ON s.chat_room_id = mem.chat_room_id "
+                + "WHERE mem.user_id = ? "
+                + "ORDER BY s.last_message_at DESC NULLS LAST, mem.chat_room_id DESC",
+            (rs, rowNum) -> {
+                int chatRoomId = rs.getInt("chat_room_id");
+                String name = rs.getString("name");
+                Timestamp lastMessageAt = rs.getTimestamp("last_message_at");
+                String preview = rs.getString("last_preview");
+                return new RoomSummary(chatRoomId, name != null ? name : "Room " + chatRoomId,
+                    rs.getInt("last_message_id"), rs.getInt("last_sender_id"), preview != null ? preview : "",
+                    lastMessageAt != null ? lastMessageAt.toInstant() : null, rs.getLong("message_count"));
+            },
+            userId);
+    }
+
+    /**
+     * Shortens a message text to the preview length without splitting a surrogate pair.
+     *
+     * @param text the plain message text
+     * @return the preview
+     */
+    String preview(String text) {
+        if (text == null) {
+            return "";
+        }
+        if (text.length() <= previewLength) {
+            return text;
+        }
+        int end = previewLength;
+        if (Character.isHighSurrogate(text.charAt(end - 1))) {
+            end--;
+        }
+        return text.substring(0, end);
+    }
+
+    /**
+     * A chat room of a user together with its latest activity.
+     *
+     * @param chatRoomId the ID of the chat room
+     * @param name the display name of the room
+     * @param lastMessageId the ID of the last message, or 0 if the room has none
+     * @param lastSenderId the ID of the sender of the last message, or 0 if the room has none
+     * @param lastPreview the beginning of the last message, empty if it was deleted
+     * @param lastMessageAt the time of the last message, or null if the room has none
+     * @param messageCount the number of messages that are not deleted
+     */
+    public record RoomSummary(int chatRoomId, String name, int lastMessageId, int lastSenderId,
+            String lastPreview, Instant lastMessageAt, long messageCount) {
+    }
+}
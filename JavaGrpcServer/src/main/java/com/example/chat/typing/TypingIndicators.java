@@ -0,0 +1,221 @@
+package com.example.chat.typing;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.example.chat.events.RoomEventHub;
+import com.example.chat.grpc.RoomEvent;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * Ephemeral typing state of users in chat rooms, held only in memory.
+ * Clients repeat {@link #setTyping(int, int, boolean)} while the user types; a user who is
+ * not refreshed within the timeout is swept and announced as stopped. Repeated calls only
+ * extend the expiry of the existing entry and are re-announced at most once per announce
+ * interval, so room subscribers see a few events per typing user however often clients call.
+ *
+ * <p>The number of tracked users is capped: once the cap is reached, new typists are refused
+ * until entries expire, which keeps memory bounded regardless of the number of typing users.
+ */
+@Component
+public class TypingIndicators {
+
+    private static final Logger log = LoggerFactory.getLogger(TypingIndicators.class);
+
+    private final RoomEventHub roomEventHub;
+    private final long timeoutNanos;
+    private final long announceIntervalNanos;
+    private final long sweepIntervalMillis;
+    private final int maxEntries;
+    private final ConcurrentHashMap<Long, Typist> typists = new ConcurrentHashMap<>();
+    private ScheduledExecutorService executor;
+
+    /**
+     * Constructs a new TypingIndicators.
+     *
+     * @param roomEventHub the hub delivering typing events to room subscribers
+     * @param timeoutMillis the time after which a user who is not refreshed stops typing
+     * @param announceIntervalMillis the minimum interval between two start events of the same user
+     * @param sweepIntervalMillis the interval between sweeps of expired users
+     * @param maxEntries the maximum number of users tracked at once
+     */
+    public TypingIndicators(RoomEventHub roomEventHub,
+            @Value("${chat.typing.timeout-ms:6000}") long timeoutMillis,
+            @Value("${chat.typing.announce-interval-ms:3000}") long announceIntervalMillis,
+            @Value("${chat.typing.sweep-interval-ms:1000}") long sweepIntervalMillis,
+            @Value("${chat.typing.max-entries:100000}") int maxEntries) {
+        this.roomEventHub = roomEventHub;
+        this.timeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1L, timeoutMillis));
+        this.announceIntervalNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, announceIntervalMillis));
+        this.sweepIntervalMillis = Math.max(50L, sweepIntervalMillis);
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    /**
+     * Starts the periodic sweep of expired typing users.
+     */
+    @PostConstruct
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "typing-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                sweep(System.nanoTime());
+            } catch (RuntimeException ex) {
+                log.warn("Failed to sweep typing indicators", ex);
+            }
+        }, sweepIntervalMillis, sweepIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the periodic sweep.
+     */
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Starts, refreshes or stops the typing indicator of a user in a room.
+     *
+     * @param chatRoomId the ID of the chat room
+     * @param userId the ID of the typing user
+     * @param typing whether the user is typing
+     * @return false if the user could not be tracked because the cap is reached
+     */
+    public boolean setTyping(int chatRoomId, int userId, boolean typing) {
+        return setTyping(chatRoomId, userId, typing, System.nanoTime());
+    }
+
+    /**
+     * Stops the typing indicator of a user, typically because the user has sent a message.
+     *
+     * @param chatRoomId the ID of the chat room
+     * @param userId the ID of the user
+     */
+    public void clear(int chatRoomId, int userId) {
+        if (typists.remove(key(chatRoomId, userId)) != null) {
+            publish(RoomEvent.Type.TYPING_STOPPED, chatRoomId, userId);
+        }
+    }
+
+    /**
+     * Gets the number of users currently tracked as typing.
+     *
+     * @return the number of typing users
+     */
+    public int size() {
+        return typists.size();
+    }
+
+    /**
+     * Starts, refreshes or stops the typing indicator of a user at a given time.
+     *
+     * @param chatRoomId the ID of the chat room
+     * @param userId the ID of the typing user
+     * @param typing whether the user is typing
+     * @param now the current {@link System#nanoTime()}
+     * @return false if the user could not be tracked because the cap is reached
+     */
+    boolean setTyping(int chatRoomId, int userId, boolean typing, long now) {
+        if (!typing) {
+            clear(chatRoomId, userId);
+            return true;
+        }
+        Long key = key(chatRoomId, userId);
+        Typist typist = typists.get(key);
+        if (typist == null) {
+            if (typists.size() >= maxEntries) {
+                return false;
+            }
+            Typist created = new Typist(now + timeoutNanos, now);
+            typist = typists.putIfAbsent(key, created);
+            if (typist == null) {
+                publish(RoomEvent.Type.TYPING_STARTED, chatRoomId, userId);
+                return true;
+            }
+        }
+        typist.expiresAt = now + timeoutNanos;
+        // Re-announcing now and then lets subscribers that joined meanwhile learn about the typist
+        if (now - typist.announcedAt >= announceIntervalNanos) {
+            typist.announcedAt = now;
+            publish(RoomEvent.Type.TYPING_STARTED, chatRoomId, userId);
+        }
+        return true;
+    }
+
+    /**
+     * Removes the users whose indicator has expired and announces that they stopped typing.
+     *
+     * @param now the current {@link System#nanoTime()}
+     */
+    void sweep(long now) {
+        Iterator<Map.Entry<Long, Typist>> it = typists.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, Typist> entry = it.next();
+            long key = entry.getKey();
+            Typist typist = entry.getValue();
+            if (now - typist.expiresAt >= 0 && typists.remove(key, typist)) {
+                publish(RoomEvent.Type.TYPING_STOPPED, (int) (key >>> 32), (int) key);
+            }
+        }
+    }
+
+    /**
+     * Publishes a typing event to the subscribers of a room.
+     *
+     * @param type the event type
+     * @param chatRoomId the ID of the chat room
+     * @param userId the ID of the typing user
+     */
+    private void publish(RoomEvent.Type type, int chatRoomId, int userId) {
+        roomEventHub.publishEphemeral(RoomEvent.newBuilder()
+            .setType(type)
+            .setChatRoomId(chatRoomId)
+            .setUserId(userId)
+            .build());
+    }
+
+    /**
+     * Packs a room and user ID into one map key.
+     *
+     * @param chatRoomId the ID of the chat room
+     * @param userId the ID of the user
+     * @return the key
+     */
+    private static long key(int chatRoomId, int userId) {
+        return ((long) chatRoomId << 32) | (userId & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Typing state of one user in one room.
+     * The fields are written without locking; a lost update at worst delays the expiry or
+     * repeats an announcement.
+     */
+    private static final class Typist {
+
+        private volatile long expiresAt;
+        private volatile long announcedAt;
+
+        Typist(long expiresAt, long announcedAt) {
+            this.expiresAt = expiresAt;
+            this.announcedAt = announcedAt;
+        }
+    }
+}
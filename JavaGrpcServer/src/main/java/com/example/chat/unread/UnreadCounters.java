@@ -0,0 +1,602 @@
+package com.example.chat.unread;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import com.example.chat.events.RoomEventListener;
+import com.example.chat.grpc.RoomEvent;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+
+/**
+ * In-memory unread message counters per (user, room), with read markers written behind.
+ * A counter is loaded from the database the first time a user's rooms are listed, and is
+ * then kept current by the MESSAGE_CREATED and MESSAGE_DELETED events of the room, so listing
+ * rooms costs no query per room afterwards. Messages sent by the user and deleted messages are
+ * not counted, and counts are capped at a configured maximum.
+ *
+ * <p>Read markers set through {@link #markRead(int, int, int)} are coalesced in memory and
+ * persisted to {@code chat_room_memberships.last_read_message_id} in batches, so a client
+ * marking every message as it scrolls by causes a few row updates per flush at most and no
+ * query of its own. Markers only move forward in the (created_at, id) order of their messages:
+ * the batched UPDATE looks up the position of each marker and never overwrites a newer one,
+ * and ignores markers naming a message of another room.
+ *
+ * <p>Counters not read for the configured idle time are dropped, so memory is bounded by the
+ * memberships of recently active users rather than every room ever listed.
+ */
+@Component
+public class UnreadCounters implements RoomEventListener {
+
+    private static final Logger log = LoggerFactory.getLogger(UnreadCounters.class);
+
+    /**
+     * Most message IDs kept pending per membership between flushes; beyond that the lowest
+     * IDs, which are usually the oldest messages, are dropped.
+     */
+    private static final int MAX_PENDING_MESSAGE_IDS = 8;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int maxCount;
+    private final long flushIntervalMillis;
+    private final long idleNanos;
+    private final ConcurrentHashMap<Integer, ConcurrentHashMap<Integer, RoomCounter>> rooms = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<MarkerKey, Marker> pendingMarkers = new ConcurrentHashMap<>();
+    private ScheduledExecutorService executor;
+
+    /**
+     * Constructs a new UnreadCounters.
+     *
+     * @param jdbcTemplate the JDBC template used to load counters and persist read markers
+     * @param maxCount the highest unread count reported for a room
+     * @param flushIntervalMillis the interval between read marker flushes
+     * @param idleMillis how long a counter is kept without being read
+     */
+    public UnreadCounters(JdbcTemplate jdbcTemplate,
+            @Value("${chat.unread.max-count:999}") int maxCount,
+            @Value("${chat.unread.flush-interval-ms:2000}") long flushIntervalMillis,
+            @Value("${chat.unread.idle-ms:1800000}") long idleMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.maxCount = Math.max(1, maxCount);
+        this.flushIntervalMillis = Math.max(100L, flushIntervalMillis);
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1L, idleMillis));
+    }
+
+    /**
+     * Starts the periodic flush of read markers and the removal of idle counters.
+     */
+    @PostConstruct
+    public void start() {
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "read-marker-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (RuntimeException ex) {
+                log.warn("Failed to flush read markers", ex);
+            }
+            evictIdle(System.nanoTime());
+        }, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the periodic flush and writes the remaining read markers.
+     */
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        flush();
+    }
+
+    /**
+     * Returns the unread counts of a user in the given rooms, loading the counters not yet in memory.
+     *
+     * @param userId the ID of the user
+     * @param chatRoomIds the IDs of rooms the user is a member of
+     * @return the unread count per room ID
+     */
+    public Map<Integer, Integer> unreadCounts(int userId, List<Integer> chatRoomIds) {
+        Map<Integer, Integer> counts = new HashMap<>();
+        List<Integer> missing = new ArrayList<>();
+        long now = System.nanoTime();
+        for (Integer chatRoomId : chatRoomIds) {
+            RoomCounter counter = counter(chatRoomId, userId);
+            int unread = -1;
+            if (counter != null) {
+                counter.touch(now);
+                unread = counter.unread();
+            }
+            if (unread >= 0) {
+                counts.put(chatRoomId, unread);
+            } else {
+                missing.add(chatRoomId);
+            }
+        }
+        if (!missing.isEmpty()) {
+            counts.putAll(load(userId, missing));
+        }
+        return counts;
+    }
+
+    /**
+     * Checks whether a counter of a user's membership in a room is in memory.
+     *
+     * @param userId the ID of the user
+     * @param chatRoomId the ID of the chat room
+     * @return true if the user is known to be a member of the room
+     */
+    public boolean isTracked(int userId, int chatRoomId) {
+        RoomCounter counter = counter(chatRoomId, userId);
+        if (counter == null) {
+            return false;
+        }
+        counter.touch(System.nanoTime());
+        return true;
+    }
+
+    /**
+     * Marks a room as read up to a message, unless a newer message is already marked. The
+     * marker is only kept in memory until the next flush, which ignores it if the message is
+     * not in the room. The counter drops to zero when the message is the newest one of the
+     * room; otherwise it is reloaded on the next listing.
+     *
+     * @param userId the ID of the user
+     * @param chatRoomId the ID of the chat room
+     * @param messageId the ID of the last message the user has read
+     */
+    public void markRead(int userId, int chatRoomId, int messageId) {
+        pendingMarkers.merge(new MarkerKey(userId, chatRoomId), new Marker(new int[] {messageId}), Marker::merge);
+        RoomCounter counter = counter(chatRoomId, userId);
+        if (counter != null && !counter.markRead(messageId)) {
+            ConcurrentHashMap<Integer, RoomCounter> counters = rooms.get(chatRoomId);
+            if (counters != null) {
+                counters.remove(userId, counter);
+            }
+        }
+    }
+
+    /**
+     * Counts created messages in the counters of the room's members, uncounts deleted ones,
+     * and drops the counter of a member who left the room.
+     *
+     * @param event the published event
+     */
+    @Override
+    public void onRoomEvent(RoomEvent event) {
+        if (event.getType() == RoomEvent.Type.MEMBER_REMOVED) {
+            ConcurrentHashMap<Integer, RoomCounter> counters = rooms.get(event.getChatRoomId());
+            if (counters != null) {
+                counters.remove(event.getUserId());
+            }
+            return;
+        }
+        boolean created = event.getType() == RoomEvent.Type.MESSAGE_CREATED;
+        if (!(created || event.getType() == RoomEvent.Type.MESSAGE_DELETED) || !event.hasMessage()) {
+            return;
+        }
+        ConcurrentHashMap<Integer, RoomCounter> counters = rooms.get(event.getChatRoomId());
+        if (counters == null) {
+            return;
+        }
+        com.example.chat.grpc.Message message = event.getMessage();
+        for (Map.Entry<Integer, RoomCounter> entry : counters.entrySet()) {
+            if (entry.getKey() == message.getSenderId()) {
+                // Never counted for its sender, and not an activity the sender's marker needs
+                if (created) {
+                    entry.getValue().onCreated(message.getChangeVersion(), message.getId(), false);
+                }
+            } else if (created) {
+                entry.getValue().onCreated(message.getChangeVersion(), message.getId(), !message.getIsDeleted());
+            } else {
+                entry.getValue().onDeleted(message.getChangeVersion(), message.getId());
+            }
+        }
+    }
+
+    /**
+     * Drops all counters, since messages that they would have counted were missed.
+     * They are reloaded on the next listing of each user's rooms.
+     */
+    @Override
+    public void onEventsMissed() {
+        rooms.clear();
+    }
+
+    /**
+     * Writes the pending read markers to the database in one batch.
+     */
+    public void flush() {
+        List<Object[]> updates = new ArrayList<>();
+        List<Map.Entry<MarkerKey, Marker>> flushed = new ArrayList<>();
+        for (Map.Entry<MarkerKey, Marker> entry : pendingMarkers.entrySet()) {
+            entry.getValue().addUpdates(entry.getKey(), updates);
+            flushed.add(Map.entry(entry.getKey(), entry.getValue()));
+        }
+        write(updates);
+        for (Map.Entry<MarkerKey, Marker> entry : flushed) {
+            // A marker set again meanwhile stays pending for the next flush
+            pendingMarkers.remove(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Drops the counters that were not read for the idle time, and the rooms left without counters.
+     *
+     * @param now the current {@link System#nanoTime()}
+     */
+    void evictIdle(long now) {
+        for (Integer chatRoomId : rooms.keySet()) {
+            rooms.computeIfPresent(chatRoomId, (id, counters) -> {
+                counters.values().removeIf(counter -> counter.idle(now, idleNanos));
+                return counters.isEmpty() ? null : counters;
+            });
+        }
+    }
+
+    /**
+     * Gets the number of counters in memory.
+     *
+     * @return the number of (user, room) counters
+     */
+    public int size() {
+        int size = 0;
+        for (ConcurrentHashMap<Integer, RoomCounter> counters : rooms.values()) {
+            size += counters.size();
+        }
+        return size;
+    }
+
+    /**
+     * Loads the counters of a user in some rooms with one query.
+     * The counters are registered before the query, so MESSAGE_CREATED and MESSAGE_DELETED events
+     * arriving while it runs are buffered; the query returns each room's change version from the
+     * same snapshot as the counts, and buffered events up to that version are already part of the counts.
+     *
+     * @param userId the ID of the user
+     * @param chatRoomIds the IDs of the rooms to load
+     * @return the unread count per room ID
+     */
+    private Map<Integer, Integer> load(int userId, List<Integer> chatRoomIds) {
+        List<Object[]> markers = new ArrayList<>();
+        Map<Integer, RoomCounter> registered = new HashMap<>();
+        for (Integer chatRoomId : chatRoomIds) {
+            MarkerKey key = new MarkerKey(userId, chatRoomId);
+            Marker marker = pendingMarkers.get(key);
+            if (marker != null) {
+                marker.addUpdates(key, markers);
+            }
+            RoomCounter counter = new RoomCounter(maxCount);
+            // Registered under the room's lock, so an eviction cannot detach the room's map meanwhile
+            rooms.compute(chatRoomId, (id, counters) -> {
+                ConcurrentHashMap<Integer, RoomCounter> target = counters != null ? counters : new ConcurrentHashMap<>();
+                if (target.putIfAbsent(userId, counter) == null) {
+                    registered.put(chatRoomId, counter);
+                }
+                return target;
+            });
+        }
+
+        String placeholders = String.join(", ", Collections.nCopies(chatRoomIds.size(), "?"));
+        Object[] args = new Object[chatRoomIds.size() + 2];
+        args[0] = maxCount;
+        args[1] = userId;
+        for (int i = 0; i < chatRoomIds.size(); i++) {
+            args[i + 2] = chatRoomIds.get(i);
+        }
+        Map<Integer, Integer> counts = new HashMap<>();
+        try {
+            // The query reads the markers from the database, so pending ones of these rooms are written first
+            write(markers);
+            jdbcTemplate.query(
+                "SELECT mem.chat_room_id, mem.last_read_message_id, r.change_version, "
+                    + "(SELECT m.id FROM messages m WHERE m.chat_room_id = mem.chat_room_id "
+                    + "ORDER BY m.created_at DESC, m.id DESC LIMIT 1) AS latest_id, "
+                    + "(SELECT count(*) FROM (SELECT 1 FROM messages m WHERE m.chat_room_id = mem.chat_room_id "
+                    + "AND m.sender_id <> mem.user_id AND m.is_deleted = false "
+                    + "AND (mem.last_read_message_id = 0 OR (m.created_at, m.id) > "
+                    + "(SELECT lr.created_at, lr.id FROM messages lr "
+                    + "WHERE lr.id = mem.last_read_message_id AND lr.chat_room_id = mem.chat_room_id)) "
+                    + "LIMIT ?) c) AS unread "
+                    + "FROM chat_room_memberships mem JOIN chat_rooms r ON r.id = mem.chat_room_id "
+                    + "WHERE mem.user_id = ? AND mem.chat_room_id IN (" + placeholders + ")",
+                rs -> {
+                    int chatRoomId = rs.getInt("chat_room_id");
+                    int unread = rs.getInt("unread");
+                    RoomCounter counter = registered.remove(chatRoomId);
+                    if (counter != null) {
+                        unread = counter.install(rs.getLong("change_version"), unread, rs.getInt("latest_id"),
+                            rs.getInt("last_read_message_id"));
+                    }
+                    counts.put(chatRoomId, unread);
+                },
+                args);
+        } finally {
+            // Rooms the user is no longer a member of, or all rooms if the query failed
+            for (Map.Entry<Integer, RoomCounter> entry : registered.entrySet()) {
+                ConcurrentHashMap<Integer, RoomCounter> counters = rooms.get(entry.getKey());
+                if (counters != null) {
+                    counters.remove(userId, entry.getValue());
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Writes read markers to the memberships. The position of each marker's message is looked
+     * up by the UPDATE itself; memberships whose stored marker is already at or after it are
+     * skipped, so the markers of a membership may be written in any order. A marker whose
+     * message is not in the room is ignored, and a stored marker whose message is gone is replaced.
+     *
+     * @param updates the arguments added by {@link Marker#addUpdates(MarkerKey, List)}
+     */
+    private void write(List<Object[]> updates) {
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(
+                "UPDATE chat_room_memberships mem SET last_read_message_id = m.id FROM messages m "
+                    + "WHERE m.id = ? AND m.chat_room_id = mem.chat_room_id "
+                    + "AND mem.user_id = ? AND mem.chat_room_id = ? "
+                    + "AND NOT EXISTS (SELECT 1 FROM messages cur WHERE cur.id = mem.last_read_message_id "
+                    + "AND cur.chat_room_id = mem.chat_room_id AND (cur.created_at, cur.id) >= (m.created_at, m.id))",
+                updates);
+        }
+    }
+
+    /**
+     * Returns the counter of a user in a room.
+     *
+     * @param chatRoomId the ID of the chat room
+     * @param userId the ID of the user
+     * @return the counter, or null if it is not in memory
+     */
+    private RoomCounter counter(int chatRoomId, int userId) {
+        ConcurrentHashMap<Integer, RoomCounter> counters = rooms.get(chatRoomId);
+        return counters != null ? counters.get(userId) : null;
+    }
+
+    /**
+     * Unread counter of one user in one room.
+     * Until it is installed, the counter buffers the created and deleted events it receives.
+     */
+    static final class RoomCounter {
+
+        private static final int NOT_COUNTED = 0;
+        private static final int COUNTED = 1;
+        private static final int DELETED = 2;
+
+        private final int maxCount;
+        private volatile long lastUsed = System.nanoTime();
+        private List<long[]> buffered = new ArrayList<>();
+        private long snapshotVersion;
+        private long latestVersion;
+        private int unread;
+        private int latestMessageId;
+        private int readMessageId;
+
+        /**
+         * Constructs a new RoomCounter in the loading state.
+         *
+         * @param maxCount the highest unread count
+         */
+        RoomCounter(int maxCount) {
+            this.maxCount = maxCount;
+        }
+
+        /**
+         * Sets the loaded state and applies the events buffered while loading.
+         *
+         * @param snapshotVersion the room's change version in the snapshot of the count
+         * @param count the counted unread messages
+         * @param latestId the ID of the newest message in the snapshot
+         * @param readId the ID of the user's read marker in the snapshot, or 0 if there is none
+         * @return the unread count after applying the buffered events
+         */
+        synchronized int install(long snapshotVersion, int count, int latestId, int readId) {
+            this.snapshotVersion = snapshotVersion;
+            latestVersion = snapshotVersion;
+            unread = Math.min(count, maxCount);
+            latestMessageId = latestId;
+            readMessageId = Math.max(readMessageId, readId);
+            List<long[]> events = buffered;
+            buffered = null;
+            events.sort((a, b) -> Long.compare(a[0], b[0]));
+            for (long[] event : events) {
+                apply(event[0], (int) event[1], (int) event[2]);
+            }
+            return unread;
+        }
+
+        /**
+         * Records a created message.
+         *
+         * @param messageVersion the change version of the message
+         * @param messageId the ID of the message
+         * @param countable whether the message counts as unread for this user
+         */
+        synchronized void onCreated(long messageVersion, int messageId, boolean countable) {
+            onEvent(messageVersion, messageId, countable ? COUNTED : NOT_COUNTED);
+        }
+
+        /**
+         * Records a message deleted by another user.
+         *
+         * @param deleteVersion the change version of the message after its deletion
+         * @param messageId the ID of the message
+         */
+        synchronized void onDeleted(long deleteVersion, int messageId) {
+            onEvent(deleteVersion, messageId, DELETED);
+        }
+
+        /**
+         * Resets the counter if the read marker is the newest message.
+         *
+         * @param messageId the ID of the last read message
+         * @return true if the counter is exact after the marker, false if it must be reloaded
+         */
+        synchronized boolean markRead(int messageId) {
+            readMessageId = Math.max(readMessageId, messageId);
+            if (buffered != null || messageId != latestMessageId) {
+                return false;
+            }
+            unread = 0;
+            return true;
+        }
+
+        /**
+         * Records that the counter was read.
+         *
+         * @param now the current {@link System#nanoTime()}
+         */
+        void touch(long now) {
+            lastUsed = now;
+        }
+
+        /**
+         * Checks whether the counter was not read for a while.
+         *
+         * @param now the current {@link System#nanoTime()}
+         * @param idleNanos the idle time after which the counter is dropped
+         * @return true if the counter was last read at least the idle time ago
+         */
+        boolean idle(long now, long idleNanos) {
+            return now - lastUsed >= idleNanos;
+        }
+
+        /**
+         * Returns the unread count.
+         *
+         * @return the count, or -1 while the counter is loading
+         */
+        synchronized int unread() {
+            return buffered != null ? -1 : unread;
+        }
+
+        /**
+         * Buffers an event while loading, or applies it.
+         *
+         * @param version the change version of the event
+         * @param messageId the ID of the message
+         * @param kind {@link #NOT_COUNTED}, {@link #COUNTED} or {@link #DELETED}
+         */
+        private void onEvent(long version, int messageId, int kind) {
+            if (buffered != null) {
+                buffered.add(new long[] {version, messageId, kind});
+            } else {
+                apply(version, messageId, kind);
+            }
+        }
+
+        /**
+         * Counts a created message, or uncounts a deleted one, unless the change is already part
+         * of the loaded count. Events may arrive out of version order, so only the snapshot version
+         * filters them. A deleted message was counted if it is after the read marker; like the
+         * marker, message IDs are assumed to follow the order of the messages.
+         *
+         * @param version the change version of the event
+         * @param messageId the ID of the message
+         * @param kind {@link #NOT_COUNTED}, {@link #COUNTED} or {@link #DELETED}
+         */
+        private void apply(long version, int messageId, int kind) {
+            if (version <= snapshotVersion) {
+                return;
+            }
+            if (kind == DELETED) {
+                if (messageId > readMessageId && unread > 0) {
+                    unread--;
+                }
+                return;
+            }
+            if (version > latestVersion) {
+                latestVersion = version;
+                latestMessageId = messageId;
+            }
+            if (kind == COUNTED && unread < maxCount) {
+                unread++;
+            }
+        }
+    }
+
+    /**
+     * The pending read markers of a membership: the messages marked since the last flush.
+     * Which of them is the newest is decided by the UPDATE, which knows their positions.
+     * Instances are immutable and compared by identity, so a flush only removes the markers
+     * it has written.
+     */
+    private static final class Marker {
+
+        private final int[] messageIds;
+
+        /**
+         * Constructs a new Marker.
+         *
+         * @param messageIds the distinct marked message IDs in ascending order
+         */
+        Marker(int[] messageIds) {
+            this.messageIds = messageIds;
+        }
+
+        /**
+         * Combines the markers of a membership, keeping the highest message IDs if there are
+         * too many.
+         *
+         * @param a the pending markers
+         * @param b the newly set markers
+         * @return the combined markers
+         */
+        static Marker merge(Marker a, Marker b) {
+            TreeSet<Integer> ids = new TreeSet<>();
+            for (int id : a.messageIds) {
+                ids.add(id);
+            }
+            for (int id : b.messageIds) {
+                ids.add(id);
+            }
+            while (ids.size() > MAX_PENDING_MESSAGE_IDS) {
+                ids.pollFirst();
+            }
+            return new Marker(ids.stream().mapToInt(Integer::intValue).toArray());
+        }
+
+        /**
+         * Adds the arguments of the guarded marker UPDATE for each marked message, the
+         * highest ID last since it is most likely the newest message.
+         *
+         * @param key the membership
+         * @param updates receives the message ID, user ID and room ID of each marker
+         */
+        void addUpdates(MarkerKey key, List<Object[]> updates) {
+            for (int messageId : messageIds) {
+                updates.add(new Object[] {messageId, key.userId(), key.chatRoomId()});
+            }
+        }
+    }
+
+    /**
+     * Identifies the membership a read marker belongs to.
+     *
+     * @param userId the ID of the user
+     * @param chatRoomId the ID of the chat room
+     */
+    private record MarkerKey(int userId, int chatRoomId) {
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.chat.archive;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.chat.domain.Message;
+import com.example.chat.grpc.MessageCursor;
+import com.example.chat.grpc.MessageCursors;
+
+class ArchiveSegmentTest {
+
+    @TempDir
+    Path directory;
+
+    private static List<Message> messages(int count) {
+        List<Message> messages = new ArrayList<>();
+        for (int id = 1; id <= count; id++) {
+            Message message = new Message();
+            message.setId(id);
+            message.setChatRoomId(7);
+            message.setSenderId(id % 3 + 1);
+            message.setText("message number " + id);
+            message.setCreatedAt(Instant.ofEpochSecond(1_700_000_000L + id / 2, (id % 2) * 1_000L));
+            message.setChangeVersion(100 + id);
+            message.setSeq(id > 3 ? id - 3 : 0);
+            if (id % 5 == 0) {
+                message.setDeleted(true);
+                message.setDeletedBy(2);
+                message.setDeletedAt(Instant.ofEpochSecond(1_800_000_000L));
+            }
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    private static List<Integer> ids(List<Message> messages) {
+        return messages.stream().map(Message::getId).toList();
+    }
+
+    @Test
+    void testRoundTripAcrossBlocks() throws Exception {
+        Path path = directory.resolve("0000000001.seg");
+        List<Message> written = messages(25);
+        ArchiveSegment.write(path, 7, written, 4);
+
+        ArchiveSegment segment = ArchiveSegment.open(path);
+        assertEquals(7, segment.chatRoomId());
+        assertEquals(25, segment.messageCount());
+        assertEquals(MessageCursors.of(written.get(24)), segment.lastCursor());
+        assertFalse(Files.exists(directory.resolve("0000000001.seg.tmp")));
+
+        List<Message> all = new ArrayList<>();
+        segment.collectAfter(MessageCursor.getDefaultInstance(), 100, all);
+        assertEquals(ids(written), ids(all));
+        Message deleted = all.get(9);
+        assertTrue(deleted.isDeleted());
+        assertEquals(2, deleted.getDeletedBy());
+        assertEquals(written.get(9).getCreatedAt(), deleted.getCreatedAt());
+        assertEquals(110, deleted.getChangeVersion());
+        assertEquals(7, deleted.getSeq());
+        assertEquals(0, all.get(0).getSeq());
+        assertEquals("message number 10", deleted.getText());
+        assertNull(all.get(0).getDeletedBy());
+    }
+
+    @Test
+    void testPagesAroundCursor() throws Exception {
+        Path path = directory.resolve("0000000001.seg");
+        List<Message> written = messages(25);
+        ArchiveSegment.write(path, 7, written, 4);
+        ArchiveSegment segment = ArchiveSegment.open(path);
+        MessageCursor cursor = MessageCursors.of(written.get(12));
+
+        List<Message> before = new ArrayList<>();
+        segment.collectBefore(cursor, 5, before);
+        assertEquals(List.of(12, 11, 10, 9, 8), ids(before));
+
+        List<Message> after = new ArrayList<>();
+        segment.collectAfter(cursor, 5, after);
+        assertEquals(List.of(14, 15, 16, 17, 18), ids(after));
+
+        List<Message> newest = new ArrayList<>();
+        segment.collectBefore(null, 3, newest);
+        assertEquals(List.of(25, 24, 23), ids(newest));
+
+        List<Message> none = new ArrayList<>();
+        segment.collectAfter(segment.lastCursor(), 5, none);
+        segment.collectBefore(MessageCursors.of(written.get(0)), 5, none);
+        assertTrue(none.isEmpty());
+    }
+}
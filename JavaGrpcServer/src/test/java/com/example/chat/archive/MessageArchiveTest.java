@@ -0,0 +1,72 @@
+package com.example.chat.archive;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.chat.codec.MessageTextCodec;
+import com.example.chat.domain.Message;
+import com.example.chat.repositories.ChatRoomRepository;
+
+class MessageArchiveTest {
+
+    @TempDir
+    Path directory;
+
+    private MessageArchive archive(JdbcTemplate jdbcTemplate, boolean enabled, String clusterBus, boolean shared) {
+        return new MessageArchive(jdbcTemplate, mock(PlatformTransactionManager.class), mock(ChatRoomRepository.class),
+            mock(MessageTextCodec.class), directory.toString(), enabled, 180, 100, 16, 86_400_000L,
+            clusterBus, shared, 10_000L);
+    }
+
+    @Test
+    void testArchivingOnLocalDiskOfSeveralInstancesIsRefused() {
+        assertThrows(IllegalArgumentException.class,
+            () -> archive(mock(JdbcTemplate.class), true, "postgres", false));
+        assertDoesNotThrow(() -> archive(mock(JdbcTemplate.class), true, "postgres", true));
+        assertDoesNotThrow(() -> archive(mock(JdbcTemplate.class), false, "postgres", false));
+    }
+
+    @Test
+    void testArchiveSegment_RoomLockedByAnotherInstanceIsSkipped() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject(startsWith("SELECT pg_try_advisory_xact_lock"), eq(Boolean.class),
+            any(Object[].class))).thenReturn(false);
+
+        assertEquals(0, archive(jdbcTemplate, true, "memory", false).archiveSegment(7, Instant.now()));
+
+        // Neither reads nor deletes the rows the other instance is archiving
+        verify(jdbcTemplate).queryForObject(anyString(), eq(Boolean.class), any(Object[].class));
+        verifyNoMoreInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void testRescan_MapsSegmentsWrittenByAnotherInstance() throws Exception {
+        MessageArchive archive = archive(mock(JdbcTemplate.class), false, "postgres", true);
+        archive.rescan();
+        assertNull(archive.watermark(7));
+
+        Message message = new Message();
+        message.setId(42);
+        message.setChatRoomId(7);
+        message.setSenderId(1);
+        message.setText("archived elsewhere");
+        message.setCreatedAt(Instant.ofEpochSecond(1_700_000_000L));
+        Path roomDirectory = Files.createDirectories(directory.resolve("7"));
+        ArchiveSegment.write(roomDirectory.resolve("0000000001.seg"), 7, List.of(message), 16);
+        archive.rescan();
+
+        assertEquals(42, archive.watermark(7).getId());
+        assertEquals(1, archive.pageBefore(7, null, 10).size());
+    }
+}
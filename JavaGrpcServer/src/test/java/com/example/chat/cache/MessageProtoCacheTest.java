@@ -0,0 +1,88 @@
+package com.example.chat.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.chat.grpc.Message;
+import com.example.chat.grpc.RoomEvent;
+
+class MessageProtoCacheTest {
+
+    private final AtomicInteger mapped = new AtomicInteger();
+
+    private final Function<com.example.chat.domain.Message, Message> mapper = m -> {
+        mapped.incrementAndGet();
+        return Message.newBuilder()
+            .setId(m.getId())
+            .setText(m.getText())
+            .setChangeVersion(m.getChangeVersion())
+            .build();
+    };
+
+    private static com.example.chat.domain.Message row(int id, long version, String text) {
+        com.example.chat.domain.Message message = new com.example.chat.domain.Message();
+        message.setId(id);
+        message.setChatRoomId(1);
+        message.setSenderId(1);
+        message.setText(text);
+        message.setCreatedAt(Instant.now());
+        message.setChangeVersion(version);
+        return message;
+    }
+
+    @Test
+    void testGet_ReusesMessageForSameVersion() {
+        MessageProtoCache cache = new MessageProtoCache(10);
+
+        Message first = cache.get(row(1, 5, "hello"), mapper);
+        Message second = cache.get(row(1, 5, "hello"), mapper);
+
+        assertSame(first, second);
+        assertEquals(1, mapped.get());
+        assertEquals(1, cache.stats().hits());
+    }
+
+    @Test
+    void testGet_NewVersionIsRemapped() {
+        MessageProtoCache cache = new MessageProtoCache(10);
+        cache.get(row(1, 5, "hello"), mapper);
+
+        Message edited = cache.get(row(1, 6, "edited"), mapper);
+
+        assertEquals("edited", edited.getText());
+        assertEquals(2, mapped.get());
+    }
+
+    @Test
+    void testOnRoomEvent_ReplacesEntryWithNewerVersion() {
+        MessageProtoCache cache = new MessageProtoCache(10);
+        cache.get(row(1, 5, "hello"), mapper);
+
+        cache.onRoomEvent(RoomEvent.newBuilder()
+            .setType(RoomEvent.Type.MESSAGE_DELETED)
+            .setChatRoomId(1)
+            .setMessage(Message.newBuilder().setId(1).setText("hello").setIsDeleted(true).setChangeVersion(6))
+            .build());
+
+        assertTrue(cache.get(row(1, 6, "hello"), mapper).getIsDeleted());
+        assertEquals(1, mapped.get());
+        assertEquals("hello", cache.get(row(1, 5, "hello"), mapper).getText());
+        assertTrue(cache.get(row(1, 6, "hello"), mapper).getIsDeleted());
+    }
+
+    @Test
+    void testEvictsOverCapacity() {
+        MessageProtoCache cache = new MessageProtoCache(10);
+        for (int id = 1; id <= 25; id++) {
+            cache.get(row(id, 1, "m" + id), mapper);
+        }
+
+        assertTrue(cache.stats().entries() <= 10);
+        assertTrue(cache.stats().evictions() >= 15);
+    }
+}
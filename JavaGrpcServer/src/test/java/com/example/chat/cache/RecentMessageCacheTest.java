@@ -0,0 +1,95 @@
+package com.example.chat.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.chat.grpc.Message;
+import com.example.chat.grpc.MessageCursor;
+import com.example.chat.grpc.RoomEvent;
+
+class RecentMessageCacheTest {
+
+    private static RecentMessageCache.CachedMessage entry(int roomId, int id, String text) {
+        return new RecentMessageCache.CachedMessage(id * 1_000L, Message.newBuilder()
+            .setId(id)
+            .setChatRoomId(roomId)
+            .setText(text)
+            .build());
+    }
+
+    private static RoomEvent event(RoomEvent.Type type, int roomId, int id, String text) {
+        return RoomEvent.newBuilder()
+            .setType(type)
+            .setChatRoomId(roomId)
+            .setMessage(Message.newBuilder().setId(id).setChatRoomId(roomId).setText(text))
+            .setCursor(MessageCursor.newBuilder().setCreatedAtMicros(id * 1_000L).setId(id))
+            .build();
+    }
+
+    private static void load(RecentMessageCache cache, int roomId, int count) {
+        List<RecentMessageCache.CachedMessage> newestFirst = new ArrayList<>();
+        for (int id = count; id >= 1; id--) {
+            newestFirst.add(entry(roomId, id, "m" + id));
+        }
+        cache.install(roomId, cache.beginLoad(roomId), newestFirst);
+    }
+
+    @Test
+    void testLatest_MissUntilInstalled() {
+        RecentMessageCache cache = new RecentMessageCache(10, Long.MAX_VALUE);
+
+        assertNull(cache.latest(1, 5));
+        load(cache, 1, 3);
+
+        RecentMessageCache.RecentPage page = cache.latest(1, 5);
+        assertNotNull(page);
+        assertEquals(3, page.messages().size());
+        assertFalse(page.hasMore());
+        assertEquals(1, cache.stats().hits());
+        assertEquals(1, cache.stats().misses());
+    }
+
+    @Test
+    void testRingKeepsNewestAndTracksEdits() {
+        RecentMessageCache cache = new RecentMessageCache(3, Long.MAX_VALUE);
+        load(cache, 1, 3);
+
+        cache.onRoomEvent(event(RoomEvent.Type.MESSAGE_CREATED, 1, 4, "m4"));
+        cache.onRoomEvent(event(RoomEvent.Type.MESSAGE_EDITED, 1, 3, "edited"));
+
+        RecentMessageCache.RecentPage page = cache.latest(1, 3);
+        assertEquals(List.of(2, 3, 4), page.messages().stream().map(Message::getId).toList());
+        assertEquals("edited", page.messages().get(1).getText());
+        assertTrue(page.hasMore());
+        assertEquals(2, page.nextCursor().getId());
+        assertNull(cache.latest(1, 4));
+    }
+
+    @Test
+    void testEventDuringLoadDiscardsLoadedRows() {
+        RecentMessageCache cache = new RecentMessageCache(10, Long.MAX_VALUE);
+        int token = cache.beginLoad(1);
+        cache.onRoomEvent(event(RoomEvent.Type.MESSAGE_CREATED, 1, 2, "m2"));
+        cache.install(1, token, List.of(entry(1, 1, "m1")));
+
+        assertNull(cache.latest(1, 5));
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsedRoomOverBudget() {
+        RecentMessageCache cache = new RecentMessageCache(10, 1_000);
+        load(cache, 1, 3);
+        load(cache, 2, 3);
+        cache.latest(1, 1);
+        load(cache, 3, 3);
+
+        assertNotNull(cache.latest(1, 1));
+        assertNull(cache.latest(2, 1));
+        assertTrue(cache.stats().evictions() >= 1);
+        assertTrue(cache.stats().bytes() <= 1_000);
+    }
+}
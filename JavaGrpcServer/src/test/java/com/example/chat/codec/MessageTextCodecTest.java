@@ -0,0 +1,72 @@
+package com.example.chat.codec;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.chat.domain.Message;
+
+class MessageTextCodecTest {
+
+    private static final String LOG_LINE = "2024-05-01 12:00:00 ERROR [worker-3] Connection refused while contacting "
+        + "payment-service at 10.0.0.12:8443, retrying in 500 ms\n";
+
+    @Test
+    void testRoundTrip_CompressesLongTextsOnly() {
+        MessageTextCodec codec = new MessageTextCodec(null, true, 64, false, "memory");
+        String longText = LOG_LINE.repeat(10);
+
+        byte[] encoded = codec.encode(longText);
+        assertNotNull(encoded);
+        assertEquals(MessageTextCodec.DEFLATE, encoded[0]);
+        assertTrue(encoded.length < longText.getBytes(StandardCharsets.UTF_8).length / 4);
+        assertEquals(longText, codec.decode(encoded));
+        assertNull(codec.encode("short message"));
+    }
+
+    @Test
+    void testText_CompressedRowDecodesAndSoftDeletedRowIsEmpty() {
+        MessageTextCodec codec = new MessageTextCodec(null, true, 64, false, "memory");
+        String longText = LOG_LINE.repeat(10);
+        Message stored = new Message();
+        stored.setTextCompressed(codec.encode(longText));
+
+        assertEquals(longText, codec.text(stored));
+
+        // The row as the soft-delete UPDATE leaves it
+        stored.setText("");
+        stored.setTextCompressed(null);
+        assertEquals("", codec.text(stored));
+    }
+
+    @Test
+    void testDictionaryImprovesShortTexts() {
+        MessageTextCodec codec = new MessageTextCodec(null, true, 64, false, "memory");
+        byte[] withoutDictionary = codec.encode(LOG_LINE);
+
+        codec.useDictionary(7, MessageTextCodec.buildDictionary(List.of(LOG_LINE, LOG_LINE.replace("12:00", "12:05"))));
+        byte[] withDictionary = codec.encode(LOG_LINE);
+
+        assertEquals(MessageTextCodec.DEFLATE_DICTIONARY, withDictionary[0]);
+        int plainLength = LOG_LINE.getBytes(StandardCharsets.UTF_8).length;
+        assertTrue(withDictionary.length < (withoutDictionary != null ? withoutDictionary.length : plainLength));
+        assertEquals(LOG_LINE, codec.decode(withDictionary));
+    }
+
+    @Test
+    void testDisabledCodecStillDecodesAndPostgresSearchDisablesIt() {
+        MessageTextCodec enabled = new MessageTextCodec(null, true, 64, false, "memory");
+        MessageTextCodec postgres = new MessageTextCodec(null, true, 64, false, "postgres");
+        String longText = LOG_LINE.repeat(3);
+
+        assertNull(postgres.encode(longText));
+        Message message = new Message();
+        message.setTextCompressed(enabled.encode(longText));
+        assertEquals(longText, postgres.text(message));
+        message.setText("plain");
+        assertEquals("plain", postgres.text(message));
+    }
+}
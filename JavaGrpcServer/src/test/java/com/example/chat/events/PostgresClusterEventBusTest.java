@@ -0,0 +1,104 @@
+package com.example.chat.events;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.chat.grpc.Message;
+import com.example.chat.grpc.RoomEvent;
+import com.google.protobuf.InvalidProtocolBufferException;
+
+class PostgresClusterEventBusTest {
+
+    @Test
+    void testEventRoundTrip() throws InvalidProtocolBufferException {
+        RoomEvent event = event("hello");
+
+        PostgresClusterEventBus.Notification decoded =
+            PostgresClusterEventBus.decode(PostgresClusterEventBus.encode("abc", 42, event));
+
+        assertEquals("abc", decoded.nodeId());
+        assertEquals(42, decoded.sequence());
+        assertFalse(decoded.messageOmitted());
+        assertEquals(event, decoded.event());
+    }
+
+    @Test
+    void testOversizedEventCarriesOnlyItsMessageReference() throws InvalidProtocolBufferException {
+        String payload = PostgresClusterEventBus.encode("abc", 1, event("x".repeat(10_000)));
+
+        PostgresClusterEventBus.Notification decoded = PostgresClusterEventBus.decode(payload);
+
+        assertTrue(payload.length() <= PostgresClusterEventBus.MAX_PAYLOAD_LENGTH);
+        assertTrue(decoded.messageOmitted());
+        assertEquals(9, decoded.event().getMessage().getId());
+        assertEquals(3, decoded.event().getMessage().getChangeVersion());
+        assertEquals("", decoded.event().getMessage().getText());
+    }
+
+    @Test
+    void testSequenceGapReportsMissedEvents() {
+        PostgresClusterEventBus bus = new PostgresClusterEventBus("jdbc:postgresql://localhost/chat", "", "",
+            "chat_room_events", 10, 100, 60_000);
+        ClusterEventBus.Receiver receiver = mock(ClusterEventBus.Receiver.class);
+        bus.register(receiver);
+
+        bus.receive(PostgresClusterEventBus.encode("other", 1, event("a")), 0);
+        bus.receive(PostgresClusterEventBus.encode("other", 2, event("b")), 0);
+        verify(receiver, never()).onEventsMissed();
+        bus.receive(PostgresClusterEventBus.encode("other", 4, event("c")), 0);
+
+        verify(receiver, times(1)).onEventsMissed();
+        verify(receiver, times(3)).onRemoteEvent(any(), eq(false));
+    }
+
+    @Test
+    void testResentNotificationsAreDroppedWithoutReportingMissedEvents() {
+        PostgresClusterEventBus bus = new PostgresClusterEventBus("jdbc:postgresql://localhost/chat", "", "",
+            "chat_room_events", 10, 100, 60_000);
+        ClusterEventBus.Receiver receiver = mock(ClusterEventBus.Receiver.class);
+        bus.register(receiver);
+
+        bus.receive(PostgresClusterEventBus.encode("other", 1, event("a")), 0);
+        bus.receive(PostgresClusterEventBus.encode("other", 2, event("b")), 0);
+        // The publisher resends the whole batch after a failure that came after the notify
+        bus.receive(PostgresClusterEventBus.encode("other", 1, event("a")), 0);
+        bus.receive(PostgresClusterEventBus.encode("other", 2, event("b")), 0);
+        bus.receive(PostgresClusterEventBus.encode("other", 3, event("c")), 0);
+
+        verify(receiver, never()).onEventsMissed();
+        verify(receiver, times(3)).onRemoteEvent(any(), eq(false));
+    }
+
+    @Test
+    void testIdlePeerIsForgotten() {
+        PostgresClusterEventBus bus = new PostgresClusterEventBus("jdbc:postgresql://localhost/chat", "", "",
+            "chat_room_events", 10, 100, 60_000);
+        ClusterEventBus.Receiver receiver = mock(ClusterEventBus.Receiver.class);
+        bus.register(receiver);
+        long seen = 1_000;
+
+        bus.receive(PostgresClusterEventBus.encode("other", 5, event("a")), seen);
+        bus.forgetIdlePeers(seen + TimeUnit.SECONDS.toNanos(59));
+        bus.receive(PostgresClusterEventBus.encode("other", 5, event("a")), seen);
+        verify(receiver, times(1)).onRemoteEvent(any(), eq(false));
+
+        bus.forgetIdlePeers(seen + TimeUnit.SECONDS.toNanos(60));
+        // Starts over like a newly seen instance: neither dropped nor reported as a gap
+        bus.receive(PostgresClusterEventBus.encode("other", 9, event("b")), seen);
+
+        verify(receiver, times(2)).onRemoteEvent(any(), eq(false));
+        verify(receiver, never()).onEventsMissed();
+    }
+
+    private static RoomEvent event(String text) {
+        return RoomEvent.newBuilder()
+            .setType(RoomEvent.Type.MESSAGE_EDITED)
+            .setChatRoomId(1)
+            .setMessage(Message.newBuilder().setId(9).setChatRoomId(1).setChangeVersion(3).setText(text))
+            .build();
+    }
+}
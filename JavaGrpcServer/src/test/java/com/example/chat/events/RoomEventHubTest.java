@@ -0,0 +1,98 @@
+package com.example.chat.events;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.chat.grpc.Message;
+import com.example.chat.grpc.RoomEvent;
+
+class RoomEventHubTest {
+
+    private RoomEventListener listenerA;
+    private RoomEventListener listenerB;
+    private RoomEventHub hubA;
+    private RoomEventHub hubB;
+    private List<RoomEvent> receivedA;
+    private List<RoomEvent> receivedB;
+
+    @BeforeEach
+    void setUp() {
+        InMemoryClusterEventBus busA = new InMemoryClusterEventBus();
+        InMemoryClusterEventBus busB = new InMemoryClusterEventBus();
+        busA.connect(busB);
+        listenerA = mock(RoomEventListener.class);
+        listenerB = mock(RoomEventListener.class);
+        hubA = new RoomEventHub(List.of(listenerA), busA);
+        hubB = new RoomEventHub(List.of(listenerB), busB);
+        receivedA = new ArrayList<>();
+        receivedB = new ArrayList<>();
+        hubA.subscribe(1, receivedA::add);
+        hubB.subscribe(1, receivedB::add);
+    }
+
+    @Test
+    void testEventsReachTheOtherInstanceOnce() {
+        RoomEvent event = created(Message.newBuilder().setId(5).setChatRoomId(1).setText("hi").build());
+
+        hubA.publish(event);
+
+        assertEquals(List.of(event), receivedA);
+        assertEquals(List.of(event), receivedB);
+        verify(listenerA, times(1)).onRoomEvent(event);
+        verify(listenerB, times(1)).onRoomEvent(event);
+    }
+
+    @Test
+    void testTypingStaysOnItsInstanceByDefault() {
+        RoomEvent typing = RoomEvent.newBuilder()
+            .setType(RoomEvent.Type.TYPING_STARTED).setChatRoomId(1).setUserId(7).build();
+
+        hubA.publishEphemeral(typing);
+
+        assertEquals(List.of(typing), receivedA);
+        assertEquals(List.of(), receivedB);
+    }
+
+    @Test
+    void testRelayedTypingSkipsTheListenersOfTheOtherInstance() {
+        ReflectionTestUtils.setField(hubA, "relayEphemeral", true);
+        RoomEvent typing = RoomEvent.newBuilder()
+            .setType(RoomEvent.Type.TYPING_STARTED).setChatRoomId(1).setUserId(7).build();
+
+        hubA.publishEphemeral(typing);
+
+        assertEquals(List.of(typing), receivedB);
+        verifyNoInteractions(listenerB);
+    }
+
+    @Test
+    void testOmittedMessageIsReloadedOrResetsTheListeners() {
+        Message full = Message.newBuilder().setId(5).setChatRoomId(1).setText("long").build();
+        RoomEvent reference = created(Message.newBuilder().setId(5).setChatRoomId(1).build());
+        hubB.setMessageLoader(id -> id == 5 ? Optional.of(full) : Optional.empty());
+
+        hubB.receiveRemote(reference, true);
+        hubB.receiveRemote(created(Message.newBuilder().setId(6).setChatRoomId(1).build()), true);
+
+        assertEquals(full, receivedB.get(0).getMessage());
+        verify(listenerB, times(1)).onRoomEvent(any());
+        verify(listenerB, times(1)).onEventsMissed();
+        assertFalse(receivedB.get(1).hasMessage());
+    }
+
+    private static RoomEvent created(Message message) {
+        return RoomEvent.newBuilder()
+            .setType(RoomEvent.Type.MESSAGE_CREATED)
+            .setChatRoomId(message.getChatRoomId())
+            .setMessage(message)
+            .build();
+    }
+}
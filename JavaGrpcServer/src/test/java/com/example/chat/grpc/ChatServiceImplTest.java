@@ -0,0 +1,785 @@
+package com.example.chat.grpc;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionSystemException;
+
+import com.example.chat.archive.MessageArchive;
+import com.example.chat.cache.MessageProtoCache;
+import com.example.chat.cache.RecentMessageCache;
+import com.example.chat.codec.MessageTextCodec;
+import com.example.chat.domain.ChatRoomType;
+import com.example.chat.events.InMemoryClusterEventBus;
+import com.example.chat.events.RoomEventHub;
+import com.example.chat.ingest.MessageIngestionPipeline;
+import com.example.chat.ingest.SendDeduplicator;
+import com.example.chat.outbox.Outbox;
+import com.example.chat.ratelimit.RateLimiter;
+import com.example.chat.repositories.ChatRoomMembershipRepository;
+import com.example.chat.repositories.ChatRoomRepository;
+import com.example.chat.repositories.MessageRepository;
+import com.example.chat.search.MessageSearchIndex;
+import com.example.chat.summary.RoomSummaries;
+import com.example.chat.typing.TypingIndicators;
+
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+@ExtendWith(MockitoExtension.class)
+class ChatServiceImplTest {
+
+    @Mock
+    private MessageRepository messageRepository;
+
+    @Mock
+    private ChatRoomRepository chatRoomRepository;
+
+    @Mock
+    private MessageIngestionPipeline ingestionPipeline;
+
+    @Mock
+    private MessageArchive messageArchive;
+
+    @Mock
+    private ChatRoomMembershipRepository membershipRepository;
+
+    @Mock
+    private RoomSummaries roomSummaries;
+
+    @Mock
+    private Outbox outbox;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private RecentMessageCache recentMessageCache;
+
+    private MessageSearchIndex searchIndex;
+
+    private MessageProtoCache messageProtoCache;
+
+    private MessageTextCodec textCodec;
+
+    private RoomEventHub roomEventHub;
+
+    private ChatServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        recentMessageCache = new RecentMessageCache(200, 64L * 1024 * 1024);
+        textCodec = new MessageTextCodec(null, false, 256, false, "memory");
+        searchIndex = new MessageSearchIndex(messageRepository, chatRoomRepository, textCodec, false);
+        roomEventHub = new RoomEventHub(List.of(recentMessageCache, searchIndex), new InMemoryClusterEventBus());
+        messageProtoCache = new MessageProtoCache(1000);
+        service = new ChatServiceImpl(messageRepository, chatRoomRepository, roomEventHub, ingestionPipeline,
+            recentMessageCache, searchIndex, messageProtoCache, messageArchive, textCodec,
+            new TypingIndicators(roomEventHub, 6000, 3000, 1000, 1000),
+            new RateLimiter(new MockEnvironment(), true, 1024), new SendDeduplicator(600_000, 1000),
+            membershipRepository, roomSummaries, outbox, transactionManager);
+    }
+
+    private com.example.chat.domain.Message domainMessage(int id, int roomId, int senderId, String text) {
+        com.example.chat.domain.Message message = new com.example.chat.domain.Message();
+        message.setId(id);
+        message.setChatRoomId(roomId);
+        message.setSenderId(senderId);
+        message.setText(text);
+        message.setCreatedAt(Instant.now());
+        return message;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ServerCallStreamObserver<RoomEvent> subscribe(int roomId) {
+        ServerCallStreamObserver<RoomEvent> subscriber = mock(ServerCallStreamObserver.class);
+        lenient().when(subscriber.isReady()).thenReturn(true);
+        when(chatRoomRepository.existsById(roomId)).thenReturn(true);
+        service.subscribeRoom(SubscribeRoomRequest.newBuilder().setChatRoomId(roomId).build(), subscriber);
+        return subscriber;
+    }
+
+    @Test
+    void testSendMessage_PublishesToSubscribers() {
+        ServerCallStreamObserver<RoomEvent> subscriber = subscribe(10);
+
+        when(ingestionPipeline.submit(any(com.example.chat.domain.Message.class))).thenAnswer(invocation -> {
+            com.example.chat.domain.Message m = invocation.getArgument(0);
+            m.setId(1);
+            m.setCreatedAt(Instant.now());
+            return CompletableFuture.completedFuture(m);
+        });
+
+        @SuppressWarnings("unchecked")
+        StreamObserver<SendMessageResponse> responseObserver = mock(StreamObserver.class);
+
+        service.sendMessage(SendMessageRequest.newBuilder()
+            .setChatRoomId(10)
+            .setSenderId(1)
+            .setText("hello")
+            .build(), responseObserver);
+
+        verify(responseObserver, times(1)).onNext(any(SendMessageResponse.class));
+        verify(responseObserver, times(1)).onCompleted();
+
+        ArgumentCaptor<RoomEvent> event = ArgumentCaptor.forClass(RoomEvent.class);
+        verify(subscriber, times(1)).onNext(event.capture());
+        assertEquals(RoomEvent.Type.MESSAGE_CREATED, event.getValue().getType());
+        assertEquals("hello", event.getValue().getMessage().getText());
+    }
+
+    @Test
+    void testSendMessage_RetryWithClientMessageIdReturnsOriginal() {
+        ServerCallStreamObserver<RoomEvent> subscriber = subscribe(10);
+
+        when(ingestionPipeline.submit(any(com.example.chat.domain.Message.class))).thenAnswer(invocation -> {
+            com.example.chat.domain.Message m = invocation.getArgument(0);
+            m.setId(1);
+            m.setCreatedAt(Instant.now());
+            return CompletableFuture.completedFuture(m);
+        });
+        SendMessageRequest request = SendMessageRequest.newBuilder()
+            .setChatRoomId(10)
+            .setSenderId(1)
+            .setText("hello")
+            .setClientMessageId("c-1")
+            .build();
+
+        @SuppressWarnings("unchecked")
+        StreamObserver<SendMessageResponse> first = mock(StreamObserver.class);
+        @SuppressWarnings("unchecked")
+        StreamObserver<SendMessageResponse> retry = mock(StreamObserver.class);
+        service.sendMessage(request, first);
+        service.sendMessage(request, retry);
+
+        ArgumentCaptor<SendMessageResponse> response = ArgumentCaptor.forClass(SendMessageResponse.class);
+        verify(retry, times(1)).onNext(response.capture());
+        assertEquals(1, response.getValue().getMessage().getId());
+        verify(ingestionPipeline, times(1)).submit(any(com.example.chat.domain.Message.class));
+        verify(subscriber, times(1)).onNext(any(RoomEvent.class));
+    }
+
+    @Test
+    void testSendMessage_RetryIsAnsweredWithoutChargingRateLimit() {
+        ChatServiceImpl limitedService = new ChatServiceImpl(messageRepository, chatRoomRepository, roomEventHub,
+            ingestionPipeline, recentMessageCache, searchIndex, messageProtoCache, messageArchive, textCodec,
+            new TypingIndicators(roomEventHub, 6000, 3000, 1000, 1000),
+            new RateLimiter(new MockEnvironment()
+                .withProperty("chat.rate-limit.send-message.sender.per-second", "1")
+                .withProperty("chat.rate-limit.send-message.sender.burst", "1"), true, 1024),
+            new SendDeduplicator(600_000, 1000), membershipRepository, roomSummaries, outbox, transactionManager);
+        when(ingestionPipeline.submit(any(com.example.chat.domain.Message.class))).thenAnswer(invocation -> {
+            com.example.chat.domain.Message m = invocation.getArgument(0);
+            m.setId(1);
+            m.setCreatedAt(Instant.now());
+            return CompletableFuture.completedFuture(m);
+        });
+        SendMessageRequest request = SendMessageRequest.newBuilder()
+            .setChatRoomId(10)
+            .setSenderId(1)
+            .setText("hello")
+            .setClientMessageId("c-1")
+            .build();
+
+        @SuppressWarnings("unchecked")
+        StreamObserver<SendMessageResponse> first = mock(StreamObserver.class);
+        @SuppressWarnings("unchecked")
+        StreamObserver<SendMessageResponse> retry = mock(StreamObserver.class);
+        @SuppressWarnings("unchecked")
+        StreamObserver<SendMessageResponse> next = mock(StreamObserver.class);
+        limitedService.sendMessage(request, first);
+        limitedService.sendMessage(request, retry);
+        limitedService.sendMessage(request.toBuilder().setClientMessageId("c-2").build(), next);
+
+        verify(retry).onNext(argThat(r -> r.getMessage().getId() == 1));
+        verify(retry, never()).onError(any());
+        ArgumentCaptor<Throwable> error = ArgumentCaptor.forClass(Throwable.class);
+        verify(next).onError(error.capture());
+        assertEquals(io.grpc.Status.Code.RESOURCE_EXHAUSTED, io.grpc.Status.fromThrowable(error.getValue()).getCode());
+        verify(ingestionPipeline, times(1)).submit(any(com.example.chat.domain.Message.class));
+    }
+
+    @Test
+    void testSendMessage_PipelineRejectionIsReported() {
+        ServerCallStreamObserver<RoomEvent> subscriber = subscribe(10);
+
+        when(ingestionPipeline.submit(any(com.example.chat.domain.Message.class))).thenReturn(
+            CompletableFuture.failedFuture(io.grpc.Status.UNAVAILABLE.asRuntimeException()));
+
+        @SuppressWarnings("unchecked")
+        StreamObserver<SendMessageResponse> responseObserver = mock(StreamObserver.class);
+
+        service.sendMessage(SendMessageRequest.newBuilder()
+            .setChatRoomId(10)
+            .setSenderId(1)
+            .setText("hello")
+            .build(), responseObserver);
+
+        verify(responseObserver, times(1)).onError(any());
+        verify(responseObserver, never()).onNext(any());
+        verify(subscriber, never()).onNext(any());
+    }
+
+    @Test
+    void testSendMessage_UnreadableStoredMessageEndsCallWithInternal() {
+        // A retry answered with the stored original, whose compressed text is corrupt
+        com.example.chat.domain.Message stored = domainMessage(1, 10, 1, null);
+        stored.setTextCompressed(new byte[] {99});
+        when(ingestionPipeline.submit(any(com.example.chat.domain.Message.class)))
+            .thenReturn(CompletableFuture.completedFuture(stored));
+
+        @SuppressWarnings("unchecked")
+        StreamObserver<SendMessageResponse> responseObserver = mock(StreamObserver.class);
+
+        service.sendMessage(SendMessageRequest.newBuilder()
+            .setChatRoomId(10)
+            .setSenderId(1)
+            .setText("hello")
+            .build(), responseObserver);
+
+        verify(responseObserver).onError(argThat(error ->
+            io.grpc.Status.fromThrowable(error).getCode() == io.grpc.Status.Code.INTERNAL));
+        verify(responseObserver, never()).onNext(any());
+    }
+
+    @Test
+    void testSubscribeRoom_RoomNotFound() {
+        @SuppressWarnings("unchecked")
+        ServerCallStreamObserver<RoomEvent> subscriber = mock(ServerCallStreamObserver.class);
+        when(chatRoomRepository.existsById(99)).thenReturn(false);
+
+        service.subscribeRoom(SubscribeRoomRequest.newBuilder().setChatRoomId(99).build(), subscriber);
+
+        verify(subscriber, times(1)).onError(any());
+        assertEquals(0, roomEventHub.subscriberCount(99));
+    }
+
+    @Test
+    void testSubscribeRoom_CancelRemovesSubscriber() {
+        ServerCallStreamObserver<RoomEvent> subscriber = subscribe(10);
+        ArgumentCaptor<Runnable> cancelHandler = ArgumentCaptor.forClass(Runnable.class);
+        verify(subscriber).setOnCancelHandler(cancelHandler.capture());
+
+        assertEquals(1, roomEventHub.subscriberCount(10));
+        cancelHandler.getValue().run();
+        assertEquals(0, roomEventHub.subscriberCount(10));
+    }
+
+    @Test
+    void testDeleteMessage_AlreadyDeletedDoesNotPublish() {
+        ServerCallStreamObserver<RoomEvent> subscriber = subscribe(10);
+
+        com.example.chat.domain.Message message = domainMessage(5, 10, 1, "");
+        message.setDeleted(true);
+        when(messageRepository.findById(5)).thenReturn(Optional.of(message));
+
+        @SuppressWarnings("unchecked")
+        StreamObserver<Message> responseObserver = mock(StreamObserver.class);
+
+        service.deleteMessage(DeleteMessageRequest.newBuilder()
+            .setMessageId(5)
+            .setRequesterId(1)
+            .build(), responseObserver);
+
+        verify(messageRepository, never()).save(any());
+        verify(responseObserver, times(1)).onCompleted();
+        verify(subscriber, never()).onNext(any());
+    }
+
+    @Test
+    void testDeleteMessage_CompressedMessageIsClearedToEmptyText() {
+        ServerCallStreamObserver<RoomEvent> subscriber = subscribe(10);
+        // The stored row had text NULL and text_compressed set; the UPDATE returns it with
+        // the empty plain text and no compressed text
+        com.example.chat.domain.Message deleted = domainMessage(5, 10, 1, "");
+        deleted.setTextCompressed(null);
+        deleted.setDeleted(true);
+        when(messageRepository.softDeleteIfAllowed(5, 1)).thenReturn(Optional.of(deleted));
+
+        @SuppressWarnings("unchecked")
+        StreamObserver<Message> responseObserver = mock(StreamObserver.class);
+        service.deleteMessage(DeleteMessageRequest.newBuilder()
+            .setMessageId(5)
+            .setRequesterId(1)
+            .build(), responseObserver);
+
+        verify(responseObserver).onNext(argThat(m -> m.getIsDeleted() && m.getText().isEmpty()));
+        verify(responseObserver, never()).onError(any());
+        verify(outbox).append(argThat(e -> e.getMessageDeleted().getId() == 5));
+        verify(subscriber).onNext(argThat(e -> e.getType() == RoomEvent.Type.MESSAGE_DELETED));
+    }
+
+    @Test
+    void testEditMessage_SingleStatementPublishesEdit() {
+        ServerCallStreamObserver<RoomEvent> subscriber = subscribe(10);
+        com.example.chat.domain.Message edited = domainMessage(5, 10, 1, "new text");
+        edited.setEdited(true);
+        when(messageRepository.editIfAllowed(5, 1, "new text", null)).thenReturn(Optional.of(edited));
+
+        @SuppressWarnings("unchecked")
+        StreamObserver<Message> responseObserver = mock(StreamObserver.class);
+        service.editMessage(EditMessageRequest.newBuilder()
+            .setMessageId(5)
+            .setSenderId(1)
+            .setText("  new text ")
+            .build(), responseObserver);
+
+        verify(responseObserver).onNext(argThat(m -> m.getIsEdited() && m.getText().equals("new text")));
+        verify(messageRepository, never()).findById(any());
+        verify(messageRepository, never()).save(any());
+        verify(subscriber).onNext(argThat(e -> e.getType() == RoomEvent.Type.MESSAGE_EDITED));
+        verify(roomSummaries).recordEdited(edited, "new text");
+        verify(outbox).append(argThat(e -> e.getMessageEdited().getText().equals("new text")));
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void testEditMessage_PublishesAfterCommitAndBeforeReplying() {
+        ServerCallStreamObserver<RoomEvent> subscriber = subscribe(10);
+        com.example.chat.domain.Message edited = domainMessage(5, 10, 1, "new text");
+        edited.setEdited(true);
+        when(messageRepository.editIfAllowed(5, 1, "new text", null)).thenReturn(Optional.of(edited));
+
+        @SuppressWarnings("unchecked")
+        StreamObserver<Message> responseObserver = mock(StreamObserver.class);
+        service.editMessage(EditMessageRequest.newBuilder()
+            .setMessageId(5)
+            .setSenderId(1)
+            .setText("new text")
+            .build(), responseObserver);
+
+        InOrder inOrder = inOrder(transactionManager, responseObserver, subscriber);
+        inOrder.verify(transactionManager).commit(any());
+        inOrder.verify(subscriber).onNext(argThat(e -> e.getType() == RoomEvent.Type.MESSAGE_EDITED));
+        inOrder.verify(responseObserver).onNext(any());
+    }
+
+    @Test
+    void testDeleteMessage_FailedCommitIsNotReportedAsDeleted() {
+        ServerCallStreamObserver<RoomEvent> subscriber = subscribe(10);
+        com.example.chat.domain.Message deleted = domainMessage(5, 10, 1, "");
+        deleted.setDeleted(true);
+        when(messageRepository.softDeleteIfAllowed(5, 1)).thenReturn(Optional.of(deleted));
+        doThrow(new TransactionSystemException("commit failed")).when(transactionManager).commit(any());
+
+        @SuppressWarnings("unchecked")
+        StreamObserver<Message> responseObserver = mock(StreamObserver.class);
+        service.deleteMessage(DeleteMessageRequest.newBuilder()
+            .setMessageId(5)
+            .setRequesterId(1)
+            .build(), responseObserver);
+
+        verify(responseObserver).onError(any());
+        verify(responseObserver, never()).onNext(any());
+        verify(subscriber, never()).onNext(any());
+    }
+
+    @Test
+    void testDeleteMessage_FailedSummaryUpdateRollsBackTheDelete() {
+        ServerCallStreamObserver<RoomEvent> subscriber = subscribe(10);
+        com.example.chat.domain.Message deleted = domainMessage(5, 10, 1, "");
+        deleted.setDeleted(true);
+        when(messageRepository.softDeleteIfAllowed(5, 1)).thenReturn(Optional.of(deleted));
+        doThrow(new QueryTimeoutException("room_summaries")).when(roomSummaries).recordDeleted(deleted);
+
+        @SuppressWarnings("unchecked")
+        StreamObserver<Message> responseObserver = mock(StreamObserver.class);
+        service.deleteMessage(DeleteMessageRequest.newBuilder()
+            .setMessageId(5)
+            .setRequesterId(1)
+            .build(), responseObserver);
+
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
+        verify(outbox, never()).append(any());
+        verify(responseObserver).onError(any());
+        verify(responseObserver, never()).onNext(any());
+        verify(subscriber, never()).onNext(any());
+    }
+
+    @Test
+    void testEditMessage_OtherUsersMessageIsDenied() {
+        when(messageRepository.editIfAllowed(5, 2, "hijack", null)).thenReturn(Optional.empty());
+        when(messageRepository.findById(5)).thenReturn(Optional.of(domainMessage(5, 10, 1, "mine")));
+
+        @SuppressWarnings("unchecked")
+        StreamObserver<Message> responseObserver = mock(StreamObserver.class);
+        service.editMessage(EditMessageRequest.newBuilder()
+            .setMessageId(5)
+            .setSenderId(2)
+            .setText("hijack")
+            .build(), responseObserver);
+
+        ArgumentCaptor<Throwable> error = ArgumentCaptor.forClass(Throwable.class);
+        verify(responseObserver).onError(error.capture());
+        assertEquals(io.grpc.Status.Code.PERMISSION_DENIED, io.grpc.Status.fromThrowable(error.getValue()).getCode());
+        verify(responseObserver, never()).onNext(any());
+    }
+
+    @Test
+    void testGetMessages_LatestPageIsChronologicalWithCursor() {
+        com.example.chat.domain.Message newest = domainMessage(3, 10, 1, "three");
+        com.example.chat.domain.Message middle = domainMessage(2, 10, 1, "two");
+        com.example.chat.domain.Message oldest = domainMessage(1, 10, 1, "one");
+        when(messageRepository.findLatestPage(eq(10), anyInt())).thenReturn(List.of(newest, middle, oldest));
+
+        @SuppressWarnings("unchecked")
+        StreamObserver<GetMessagesResponse> responseObserver = mock(StreamObserver.class);
+
+        service.getMessages(GetMessagesRequest.newBuilder()
+            .setChatRoomId(10)
+            .setPageSize(2)
+            .build(), responseObserver);
+
+        ArgumentCaptor<GetMessagesResponse> response = ArgumentCaptor.forClass(GetMessagesResponse.class);
+        verify(responseObserver).onNext(response.capture());
+        assertTrue(response.getValue().getHasMore());
+        assertEquals(2, response.getValue().getMessagesCount());
+        assertEquals(2, response.getValue().getMessages(0).getId());
+        assertEquals(3, response.getValue().getMessages(1).getId());
+        assertEquals(2, response.getValue().getNextCursor().getId());
+        verify(messageRepository, never()).findByChatRoomIdOrderByCreatedAtAsc(anyInt());
+    }
+
+    @Test
+    void testGetMessages_BeforePageContinuesIntoArchive() {
+        com.example.chat.domain.Message inDatabase = domainMessage(5, 10, 1, "five");
+        com.example.chat.domain.Message archivedNewer = domainMessage(4, 10, 1, "four");
+        com.example.chat.domain.Message archivedOlder = domainMessage(3, 10, 1, "three");
+        MessageCursor cursor = MessageCursor.newBuilder().setCreatedAtMicros(Long.MAX_VALUE / 2).setId(6).build();
+        when(messageRepository.findPageBefore(eq(10), any(Instant.class), eq(6), eq(3)))
+            .thenReturn(List.of(inDatabase));
+        when(messageArchive.watermark(10)).thenReturn(MessageCursors.of(archivedNewer));
+        when(messageArchive.pageBefore(10, MessageCursors.of(inDatabase), 2))
+            .thenReturn(List.of(archivedNewer, archivedOlder));
+
+        @SuppressWarnings("unchecked")
+        StreamObserver<GetMessagesResponse> responseObserver = mock(StreamObserver.class);
+
+        service.getMessages(GetMessagesRequest.newBuilder()
+            .setChatRoomId(10)
+            .setBefore(cursor)
+            .setPageSize(2)
+            .build(), responseObserver);
+
+        ArgumentCaptor<GetMessagesResponse> response = ArgumentCaptor.forClass(GetMessagesResponse.class);
+        verify(responseObserver).onNext(response.capture());
+        assertTrue(response.getValue().getHasMore());
+        assertEquals(List.of(4, 5), response.getValue().getMessagesList().stream().map(Message::getId).toList());
+        assertEquals(4, response.getValue().getNextCursor().getId());
+    }
+
+    @Test
+    void testGetInbox_OneQueryForAllRoomsNewestRoomFirst() {
+        com.example.chat.domain.Message older = domainMessage(1, 10, 1, "one");
+        com.example.chat.domain.Message old = domainMessage(2, 10, 1, "two");
+        com.example.chat.domain.Message newer = domainMessage(3, 10, 1, "three");
+        com.example.chat.domain.Message newest = domainMessage(4, 12, 2, "four");
+        older.setCreatedAt(Instant.ofEpochSecond(1_000));
+        old.setCreatedAt(Instant.ofEpochSecond(2_000));
+        newer.setCreatedAt(Instant.ofEpochSecond(3_000));
+        newest.setCreatedAt(Instant.ofEpochSecond(4_000));
+        when(membershipRepository.findChatRoomIdsByUserId(1)).thenReturn(List.of(10, 11, 12));
+        when(messageRepository.findLatestPerRoom(List.of(10, 11, 12), 3))
+            .thenReturn(List.of(newer, old, older, newest));
+
+        @SuppressWarnings("unchecked")
+        StreamObserver<GetInboxResponse> responseObserver = mock(StreamObserver.class);
+
+        service.getInbox(GetInboxRequest.newBuilder().setUserId(1).setPerRoomLimit(2).build(), responseObserver);
+
+        ArgumentCaptor<GetInboxResponse> response = ArgumentCaptor.forClass(GetInboxResponse.class);
+        verify(responseObserver).onNext(response.capture());
+        List<InboxRoom> rooms = response.getValue().getRoomsList();
+        assertEquals(List.of(12, 10, 11), rooms.stream().map(InboxRoom::getChatRoomId).toList());
+        assertEquals(List.of(2, 3), rooms.get(1).getMessagesList().stream().map(Message::getId).toList());
+        assertTrue(rooms.get(1).getHasMore());
+        assertEquals(2, rooms.get(1).getNextCursor().getId());
+        assertFalse(rooms.get(0).getHasMore());
+        assertEquals(0, rooms.get(2).getMessagesCount());
+        verify(messageRepository, times(1)).findLatestPerRoom(any(), anyInt());
+    }
+
+    @Test
+    void testGetMessages_BeforeAndAfterRejected() {
+        @SuppressWarnings("unchecked")
+        StreamObserver<GetMessagesResponse> responseObserver = mock(StreamObserver.class);
+
+        service.getMessages(GetMessagesRequest.newBuilder()
+            .setChatRoomId(10)
+            .setBefore(MessageCursor.newBuilder().setId(1))
+            .setAfter(MessageCursor.newBuilder().setId(2))
+            .build(), responseObserver);
+
+        verify(responseObserver, times(1)).onError(any());
+        verify(responseObserver, never()).onNext(any());
+    }
+
+    @Test
+    void testGetMessages_NewestPageServedFromCacheAfterWarmup() {
+        com.example.chat.domain.Message first = domainMessage(1, 10, 1, "one");
+        when(messageRepository.findLatestPage(eq(10), anyInt())).thenReturn(List.of(first));
+        when(ingestionPipeline.submit(any(com.example.chat.domain.Message.class))).thenAnswer(invocation -> {
+            com.example.chat.domain.Message m = invocation.getArgument(0);
+            m.setId(2);
+            m.setCreatedAt(Instant.now().plusSeconds(1));
+            return CompletableFuture.completedFuture(m);
+        });
+
+        @SuppressWarnings("unchecked")
+        StreamObserver<GetMessagesResponse> warmup = mock(StreamObserver.class);
+        service.getMessages(GetMessagesRequest.newBuilder().setChatRoomId(10).build(), warmup);
+
+        @SuppressWarnings("unchecked")
+        StreamObserver<SendMessageResponse> sendObserver = mock(StreamObserver.class);
+        service.sendMessage(SendMessageRequest.newBuilder()
+            .setChatRoomId(10)
+            .setSenderId(1)
+            .setText("two")
+            .build(), sendObserver);
+
+        @SuppressWarnings("unchecked")
+        StreamObserver<GetMessagesResponse> responseObserver = mock(StreamObserver.class);
+        service.getMessages(GetMessagesRequest.newBuilder().setChatRoomId(10).build(), responseObserver);
+
+        ArgumentCaptor<GetMessagesResponse> response = ArgumentCaptor.forClass(GetMessagesResponse.class);
+        verify(responseObserver).onNext(response.capture());
+        assertEquals(2, response.getValue().getMessagesCount());
+        assertEquals("two", response.getValue().getMessages(1).getText());
+        assertFalse(response.getValue().getHasMore());
+        verify(messageRepository, times(1)).findLatestPage(eq(10), anyInt());
+        assertEquals(1, recentMessageCache.stats().hits());
+    }
+
+    @Test
+    void testSendMessage_CachedPageReadInReplyIncludesTheMessage() {
+        com.example.chat.domain.Message first = domainMessage(1, 10, 1, "one");
+        when(messageRepository.findLatestPage(eq(10), anyInt())).thenReturn(List.of(first));
+        when(ingestionPipeline.submit(any(com.example.chat.domain.Message.class))).thenAnswer(invocation -> {
+            com.example.chat.domain.Message m = invocation.getArgument(0);
+            m.setId(2);
+            m.setCreatedAt(Instant.now().plusSeconds(1));
+            return CompletableFuture.completedFuture(m);
+        });
+
+        @SuppressWarnings("unchecked")
+        StreamObserver<GetMessagesResponse> warmup = mock(StreamObserver.class);
+        service.getMessages(GetMessagesRequest.newBuilder().setChatRoomId(10).build(), warmup);
+
+        // Reads the room as soon as the send is acknowledged, like a client refreshing after its reply
+        @SuppressWarnings("unchecked")
+        StreamObserver<GetMessagesResponse> responseObserver = mock(StreamObserver.class);
+        @SuppressWarnings("unchecked")
+        StreamObserver<SendMessageResponse> sendObserver = mock(StreamObserver.class);
+        doAnswer(invocation -> {
+            service.getMessages(GetMessagesRequest.newBuilder().setChatRoomId(10).build(), responseObserver);
+            return null;
+        }).when(sendObserver).onNext(any());
+        service.sendMessage(SendMessageRequest.newBuilder()
+            .setChatRoomId(10)
+            .setSenderId(1)
+            .setText("two")
+            .build(), sendObserver);
+
+        ArgumentCaptor<GetMessagesResponse> response = ArgumentCaptor.forClass(GetMessagesResponse.class);
+        verify(responseObserver).onNext(response.capture());
+        assertEquals(2, response.getValue().getMessagesCount());
+        assertEquals("two", response.getValue().getMessages(1).getText());
+        assertEquals(1, recentMessageCache.stats().hits());
+    }
+
+    @Test
+    void testSearchMessages_RankedWholeWordFirstAndPaged() {
+        com.example.chat.domain.Message older = domainMessage(1, 10, 1, "meeting tomorrow");
+        com.example.chat.domain.Message prefix = domainMessage(2, 10, 1, "meetings are long");
+        com.example.chat.domain.Message newer = domainMessage(3, 10, 1, "the Meeting moved");
+        com.example.chat.domain.Message other = domainMessage(4, 10, 1, "lunch");
+        when(messageRepository.findPageAfter(eq(10), any(Instant.class), anyInt(), anyInt()))
+            .thenReturn(List.of(older, prefix, newer, other));
+        when(messageRepository.findAllById(List.of(3, 1))).thenReturn(List.of(older, newer));
+
+        @SuppressWarnings("unchecked")
+        StreamObserver<GetMessagesResponse> responseObserver = mock(StreamObserver.class);
+        service.searchMessages(SearchMessagesRequest.newBuilder()
+            .setChatRoomId(10)
+            .setQuery("meeting")
+            .setPageSize(2)
+            .build(), responseObserver);
+
+        ArgumentCaptor<GetMessagesResponse> response = ArgumentCaptor.forClass(GetMessagesResponse.class);
+        verify(responseObserver).onNext(response.capture());
+        assertEquals(List.of(3, 1), response.getValue().getMessagesList().stream().map(Message::getId).toList());
+        assertTrue(response.getValue().getHasMore());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testStreamMessages_SendsChunksOnlyWhileReady() {
+        com.example.chat.domain.Message m1 = domainMessage(1, 10, 1, "one");
+        com.example.chat.domain.Message m2 = domainMessage(2, 10, 1, "two");
+        com.example.chat.domain.Message m3 = domainMessage(3, 10, 1, "three");
+        when(chatRoomRepository.existsById(10)).thenReturn(true);
+        when(messageRepository.findPageAfter(eq(10), any(Instant.class), anyInt(), eq(2)))
+            .thenReturn(List.of(m1, m2), List.of(m3));
+        ServerCallStreamObserver<MessageChunk> responseObserver = mock(ServerCallStreamObserver.class);
+        when(responseObserver.isReady()).thenReturn(true, false, true);
+
+        service.streamMessages(StreamMessagesRequest.newBuilder().setChatRoomId(10).setChunkSize(2).build(),
+            responseObserver);
+
+        verify(responseObserver, times(1)).onNext(any());
+        verify(responseObserver, never()).onCompleted();
+
+        ArgumentCaptor<Runnable> onReady = ArgumentCaptor.forClass(Runnable.class);
+        verify(responseObserver).setOnReadyHandler(onReady.capture());
+        onReady.getValue().run();
+
+        ArgumentCaptor<MessageChunk> chunks = ArgumentCaptor.forClass(MessageChunk.class);
+        verify(responseObserver, times(2)).onNext(chunks.capture());
+        assertEquals(2, chunks.getAllValues().get(0).getMessagesCount());
+        assertEquals(3, chunks.getAllValues().get(1).getCursor().getId());
+        verify(responseObserver).onCompleted();
+        verify(messageRepository, times(2)).findPageAfter(eq(10), any(Instant.class), anyInt(), eq(2));
+    }
+
+    @Test
+    void testListChatRooms_KeysetPageOfGroupRooms() {
+        when(chatRoomRepository.findIdsAfterByRoomType(eq(ChatRoomType.GROUP), eq(40), any(Pageable.class)))
+            .thenReturn(List.of(41, 45, 50));
+
+        @SuppressWarnings("unchecked")
+        StreamObserver<ListChatRoomsResponse> responseObserver = mock(StreamObserver.class);
+
+        service.listChatRooms(ListChatRoomsRequest.newBuilder()
+            .setAfterId(40)
+            .setPageSize(2)
+            .setKind(ChatRoomKind.GROUP_ROOM)
+            .build(), responseObserver);
+
+        ArgumentCaptor<ListChatRoomsResponse> response = ArgumentCaptor.forClass(ListChatRoomsResponse.class);
+        verify(responseObserver).onNext(response.capture());
+        assertEquals(List.of(41, 45),
+            response.getValue().getRoomsList().stream().map(com.example.chat.grpc.ChatRoom::getId).toList());
+        assertTrue(response.getValue().getHasMore());
+        assertEquals(45, response.getValue().getNextAfterId());
+        verify(chatRoomRepository, never()).findAll();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testStreamChatRooms_ContinuesAfterLastIdUntilExhausted() {
+        when(chatRoomRepository.findIdsAfter(eq(0), any(Pageable.class))).thenReturn(List.of(1, 2, 3));
+        when(chatRoomRepository.findIdsAfter(eq(2), any(Pageable.class))).thenReturn(List.of(3));
+        ServerCallStreamObserver<ListChatRoomsResponse> responseObserver = mock(ServerCallStreamObserver.class);
+        when(responseObserver.isReady()).thenReturn(true);
+
+        service.streamChatRooms(ListChatRoomsRequest.newBuilder().setPageSize(2).build(), responseObserver);
+
+        ArgumentCaptor<ListChatRoomsResponse> pages = ArgumentCaptor.forClass(ListChatRoomsResponse.class);
+        verify(responseObserver, times(2)).onNext(pages.capture());
+        assertEquals(2, pages.getAllValues().get(0).getRoomsCount());
+        assertEquals(3, pages.getAllValues().get(1).getRooms(0).getId());
+        assertFalse(pages.getAllValues().get(1).getHasMore());
+        verify(responseObserver).onCompleted();
+    }
+
+    @Test
+    void testSyncRoom_ReturnsChangesAndAdvancesWatermark() {
+        com.example.chat.domain.Message edited = domainMessage(4, 10, 1, "edited");
+        edited.setEdited(true);
+        edited.setChangeVersion(8);
+        com.example.chat.domain.Message deleted = domainMessage(2, 10, 1, "gone");
+        deleted.setDeleted(true);
+        deleted.setChangeVersion(9);
+        com.example.chat.domain.Message extra = domainMessage(5, 10, 1, "new");
+        extra.setChangeVersion(10);
+        when(messageRepository.findChangedSince(10, 7L, 3)).thenReturn(List.of(edited, deleted, extra));
+
+        @SuppressWarnings("unchecked")
+        StreamObserver<SyncRoomResponse> responseObserver = mock(StreamObserver.class);
+        service.syncRoom(SyncRoomRequest.newBuilder().setChatRoomId(10).setSinceVersion(7).setLimit(2).build(),
+            responseObserver);
+
+        ArgumentCaptor<SyncRoomResponse> response = ArgumentCaptor.forClass(SyncRoomResponse.class);
+        verify(responseObserver).onNext(response.capture());
+        assertEquals(2, response.getValue().getMessagesCount());
+        assertTrue(response.getValue().getMessages(1).getIsDeleted());
+        assertEquals(9, response.getValue().getWatermark());
+        assertTrue(response.getValue().getHasMore());
+    }
+
+    @Test
+    void testSyncRoom_NoChangesKeepsWatermark() {
+        when(messageRepository.findChangedSince(eq(10), eq(42L), anyInt())).thenReturn(List.of());
+
+        @SuppressWarnings("unchecked")
+        StreamObserver<SyncRoomResponse> responseObserver = mock(StreamObserver.class);
+        service.syncRoom(SyncRoomRequest.newBuilder().setChatRoomId(10).setSinceVersion(42).build(),
+            responseObserver);
+
+        ArgumentCaptor<SyncRoomResponse> response = ArgumentCaptor.forClass(SyncRoomResponse.class);
+        verify(responseObserver).onNext(response.capture());
+        assertEquals(0, response.getValue().getMessagesCount());
+        assertEquals(42, response.getValue().getWatermark());
+        assertFalse(response.getValue().getHasMore());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testChatSession_AcksCommandsAndPushesJoinedRoomEvents() {
+        when(chatRoomRepository.existsById(10)).thenReturn(true);
+        when(ingestionPipeline.submit(any(com.example.chat.domain.Message.class))).thenAnswer(invocation -> {
+            com.example.chat.domain.Message m = invocation.getArgument(0);
+            m.setId(7);
+            m.setCreatedAt(Instant.now());
+            return CompletableFuture.completedFuture(m);
+        });
+        ServerCallStreamObserver<ChatFrame> responseObserver = mock(ServerCallStreamObserver.class);
+        when(responseObserver.isReady()).thenReturn(true);
+
+        StreamObserver<ChatCommand> session = service.chatSession(responseObserver);
+        session.onNext(ChatCommand.newBuilder()
+            .setCommandId(1)
+            .setJoin(SubscribeRoomRequest.newBuilder().setChatRoomId(10))
+            .build());
+        session.onNext(ChatCommand.newBuilder()
+            .setCommandId(2)
+            .setSend(SendMessageRequest.newBuilder().setChatRoomId(10).setSenderId(1).setText("hi"))
+            .build());
+        session.onNext(ChatCommand.newBuilder()
+            .setCommandId(3)
+            .setEdit(EditMessageRequest.newBuilder().setMessageId(99).setSenderId(1).setText("x"))
+            .build());
+
+        ArgumentCaptor<ChatFrame> frames = ArgumentCaptor.forClass(ChatFrame.class);
+        verify(responseObserver, times(4)).onNext(frames.capture());
+        List<ChatFrame> sent = frames.getAllValues();
+        assertEquals(1, sent.get(0).getAck().getCommandId());
+        // The message is published to the room before its send is acknowledged
+        assertEquals(RoomEvent.Type.MESSAGE_CREATED, sent.get(1).getEvent().getType());
+        assertEquals(2, sent.get(2).getAck().getCommandId());
+        assertEquals(7, sent.get(2).getAck().getMessage().getId());
+        assertEquals(3, sent.get(3).getAck().getCommandId());
+        assertEquals(io.grpc.Status.Code.NOT_FOUND.value(), sent.get(3).getAck().getCode());
+
+        session.onCompleted();
+        assertEquals(0, roomEventHub.subscriberCount(10));
+        verify(responseObserver).onCompleted();
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.chat.grpc;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
@@ -11,9 +12,13 @@ import java.util.Optional;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionSystemException;
 
 import com.example.chat.domain.ChatRoom;
 import com.example.chat.domain.ChatRoomType;
@@ -23,6 +28,7 @@ import com.example.chat.domain.Friendship;
 import com.example.chat.domain.FriendshipId;
 import com.example.chat.domain.PrivateChatRoom;
 import com.example.chat.domain.User;
+import com.example.chat.outbox.Outbox;
 import com.example.chat.repositories.ChatRoomMembershipRepository;
 import com.example.chat.repositories.ChatRoomRepository;
 import com.example.chat.repositories.FriendRequestRepository;
@@ -30,6 +36,7 @@ import com.example.chat.repositories.FriendshipRepository;
 import com.example.chat.repositories.PrivateChatRoomRepository;
 import com.example.chat.repositories.UserRepository;
 
+import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
 
 @ExtendWith(MockitoExtension.class)
@@ -53,6 +60,12 @@ class FriendServiceImplTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private Outbox outbox;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     @InjectMocks
     private FriendServiceImpl service;
 
@@ -113,6 +126,7 @@ class FriendServiceImplTest {
         service.sendFriendRequest(request, responseObserver);
 
         verify(friendRequestRepository, times(1)).save(any(FriendRequest.class));
+        verify(outbox).append(argThat(e -> e.getFriendRequestSent().getId() == 100));
         verify(responseObserver, times(1)).onNext(any(FriendRequestDto.class));
         verify(responseObserver, times(1)).onCompleted();
         verify(responseObserver, never()).onError(any());
@@ -218,6 +232,70 @@ class FriendServiceImplTest {
         verify(responseObserver, never()).onError(any());
     }
 
+    @Test
+    void testRespondFriendRequest_RepliesOnlyAfterCommit() {
+        RespondFriendRequestRequest request = RespondFriendRequestRequest.newBuilder()
+            .setRequestId(100)
+            .setAccept(false)
+            .build();
+
+        @SuppressWarnings("unchecked")
+        StreamObserver<FriendRequestDto> responseObserver = mock(StreamObserver.class);
+
+        when(friendRequestRepository.findById(100)).thenReturn(Optional.of(friendRequest));
+        when(friendRequestRepository.save(any(FriendRequest.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        service.respondFriendRequest(request, responseObserver);
+
+        InOrder inOrder = inOrder(outbox, transactionManager, responseObserver);
+        inOrder.verify(outbox).append(argThat(e -> e.getFriendRequestAnswered().getStatus().equals("DECLINED")));
+        inOrder.verify(transactionManager).commit(any());
+        inOrder.verify(responseObserver).onNext(any(FriendRequestDto.class));
+        inOrder.verify(responseObserver).onCompleted();
+    }
+
+    @Test
+    void testRespondFriendRequest_FailedCommitIsReportedAsError() {
+        RespondFriendRequestRequest request = RespondFriendRequestRequest.newBuilder()
+            .setRequestId(100)
+            .setAccept(false)
+            .build();
+
+        @SuppressWarnings("unchecked")
+        StreamObserver<FriendRequestDto> responseObserver = mock(StreamObserver.class);
+
+        when(friendRequestRepository.findById(100)).thenReturn(Optional.of(friendRequest));
+        when(friendRequestRepository.save(any(FriendRequest.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        doThrow(new TransactionSystemException("commit failed")).when(transactionManager).commit(any());
+
+        service.respondFriendRequest(request, responseObserver);
+
+        verify(responseObserver, never()).onNext(any());
+        verify(responseObserver, times(1)).onError(any());
+    }
+
+    @Test
+    void testRespondFriendRequest_AlreadyHandledRollsBack() {
+        RespondFriendRequestRequest request = RespondFriendRequestRequest.newBuilder()
+            .setRequestId(100)
+            .setAccept(true)
+            .build();
+
+        @SuppressWarnings("unchecked")
+        StreamObserver<FriendRequestDto> responseObserver = mock(StreamObserver.class);
+
+        friendRequest.setStatus(FriendRequestStatus.ACCEPTED);
+        when(friendRequestRepository.findById(100)).thenReturn(Optional.of(friendRequest));
+
+        service.respondFriendRequest(request, responseObserver);
+
+        ArgumentCaptor<Throwable> error = ArgumentCaptor.forClass(Throwable.class);
+        verify(responseObserver).onError(error.capture());
+        assertEquals(Status.Code.FAILED_PRECONDITION, Status.fromThrowable(error.getValue()).getCode());
+        verify(friendRequestRepository, never()).save(any());
+        verify(transactionManager).rollback(any());
+    }
+
     @Test
     void testListFriends_Success() {
         ListFriendsRequest request = ListFriendsRequest.newBuilder()
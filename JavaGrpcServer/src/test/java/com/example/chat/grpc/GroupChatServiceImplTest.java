@@ -1,33 +1,49 @@
 package com.example.chat.grpc;
 
+import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionSystemException;
 
 import com.example.chat.domain.ChatRoom;
 import com.example.chat.domain.ChatRoomMembership;
 import com.example.chat.domain.ChatRoomType;
 import com.example.chat.domain.GroupChatRoom;
 import com.example.chat.domain.MembershipRole;
+import com.example.chat.domain.PrivateChatRoom;
 import com.example.chat.domain.User;
+import com.example.chat.events.RoomEventHub;
+import com.example.chat.outbox.Outbox;
 import com.example.chat.repositories.ChatRoomMembershipRepository;
 import com.example.chat.repositories.ChatRoomRepository;
 import com.example.chat.repositories.GroupChatRoomRepository;
 import com.example.chat.repositories.PrivateChatRoomRepository;
 import com.example.chat.repositories.UserRepository;
+import com.example.chat.summary.RoomSummaries;
+import com.example.chat.unread.UnreadCounters;
 
+import com.google.protobuf.Empty;
+
+import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
+import jakarta.persistence.EntityManager;
 
 @ExtendWith(MockitoExtension.class)
 class GroupChatServiceImplTest {
@@ -38,12 +54,30 @@ class GroupChatServiceImplTest {
     @Mock
     private GroupChatRoomRepository groupChatRoomRepository;
 
+    @Mock
+    private PrivateChatRoomRepository privateChatRoomRepository;
+
     @Mock
     private ChatRoomMembershipRepository membershipRepository;
 
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private UnreadCounters unreadCounters;
+
+    @Mock
+    private RoomSummaries roomSummaries;
+
+    @Mock
+    private RoomEventHub roomEventHub;
+
+    @Mock
+    private Outbox outbox;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
     @InjectMocks
     private GroupChatServiceImpl service;
 
@@ -127,6 +161,50 @@ class GroupChatServiceImplTest {
         verify(responseObserver, never()).onError(any());
     }
 
+    @Test
+    void testCreateGroupChat_RepliesOnlyAfterCommit() {
+        CreateGroupChatRequest request = CreateGroupChatRequest.newBuilder()
+            .setOwnerId(1)
+            .setName("Test Group")
+            .build();
+
+        @SuppressWarnings("unchecked")
+        StreamObserver<CreateGroupChatResponse> responseObserver = mock(StreamObserver.class);
+
+        when(userRepository.findById(1)).thenReturn(Optional.of(owner));
+        when(chatRoomRepository.save(any(ChatRoom.class))).thenReturn(chatRoom);
+        when(groupChatRoomRepository.save(any(GroupChatRoom.class))).thenReturn(groupChatRoom);
+
+        service.createGroupChat(request, responseObserver);
+
+        InOrder inOrder = inOrder(outbox, transactionManager, responseObserver);
+        inOrder.verify(outbox).append(argThat(e -> e.getRoomCreated().getId() == 100));
+        inOrder.verify(transactionManager).commit(any());
+        inOrder.verify(responseObserver).onNext(argThat(r -> r.getRoom().getId() == 100));
+        inOrder.verify(responseObserver).onCompleted();
+    }
+
+    @Test
+    void testCreateGroupChat_FailedCommitIsReportedAsError() {
+        CreateGroupChatRequest request = CreateGroupChatRequest.newBuilder()
+            .setOwnerId(1)
+            .setName("Test Group")
+            .build();
+
+        @SuppressWarnings("unchecked")
+        StreamObserver<CreateGroupChatResponse> responseObserver = mock(StreamObserver.class);
+
+        when(userRepository.findById(1)).thenReturn(Optional.of(owner));
+        when(chatRoomRepository.save(any(ChatRoom.class))).thenReturn(chatRoom);
+        when(groupChatRoomRepository.save(any(GroupChatRoom.class))).thenReturn(groupChatRoom);
+        doThrow(new TransactionSystemException("commit failed")).when(transactionManager).commit(any());
+
+        service.createGroupChat(request, responseObserver);
+
+        verify(responseObserver, never()).onNext(any());
+        verify(responseObserver, times(1)).onError(any());
+    }
+
     @Test
     void testCreateGroupChat_OwnerNotFound() {
         CreateGroupChatRequest request = CreateGroupChatRequest.newBuilder()
@@ -144,6 +222,8 @@ class GroupChatServiceImplTest {
         verify(responseObserver, never()).onNext(any());
         verify(responseObserver, never()).onCompleted();
         verify(responseObserver, times(1)).onError(any());
+        verify(transactionManager).rollback(any());
+        verify(transactionManager, never()).commit(any());
     }
 
     @Test
@@ -172,9 +252,48 @@ class GroupChatServiceImplTest {
         service.addMember(request, responseObserver);
 
         verify(membershipRepository, times(1)).save(any(ChatRoomMembership.class));
+        ArgumentCaptor<RoomEvent> event = ArgumentCaptor.forClass(RoomEvent.class);
+        verify(roomEventHub).publish(event.capture());
+        assertEquals(RoomEvent.Type.MEMBER_ADDED, event.getValue().getType());
+        assertEquals(2, event.getValue().getUserId());
+        verify(outbox).append(DomainEvent.newBuilder().setMemberAdded(request).build());
         verify(responseObserver, times(1)).onNext(any());
         verify(responseObserver, times(1)).onCompleted();
         verify(responseObserver, never()).onError(any());
+        InOrder inOrder = inOrder(transactionManager, responseObserver, roomEventHub);
+        inOrder.verify(transactionManager).commit(any());
+        inOrder.verify(roomEventHub).publish(any());
+        inOrder.verify(responseObserver).onNext(any());
+    }
+
+    @Test
+    void testAddMember_FailedCommitPublishesNothing() {
+        AddMemberRequest request = AddMemberRequest.newBuilder()
+            .setChatRoomId(100)
+            .setRequesterId(1)
+            .setUserId(2)
+            .build();
+
+        @SuppressWarnings("unchecked")
+        StreamObserver<com.google.protobuf.Empty> responseObserver = mock(StreamObserver.class);
+
+        ChatRoomMembership ownerMembership = new ChatRoomMembership();
+        ownerMembership.setChatRoom(chatRoom);
+        ownerMembership.setUser(owner);
+        ownerMembership.setRole(MembershipRole.OWNER);
+
+        when(chatRoomRepository.findById(100)).thenReturn(Optional.of(chatRoom));
+        when(userRepository.findById(1)).thenReturn(Optional.of(owner));
+        when(userRepository.findById(2)).thenReturn(Optional.of(member1));
+        when(membershipRepository.findByChatRoomAndUser(chatRoom, owner)).thenReturn(Optional.of(ownerMembership));
+        when(membershipRepository.existsByChatRoomAndUser(chatRoom, member1)).thenReturn(false);
+        doThrow(new TransactionSystemException("commit failed")).when(transactionManager).commit(any());
+
+        service.addMember(request, responseObserver);
+
+        verify(responseObserver, never()).onNext(any());
+        verify(responseObserver, times(1)).onError(any());
+        verify(roomEventHub, never()).publish(any());
     }
 
     @Test
@@ -203,6 +322,7 @@ class GroupChatServiceImplTest {
         verify(responseObserver, never()).onNext(any());
         verify(responseObserver, never()).onCompleted();
         verify(responseObserver, times(1)).onError(any());
+        verify(transactionManager).rollback(any());
     }
 
     @Test
@@ -247,23 +367,81 @@ class GroupChatServiceImplTest {
         @SuppressWarnings("unchecked")
         StreamObserver<ListUserChatRoomsResponse> responseObserver = mock(StreamObserver.class);
 
-        ChatRoomMembership membership = new ChatRoomMembership();
-        membership.setChatRoom(chatRoom);
-        membership.setUser(owner);
-        membership.setRole(MembershipRole.OWNER);
-
-        List<ChatRoomMembership> memberships = new ArrayList<>();
-        memberships.add(membership);
-
         when(userRepository.findById(1)).thenReturn(Optional.of(owner));
-        when(membershipRepository.findByUser(owner)).thenReturn(memberships);
-        when(groupChatRoomRepository.findByChatRoomId(100)).thenReturn(Optional.of(groupChatRoom));
+        when(roomSummaries.groupRoomsOf(1)).thenReturn(List.of(
+            new RoomSummaries.RoomSummary(101, "Active", 55, 2, "hi", Instant.ofEpochSecond(1_000), 3),
+            new RoomSummaries.RoomSummary(100, "Test Group", 0, 0, "", null, 0)));
+        when(unreadCounters.unreadCounts(1, List.of(101, 100))).thenReturn(Map.of(100, 7));
 
         service.listUserChatRooms(request, responseObserver);
 
-        verify(responseObserver, times(1)).onNext(any(ListUserChatRoomsResponse.class));
+        ArgumentCaptor<ListUserChatRoomsResponse> response = ArgumentCaptor.forClass(ListUserChatRoomsResponse.class);
+        verify(responseObserver, times(1)).onNext(response.capture());
         verify(responseObserver, times(1)).onCompleted();
         verify(responseObserver, never()).onError(any());
+        com.example.chat.grpc.ChatRoom active = response.getValue().getRooms(0);
+        assertEquals(101, active.getId());
+        assertEquals("hi", active.getLastMessagePreview());
+        assertEquals(1_000, active.getLastMessageAtUnix());
+        assertEquals(3, active.getMessageCount());
+        assertEquals(0, active.getUnreadCount());
+        assertEquals(7, response.getValue().getRooms(1).getUnreadCount());
+        assertEquals(0, response.getValue().getRooms(1).getLastMessageId());
+        verify(membershipRepository, never()).findByUser(any());
     }
-}
 
+    @Test
+    void testMarkRead_RejectsNonMembers() {
+        @SuppressWarnings("unchecked")
+        StreamObserver<Empty> responseObserver = mock(StreamObserver.class);
+        when(membershipRepository.existsByChatRoomIdAndUserId(100, 3)).thenReturn(false);
+
+        service.markRead(MarkReadRequest.newBuilder()
+            .setChatRoomId(100)
+            .setUserId(3)
+            .setMessageId(55)
+            .build(), responseObserver);
+
+        ArgumentCaptor<Throwable> error = ArgumentCaptor.forClass(Throwable.class);
+        verify(responseObserver).onError(error.capture());
+        assertEquals(Status.Code.PERMISSION_DENIED, Status.fromThrowable(error.getValue()).getCode());
+        verify(unreadCounters, never()).markRead(anyInt(), anyInt(), anyInt());
+    }
+
+    @Test
+    void testGetPrivateChatRoom_RecordsNewRoomAndMembersBeforeReplying() {
+        @SuppressWarnings("unchecked")
+        StreamObserver<GetPrivateChatRoomResponse> responseObserver = mock(StreamObserver.class);
+        EntityManager entityManager = mock(EntityManager.class);
+        ReflectionTestUtils.setField(service, "entityManager", entityManager);
+
+        ChatRoom privateRoom = new ChatRoom();
+        privateRoom.setId(200);
+        privateRoom.setRoomType(ChatRoomType.PRIVATE);
+        when(userRepository.findById(2)).thenReturn(Optional.of(member1));
+        when(userRepository.findById(1)).thenReturn(Optional.of(owner));
+        when(chatRoomRepository.save(any(ChatRoom.class))).thenReturn(privateRoom);
+        when(entityManager.getReference(ChatRoom.class, 200)).thenReturn(privateRoom);
+        when(privateChatRoomRepository.save(any(PrivateChatRoom.class))).thenAnswer(invocation -> {
+            PrivateChatRoom saved = invocation.getArgument(0);
+            when(privateChatRoomRepository.findById(200)).thenReturn(Optional.of(saved));
+            return saved;
+        });
+
+        service.getPrivateChatRoom(GetPrivateChatRoomRequest.newBuilder()
+            .setUserId1(2)
+            .setUserId2(1)
+            .build(), responseObserver);
+
+        InOrder inOrder = inOrder(outbox, transactionManager, responseObserver);
+        inOrder.verify(outbox).appendAll(argThat(events -> events.size() == 3
+            && events.get(0).getRoomCreated().getId() == 200
+            && events.get(0).getRoomCreated().getName().equals("Dani & Jwan")
+            && events.get(1).getMemberAdded().equals(AddMemberRequest.newBuilder()
+                .setChatRoomId(200).setRequesterId(2).setUserId(2).build())
+            && events.get(2).getMemberAdded().getUserId() == 1));
+        inOrder.verify(transactionManager).commit(any());
+        inOrder.verify(responseObserver).onNext(argThat(r -> r.getRoom().getName().equals("Dani & Jwan")));
+        inOrder.verify(responseObserver).onCompleted();
+    }
+}
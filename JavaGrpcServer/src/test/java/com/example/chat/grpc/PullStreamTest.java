@@ -0,0 +1,76 @@
+package com.example.chat.grpc;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import io.grpc.stub.ServerCallStreamObserver;
+
+class PullStreamTest {
+
+    @SuppressWarnings("unchecked")
+    private static ServerCallStreamObserver<String> observer() {
+        return mock(ServerCallStreamObserver.class);
+    }
+
+    @Test
+    void testPump_SendsPagesUntilNoCursorFollows() {
+        ServerCallStreamObserver<String> observer = observer();
+        when(observer.isReady()).thenReturn(true);
+        List<Integer> reads = new ArrayList<>();
+
+        new PullStream<Integer, String>(observer,
+            after -> {
+                reads.add(after);
+                return "page" + after;
+            },
+            page -> page.equals("page2") ? null : Integer.parseInt(page.substring(4)) + 1, 0).pump();
+
+        assertEquals(List.of(0, 1, 2), reads);
+        verify(observer).onNext("page0");
+        verify(observer).onNext("page2");
+        verify(observer, times(1)).onCompleted();
+    }
+
+    @Test
+    void testPump_EmptyPageCompletesWithoutSending() {
+        ServerCallStreamObserver<String> observer = observer();
+        when(observer.isReady()).thenReturn(true);
+
+        new PullStream<Integer, String>(observer, after -> null, page -> 1, 0).pump();
+
+        verify(observer, never()).onNext(any());
+        verify(observer, times(1)).onCompleted();
+    }
+
+    @Test
+    void testPump_WaitsForReadinessAndStopsAfterCancel() {
+        ServerCallStreamObserver<String> observer = observer();
+        when(observer.isReady()).thenReturn(true, false);
+        List<Integer> reads = new ArrayList<>();
+
+        PullStream<Integer, String> stream = new PullStream<>(observer,
+            after -> {
+                reads.add(after);
+                return "page";
+            },
+            page -> reads.size(), 0);
+        stream.pump();
+        assertEquals(List.of(0), reads);
+
+        ArgumentCaptor<Runnable> onCancel = ArgumentCaptor.forClass(Runnable.class);
+        verify(observer).setOnCancelHandler(onCancel.capture());
+        onCancel.getValue().run();
+        when(observer.isReady()).thenReturn(true);
+        stream.pump();
+
+        assertEquals(List.of(0), reads);
+        verify(observer, never()).onCompleted();
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.chat.ingest;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.chat.codec.MessageTextCodec;
+import com.example.chat.domain.Message;
+import com.example.chat.outbox.Outbox;
+import com.example.chat.summary.RoomSummaries;
+
+class MessageIngestionPipelineTest {
+
+    private static final int MISSING_ROOM_ID = 99;
+    private static final long VERSION_OFFSET = 500;
+
+    private JdbcTemplate jdbcTemplate;
+    private MessageIngestionPipeline pipeline;
+    private final List<List<Integer>> insertedRoomOrders = new ArrayList<>();
+    private final Map<Integer, Long> roomSeqs = new HashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject(startsWith("SELECT nextval"), eq(Long.class))).thenReturn(1000L);
+        // Fails the whole statement like a foreign key violation whenever a row references the missing room,
+        // and otherwise numbers the rows per room like the trigger and returns them in reverse order
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            Object[] args = Arrays.copyOfRange(invocation.getArguments(), 2, invocation.getArguments().length);
+            List<Integer> chatRoomIds = new ArrayList<>();
+            for (int i = 0; i < args.length; i += 7) {
+                if (args[i + 1].equals(MISSING_ROOM_ID)) {
+                    throw new DataIntegrityViolationException("messages_chat_room_id_fkey");
+                }
+                chatRoomIds.add((Integer) args[i + 1]);
+            }
+            List<ResultSet> rows = new ArrayList<>();
+            for (int i = 0; i < args.length; i += 7) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getInt("id")).thenReturn((Integer) args[i]);
+                when(rs.getLong("seq")).thenReturn(roomSeqs.merge((Integer) args[i + 1], 1L, Long::sum));
+                when(rs.getLong("change_version")).thenReturn(VERSION_OFFSET + (Integer) args[i]);
+                rows.add(0, rs);
+            }
+            for (ResultSet rs : rows) {
+                handler.processRow(rs);
+            }
+            insertedRoomOrders.add(chatRoomIds);
+            return null;
+        }).when(jdbcTemplate).query(startsWith("INSERT INTO messages"), any(RowCallbackHandler.class),
+            any(Object[].class));
+        pipeline = new MessageIngestionPipeline(jdbcTemplate, mock(PlatformTransactionManager.class),
+            mock(MessageTextCodec.class), mock(RoomSummaries.class), mock(Outbox.class),
+            256, 2, 100, 2);
+        pipeline.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        pipeline.stop();
+    }
+
+    private static MessageIngestionPipeline.PendingMessage pending(int chatRoomId) {
+        Message message = new Message();
+        message.setChatRoomId(chatRoomId);
+        message.setSenderId(1);
+        message.setText("hi");
+        return new MessageIngestionPipeline.PendingMessage(message, new CompletableFuture<>());
+    }
+
+    @Test
+    void testFlush_CompletesWholeBatchWithOneInsertOrderedByRoom() throws Exception {
+        List<MessageIngestionPipeline.PendingMessage> batch = List.of(pending(2), pending(1), pending(2));
+
+        pipeline.flush(batch);
+
+        assertEquals(List.of(List.of(1, 2, 2)), insertedRoomOrders);
+        for (MessageIngestionPipeline.PendingMessage pending : batch) {
+            Message message = pending.future().get();
+            assertSame(pending.message(), message);
+            assertEquals(VERSION_OFFSET + message.getId(), message.getChangeVersion());
+        }
+        assertEquals(1, batch.get(1).message().getSeq());
+        assertEquals(1, batch.get(0).message().getSeq());
+        assertEquals(2, batch.get(2).message().getSeq());
+    }
+
+    @Test
+    void testFlush_CompletesCallersOffTheWorkerThreadInRoomOrder() throws Exception {
+        List<MessageIngestionPipeline.PendingMessage> batch = List.of(pending(1), pending(1), pending(2));
+        List<String> threads = new ArrayList<>();
+        List<Message> roomOneOrder = new ArrayList<>();
+        for (MessageIngestionPipeline.PendingMessage pending : batch) {
+            pending.future().thenAccept(message -> {
+                synchronized (threads) {
+                    threads.add(Thread.currentThread().getName());
+                    if (message.getChatRoomId() == 1) {
+                        roomOneOrder.add(message);
+                    }
+                }
+            });
+        }
+
+        pipeline.flush(batch);
+        pipeline.stop();
+
+        assertEquals(3, threads.size());
+        assertTrue(threads.stream().allMatch(name -> name.startsWith("message-completion-")));
+        assertEquals(List.of(batch.get(0).message(), batch.get(1).message()), roomOneOrder);
+    }
+
+    @Test
+    void testFlush_InvalidMessageFailsOnlyItsOwnCaller() throws Exception {
+        List<MessageIngestionPipeline.PendingMessage> batch =
+            List.of(pending(1), pending(2), pending(MISSING_ROOM_ID), pending(3), pending(4));
+
+        pipeline.flush(batch);
+
+        for (MessageIngestionPipeline.PendingMessage pending : batch) {
+            if (pending.message().getChatRoomId() == MISSING_ROOM_ID) {
+                ExecutionException ex = assertThrows(ExecutionException.class, () -> pending.future().get());
+                assertInstanceOf(DataIntegrityViolationException.class, ex.getCause());
+            } else {
+                assertSame(pending.message(), pending.future().get());
+            }
+        }
+        assertEquals(4, insertedRoomOrders.stream().mapToInt(List::size).sum());
+    }
+
+    @Test
+    void testFlush_ConnectionFailureFailsWholeBatchWithoutRetry() {
+        DataAccessResourceFailureException failure = new DataAccessResourceFailureException("connection refused");
+        doThrow(failure).when(jdbcTemplate).query(startsWith("INSERT INTO messages"),
+            any(RowCallbackHandler.class), any(Object[].class));
+        List<MessageIngestionPipeline.PendingMessage> batch = List.of(pending(1), pending(2), pending(3), pending(4));
+
+        pipeline.flush(batch);
+
+        for (MessageIngestionPipeline.PendingMessage pending : batch) {
+            ExecutionException ex = assertThrows(ExecutionException.class, () -> pending.future().get());
+            assertSame(failure, ex.getCause());
+        }
+        verify(jdbcTemplate, times(1)).query(startsWith("INSERT INTO messages"), any(RowCallbackHandler.class),
+            any(Object[].class));
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.chat.ingest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.chat.domain.Message;
+
+class SendDeduplicatorTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void testRetryWhileInFlightSharesTheOriginalSend() {
+        SendDeduplicator dedup = new SendDeduplicator(60_000, 100);
+        CompletableFuture<Message> pipeline = new CompletableFuture<>();
+        AtomicInteger sends = new AtomicInteger();
+
+        CompletableFuture<Message> first = dedup.submit(1, "a", () -> {
+            sends.incrementAndGet();
+            return pipeline;
+        }, 0);
+        CompletableFuture<Message> retry = dedup.submit(1, "a", () -> {
+            sends.incrementAndGet();
+            return new CompletableFuture<>();
+        }, SECOND);
+        Message saved = new Message();
+        pipeline.complete(saved);
+
+        assertEquals(1, sends.get());
+        assertSame(saved, first.join());
+        assertSame(saved, retry.join());
+    }
+
+    @Test
+    void testFailedAndExpiredSendsAreForgotten() {
+        SendDeduplicator dedup = new SendDeduplicator(60_000, 100);
+        dedup.submit(1, "a", () -> CompletableFuture.failedFuture(new IllegalStateException()), 0);
+        assertEquals(0, dedup.size());
+
+        Message saved = new Message();
+        dedup.submit(1, "b", () -> CompletableFuture.completedFuture(saved), 0);
+        dedup.sweep(59 * SECOND);
+        assertEquals(1, dedup.size());
+        dedup.sweep(60 * SECOND);
+        assertEquals(0, dedup.size());
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.chat.outbox;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import com.example.chat.grpc.DomainEvent;
+import com.example.chat.grpc.Message;
+
+class OutboxRelayTest {
+
+    private static final Instant CREATED_AT = Instant.ofEpochSecond(1_700_000_000L);
+
+    private JdbcTemplate jdbcTemplate;
+    private PlatformTransactionManager transactionManager;
+    private OutboxConsumer consumer;
+    private final List<List<DomainEvent>> delivered = new ArrayList<>();
+    private final List<Object[]> eventQueryArgs = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        consumer = mock(OutboxConsumer.class);
+        when(consumer.name()).thenReturn("search-index");
+        doAnswer(invocation -> delivered.add(invocation.getArgument(0))).when(consumer).accept(anyList());
+    }
+
+    private OutboxRelay relay(int batchSize) {
+        return new OutboxRelay(jdbcTemplate, transactionManager, List.of(consumer), batchSize, 200, 5000, 24);
+    }
+
+    /**
+     * Answers the claim of the consumer's position, or claims nothing if the row is locked elsewhere.
+     */
+    private void stubPosition(String xid, long eventId) {
+        doAnswer(invocation -> {
+            if (xid == null) {
+                return List.of();
+            }
+            RowMapper<?> mapper = invocation.getArgument(1);
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getString("last_xid")).thenReturn(xid);
+            when(rs.getLong("last_event_id")).thenReturn(eventId);
+            return List.of(mapper.mapRow(rs, 0));
+        }).when(jdbcTemplate).query(startsWith("SELECT last_xid"), ArgumentMatchers.<RowMapper<Object>>any(),
+            any(Object[].class));
+    }
+
+    /**
+     * Answers the read of the events after the position with the given rows of (xid, id, event).
+     */
+    private void stubEvents(Object[]... rows) {
+        doAnswer(invocation -> {
+            eventQueryArgs.add(Arrays.copyOfRange(invocation.getArguments(), 2, invocation.getArguments().length));
+            RowMapper<?> mapper = invocation.getArgument(1);
+            List<Object> mapped = new ArrayList<>();
+            for (Object[] row : rows) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getString("xid")).thenReturn((String) row[0]);
+                when(rs.getLong("id")).thenReturn((Long) row[1]);
+                when(rs.getBytes("payload")).thenReturn(((DomainEvent) row[2]).toByteArray());
+                when(rs.getTimestamp("created_at")).thenReturn(Timestamp.from(CREATED_AT));
+                mapped.add(mapper.mapRow(rs, mapped.size()));
+            }
+            return mapped;
+        }).when(jdbcTemplate).query(startsWith("SELECT id, xid"), ArgumentMatchers.<RowMapper<Object>>any(),
+            any(Object[].class));
+    }
+
+    private static DomainEvent created(int messageId) {
+        return DomainEvent.newBuilder()
+            .setMessageCreated(Message.newBuilder().setId(messageId).setChatRoomId(10).setText("hi"))
+            .build();
+    }
+
+    @Test
+    void testAdvance_DeliversEventsAfterClaimedPositionAndStoresTheLast() {
+        stubPosition("700", 3);
+        stubEvents(new Object[] {"700", 4L, created(1)}, new Object[] {"702", 1L, created(2)});
+        OutboxRelay relay = relay(2);
+
+        assertTrue(relay.advanceAll(0));
+
+        ArgumentCaptor<String> claim = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate).query(claim.capture(), ArgumentMatchers.<RowMapper<Object>>any(), eq("search-index"));
+        assertTrue(claim.getValue().endsWith("FOR UPDATE SKIP LOCKED"));
+        assertArrayEquals(new Object[] {"700", 3L, 2}, eventQueryArgs.get(0));
+        assertEquals(1, delivered.size());
+        assertEquals(4, delivered.get(0).get(0).getId());
+        assertEquals(1, delivered.get(0).get(1).getId());
+        assertEquals(2, delivered.get(0).get(1).getMessageCreated().getId());
+        assertEquals(CREATED_AT.getEpochSecond(), delivered.get(0).get(0).getOccurredAtUnix());
+        // The position moves to the last delivered event, in the transaction that delivered it
+        verify(jdbcTemplate).update(startsWith("UPDATE outbox_consumer_offsets"), eq("702"), eq(1L),
+            eq("search-index"));
+        verify(transactionManager).commit(any());
+
+        relay.advanceAll(1);
+        verify(jdbcTemplate, times(1)).update(startsWith("INSERT INTO outbox_consumer_offsets"), eq("search-index"));
+    }
+
+    @Test
+    void testAdvance_OnlyEventsOfFinishedTransactionsAreRead() {
+        stubPosition("700", 3);
+        stubEvents();
+        OutboxRelay relay = relay(2);
+
+        assertFalse(relay.advanceAll(0));
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate).query(sql.capture(), ArgumentMatchers.<RowMapper<Object>>any(), eq("700"), eq(3L),
+            eq(2));
+        // A transaction still running may commit events before the position; the horizon keeps them ahead of it
+        assertTrue(sql.getValue().contains("xid < pg_snapshot_xmin(pg_current_snapshot())"));
+        assertTrue(sql.getValue().contains("ORDER BY xid, id"));
+        verify(consumer, never()).accept(anyList());
+        verify(jdbcTemplate, never()).update(startsWith("UPDATE outbox_consumer_offsets"), any(Object[].class));
+    }
+
+    @Test
+    void testAdvance_PositionClaimedByAnotherInstanceIsSkipped() {
+        stubPosition(null, 0);
+        stubEvents(new Object[] {"700", 4L, created(1)});
+
+        assertFalse(relay(2).advanceAll(0));
+
+        assertTrue(eventQueryArgs.isEmpty());
+        verify(consumer, never()).accept(anyList());
+        verify(jdbcTemplate, never()).update(startsWith("UPDATE outbox_consumer_offsets"), any(Object[].class));
+    }
+
+    @Test
+    void testAdvance_FailedBatchKeepsThePositionAndIsRetriedAfterTheDelay() {
+        stubPosition("700", 3);
+        stubEvents(new Object[] {"700", 4L, created(1)});
+        doThrow(new IllegalStateException("index unavailable"))
+            .doAnswer(invocation -> delivered.add(invocation.getArgument(0)))
+            .when(consumer).accept(anyList());
+        OutboxRelay relay = relay(2);
+
+        assertFalse(relay.advanceAll(0));
+        verify(transactionManager).rollback(any());
+        verify(jdbcTemplate, never()).update(startsWith("UPDATE outbox_consumer_offsets"), any(Object[].class));
+
+        relay.advanceAll(TimeUnit.SECONDS.toNanos(1));
+        assertEquals(1, eventQueryArgs.size());
+
+        relay.advanceAll(TimeUnit.SECONDS.toNanos(5));
+        assertEquals(2, eventQueryArgs.size());
+        assertArrayEquals(eventQueryArgs.get(0), eventQueryArgs.get(1));
+        assertEquals(1, delivered.size());
+        verify(jdbcTemplate).update(startsWith("UPDATE outbox_consumer_offsets"), eq("700"), eq(4L),
+            eq("search-index"));
+    }
+
+    @Test
+    void testPrune_KeepsEventsNotHandledByEveryConfiguredConsumer() {
+        relay(2).prune();
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbcTemplate).update(sql.capture(), args.capture());
+        assertTrue(sql.getValue().contains("(e.xid, e.id) > (o.last_xid, o.last_event_id)"));
+        assertEquals(TimeUnit.HOURS.toSeconds(24), args.getValue()[0]);
+        assertArrayEquals(new String[] {"search-index"}, (String[]) args.getValue()[1]);
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.chat.outbox;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.chat.grpc.AddMemberRequest;
+import com.example.chat.grpc.DomainEvent;
+import com.example.chat.grpc.Message;
+
+class OutboxTest {
+
+    @Test
+    void testAppendAll_OneInsertWithTypeAndPayloadPerEvent() throws Exception {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        Outbox outbox = new Outbox(jdbcTemplate);
+        DomainEvent created = DomainEvent.newBuilder()
+            .setMessageCreated(Message.newBuilder().setId(5).setChatRoomId(10).setText("hi"))
+            .build();
+        DomainEvent added = DomainEvent.newBuilder()
+            .setMemberAdded(AddMemberRequest.newBuilder().setChatRoomId(10).setRequesterId(1).setUserId(2))
+            .build();
+
+        outbox.appendAll(List.of(created, added));
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbcTemplate, times(1)).update(sql.capture(), args.capture());
+        assertTrue(sql.getValue().endsWith("VALUES (?, ?), (?, ?)"));
+        assertEquals("MESSAGE_CREATED", args.getValue()[0]);
+        assertEquals(created, DomainEvent.parseFrom((byte[]) args.getValue()[1]));
+        assertEquals("MEMBER_ADDED", args.getValue()[2]);
+        assertEquals(added, DomainEvent.parseFrom((byte[]) args.getValue()[3]));
+    }
+
+    @Test
+    void testEventType_StableNameForEveryChange() {
+        assertEquals("MESSAGE_CREATED", Outbox.eventType(DomainEvent.ChangeCase.MESSAGECREATED));
+        assertEquals("FRIEND_REQUEST_ANSWERED", Outbox.eventType(DomainEvent.ChangeCase.FRIENDREQUESTANSWERED));
+        for (DomainEvent.ChangeCase change : DomainEvent.ChangeCase.values()) {
+            if (change != DomainEvent.ChangeCase.CHANGE_NOT_SET) {
+                assertTrue(Outbox.eventType(change).matches("[A-Z]+(_[A-Z]+)+"));
+            }
+        }
+    }
+
+    @Test
+    void testAppend_RejectsEventWithoutChange() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        Outbox outbox = new Outbox(jdbcTemplate);
+
+        assertThrows(IllegalArgumentException.class, () -> outbox.append(DomainEvent.getDefaultInstance()));
+        verify(jdbcTemplate, never()).update(anyString(), any(Object[].class));
+    }
+
+    @Test
+    void testStored_SetsIdAndTime() {
+        DomainEvent payload = DomainEvent.newBuilder()
+            .setMessageDeleted(Message.newBuilder().setId(5).setIsDeleted(true))
+            .build();
+
+        DomainEvent stored = Outbox.stored(42, Instant.ofEpochSecond(1_700_000_000), payload);
+
+        assertEquals(42, stored.getId());
+        assertEquals(1_700_000_000, stored.getOccurredAtUnix());
+        assertEquals(5, stored.getMessageDeleted().getId());
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.chat.partition;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.ResultSet;
+import java.time.YearMonth;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+class MessagePartitionMaintainerTest {
+
+    @Test
+    void testPartitionNamesAndBounds() {
+        YearMonth month = YearMonth.of(2026, 3);
+
+        assertEquals("messages_y2026m03", MessagePartitionMaintainer.partitionName(month));
+        assertEquals(month, MessagePartitionMaintainer.monthOf("messages_y2026m03"));
+        assertNull(MessagePartitionMaintainer.monthOf("messages_y2026m13"));
+        assertNull(MessagePartitionMaintainer.monthOf("messages_archive"));
+        assertEquals("2026-03-01 00:00:00+00", MessagePartitionMaintainer.lowerBound(month));
+    }
+
+    @Test
+    void testMaintain_CreatesUpcomingAndDropsExpired() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class))).thenReturn(List.of("p"));
+        when(jdbcTemplate.query(anyString(), ArgumentMatchers.<RowMapper<Object>>any())).thenAnswer(invocation -> List.of(
+            partition(invocation.getArgument(1), "messages_y2026m01", false),
+            partition(invocation.getArgument(1), "messages_y2025m12", true),
+            partition(invocation.getArgument(1), "messages_y2026m02", false),
+            partition(invocation.getArgument(1), "messages_y2026m07", false)));
+        MessagePartitionMaintainer maintainer = new MessagePartitionMaintainer(jdbcTemplate, true, 2, 6, 3_600_000);
+
+        maintainer.maintain(YearMonth.of(2026, 8));
+
+        verify(jdbcTemplate).execute("CREATE TABLE IF NOT EXISTS messages_y2026m10 PARTITION OF messages "
+            + "FOR VALUES FROM ('2026-10-01 00:00:00+00') TO ('2026-11-01 00:00:00+00')");
+        verify(jdbcTemplate, times(3)).execute(startsWith("CREATE TABLE IF NOT EXISTS"));
+        verify(jdbcTemplate).execute("ALTER TABLE messages DETACH PARTITION messages_y2026m01 CONCURRENTLY");
+        verify(jdbcTemplate).execute("ALTER TABLE messages DETACH PARTITION messages_y2025m12 FINALIZE");
+        verify(jdbcTemplate).execute("DROP TABLE messages_y2026m01");
+        verify(jdbcTemplate).execute("DROP TABLE messages_y2025m12");
+        verify(jdbcTemplate, never()).execute(contains("messages_y2026m02"));
+        verify(jdbcTemplate, never()).execute(contains("messages_y2026m07"));
+    }
+
+    @Test
+    void testMaintain_SkipsUnpartitionedTable() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class))).thenReturn(List.of("r"));
+        MessagePartitionMaintainer maintainer = new MessagePartitionMaintainer(jdbcTemplate, true, 3, 6, 3_600_000);
+
+        maintainer.maintain(YearMonth.of(2026, 8));
+
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+
+    private static Object partition(RowMapper<?> mapper, String name, boolean detachPending) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getString(1)).thenReturn(name);
+        when(rs.getBoolean(2)).thenReturn(detachPending);
+        return mapper.mapRow(rs, 0);
+    }
+}
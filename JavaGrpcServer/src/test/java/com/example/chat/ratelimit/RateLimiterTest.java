@@ -0,0 +1,72 @@
+package com.example.chat.ratelimit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+
+class RateLimiterTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void testBucketRefillsAtConfiguredRate() {
+        TokenBuckets buckets = new TokenBuckets(2, 3, 64);
+
+        assertEquals(0, buckets.acquire(7, 0));
+        assertEquals(0, buckets.acquire(7, 0));
+        assertEquals(0, buckets.acquire(7, 0));
+        assertEquals(SECOND / 2, buckets.acquire(7, 0));
+        assertEquals(0, buckets.acquire(8, 0));
+
+        assertEquals(0, buckets.acquire(7, SECOND / 2));
+        assertTrue(buckets.acquire(7, SECOND / 2) > 0);
+    }
+
+    @Test
+    void testIdleKeysGiveUpTheirSlots() {
+        TokenBuckets buckets = new TokenBuckets(1, 1, 8);
+        for (int key = 1; key <= 8; key++) {
+            assertEquals(0, buckets.acquire(key, 0));
+        }
+        assertEquals(-1, buckets.acquire(100, 0));
+
+        assertEquals(0, buckets.acquire(100, SECOND));
+    }
+
+    @Test
+    void testRejectsWithRetryPushback() {
+        MockEnvironment environment = new MockEnvironment()
+            .withProperty("chat.rate-limit.send-message.sender.per-second", "1")
+            .withProperty("chat.rate-limit.send-message.sender.burst", "2");
+        RateLimiter limiter = new RateLimiter(environment, true, 1024);
+
+        assertNull(limiter.check(RateLimiter.Route.SEND_MESSAGE, 1, 10));
+        assertNull(limiter.check(RateLimiter.Route.SEND_MESSAGE, 1, 10));
+        StatusRuntimeException rejected = limiter.check(RateLimiter.Route.SEND_MESSAGE, 1, 10);
+
+        assertNotNull(rejected);
+        assertEquals(Status.Code.RESOURCE_EXHAUSTED, rejected.getStatus().getCode());
+        long pushback = Long.parseLong(rejected.getTrailers().get(RateLimiter.RETRY_PUSHBACK_MS));
+        assertTrue(pushback > 0 && pushback <= 1000);
+        assertNull(limiter.check(RateLimiter.Route.SEND_MESSAGE, 2, 10));
+        assertNull(limiter.check(RateLimiter.Route.EDIT_MESSAGE, 1, 0));
+        assertEquals(1, limiter.stats().rejected());
+    }
+
+    @Test
+    void testRoomLimitAppliesAcrossSenders() {
+        MockEnvironment environment = new MockEnvironment()
+            .withProperty("chat.rate-limit.send-message.room.per-second", "1")
+            .withProperty("chat.rate-limit.send-message.room.burst", "2");
+        RateLimiter limiter = new RateLimiter(environment, true, 1024);
+
+        assertNull(limiter.check(RateLimiter.Route.SEND_MESSAGE, 1, 10));
+        assertNull(limiter.check(RateLimiter.Route.SEND_MESSAGE, 2, 10));
+        assertNotNull(limiter.check(RateLimiter.Route.SEND_MESSAGE, 3, 10));
+        assertNull(limiter.check(RateLimiter.Route.SEND_MESSAGE, 3, 11));
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.chat.search;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.chat.codec.MessageTextCodec;
+import com.example.chat.grpc.Message;
+import com.example.chat.grpc.RoomEvent;
+import com.example.chat.grpc.SearchMessagesRequest.Mode;
+import com.example.chat.repositories.ChatRoomRepository;
+import com.example.chat.repositories.MessageRepository;
+
+class MessageSearchIndexTest {
+
+    private MessageSearchIndex index;
+
+    @BeforeEach
+    void setUp() {
+        MessageRepository messageRepository = mock(MessageRepository.class);
+        when(messageRepository.findPageAfter(anyInt(), any(Instant.class), anyInt(), anyInt())).thenReturn(List.of());
+        index = new MessageSearchIndex(messageRepository, mock(ChatRoomRepository.class),
+            new MessageTextCodec(null, false, 256, false, "memory"), false);
+        index.search(1, "warmup", Mode.DEFAULT, 0, 10);
+    }
+
+    private void post(RoomEvent.Type type, int id, String text) {
+        index.onRoomEvent(RoomEvent.newBuilder()
+            .setType(type)
+            .setChatRoomId(1)
+            .setMessage(Message.newBuilder().setId(id).setChatRoomId(1).setText(text))
+            .build());
+    }
+
+    private List<Integer> search(String query, Mode mode) {
+        return index.search(1, query, mode, 0, 10).messageIds();
+    }
+
+    @Test
+    void testTokenize_LowercasesAndSplitsOnPunctuation() {
+        assertEquals(List.of("hello", "world", "42"), MessageSearchIndex.tokenize("Hello, WORLD! #42"));
+    }
+
+    @Test
+    void testSearch_AllTokensMustMatchAndLastIsPrefix() {
+        post(RoomEvent.Type.MESSAGE_CREATED, 1, "release notes draft");
+        post(RoomEvent.Type.MESSAGE_CREATED, 2, "release dates");
+        post(RoomEvent.Type.MESSAGE_CREATED, 3, "notes only");
+
+        assertEquals(List.of(1), search("release note", Mode.DEFAULT));
+        assertEquals(List.of(2, 1), search("rel", Mode.DEFAULT));
+        assertTrue(search("draft dates", Mode.DEFAULT).isEmpty());
+        assertEquals(List.of(1), search("rel not", Mode.PREFIX));
+    }
+
+    @Test
+    void testSearch_EditsAndDeletesUpdateIndex() {
+        post(RoomEvent.Type.MESSAGE_CREATED, 1, "old text");
+        post(RoomEvent.Type.MESSAGE_CREATED, 2, "old news");
+        post(RoomEvent.Type.MESSAGE_EDITED, 1, "new text");
+        post(RoomEvent.Type.MESSAGE_DELETED, 2, "old news");
+
+        assertTrue(search("old", Mode.DEFAULT).isEmpty());
+        assertEquals(List.of(1), search("new", Mode.DEFAULT));
+    }
+
+    @Test
+    void testSearch_PagesWithOffset() {
+        for (int id = 1; id <= 5; id++) {
+            post(RoomEvent.Type.MESSAGE_CREATED, id, "ping " + id);
+        }
+
+        MessageSearchBackend.SearchResult first = index.search(1, "ping", Mode.DEFAULT, 0, 2);
+        MessageSearchBackend.SearchResult last = index.search(1, "ping", Mode.DEFAULT, 4, 2);
+        assertEquals(List.of(5, 4), first.messageIds());
+        assertTrue(first.hasMore());
+        assertEquals(List.of(1), last.messageIds());
+        assertFalse(last.hasMore());
+        assertEquals(5, last.totalMatches());
+    }
+
+    @Test
+    void testSearch_PhraseRequiresAdjacentWordsInOrder() {
+        post(RoomEvent.Type.MESSAGE_CREATED, 1, "deploy the release today");
+        post(RoomEvent.Type.MESSAGE_CREATED, 2, "release: deploy the fix");
+
+        assertEquals(List.of(1), search("the release", Mode.PHRASE));
+        assertEquals(List.of(2), search("Release, deploy", Mode.PHRASE));
+        assertTrue(search("deploy release", Mode.PHRASE).isEmpty());
+    }
+
+    @Test
+    void testSearch_FuzzyMatchesWithinOneEdit() {
+        post(RoomEvent.Type.MESSAGE_CREATED, 1, "meeting at noon");
+        post(RoomEvent.Type.MESSAGE_CREATED, 2, "greeting everyone");
+
+        assertEquals(List.of(1), search("meeteng", Mode.FUZZY));
+        assertTrue(search("meeteng", Mode.DEFAULT).isEmpty());
+        assertTrue(MessageSearchIndex.withinOneEdit("meeting", "meting"));
+        assertFalse(MessageSearchIndex.withinOneEdit("meeting", "greeting"));
+    }
+
+    @Test
+    void testFuzzy_ExaminesTermsSharingTheFirstLetter() {
+        post(RoomEvent.Type.MESSAGE_CREATED, 1, "meeting at noon");
+        post(RoomEvent.Type.MESSAGE_CREATED, 2, "status report");
+
+        assertEquals(List.of(1), search("maeting", Mode.FUZZY));
+        assertEquals(List.of(1), search("mmeeting", Mode.FUZZY));
+        assertEquals(List.of(2), search("staatus", Mode.FUZZY));
+        // A typo in the first letter is outside the examined terms
+        assertTrue(search("neeting", Mode.FUZZY).isEmpty());
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.chat.summary;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import com.example.chat.domain.Message;
+
+class RoomSummariesTest {
+
+    private Message message(int id, int roomId, int senderId, String text, Instant createdAt) {
+        Message message = new Message();
+        message.setId(id);
+        message.setChatRoomId(roomId);
+        message.setSenderId(senderId);
+        message.setText(text);
+        message.setCreatedAt(createdAt);
+        return message;
+    }
+
+    @Test
+    void testRecordInserted_OneUpsertWithLastMessageAndCountPerRoom() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        RoomSummaries summaries = new RoomSummaries(jdbcTemplate, 100);
+        Instant now = Instant.now();
+
+        summaries.recordInserted(List.of(
+            message(1, 10, 1, "first", now),
+            message(2, 11, 2, "other room", now),
+            message(3, 10, 3, "last", now)));
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<Object[]> args = ArgumentCaptor.forClass(Object[].class);
+        verify(jdbcTemplate, times(1)).update(sql.capture(), args.capture());
+        // An older message, such as one of a batch committed late, must not replace the newer preview
+        assertTrue(sql.getValue().contains("last_preview = CASE WHEN (EXCLUDED.last_message_at, "
+            + "EXCLUDED.last_message_id) >= (room_summaries.last_message_at, room_summaries.last_message_id) "
+            + "THEN EXCLUDED.last_preview ELSE room_summaries.last_preview END"));
+        assertArrayEquals(new Object[] {
+            10, 3, 3, "last", Timestamp.from(now), 2,
+            11, 2, 2, "other room", Timestamp.from(now), 1
+        }, args.getValue());
+    }
+
+    @Test
+    void testPreview_TruncatesWithoutSplittingSurrogatePairs() {
+        RoomSummaries summaries = new RoomSummaries(mock(JdbcTemplate.class), 3);
+
+        assertEquals("abc", summaries.preview("abc"));
+        assertEquals("abc", summaries.preview("abcdef"));
+        assertEquals("ab", summaries.preview("ab\uD83D\uDE00"));
+        assertEquals("", summaries.preview(null));
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.chat.typing;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.chat.events.InMemoryClusterEventBus;
+import com.example.chat.events.RoomEventHub;
+import com.example.chat.events.RoomEventListener;
+import com.example.chat.grpc.RoomEvent;
+
+class TypingIndicatorsTest {
+
+    private static final long MS = 1_000_000L;
+
+    private RoomEventListener listener;
+    private RoomEventHub hub;
+    private List<RoomEvent> events;
+
+    @BeforeEach
+    void setUp() {
+        listener = mock(RoomEventListener.class);
+        hub = new RoomEventHub(List.of(listener), new InMemoryClusterEventBus());
+        events = new ArrayList<>();
+        hub.subscribe(1, events::add);
+    }
+
+    @Test
+    void testRepeatedCallsAreCoalesced() {
+        TypingIndicators typing = new TypingIndicators(hub, 6000, 3000, 1000, 100);
+
+        assertTrue(typing.setTyping(1, 7, true, 0));
+        assertTrue(typing.setTyping(1, 7, true, 1000 * MS));
+        assertTrue(typing.setTyping(1, 7, true, 2000 * MS));
+        assertEquals(1, events.size());
+        typing.setTyping(1, 7, true, 3500 * MS);
+
+        assertEquals(2, events.size());
+        assertEquals(RoomEvent.Type.TYPING_STARTED, events.get(1).getType());
+        assertEquals(7, events.get(1).getUserId());
+        verifyNoInteractions(listener);
+    }
+
+    @Test
+    void testSweepAnnouncesExpiredUsers() {
+        TypingIndicators typing = new TypingIndicators(hub, 6000, 3000, 1000, 100);
+        typing.setTyping(1, 7, true, 0);
+        typing.setTyping(1, 8, true, 0);
+        typing.setTyping(1, 8, true, 4000 * MS);
+
+        typing.sweep(6000 * MS);
+
+        assertEquals(1, typing.size());
+        RoomEvent stopped = events.get(events.size() - 1);
+        assertEquals(RoomEvent.Type.TYPING_STOPPED, stopped.getType());
+        assertEquals(1, stopped.getChatRoomId());
+        assertEquals(7, stopped.getUserId());
+    }
+
+    @Test
+    void testStopAndCapacity() {
+        TypingIndicators typing = new TypingIndicators(hub, 6000, 3000, 1000, 1);
+        typing.setTyping(1, 7, true, 0);
+
+        assertFalse(typing.setTyping(1, 8, true, 0));
+        assertTrue(typing.setTyping(1, 7, false, 0));
+        assertEquals(RoomEvent.Type.TYPING_STOPPED, events.get(events.size() - 1).getType());
+        assertTrue(typing.setTyping(1, 8, true, 0));
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.chat.unread;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import com.example.chat.grpc.Message;
+import com.example.chat.grpc.RoomEvent;
+
+class UnreadCountersTest {
+
+    @Test
+    void testRoomCounter_BufferedEventsAppliedAboveSnapshot() {
+        UnreadCounters.RoomCounter counter = new UnreadCounters.RoomCounter(999);
+        counter.onCreated(11, 101, true);
+        counter.onCreated(13, 103, true);
+        counter.onCreated(12, 102, false);
+        assertEquals(-1, counter.unread());
+
+        assertEquals(5, counter.install(11, 4, 101, 0));
+        counter.onCreated(14, 104, true);
+        assertEquals(6, counter.unread());
+
+        assertFalse(counter.markRead(103));
+        assertTrue(counter.markRead(104));
+        assertEquals(0, counter.unread());
+    }
+
+    @Test
+    void testRoomCounter_CapsAtMaxCount() {
+        UnreadCounters.RoomCounter counter = new UnreadCounters.RoomCounter(3);
+        assertEquals(3, counter.install(1, 10, 1, 0));
+        counter.onCreated(2, 2, true);
+        assertEquals(3, counter.unread());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFlush_WritesPendingMarkersInOneBatchWithoutLookups() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        UnreadCounters counters = new UnreadCounters(jdbcTemplate, 999, 2000, 60_000);
+        counters.markRead(1, 10, 100);
+        counters.markRead(1, 10, 105);
+        counters.markRead(1, 10, 105);
+        counters.markRead(2, 10, 90);
+
+        counters.flush();
+        counters.flush();
+
+        ArgumentCaptor<List<Object[]>> batch = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), batch.capture());
+        verifyNoMoreInteractions(jdbcTemplate);
+        assertEquals(3, batch.getValue().size());
+        assertTrue(batch.getValue().stream().anyMatch(row -> row[0].equals(105) && row[1].equals(1)));
+        assertTrue(batch.getValue().stream().anyMatch(row -> row[0].equals(90) && row[1].equals(2)));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testMarkRead_OlderMarkerDoesNotMoveBack() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        UnreadCounters counters = new UnreadCounters(jdbcTemplate, 999, 2000, 60_000);
+        counters.markRead(1, 10, 105);
+        counters.markRead(1, 10, 100);
+
+        counters.flush();
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<List<Object[]>> batch = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(sql.capture(), batch.capture());
+        assertArrayEquals(new Object[] {100, 1, 10}, batch.getValue().get(0));
+        assertArrayEquals(new Object[] {105, 1, 10}, batch.getValue().get(1));
+        // Each marker is written only if it is after the stored one, and only for a message of the room
+        assertTrue(sql.getValue().contains("(cur.created_at, cur.id) >= (m.created_at, m.id)"));
+        assertTrue(sql.getValue().contains("m.chat_room_id = mem.chat_room_id"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testMarkRead_KeepsHighestPendingMessageIds() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        UnreadCounters counters = new UnreadCounters(jdbcTemplate, 999, 2000, 60_000);
+        for (int messageId = 1; messageId <= 20; messageId++) {
+            counters.markRead(1, 10, messageId);
+        }
+
+        counters.flush();
+
+        ArgumentCaptor<List<Object[]>> batch = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), batch.capture());
+        assertEquals(8, batch.getValue().size());
+        assertEquals(13, batch.getValue().get(0)[0]);
+        assertEquals(20, batch.getValue().get(7)[0]);
+    }
+
+    @Test
+    void testEvictIdle_DropsCountersNotReadForIdleTime() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        // Answers the counter query with one membership row per requested room
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            Object[] args = Arrays.copyOfRange(invocation.getArguments(), 2, invocation.getArguments().length);
+            for (int i = 2; i < args.length; i++) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getInt("chat_room_id")).thenReturn((Integer) args[i]);
+                handler.processRow(rs);
+            }
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+        UnreadCounters counters = new UnreadCounters(jdbcTemplate, 999, 2000, 60_000);
+        counters.unreadCounts(1, List.of(10, 11));
+        counters.unreadCounts(2, List.of(11));
+        assertEquals(3, counters.size());
+
+        counters.evictIdle(System.nanoTime());
+        assertTrue(counters.isTracked(1, 10));
+
+        counters.evictIdle(System.nanoTime() + TimeUnit.SECONDS.toNanos(61));
+        assertFalse(counters.isTracked(1, 10));
+        assertEquals(0, counters.size());
+    }
+
+    @Test
+    void testOnRoomEvent_DeletedUnreadMessageLowersCountsOfOtherMembers() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        // Loads every membership of room 10 with 3 unread messages up to version 20, read up to message 100
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getInt("chat_room_id")).thenReturn(10);
+            when(rs.getInt("unread")).thenReturn(3);
+            when(rs.getLong("change_version")).thenReturn(20L);
+            when(rs.getInt("latest_id")).thenReturn(103);
+            when(rs.getInt("last_read_message_id")).thenReturn(100);
+            handler.processRow(rs);
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+        UnreadCounters counters = new UnreadCounters(jdbcTemplate, 999, 2000, 60_000);
+        counters.unreadCounts(1, List.of(10));
+        counters.unreadCounts(2, List.of(10));
+
+        // Deleted by user 2: unread for user 1, never counted for its sender
+        counters.onRoomEvent(deleted(102, 2, 21));
+        // Read by user 1 before it was deleted
+        counters.onRoomEvent(deleted(99, 3, 22));
+        // Already excluded from the loaded counts
+        counters.onRoomEvent(deleted(101, 3, 19));
+
+        assertEquals(Map.of(10, 2), counters.unreadCounts(1, List.of(10)));
+        assertEquals(Map.of(10, 3), counters.unreadCounts(2, List.of(10)));
+    }
+
+    @Test
+    void testRoomCounter_DeletedWhileLoadingAppliedAfterInstall() {
+        UnreadCounters.RoomCounter counter = new UnreadCounters.RoomCounter(999);
+        counter.onCreated(11, 104, true);
+        counter.onDeleted(12, 104);
+        counter.onDeleted(13, 90);
+
+        assertEquals(2, counter.install(10, 2, 103, 100));
+        counter.markRead(103);
+        counter.onDeleted(14, 102);
+        assertEquals(2, counter.unread());
+    }
+
+    @Test
+    void testRoomCounter_IdleSinceLastRead() {
+        UnreadCounters.RoomCounter counter = new UnreadCounters.RoomCounter(999);
+        counter.touch(1_000);
+
+        assertFalse(counter.idle(1_500, 1_000));
+        assertTrue(counter.idle(2_000, 1_000));
+    }
+
+    private static RoomEvent deleted(int messageId, int senderId, long changeVersion) {
+        return RoomEvent.newBuilder()
+            .setType(RoomEvent.Type.MESSAGE_DELETED)
+            .setChatRoomId(10)
+            .setMessage(Message.newBuilder().setId(messageId).setChatRoomId(10).setSenderId(senderId)
+                .setIsDeleted(true).setChangeVersion(changeVersion))
+            .build();
+    }
+}
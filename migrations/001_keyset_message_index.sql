@@ -0,0 +1,13 @@
+-- Replaces the (chat_room_id, created_at) index of messages with (chat_room_id, created_at DESC, id DESC),
+-- which serves the (created_at, id) keyset pages of GetMessages and the newest page of a room
+-- without sorting. The index is built in the transaction, so writes to messages wait until it is done.
+-- Databases created from public_schema_chat_ddl.sql already have it; this is a no-op there.
+set search_path to public;
+
+BEGIN;
+
+CREATE INDEX IF NOT EXISTS idx_messages_chat_room_created_id ON public.messages(chat_room_id, created_at DESC, id DESC);
+
+DROP INDEX IF EXISTS public.idx_messages_chat_room_created_at;
+
+COMMIT;
@@ -0,0 +1,19 @@
+-- Adds what the postgres search backend (chat.search.backend=postgres) queries:
+--  * text_search, a generated 'simple' tsvector of the text, with a GIN index for word queries.
+--  * A pg_trgm GIN index on text for substring and similarity queries.
+-- Adding the generated column rewrites messages, and the indexes are built in the transaction,
+-- so run it with the application stopped. Creating the extension requires the CREATE privilege
+-- on the database (PostgreSQL 13 or later, where pg_trgm is a trusted extension).
+set search_path to public;
+
+BEGIN;
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+ALTER TABLE public.messages
+    ADD COLUMN IF NOT EXISTS text_search TSVECTOR GENERATED ALWAYS AS (to_tsvector('simple', text)) STORED;
+
+CREATE INDEX IF NOT EXISTS idx_messages_text_search ON public.messages USING GIN (text_search);
+CREATE INDEX IF NOT EXISTS idx_messages_text_trgm ON public.messages USING GIN (text gin_trgm_ops);
+
+COMMIT;
@@ -0,0 +1,48 @@
+-- Adds per-room change versions (chat_rooms.change_version, messages.change_version) used by SyncRoom.
+-- Existing messages are versioned 1, 2, 3, ... per room in (created_at, id) order, and each room
+-- starts counting from its highest version. From then on the trg_messages_change_version trigger
+-- gives every inserted or updated message the next version of its room.
+-- Run once, with the application stopped, so no message is written without a version.
+set search_path to public;
+
+BEGIN;
+
+ALTER TABLE public.chat_rooms ADD COLUMN IF NOT EXISTS change_version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE public.messages ADD COLUMN IF NOT EXISTS change_version BIGINT NOT NULL DEFAULT 0;
+
+-- Backfill before the trigger exists, so the UPDATE itself bumps nothing
+DROP TRIGGER IF EXISTS trg_messages_change_version ON public.messages;
+
+UPDATE public.messages m
+   SET change_version = versioned.change_version
+  FROM (SELECT id,
+               row_number() OVER (PARTITION BY chat_room_id ORDER BY created_at, id) AS change_version
+          FROM public.messages) versioned
+ WHERE m.id = versioned.id;
+
+UPDATE public.chat_rooms r
+   SET change_version = latest.change_version
+  FROM (SELECT chat_room_id, MAX(change_version) AS change_version
+          FROM public.messages
+         GROUP BY chat_room_id) latest
+ WHERE r.id = latest.chat_room_id;
+
+-- The UPDATE locks the room row until the writing transaction commits, so versions
+-- of a room become visible in order and a reader never skips a lower version.
+CREATE OR REPLACE FUNCTION public.bump_message_change_version() RETURNS trigger AS $$
+BEGIN
+    UPDATE public.chat_rooms
+       SET change_version = change_version + 1
+     WHERE id = NEW.chat_room_id
+ RETURNING change_version INTO NEW.change_version;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_messages_change_version
+    BEFORE INSERT OR UPDATE ON public.messages
+    FOR EACH ROW EXECUTE FUNCTION public.bump_message_change_version();
+
+CREATE INDEX IF NOT EXISTS idx_messages_chat_room_change_version ON public.messages(chat_room_id, change_version);
+
+COMMIT;
@@ -0,0 +1,33 @@
+-- Switches an existing database from IDENTITY-style ids to pooled sequence allocation.
+-- Hibernate now reserves 50 ids per nextval call (allocationSize = 50), treating each
+-- returned value v as the upper end of the block (v - 50, v]. Every sequence is moved
+-- past the highest existing id so that no reserved block overlaps existing rows, and the
+-- column defaults are dropped so that no writer takes an id outside of a reserved block.
+-- Run once, with the application stopped.
+set search_path to public;
+
+BEGIN;
+
+ALTER SEQUENCE public.users_id_seq INCREMENT BY 50;
+SELECT setval('public.users_id_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM public.users), 1));
+ALTER TABLE public.users ALTER COLUMN id DROP DEFAULT;
+
+ALTER SEQUENCE public.chat_rooms_id_seq INCREMENT BY 50;
+SELECT setval('public.chat_rooms_id_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM public.chat_rooms), 1));
+ALTER TABLE public.chat_rooms ALTER COLUMN id DROP DEFAULT;
+
+ALTER SEQUENCE public.chat_room_memberships_id_seq INCREMENT BY 50;
+SELECT setval('public.chat_room_memberships_id_seq',
+    GREATEST((SELECT COALESCE(MAX(id), 0) FROM public.chat_room_memberships), 1));
+ALTER TABLE public.chat_room_memberships ALTER COLUMN id DROP DEFAULT;
+
+ALTER SEQUENCE public.messages_id_seq INCREMENT BY 50;
+SELECT setval('public.messages_id_seq', GREATEST((SELECT COALESCE(MAX(id), 0) FROM public.messages), 1));
+ALTER TABLE public.messages ALTER COLUMN id DROP DEFAULT;
+
+ALTER SEQUENCE public.friend_requests_id_seq INCREMENT BY 50;
+SELECT setval('public.friend_requests_id_seq',
+    GREATEST((SELECT COALESCE(MAX(id), 0) FROM public.friend_requests), 1));
+ALTER TABLE public.friend_requests ALTER COLUMN id DROP DEFAULT;
+
+COMMIT;
@@ -0,0 +1,84 @@
+-- Converts public.messages into a table range-partitioned by month on created_at.
+-- Partitions are named messages_yYYYYmMM and cover [first of month, first of next month) in UTC.
+-- Once this has run, set chat.partitions.enabled=true: the application then creates upcoming
+-- partitions ahead of time and detaches and drops partitions older than the retention period.
+--
+-- Notes:
+--  * The primary key becomes (id, created_at), since unique constraints on a partitioned table
+--    must include the partition key. ids still come from messages_id_seq and stay unique.
+--  * Foreign keys referencing messages(id) cannot be kept; the one from message_audit is dropped.
+--  * There is no DEFAULT partition: a row outside all partitions fails to insert, so the
+--    application must keep chat.partitions.months-ahead partitions ready.
+-- Run once, with the application stopped. Requires PostgreSQL 13 or later.
+set search_path to public;
+
+BEGIN;
+
+ALTER TABLE public.message_audit DROP CONSTRAINT IF EXISTS message_audit_message_id_fkey;
+
+ALTER TABLE public.messages RENAME TO messages_unpartitioned;
+DROP TRIGGER IF EXISTS trg_messages_change_version ON public.messages_unpartitioned;
+DROP INDEX IF EXISTS public.idx_messages_chat_room_created_id;
+DROP INDEX IF EXISTS public.idx_messages_chat_room_change_version;
+DROP INDEX IF EXISTS public.idx_messages_sender_id;
+DROP INDEX IF EXISTS public.idx_messages_created_at;
+DROP INDEX IF EXISTS public.idx_messages_text_search;
+DROP INDEX IF EXISTS public.idx_messages_text_trgm;
+
+CREATE TABLE public.messages (
+    id              INTEGER NOT NULL,
+    chat_room_id    INTEGER NOT NULL REFERENCES public.chat_rooms(id) ON DELETE CASCADE,
+    sender_id       INTEGER NOT NULL REFERENCES public.users(id) ON DELETE CASCADE,
+    text            TEXT NOT NULL,
+    created_at      TIMESTAMPTZ NOT NULL DEFAULT now(),
+    edited_at       TIMESTAMPTZ,
+    deleted_at      TIMESTAMPTZ,
+    deleted_by      INTEGER REFERENCES public.users(id) ON DELETE SET NULL,
+    is_edited       BOOLEAN NOT NULL DEFAULT FALSE,
+    is_deleted      BOOLEAN NOT NULL DEFAULT FALSE,
+    change_version  BIGINT NOT NULL DEFAULT 0,
+    text_search     TSVECTOR GENERATED ALWAYS AS (to_tsvector('simple', text)) STORED,
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+ALTER SEQUENCE public.messages_id_seq OWNED BY public.messages.id;
+
+-- One partition per month from the oldest message up to three months ahead.
+DO $$
+DECLARE
+    month_start TIMESTAMPTZ;
+    last_month  TIMESTAMPTZ := date_trunc('month', now() AT TIME ZONE 'UTC') AT TIME ZONE 'UTC' + INTERVAL '3 months';
+BEGIN
+    SELECT date_trunc('month', COALESCE(MIN(created_at), now()) AT TIME ZONE 'UTC') AT TIME ZONE 'UTC'
+      INTO month_start
+      FROM public.messages_unpartitioned;
+    WHILE month_start <= last_month LOOP
+        EXECUTE format('CREATE TABLE public.%I PARTITION OF public.messages FOR VALUES FROM (%L) TO (%L)',
+            'messages_y' || to_char(month_start AT TIME ZONE 'UTC', 'YYYY') || 'm'
+                || to_char(month_start AT TIME ZONE 'UTC', 'MM'),
+            month_start, month_start + INTERVAL '1 month');
+        month_start := month_start + INTERVAL '1 month';
+    END LOOP;
+END $$;
+
+INSERT INTO public.messages (id, chat_room_id, sender_id, text, created_at, edited_at, deleted_at,
+                             deleted_by, is_edited, is_deleted, change_version)
+SELECT id, chat_room_id, sender_id, text, created_at, edited_at, deleted_at,
+       deleted_by, is_edited, is_deleted, change_version
+  FROM public.messages_unpartitioned;
+
+DROP TABLE public.messages_unpartitioned;
+
+CREATE INDEX idx_messages_chat_room_created_id ON public.messages(chat_room_id, created_at DESC, id DESC);
+CREATE INDEX idx_messages_chat_room_change_version ON public.messages(chat_room_id, change_version);
+CREATE INDEX idx_messages_id ON public.messages(id);
+CREATE INDEX idx_messages_sender_id ON public.messages(sender_id);
+CREATE INDEX idx_messages_created_at ON public.messages(created_at DESC);
+CREATE INDEX idx_messages_text_search ON public.messages USING GIN (text_search);
+CREATE INDEX idx_messages_text_trgm ON public.messages USING GIN (text gin_trgm_ops);
+
+CREATE TRIGGER trg_messages_change_version
+    BEFORE INSERT OR UPDATE ON public.messages
+    FOR EACH ROW EXECUTE FUNCTION public.bump_message_change_version();
+
+COMMIT;
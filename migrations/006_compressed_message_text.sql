@@ -0,0 +1,19 @@
+-- Adds the compressed text storage used when chat.text-compression.enabled=true.
+-- Existing rows keep their text; only messages written afterwards are compressed.
+-- Works on both the plain and the month-partitioned messages table.
+set search_path to public;
+
+BEGIN;
+
+ALTER TABLE public.messages ALTER COLUMN text DROP NOT NULL;
+ALTER TABLE public.messages ADD COLUMN IF NOT EXISTS text_compressed BYTEA;
+ALTER TABLE public.messages ADD CONSTRAINT messages_text_present
+    CHECK (num_nonnulls(text, text_compressed) = 1);
+
+CREATE TABLE IF NOT EXISTS public.message_text_dictionaries (
+    id              SERIAL PRIMARY KEY,
+    data            BYTEA NOT NULL,
+    created_at      TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+COMMIT;
@@ -0,0 +1,17 @@
+-- Adds the read markers behind unread counts and the MarkRead RPC.
+set search_path to public;
+
+BEGIN;
+
+ALTER TABLE public.chat_room_memberships
+    ADD COLUMN IF NOT EXISTS last_read_message_id INTEGER NOT NULL DEFAULT 0;
+
+-- Existing members start with everything read instead of up to chat.unread.max-count unread messages.
+UPDATE public.chat_room_memberships mem
+   SET last_read_message_id = latest.id
+  FROM (SELECT DISTINCT ON (chat_room_id) chat_room_id, id
+          FROM public.messages
+         ORDER BY chat_room_id, created_at DESC, id DESC) latest
+ WHERE latest.chat_room_id = mem.chat_room_id;
+
+COMMIT;
@@ -0,0 +1,40 @@
+-- Adds dense per-room message sequence numbers (messages.seq).
+-- New messages are numbered by the ingestion pipeline; existing messages are numbered here
+-- in (created_at, id) order. Messages already moved to archive segments keep seq 0, and the
+-- numbering of such rooms starts again at 1 with the oldest message left in the database.
+-- Stop the server while this runs so no messages are inserted without a number.
+set search_path to public;
+
+BEGIN;
+
+ALTER TABLE public.messages ADD COLUMN IF NOT EXISTS seq BIGINT;
+
+-- Numbering is not a change of the message, so it must not bump change_version
+ALTER TABLE public.messages DISABLE TRIGGER trg_messages_change_version;
+
+UPDATE public.messages m
+   SET seq = numbered.seq
+  FROM (SELECT id, created_at,
+               row_number() OVER (PARTITION BY chat_room_id ORDER BY created_at, id) AS seq
+          FROM public.messages) numbered
+ WHERE m.id = numbered.id
+   AND m.created_at = numbered.created_at;
+
+ALTER TABLE public.messages ENABLE TRIGGER trg_messages_change_version;
+
+ALTER TABLE public.messages ALTER COLUMN seq SET NOT NULL;
+
+-- Unique indexes of a partitioned table (migrations/005) must contain the partition key, so
+-- there the index also carries created_at. It still serves seq range scans; uniqueness of
+-- (chat_room_id, seq) across months then rests on the pipeline being the only writer.
+DO $$
+BEGIN
+    IF (SELECT relkind FROM pg_class WHERE oid = 'public.messages'::regclass) = 'p' THEN
+        CREATE UNIQUE INDEX IF NOT EXISTS ux_messages_chat_room_seq ON public.messages(chat_room_id, seq, created_at);
+    ELSE
+        CREATE UNIQUE INDEX IF NOT EXISTS ux_messages_chat_room_seq ON public.messages(chat_room_id, seq);
+    END IF;
+END;
+$$;
+
+COMMIT;
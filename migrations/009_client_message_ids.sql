@@ -0,0 +1,25 @@
+-- Adds the optional SendMessage idempotency key (messages.client_message_id).
+-- Existing messages have no key. Works on both the plain and the month-partitioned messages table.
+set search_path to public;
+
+BEGIN;
+
+ALTER TABLE public.messages ADD COLUMN IF NOT EXISTS client_message_id VARCHAR(64);
+
+-- Unique indexes of a partitioned table (migrations/005) must contain the partition key, so
+-- there the index also carries created_at and cannot reject a retry stored in another month.
+-- It still serves the lookup the ingestion pipeline makes before inserting a batch, which is
+-- what deduplicates retries that are no longer in the in-memory cache.
+DO $$
+BEGIN
+    IF (SELECT relkind FROM pg_class WHERE oid = 'public.messages'::regclass) = 'p' THEN
+        CREATE UNIQUE INDEX IF NOT EXISTS ux_messages_sender_client_message_id
+            ON public.messages(sender_id, client_message_id, created_at) WHERE client_message_id IS NOT NULL;
+    ELSE
+        CREATE UNIQUE INDEX IF NOT EXISTS ux_messages_sender_client_message_id
+            ON public.messages(sender_id, client_message_id) WHERE client_message_id IS NOT NULL;
+    END IF;
+END;
+$$;
+
+COMMIT;
@@ -0,0 +1,31 @@
+-- Adds room_summaries, the read model behind ListUserChatRooms ordering and previews,
+-- and fills it from the messages still in the database. Archived messages are not counted.
+-- Compressed texts cannot be decoded here, so their rooms start with an empty preview
+-- until the next message. Works on both the plain and the month-partitioned messages table.
+set search_path to public;
+
+BEGIN;
+
+CREATE TABLE IF NOT EXISTS public.room_summaries (
+    chat_room_id    INTEGER PRIMARY KEY REFERENCES public.chat_rooms(id) ON DELETE CASCADE,
+    last_message_id INTEGER NOT NULL,
+    last_sender_id  INTEGER NOT NULL,
+    last_preview    TEXT NOT NULL DEFAULT '',
+    last_message_at TIMESTAMPTZ NOT NULL,
+    message_count   BIGINT NOT NULL DEFAULT 0
+);
+
+INSERT INTO public.room_summaries
+       (chat_room_id, last_message_id, last_sender_id, last_preview, last_message_at, message_count)
+SELECT latest.chat_room_id, latest.id, latest.sender_id, left(coalesce(latest.text, ''), 100),
+       latest.created_at, coalesce(counts.message_count, 0)
+  FROM (SELECT DISTINCT ON (chat_room_id) chat_room_id, id, sender_id, text, created_at
+          FROM public.messages
+         ORDER BY chat_room_id, created_at DESC, id DESC) latest
+  LEFT JOIN (SELECT chat_room_id, count(*) AS message_count
+               FROM public.messages
+              WHERE NOT is_deleted
+              GROUP BY chat_room_id) counts ON counts.chat_room_id = latest.chat_room_id
+ON CONFLICT (chat_room_id) DO NOTHING;
+
+COMMIT;
@@ -0,0 +1,25 @@
+-- Adds the transactional outbox: outbox_events, written in the transaction of each domain
+-- change, and outbox_consumer_offsets, the position of each in-process consumer.
+-- Requires PostgreSQL 13 or later for xid8 and pg_current_xact_id().
+set search_path to public;
+
+BEGIN;
+
+CREATE TABLE IF NOT EXISTS public.outbox_events (
+    id              BIGSERIAL PRIMARY KEY,
+    xid             XID8 NOT NULL DEFAULT pg_current_xact_id(),
+    event_type      VARCHAR(40) NOT NULL, -- stable name from Outbox.eventType, e.g. MESSAGE_CREATED
+    payload         BYTEA NOT NULL,
+    created_at      TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE INDEX IF NOT EXISTS idx_outbox_events_xid_id ON public.outbox_events(xid, id);
+
+CREATE TABLE IF NOT EXISTS public.outbox_consumer_offsets (
+    consumer        VARCHAR(100) PRIMARY KEY,
+    last_xid        XID8 NOT NULL DEFAULT '0',
+    last_event_id   BIGINT NOT NULL DEFAULT 0,
+    updated_at      TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+COMMIT;
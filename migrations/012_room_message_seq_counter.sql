@@ -0,0 +1,40 @@
+-- Moves the assignment of messages.seq from the application into the change version trigger.
+-- Each room keeps its highest sequence number in chat_rooms.message_seq, and the trigger hands out
+-- the next one on insert under the same room row lock as the change version. Instances therefore
+-- share one counter per room, and a rolled back insert gives its number back.
+-- Counters start at the highest seq still in the database; rooms with archive segments are moved
+-- past their newest archived message when the application maps the segments on startup.
+-- Run once, with the application stopped.
+set search_path to public;
+
+BEGIN;
+
+ALTER TABLE public.chat_rooms ADD COLUMN IF NOT EXISTS message_seq BIGINT NOT NULL DEFAULT 0;
+
+UPDATE public.chat_rooms r
+   SET message_seq = latest.seq
+  FROM (SELECT chat_room_id, MAX(seq) AS seq
+          FROM public.messages
+         GROUP BY chat_room_id) latest
+ WHERE r.id = latest.chat_room_id
+   AND r.message_seq < latest.seq;
+
+CREATE OR REPLACE FUNCTION public.bump_message_change_version() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        UPDATE public.chat_rooms
+           SET change_version = change_version + 1,
+               message_seq = message_seq + 1
+         WHERE id = NEW.chat_room_id
+     RETURNING change_version, message_seq INTO NEW.change_version, NEW.seq;
+    ELSE
+        UPDATE public.chat_rooms
+           SET change_version = change_version + 1
+         WHERE id = NEW.chat_room_id
+     RETURNING change_version INTO NEW.change_version;
+    END IF;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+COMMIT;
@@ -1,7 +1,12 @@
 create schema if not exists public;
 set search_path to public;
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
 -- Remove objects if they exist
 DROP TABLE IF EXISTS public.message_audit CASCADE;
+DROP TABLE IF EXISTS public.outbox_consumer_offsets CASCADE;
+DROP TABLE IF EXISTS public.outbox_events CASCADE;
+DROP TABLE IF EXISTS public.room_summaries CASCADE;
+DROP TABLE IF EXISTS public.message_text_dictionaries CASCADE;
 DROP TABLE IF EXISTS public.messages CASCADE;
 DROP TABLE IF EXISTS public.message CASCADE;
 DROP TABLE IF EXISTS public.chat_room_memberships CASCADE;
@@ -24,7 +29,11 @@ CREATE TABLE public.chat_rooms (
     id              SERIAL PRIMARY KEY,
     name            VARCHAR(255),
     description     TEXT,
-    created_at      TIMESTAMPTZ NOT NULL DEFAULT now()
+    created_at      TIMESTAMPTZ NOT NULL DEFAULT now(),
+    -- Highest change_version handed out to a message of this room
+    change_version  BIGINT NOT NULL DEFAULT 0,
+    -- Highest seq handed out to a message of this room (see migrations/012)
+    message_seq     BIGINT NOT NULL DEFAULT 0
 );
 
 -- Private (one-to-one) chat rooms table
@@ -43,23 +52,63 @@ CREATE TABLE public.chat_room_memberships (
     user_id         INTEGER NOT NULL REFERENCES public.users(id) ON DELETE CASCADE,
     role            VARCHAR(50) DEFAULT 'member',
     joined_at       TIMESTAMPTZ NOT NULL DEFAULT now(),
+    -- Last message the user has read; no foreign key, since messages may be partitioned or archived
+    last_read_message_id INTEGER NOT NULL DEFAULT 0,
     CONSTRAINT uq_room_user UNIQUE (chat_room_id, user_id)
 );
 
 -- Main messages table
+-- migrations/005_partition_messages_by_month.sql converts this table into monthly partitions.
 CREATE TABLE public.messages (
     id              SERIAL PRIMARY KEY,
     chat_room_id    INTEGER NOT NULL REFERENCES public.chat_rooms(id) ON DELETE CASCADE,
     sender_id       INTEGER NOT NULL REFERENCES public.users(id) ON DELETE CASCADE,
-    text            TEXT NOT NULL,
+    text            TEXT,
+    -- Compressed text, used instead of text for long messages when chat.text-compression.enabled=true
+    text_compressed BYTEA,
     created_at      TIMESTAMPTZ NOT NULL DEFAULT now(),
     edited_at       TIMESTAMPTZ,
     deleted_at      TIMESTAMPTZ,
     deleted_by      INTEGER REFERENCES public.users(id) ON DELETE SET NULL,
     is_edited       BOOLEAN NOT NULL DEFAULT FALSE,
-    is_deleted      BOOLEAN NOT NULL DEFAULT FALSE
+    is_deleted      BOOLEAN NOT NULL DEFAULT FALSE,
+    -- Per-room version, bumped on every insert and update (see trg_messages_change_version)
+    change_version  BIGINT NOT NULL DEFAULT 0,
+    -- Dense per-room sequence number, assigned on insert (see trg_messages_change_version)
+    seq             BIGINT NOT NULL,
+    -- Idempotency key of SendMessage, unique per sender (see migrations/009)
+    client_message_id VARCHAR(64),
+    -- Full-text search vector, used when chat.search.backend=postgres
+    text_search     TSVECTOR GENERATED ALWAYS AS (to_tsvector('simple', text)) STORED,
+    CONSTRAINT messages_text_present CHECK (num_nonnulls(text, text_compressed) = 1)
 );
 
+-- Assigns the next per-room change version to every inserted or updated message, and the
+-- next per-room sequence number to every inserted one.
+-- The UPDATE locks the room row until the writing transaction commits, so versions
+-- of a room become visible in order and a reader never skips a lower version.
+CREATE OR REPLACE FUNCTION public.bump_message_change_version() RETURNS trigger AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        UPDATE public.chat_rooms
+           SET change_version = change_version + 1,
+               message_seq = message_seq + 1
+         WHERE id = NEW.chat_room_id
+     RETURNING change_version, message_seq INTO NEW.change_version, NEW.seq;
+    ELSE
+        UPDATE public.chat_rooms
+           SET change_version = change_version + 1
+         WHERE id = NEW.chat_room_id
+     RETURNING change_version INTO NEW.change_version;
+    END IF;
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_messages_change_version
+    BEFORE INSERT OR UPDATE ON public.messages
+    FOR EACH ROW EXECUTE FUNCTION public.bump_message_change_version();
+
 --alternative message table
 CREATE TABLE public.message (
     id              SERIAL PRIMARY KEY,
@@ -71,6 +120,45 @@ CREATE TABLE public.message (
     is_deleted      BOOLEAN DEFAULT FALSE
 );
 
+-- Latest activity of each room, maintained by the ingestion pipeline and the edit and delete
+-- RPCs; rooms without messages have no row (see migrations/010)
+CREATE TABLE public.room_summaries (
+    chat_room_id    INTEGER PRIMARY KEY REFERENCES public.chat_rooms(id) ON DELETE CASCADE,
+    last_message_id INTEGER NOT NULL,
+    last_sender_id  INTEGER NOT NULL,
+    -- Beginning of the last message, chat.room-summaries.preview-length characters at most
+    last_preview    TEXT NOT NULL DEFAULT '',
+    last_message_at TIMESTAMPTZ NOT NULL,
+    -- Messages of the room that are not deleted
+    message_count   BIGINT NOT NULL DEFAULT 0
+);
+
+-- Transactional outbox: one row per domain change, written in the transaction of the change
+-- (see migrations/011). Readers order by (xid, id), the commit order of the writing transactions.
+CREATE TABLE public.outbox_events (
+    id              BIGSERIAL PRIMARY KEY,
+    xid             XID8 NOT NULL DEFAULT pg_current_xact_id(),
+    event_type      VARCHAR(40) NOT NULL, -- stable name from Outbox.eventType, e.g. MESSAGE_CREATED
+    -- Serialized DomainEvent protobuf message, without its id
+    payload         BYTEA NOT NULL,
+    created_at      TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+-- Position of each outbox consumer: the (xid, id) of the last event it has handled
+CREATE TABLE public.outbox_consumer_offsets (
+    consumer        VARCHAR(100) PRIMARY KEY,
+    last_xid        XID8 NOT NULL DEFAULT '0',
+    last_event_id   BIGINT NOT NULL DEFAULT 0,
+    updated_at      TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+-- Preset dictionaries of the compressed text codec; rows are never changed once written
+CREATE TABLE public.message_text_dictionaries (
+    id              SERIAL PRIMARY KEY,
+    data            BYTEA NOT NULL,
+    created_at      TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
 -- Message audit/history table
 CREATE TABLE public.message_audit (
     id              SERIAL PRIMARY KEY,
@@ -100,10 +188,31 @@ CREATE TABLE public.friendships (
     CONSTRAINT friendship_pair_uniq UNIQUE (LEAST(user_a_id, user_b_id), GREATEST(user_a_id, user_b_id))
 );
 
+-- Pooled id allocation: Hibernate reserves 50 ids per nextval (allocationSize = 50 on the
+-- entities), so the sequences advance in steps of 50 and ids never come from column defaults.
+ALTER SEQUENCE public.users_id_seq INCREMENT BY 50 RESTART WITH 50;
+ALTER SEQUENCE public.chat_rooms_id_seq INCREMENT BY 50 RESTART WITH 50;
+ALTER SEQUENCE public.chat_room_memberships_id_seq INCREMENT BY 50 RESTART WITH 50;
+ALTER SEQUENCE public.messages_id_seq INCREMENT BY 50 RESTART WITH 50;
+ALTER SEQUENCE public.friend_requests_id_seq INCREMENT BY 50 RESTART WITH 50;
+ALTER TABLE public.users ALTER COLUMN id DROP DEFAULT;
+ALTER TABLE public.chat_rooms ALTER COLUMN id DROP DEFAULT;
+ALTER TABLE public.chat_room_memberships ALTER COLUMN id DROP DEFAULT;
+ALTER TABLE public.messages ALTER COLUMN id DROP DEFAULT;
+ALTER TABLE public.friend_requests ALTER COLUMN id DROP DEFAULT;
+
 -- Indexes (helpful for common queries)
-CREATE INDEX IF NOT EXISTS idx_messages_chat_room_created_at ON public.messages(chat_room_id, created_at DESC);
+CREATE INDEX IF NOT EXISTS idx_messages_chat_room_created_id ON public.messages(chat_room_id, created_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS idx_messages_chat_room_change_version ON public.messages(chat_room_id, change_version);
+CREATE UNIQUE INDEX IF NOT EXISTS ux_messages_chat_room_seq ON public.messages(chat_room_id, seq);
+CREATE UNIQUE INDEX IF NOT EXISTS ux_messages_sender_client_message_id
+    ON public.messages(sender_id, client_message_id) WHERE client_message_id IS NOT NULL;
 CREATE INDEX IF NOT EXISTS idx_messages_sender_id ON public.messages(sender_id);
 CREATE INDEX IF NOT EXISTS idx_messages_created_at ON public.messages(created_at DESC);
+CREATE INDEX IF NOT EXISTS idx_messages_text_search ON public.messages USING GIN (text_search);
+CREATE INDEX IF NOT EXISTS idx_messages_text_trgm ON public.messages USING GIN (text gin_trgm_ops);
+
+CREATE INDEX IF NOT EXISTS idx_outbox_events_xid_id ON public.outbox_events(xid, id);
 
 CREATE INDEX IF NOT EXISTS idx_chat_room_memberships_user ON public.chat_room_memberships(user_id);
 CREATE INDEX IF NOT EXISTS idx_private_chat_users ON public.private_chat_rooms(user_one_id, user_two_id);